@@ -0,0 +1,127 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.google.code.ebmlviewer.core.EbmlDecoder;
+import com.google.code.ebmlviewer.core.EbmlEncoder;
+import com.google.code.ebmlviewer.core.LongColumn;
+import com.google.code.ebmlviewer.core.VariableLengthInteger;
+import com.google.code.ebmlviewer.matroska.MatroskaElements;
+
+/** Measures the decoding of the variable-length integers and of the runs of unsigned integer elements. */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class DecoderBenchmark {
+
+    private static final int COUNT = 1024;
+
+
+    private final EbmlDecoder decoder = new EbmlDecoder();
+
+    private final VariableLengthInteger cueTime = VariableLengthInteger.fromEncoded( MatroskaElements.CUE_TIME );
+
+    private final LongColumn column = new LongColumn( COUNT );
+
+    /** The variable-length integers of one to four bytes. */
+    private ByteBuffer variableLengthIntegers;
+
+    /** The {@code CueTime} elements with the values of one to four bytes. */
+    private ByteBuffer unsignedIntegers;
+
+
+    @Setup
+    public void setUp() {
+        Random random = new Random( 42L );
+        EbmlEncoder encoder = new EbmlEncoder();
+        variableLengthIntegers = ByteBuffer.allocate( COUNT * 4 );
+        unsignedIntegers = ByteBuffer.allocate( COUNT * 6 );
+        for ( int i = 0; i < COUNT; i++ ) {
+            int length = 1 + i % 4;
+            encoder.encodeVariableLengthInteger( variableLengthIntegers, VariableLengthInteger.fromPlain( random.nextInt( ( 1 << 7 * length ) - 1 ) ) );
+            encoder.encodeVariableLengthInteger( unsignedIntegers, cueTime );
+            encoder.encodeVariableLengthInteger( unsignedIntegers, VariableLengthInteger.fromPlain( length ) );
+            encoder.encodeUnsignedInteger( unsignedIntegers, random.nextLong() >>> 64 - 8 * length, length );
+        }
+        variableLengthIntegers.flip();
+        unsignedIntegers.flip();
+    }
+
+
+    @Benchmark
+    @OperationsPerInvocation( COUNT )
+    public long variableLengthIntegers() {
+        ByteBuffer buffer = variableLengthIntegers.duplicate();
+        long sum = 0L;
+        while ( buffer.hasRemaining() ) {
+            sum += decoder.decodeVariableLengthInteger( buffer ).getPlainValue();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation( COUNT )
+    public long unsignedIntegers() {
+        ByteBuffer buffer = unsignedIntegers.duplicate();
+        long sum = 0L;
+        while ( buffer.hasRemaining() ) {
+            decoder.decodeVariableLengthInteger( buffer );
+            int length = ( int ) decoder.decodeVariableLengthInteger( buffer ).getPlainValue();
+            sum += decoder.decodeUnsignedInteger( buffer, length );
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation( COUNT )
+    public int unsignedIntegersBulk() {
+        column.clear();
+        return decoder.decodeUnsignedIntegers( unsignedIntegers.duplicate(), cueTime, column );
+    }
+
+}
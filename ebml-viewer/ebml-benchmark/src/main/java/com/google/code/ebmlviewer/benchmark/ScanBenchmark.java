@@ -0,0 +1,102 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.benchmark;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import com.google.code.ebmlviewer.io.EbmlFile;
+import com.google.code.ebmlviewer.io.EbmlFileEntry;
+import com.google.code.ebmlviewer.stream.EbmlStreamReader;
+
+/** Measures the full traversal of a synthetic file by the stream and file readers. */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class ScanBenchmark {
+
+    @Benchmark
+    public long streamReader( SyntheticFileState state ) throws IOException {
+        FileInputStream stream = new FileInputStream( state.file );
+        try {
+            EbmlStreamReader reader = new EbmlStreamReader( stream.getChannel(), state.file.length() );
+            return traverse( reader );
+        } finally {
+            stream.close();
+        }
+    }
+
+    private static long traverse( EbmlStreamReader reader ) throws IOException {
+        long count = 0L;
+        while ( reader.next() ) {
+            count++;
+            if ( SyntheticMatroskaFile.isMaster( reader.getIdentifier().getEncodedValue() ) ) {
+                reader.enterContainer();
+                count += traverse( reader );
+                reader.leaveContainer();
+            }
+        }
+        return count;
+    }
+
+
+    @Benchmark
+    public long fileEntries( SyntheticFileState state ) throws IOException {
+        EbmlFile file = new EbmlFile( state.file );
+        try {
+            return scan( file.getEntries() );
+        } finally {
+            file.close();
+        }
+    }
+
+    private static long scan( List<EbmlFileEntry> entries ) throws IOException {
+        long count = 0L;
+        for ( EbmlFileEntry entry : entries ) {
+            count++;
+            if ( SyntheticMatroskaFile.isMaster( entry.getIdentifier().getEncodedValue() ) ) {
+                count += scan( entry.getEntries() );
+            }
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,141 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.benchmark;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import com.google.code.ebmlviewer.core.EbmlDecoder;
+import com.google.code.ebmlviewer.core.StringCache;
+
+/** Measures the decoding of the typical metadata strings with and without the string cache. */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class StringDecodingBenchmark {
+
+    private static final String[] ASCII_VALUES = {
+            "V_MPEG4/ISO/AVC", "A_AAC", "S_TEXT/UTF8", "eng", "und", "ger",
+            "TITLE", "ARTIST", "ENCODER", "Lavf58.29.100",
+    };
+
+    private static final String[] UNICODE_VALUES = {
+            "\u0417\u0430\u0433\u043e\u043b\u043e\u0432\u043e\u043a", "Caf\u00e9 del Mar", "\u65e5\u672c\u8a9e",
+            "eng", "TITLE", "Lavf58.29.100",
+    };
+
+
+    private final EbmlDecoder decoder = new EbmlDecoder();
+
+    private final EbmlDecoder cachedDecoder = new EbmlDecoder( new StringCache() );
+
+    private ByteBuffer asciiData;
+
+    private int[] asciiLengths;
+
+    private ByteBuffer unicodeData;
+
+    private int[] unicodeLengths;
+
+
+    @Setup
+    public void setUp() throws UnsupportedEncodingException {
+        asciiLengths = new int[ ASCII_VALUES.length ];
+        asciiData = encode( ASCII_VALUES, asciiLengths );
+        unicodeLengths = new int[ UNICODE_VALUES.length ];
+        unicodeData = encode( UNICODE_VALUES, unicodeLengths );
+    }
+
+    private static ByteBuffer encode( String[] values, int[] lengths ) throws UnsupportedEncodingException {
+        ByteBuffer buffer = ByteBuffer.allocate( 1024 );
+        for ( int i = 0; i < values.length; i++ ) {
+            byte[] bytes = values[ i ].getBytes( "UTF-8" );
+            buffer.put( bytes );
+            lengths[ i ] = bytes.length;
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+
+    @Benchmark
+    @OperationsPerInvocation( 10 )
+    public void asciiStrings( Blackhole blackhole ) throws CharacterCodingException {
+        ByteBuffer buffer = asciiData.duplicate();
+        for ( int length : asciiLengths ) {
+            blackhole.consume( decoder.decodeAsciiString( buffer, length ) );
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation( 10 )
+    public void asciiStringsCached( Blackhole blackhole ) throws CharacterCodingException {
+        ByteBuffer buffer = asciiData.duplicate();
+        for ( int length : asciiLengths ) {
+            blackhole.consume( cachedDecoder.decodeAsciiString( buffer, length ) );
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation( 6 )
+    public void unicodeStrings( Blackhole blackhole ) throws CharacterCodingException {
+        ByteBuffer buffer = unicodeData.duplicate();
+        for ( int length : unicodeLengths ) {
+            blackhole.consume( decoder.decodeUnicodeString( buffer, length ) );
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation( 6 )
+    public void unicodeStringsCached( Blackhole blackhole ) throws CharacterCodingException {
+        ByteBuffer buffer = unicodeData.duplicate();
+        for ( int length : unicodeLengths ) {
+            blackhole.consume( cachedDecoder.decodeUnicodeString( buffer, length ) );
+        }
+    }
+
+}
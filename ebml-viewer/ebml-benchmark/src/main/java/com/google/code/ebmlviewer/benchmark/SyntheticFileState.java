@@ -0,0 +1,84 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/** The synthetic Matroska file shared by the scan benchmarks, written once per trial. */
+@State( Scope.Benchmark )
+public class SyntheticFileState {
+
+    @Param( { "100" } )
+    public int clusters;
+
+    @Param( { "32" } )
+    public int blocksPerCluster;
+
+    @Param( { "1024", "65536" } )
+    public int blockSize;
+
+    @Param( { "2" } )
+    public int tracks;
+
+    @Param( { "100" } )
+    public int tags;
+
+
+    File file;
+
+
+    @Setup( Level.Trial )
+    public void setUp() throws IOException {
+        file = File.createTempFile( "benchmark", ".mkv" );
+        SyntheticMatroskaFile synthetic = new SyntheticMatroskaFile();
+        synthetic.setClusters( clusters );
+        synthetic.setBlocksPerCluster( blocksPerCluster );
+        synthetic.setBlockSize( blockSize );
+        synthetic.setTracks( tracks );
+        synthetic.setTags( tags );
+        synthetic.write( file );
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown() {
+        if ( !file.delete() ) {
+            file.deleteOnExit();
+        }
+    }
+
+}
@@ -0,0 +1,234 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.benchmark;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.google.code.ebmlviewer.core.EbmlEncoder;
+import com.google.code.ebmlviewer.core.VariableLengthInteger;
+
+import static com.google.code.ebmlviewer.matroska.MatroskaElements.*;
+
+/**
+ * Writes synthetic Matroska files of configurable size and shape.
+ * <p/>
+ * The file contains the EBML header and a segment with the {@code Info} and {@code Tracks} elements, the clusters of
+ * simple blocks interleaving the tracks, the cues pointing to every cluster and the tags. The block payload is not a
+ * valid codec bitstream, only the EBML structure is realistic.
+ */
+public final class SyntheticMatroskaFile {
+
+    private static final Set<Long> MASTER_ELEMENTS = new HashSet<Long>( Arrays.asList(
+            ( long ) EBML, ( long ) SEGMENT, ( long ) INFO, ( long ) TRACKS, ( long ) TRACK_ENTRY, ( long ) CLUSTER,
+            ( long ) CUES, ( long ) CUE_POINT, ( long ) CUE_TRACK_POSITIONS, ( long ) TAGS, ( long ) TAG,
+            ( long ) TARGETS, ( long ) SIMPLE_TAG ) );
+
+    private static final String[] TAG_NAMES = { "TITLE", "ARTIST", "ENCODER", "COMMENT", "DATE_RELEASED" };
+
+
+    /**
+     * Returns whether the element with the specified identifier is a master element of the synthetic file.
+     *
+     * @param identifier the encoded element identifier
+     *
+     * @return {@code true} if the element contains other elements; {@code false} otherwise
+     */
+    public static boolean isMaster( long identifier ) {
+        return MASTER_ELEMENTS.contains( identifier );
+    }
+
+
+    private int clusters = 100;
+
+    private int blocksPerCluster = 32;
+
+    private int blockSize = 1024;
+
+    private int tracks = 2;
+
+    private int tags = 100;
+
+
+    /** Sets the number of clusters, {@code 100} by default. */
+    public void setClusters( int clusters ) {
+        this.clusters = clusters;
+    }
+
+    /** Sets the number of simple blocks in each cluster, {@code 32} by default. */
+    public void setBlocksPerCluster( int blocksPerCluster ) {
+        this.blocksPerCluster = blocksPerCluster;
+    }
+
+    /** Sets the payload size of the simple blocks, {@code 1024} by default. */
+    public void setBlockSize( int blockSize ) {
+        this.blockSize = blockSize;
+    }
+
+    /** Sets the number of tracks, {@code 2} by default. */
+    public void setTracks( int tracks ) {
+        this.tracks = tracks;
+    }
+
+    /** Sets the number of tags, {@code 100} by default. */
+    public void setTags( int tags ) {
+        this.tags = tags;
+    }
+
+
+    /**
+     * Writes the synthetic file.
+     *
+     * @param file the file to write
+     *
+     * @throws IOException if an I/O error has occurred
+     */
+    public void write( File file ) throws IOException {
+        byte[] info = element( INFO,
+                unsigned( TIMECODE_SCALE, 1000000L, 3 ),
+                string( TITLE, "Synthetic" ),
+                string( MUXING_APP, "ebml-benchmark" ),
+                string( WRITING_APP, "ebml-benchmark" ) );
+        ByteArrayOutputStream trackEntries = new ByteArrayOutputStream();
+        for ( int track = 1; track <= tracks; track++ ) {
+            write( trackEntries, element( TRACK_ENTRY,
+                    unsigned( TRACK_NUMBER, track, 1 ),
+                    unsigned( TRACK_TYPE, track == 1 ? 1 : 2, 1 ),
+                    string( CODEC_ID, track == 1 ? "V_MPEG4/ISO/AVC" : "A_AAC" ),
+                    string( LANGUAGE, track == 1 ? "und" : "eng" ) ) );
+        }
+        byte[] trackList = element( TRACKS, trackEntries.toByteArray() );
+        // all clusters have the same size, so the cluster positions are known before the clusters are written
+        long clusterSize = cluster( 0 ).length;
+        ByteArrayOutputStream cuePoints = new ByteArrayOutputStream();
+        for ( int i = 0; i < clusters; i++ ) {
+            write( cuePoints, element( CUE_POINT,
+                    unsigned( CUE_TIME, i * 1000L, 4 ),
+                    element( CUE_TRACK_POSITIONS,
+                            unsigned( CUE_TRACK, 1, 1 ),
+                            unsigned( CUE_CLUSTER_POSITION, info.length + trackList.length + i * clusterSize, 8 ) ) ) );
+        }
+        byte[] cues = element( CUES, cuePoints.toByteArray() );
+        ByteArrayOutputStream tagList = new ByteArrayOutputStream();
+        for ( int i = 0; i < tags; i++ ) {
+            write( tagList, element( TAG,
+                    element( TARGETS ),
+                    element( SIMPLE_TAG,
+                            string( TAG_NAME, TAG_NAMES[ i % TAG_NAMES.length ] ),
+                            string( TAG_STRING, "value " + i ) ) ) );
+        }
+        byte[] tagElements = element( TAGS, tagList.toByteArray() );
+
+        OutputStream output = new BufferedOutputStream( new FileOutputStream( file ), 64 * 1024 );
+        try {
+            output.write( element( EBML,
+                    unsigned( EBML_VERSION, 1, 1 ),
+                    unsigned( EBML_READ_VERSION, 1, 1 ),
+                    unsigned( EBML_MAX_ID_LENGTH, 4, 1 ),
+                    unsigned( EBML_MAX_SIZE_LENGTH, 8, 1 ),
+                    string( DOC_TYPE, "matroska" ),
+                    unsigned( DOC_TYPE_VERSION, 4, 1 ),
+                    unsigned( DOC_TYPE_READ_VERSION, 2, 1 ) ) );
+            output.write( header( SEGMENT, info.length + trackList.length + clusters * clusterSize + cues.length + tagElements.length ) );
+            output.write( info );
+            output.write( trackList );
+            for ( int i = 0; i < clusters; i++ ) {
+                output.write( cluster( i ) );
+            }
+            output.write( cues );
+            output.write( tagElements );
+        } finally {
+            output.close();
+        }
+    }
+
+    private byte[] cluster( int index ) {
+        ByteArrayOutputStream blocks = new ByteArrayOutputStream();
+        write( blocks, unsigned( TIMECODE, index * 1000L, 4 ) );
+        byte[] block = new byte[ 4 + blockSize ];
+        for ( int i = 0; i < blocksPerCluster; i++ ) {
+            int timecode = i * 1000 / blocksPerCluster;
+            block[ 0 ] = ( byte ) ( 0x80 | i % tracks + 1 );
+            block[ 1 ] = ( byte ) ( timecode >> 8 );
+            block[ 2 ] = ( byte ) timecode;
+            block[ 3 ] = ( byte ) ( i < tracks ? 0x80 : 0x00 );
+            Arrays.fill( block, 4, block.length, ( byte ) ( index + i ) );
+            write( blocks, element( SIMPLE_BLOCK, block ) );
+        }
+        return element( CLUSTER, blocks.toByteArray() );
+    }
+
+
+    private static byte[] header( int identifier, long size ) {
+        ByteBuffer buffer = ByteBuffer.allocate( 16 );
+        EbmlEncoder encoder = new EbmlEncoder();
+        encoder.encodeVariableLengthInteger( buffer, VariableLengthInteger.fromEncoded( identifier & 0xffffffffL ) );
+        encoder.encodeVariableLengthInteger( buffer, VariableLengthInteger.fromPlain( size ) );
+        return Arrays.copyOf( buffer.array(), buffer.position() );
+    }
+
+    private static byte[] element( int identifier, byte[]... children ) {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        for ( byte[] child : children ) {
+            write( data, child );
+        }
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        write( result, header( identifier, data.size() ) );
+        write( result, data.toByteArray() );
+        return result.toByteArray();
+    }
+
+    private static byte[] unsigned( int identifier, long value, int length ) {
+        ByteBuffer buffer = ByteBuffer.allocate( length );
+        new EbmlEncoder().encodeUnsignedInteger( buffer, value, length );
+        return element( identifier, buffer.array() );
+    }
+
+    private static byte[] string( int identifier, String value ) {
+        try {
+            return element( identifier, value.getBytes( "UTF-8" ) );
+        } catch ( IOException e ) {
+            throw new AssertionError( e );
+        }
+    }
+
+    private static void write( ByteArrayOutputStream output, byte[] data ) {
+        output.write( data, 0, data.length );
+    }
+
+}
@@ -0,0 +1,44 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+/**
+ * The JMH benchmarks of the EBML decoding and scanning hot paths.
+ * <p/>
+ * The benchmarks are built by the {@code benchmarks} profile of the parent project and are run from the self-contained
+ * jar, for example
+ * <pre>
+ * mvn -Pbenchmarks package
+ * java -jar ebml-benchmark/target/benchmarks.jar -prof gc
+ * java -jar ebml-benchmark/target/benchmarks.jar ScanBenchmark -p clusters=1000 -p blockSize=65536
+ * </pre>
+ * The {@code gc} profiler adds the allocation rate to the throughput figures. The scan benchmarks read the synthetic
+ * Matroska files written by {@link com.google.code.ebmlviewer.benchmark.SyntheticMatroskaFile}, the size and shape of
+ * the files are controlled by the parameters of {@link com.google.code.ebmlviewer.benchmark.SyntheticFileState}.
+ */
+package com.google.code.ebmlviewer.benchmark;
@@ -0,0 +1,129 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.block;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import com.google.code.ebmlviewer.core.EbmlDecoder;
+import com.google.code.ebmlviewer.core.EbmlFormatException;
+import com.google.code.ebmlviewer.core.VariableLengthInteger;
+import com.google.code.ebmlviewer.io.EbmlIoException;
+
+/** Splits the data of a {@code SimpleBlock} or {@code Block} element into frames according to the block lacing. */
+public final class BlockFrames {
+
+    private BlockFrames() {
+    }
+
+
+    /**
+     * Splits the block data into frames. The returned buffers share the content of the specified buffer.
+     *
+     * @param data the block data positioned after the block header
+     * @param lacing the block lacing, one of the {@code BlockHeader.LACING_*} constants
+     *
+     * @return the frames of the block
+     *
+     * @throws IllegalArgumentException if {@code data} is {@code null} or if {@code lacing} is not valid
+     * @throws EbmlIoException if the lacing data is not valid
+     */
+    public static ByteBuffer[] split( ByteBuffer data, int lacing ) throws EbmlIoException {
+        if ( data == null ) {
+            throw new IllegalArgumentException( "data is null" );
+        }
+        if ( lacing == BlockHeader.LACING_NONE ) {
+            return new ByteBuffer[]{ data.slice() };
+        }
+        ByteBuffer buffer = data.duplicate();
+        try {
+            int count = ( buffer.get() & 0xff ) + 1;
+            long[] sizes = new long[ count ];
+            switch ( lacing ) {
+                case BlockHeader.LACING_XIPH:
+                    for ( int i = 0; i < count - 1; i++ ) {
+                        int b;
+                        do {
+                            b = buffer.get() & 0xff;
+                            sizes[ i ] += b;
+                        } while ( b == 0xff );
+                    }
+                    break;
+                case BlockHeader.LACING_FIXED:
+                    if ( buffer.remaining() % count != 0 ) {
+                        throw new EbmlIoException( "block data size is not a multiple of the frame count" );
+                    }
+                    for ( int i = 0; i < count - 1; i++ ) {
+                        sizes[ i ] = buffer.remaining() / count;
+                    }
+                    break;
+                case BlockHeader.LACING_EBML:
+                    EbmlDecoder decoder = new EbmlDecoder();
+                    if ( count > 1 ) {
+                        sizes[ 0 ] = decoder.decodeVariableLengthInteger( buffer ).getPlainValue();
+                    }
+                    for ( int i = 1; i < count - 1; i++ ) {
+                        VariableLengthInteger difference = decoder.decodeVariableLengthInteger( buffer );
+                        long bias = ( 1L << 7 * difference.getEncodedLength() - 1 ) - 1L;
+                        sizes[ i ] = sizes[ i - 1 ] + difference.getPlainValue() - bias;
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException( String.format( "lacing is not valid: %s", lacing ) );
+            }
+            long total = 0L;
+            for ( int i = 0; i < count - 1; i++ ) {
+                if ( sizes[ i ] < 0L ) {
+                    throw new EbmlIoException( "frame size is negative" );
+                }
+                total += sizes[ i ];
+            }
+            if ( total > buffer.remaining() ) {
+                throw new EbmlIoException( "frame sizes exceed the block data size" );
+            }
+            sizes[ count - 1 ] = buffer.remaining() - total;
+
+            ByteBuffer[] frames = new ByteBuffer[ count ];
+            for ( int i = 0; i < count; i++ ) {
+                int limit = buffer.limit();
+                buffer.limit( buffer.position() + ( int ) sizes[ i ] );
+                frames[ i ] = buffer.slice();
+                buffer.position( buffer.limit() );
+                buffer.limit( limit );
+            }
+            return frames;
+        } catch ( EbmlFormatException e ) {
+            throw new EbmlIoException( e );
+        } catch ( BufferUnderflowException e ) {
+            throw new EbmlIoException( "unexpected end of data while reading lacing", e );
+        }
+    }
+
+}
@@ -0,0 +1,182 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.block;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import com.google.code.ebmlviewer.core.EbmlDecoder;
+import com.google.code.ebmlviewer.core.EbmlFormatException;
+import com.google.code.ebmlviewer.core.VariableLengthInteger;
+
+/**
+ * Represents the header of the {@code SimpleBlock} or {@code Block} element data: the track number, the timecode
+ * relative to the cluster timecode and the flags.
+ */
+public final class BlockHeader {
+
+    /** The maximum size of the block header: 8 bytes of the track number, 2 bytes of the timecode and 1 byte of flags. */
+    public static final int MAXIMUM_SIZE = 11;
+
+
+    /** The block frames are not laced. */
+    public static final int LACING_NONE = 0;
+
+    /** The block frames use the Xiph lacing. */
+    public static final int LACING_XIPH = 1;
+
+    /** The block frames use the fixed-size lacing. */
+    public static final int LACING_FIXED = 2;
+
+    /** The block frames use the EBML lacing. */
+    public static final int LACING_EBML = 3;
+
+
+    private final long trackNumber;
+
+    private final int timecode;
+
+    private final int flags;
+
+    private final int size;
+
+
+    private BlockHeader( long trackNumber, int timecode, int flags, int size ) {
+        this.trackNumber = trackNumber;
+        this.timecode = timecode;
+        this.flags = flags;
+        this.size = size;
+    }
+
+
+    /**
+     * Returns the number of the track the block belongs to.
+     *
+     * @return the track number
+     */
+    public long getTrackNumber() {
+        return trackNumber;
+    }
+
+    /**
+     * Returns the timecode of the block relative to the cluster timecode.
+     *
+     * @return the relative timecode
+     */
+    public int getTimecode() {
+        return timecode;
+    }
+
+    /**
+     * Returns the raw flags byte.
+     *
+     * @return the flags
+     */
+    public int getFlags() {
+        return flags;
+    }
+
+    /**
+     * Returns the size of the block header.
+     *
+     * @return the header size in bytes
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Determines whether the block contains only keyframes. The flag is defined only for the {@code SimpleBlock}
+     * elements, a {@code Block} is a keyframe if its {@code BlockGroup} does not contain {@code ReferenceBlock}
+     * elements.
+     *
+     * @return {@code true} if the keyframe flag is set; {@code false} otherwise
+     */
+    public boolean isKeyframe() {
+        return ( flags & 0x80 ) != 0;
+    }
+
+    /**
+     * Determines whether the block should not be displayed.
+     *
+     * @return {@code true} if the invisible flag is set; {@code false} otherwise
+     */
+    public boolean isInvisible() {
+        return ( flags & 0x08 ) != 0;
+    }
+
+    /**
+     * Determines whether the block can be discarded during playing if needed.
+     *
+     * @return {@code true} if the discardable flag is set; {@code false} otherwise
+     */
+    public boolean isDiscardable() {
+        return ( flags & 0x01 ) != 0;
+    }
+
+    /**
+     * Returns the lacing used by the block, one of the {@code LACING_*} constants.
+     *
+     * @return the block lacing
+     */
+    public int getLacing() {
+        return flags >> 1 & 0x03;
+    }
+
+
+    /**
+     * Decodes the block header from the contents of the specified buffer.
+     *
+     * @param buffer the buffer positioned at the start of the block data
+     *
+     * @return the decoded block header
+     *
+     * @throws IllegalArgumentException if {@code buffer} is {@code null}
+     * @throws EbmlFormatException if the track number is not a valid variable-length integer
+     * @throws BufferUnderflowException if the buffer does not contain the whole header
+     */
+    public static BlockHeader decode( ByteBuffer buffer ) {
+        if ( buffer == null ) {
+            throw new IllegalArgumentException( "buffer is null" );
+        }
+        int start = buffer.position();
+        VariableLengthInteger trackNumber = new EbmlDecoder().decodeVariableLengthInteger( buffer );
+        int timecode = buffer.getShort();
+        int flags = buffer.get() & 0xff;
+        return new BlockHeader( trackNumber.getPlainValue(), timecode, flags, buffer.position() - start );
+    }
+
+
+    @Override
+    public String toString() {
+        return String.format( "BlockHeader(%s, %s, 0x%02x)", trackNumber, timecode, flags );
+    }
+
+}
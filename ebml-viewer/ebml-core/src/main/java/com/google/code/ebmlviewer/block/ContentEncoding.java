@@ -0,0 +1,151 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.block;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Describes a single {@code ContentEncoding} element of a track: the order in which the encoding was applied, the
+ * parts of the track it applies to, and the compression algorithm.
+ */
+public final class ContentEncoding {
+
+    /** The encoding applies to all frame contents. */
+    public static final int SCOPE_FRAMES = 1;
+
+    /** The encoding applies to the codec private data of the track. */
+    public static final int SCOPE_CODEC_PRIVATE = 2;
+
+    /** The encoding applies to the next content encoding. */
+    public static final int SCOPE_NEXT_ENCODING = 4;
+
+
+    /** The content is compressed. */
+    public static final int TYPE_COMPRESSION = 0;
+
+    /** The content is encrypted. */
+    public static final int TYPE_ENCRYPTION = 1;
+
+
+    /** The content is compressed with zlib. */
+    public static final int ALGORITHM_ZLIB = 0;
+
+    /** The content is compressed with bzlib. */
+    public static final int ALGORITHM_BZLIB = 1;
+
+    /** The content is compressed with lzo1x. */
+    public static final int ALGORITHM_LZO1X = 2;
+
+    /** The common header of the frames is removed and stored in the compression settings. */
+    public static final int ALGORITHM_HEADER_STRIPPING = 3;
+
+
+    private final long order;
+
+    private final long scope;
+
+    private final long type;
+
+    private final long algorithm;
+
+    private final ByteBuffer settings;
+
+
+    /**
+     * Creates a new {@code ContentEncoding}.
+     *
+     * @param order the value of the {@code ContentEncodingOrder} element
+     * @param scope the value of the {@code ContentEncodingScope} element
+     * @param type the value of the {@code ContentEncodingType} element
+     * @param algorithm the value of the {@code ContentCompAlgo} element
+     * @param settings the value of the {@code ContentCompSettings} element, or {@code null} if not present
+     */
+    public ContentEncoding( long order, long scope, long type, long algorithm, byte[] settings ) {
+        this.order = order;
+        this.scope = scope;
+        this.type = type;
+        this.algorithm = algorithm;
+        this.settings = ByteBuffer.wrap( settings == null ? new byte[ 0 ] : settings.clone() ).asReadOnlyBuffer();
+    }
+
+
+    /**
+     * Returns the order in which the encoding was applied, the encodings have to be decoded starting with the highest
+     * order.
+     *
+     * @return the encoding order
+     */
+    public long getOrder() {
+        return order;
+    }
+
+    /**
+     * Returns the scope bit mask, a combination of the {@code SCOPE_*} constants.
+     *
+     * @return the encoding scope
+     */
+    public long getScope() {
+        return scope;
+    }
+
+    /**
+     * Returns the encoding type, one of the {@code TYPE_*} constants.
+     *
+     * @return the encoding type
+     */
+    public long getType() {
+        return type;
+    }
+
+    /**
+     * Returns the compression algorithm, one of the {@code ALGORITHM_*} constants.
+     *
+     * @return the compression algorithm
+     */
+    public long getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Returns the compression settings, for the header stripping these are the bytes removed from every frame.
+     *
+     * @return the read-only view of the compression settings
+     */
+    public ByteBuffer getSettings() {
+        return settings.duplicate();
+    }
+
+
+    @Override
+    public String toString() {
+        return String.format( "ContentEncoding(%s, %s, %s, %s, %s)", order, scope, type, algorithm, settings.remaining() );
+    }
+
+}
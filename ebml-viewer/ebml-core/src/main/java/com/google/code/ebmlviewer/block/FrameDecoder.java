@@ -0,0 +1,384 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.block;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import com.google.code.ebmlviewer.core.VariableLengthInteger;
+import com.google.code.ebmlviewer.io.EbmlIoException;
+import com.google.code.ebmlviewer.stream.EbmlStreamReader;
+
+/**
+ * Reverses the content encodings of a track for the frames of its blocks.
+ * <p/>
+ * The decoder is created once per track from its {@code ContentEncodings} element and can be shared between threads.
+ * The zlib decompression uses an {@link Inflater} and scratch buffers from a thread-local pool, so decoding a frame
+ * does not allocate anything once the pool buffers have grown to the size of the largest frame. The header stripping
+ * can be applied without copying with the {@link #decodeToParts(ByteBuffer)} method.
+ */
+public final class FrameDecoder {
+
+    private static final VariableLengthInteger CONTENT_ENCODING = VariableLengthInteger.fromEncoded( 0x6240 );
+
+    private static final VariableLengthInteger CONTENT_ENCODING_ORDER = VariableLengthInteger.fromEncoded( 0x5031 );
+
+    private static final VariableLengthInteger CONTENT_ENCODING_SCOPE = VariableLengthInteger.fromEncoded( 0x5032 );
+
+    private static final VariableLengthInteger CONTENT_ENCODING_TYPE = VariableLengthInteger.fromEncoded( 0x5033 );
+
+    private static final VariableLengthInteger CONTENT_COMPRESSION = VariableLengthInteger.fromEncoded( 0x5034 );
+
+    private static final VariableLengthInteger CONTENT_COMP_ALGO = VariableLengthInteger.fromEncoded( 0x4254 );
+
+    private static final VariableLengthInteger CONTENT_COMP_SETTINGS = VariableLengthInteger.fromEncoded( 0x4255 );
+
+
+    private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+
+    private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
+
+    /** The frame encodings in the decoding order, that is from the highest encoding order to the lowest. */
+    private final ContentEncoding[] encodings;
+
+    /** Indicates whether all encodings are header stripping. */
+    private final boolean stripping;
+
+
+    /**
+     * Creates a new {@code FrameDecoder} for the specified encodings. Only the encodings with the
+     * {@link ContentEncoding#SCOPE_FRAMES} scope are applied to the frames.
+     *
+     * @param encodings the track content encodings in any order
+     *
+     * @throws IllegalArgumentException if {@code encodings} is {@code null} or if some of the frame encodings is not
+     * supported
+     */
+    public FrameDecoder( Collection<ContentEncoding> encodings ) {
+        if ( encodings == null ) {
+            throw new IllegalArgumentException( "encodings is null" );
+        }
+        List<ContentEncoding> frameEncodings = new ArrayList<ContentEncoding>();
+        boolean stripping = true;
+        for ( ContentEncoding encoding : encodings ) {
+            if ( ( encoding.getScope() & ContentEncoding.SCOPE_FRAMES ) == 0 ) {
+                continue;
+            }
+            if ( encoding.getType() != ContentEncoding.TYPE_COMPRESSION ) {
+                throw new IllegalArgumentException( String.format( "content encoding type is not supported: %s", encoding.getType() ) );
+            }
+            if ( encoding.getAlgorithm() == ContentEncoding.ALGORITHM_ZLIB ) {
+                stripping = false;
+            } else if ( encoding.getAlgorithm() != ContentEncoding.ALGORITHM_HEADER_STRIPPING ) {
+                throw new IllegalArgumentException( String.format( "content compression algorithm is not supported: %s", encoding.getAlgorithm() ) );
+            }
+            frameEncodings.add( encoding );
+        }
+        Collections.sort( frameEncodings, new Comparator<ContentEncoding>() {
+            @Override
+            public int compare( ContentEncoding o1, ContentEncoding o2 ) {
+                return o1.getOrder() > o2.getOrder() ? -1 : o1.getOrder() < o2.getOrder() ? 1 : 0;
+            }
+        } );
+        this.encodings = frameEncodings.toArray( new ContentEncoding[ frameEncodings.size() ] );
+        this.stripping = stripping;
+    }
+
+
+    /**
+     * Determines whether the frames are encoded at all.
+     *
+     * @return {@code true} if the frames are encoded; {@code false} if the frames are stored as is
+     */
+    public boolean isEncoded() {
+        return encodings.length > 0;
+    }
+
+
+    /**
+     * Decodes the specified frame.
+     * <p/>
+     * If the frames are not encoded, the frame itself is returned. If {@code destination} is {@code null}, the frame is
+     * decoded into a buffer from the thread-local pool, such buffer remains valid only until the next call of this
+     * method in the same thread.
+     *
+     * @param frame the encoded frame, its remaining bytes are consumed
+     * @param destination the buffer to decode the frame into, or {@code null} to use a pooled buffer
+     *
+     * @return the buffer with the decoded frame between its position and limit
+     *
+     * @throws IllegalArgumentException if {@code frame} is {@code null}
+     * @throws BufferOverflowException if the decoded frame does not fit in the {@code destination}
+     * @throws IOException if the frame can not be decoded
+     */
+    public ByteBuffer decode( ByteBuffer frame, ByteBuffer destination ) throws IOException {
+        if ( frame == null ) {
+            throw new IllegalArgumentException( "frame is null" );
+        }
+        if ( encodings.length == 0 ) {
+            return frame;
+        }
+        Scratch scratch = SCRATCH.get();
+        ByteBuffer source = frame;
+        for ( int i = 0; i < encodings.length; i++ ) {
+            boolean last = i == encodings.length - 1;
+            ByteBuffer target;
+            boolean growable;
+            if ( last && destination != null && destination.hasArray() && !destination.isReadOnly() ) {
+                target = destination.slice();
+                growable = false;
+            } else {
+                target = scratch.getBuffer( i % 2, source.remaining() );
+                growable = true;
+            }
+            ContentEncoding encoding = encodings[ i ];
+            if ( encoding.getAlgorithm() == ContentEncoding.ALGORITHM_HEADER_STRIPPING ) {
+                ByteBuffer settings = encoding.getSettings();
+                if ( growable ) {
+                    target = scratch.ensureRemaining( i % 2, target, settings.remaining() + source.remaining() );
+                }
+                target.put( settings );
+                target.put( source );
+            } else {
+                target = inflate( scratch, source, target, growable ? i % 2 : -1 );
+            }
+            target.flip();
+            source = target;
+        }
+        if ( destination == null ) {
+            return source;
+        }
+        if ( destination.hasArray() && source.array() == destination.array() ) {
+            // the last step has decoded the frame directly into the destination
+            destination.position( destination.position() + source.remaining() );
+        } else {
+            destination.put( source );
+        }
+        ByteBuffer result = destination.duplicate();
+        result.limit( result.position() );
+        result.position( result.position() - source.limit() );
+        return result;
+    }
+
+    /**
+     * Decodes the specified frame into a sequence of buffers without copying the frame data, suitable for the
+     * {@link java.nio.channels.GatheringByteChannel} write operations. The parts consist of the header stripping
+     * prefixes followed by the frame itself. If the frames use compression, the frame is decoded with the
+     * {@link #decode(ByteBuffer, ByteBuffer)} into a pooled buffer and returned as a single part.
+     *
+     * @param frame the encoded frame
+     *
+     * @return the decoded frame parts
+     *
+     * @throws IllegalArgumentException if {@code frame} is {@code null}
+     * @throws IOException if the frame can not be decoded
+     */
+    public ByteBuffer[] decodeToParts( ByteBuffer frame ) throws IOException {
+        if ( frame == null ) {
+            throw new IllegalArgumentException( "frame is null" );
+        }
+        if ( !stripping ) {
+            return new ByteBuffer[]{ decode( frame, null ) };
+        }
+        ByteBuffer[] parts = new ByteBuffer[ encodings.length + 1 ];
+        for ( int i = 0; i < encodings.length; i++ ) {
+            // the lowest order prefix goes first
+            parts[ i ] = encodings[ encodings.length - 1 - i ].getSettings();
+        }
+        parts[ encodings.length ] = frame;
+        return parts;
+    }
+
+
+    private static ByteBuffer inflate( Scratch scratch, ByteBuffer source, ByteBuffer target, int pooled ) throws IOException {
+        Inflater inflater = scratch.inflater;
+        inflater.reset();
+        if ( source.hasArray() ) {
+            inflater.setInput( source.array(), source.arrayOffset() + source.position(), source.remaining() );
+        } else {
+            byte[] input = scratch.getInput( source.remaining() );
+            int length = source.remaining();
+            source.duplicate().get( input, 0, length );
+            inflater.setInput( input, 0, length );
+        }
+        try {
+            while ( !inflater.finished() ) {
+                if ( !target.hasRemaining() ) {
+                    if ( pooled < 0 ) {
+                        throw new BufferOverflowException();
+                    }
+                    target = scratch.ensureRemaining( pooled, target, target.capacity() );
+                }
+                int count = inflater.inflate( target.array(), target.arrayOffset() + target.position(), target.remaining() );
+                target.position( target.position() + count );
+                if ( count == 0 && ( inflater.needsInput() || inflater.needsDictionary() ) ) {
+                    throw new EbmlIoException( "compressed frame is truncated" );
+                }
+            }
+        } catch ( DataFormatException e ) {
+            throw new EbmlIoException( "compressed frame is invalid", e );
+        }
+        source.position( source.limit() );
+        return target;
+    }
+
+
+    /**
+     * Reads the frame decoder from the {@code ContentEncodings} element.
+     *
+     * @param reader the reader positioned at the {@code ContentEncodings} element
+     *
+     * @return the frame decoder
+     *
+     * @throws IllegalArgumentException if {@code reader} is {@code null} or if some of the frame encodings is not
+     * supported
+     * @throws IOException if an I/O error has occurred
+     */
+    public static FrameDecoder read( EbmlStreamReader reader ) throws IOException {
+        if ( reader == null ) {
+            throw new IllegalArgumentException( "reader is null" );
+        }
+        List<ContentEncoding> encodings = new ArrayList<ContentEncoding>();
+        reader.enterContainer();
+        while ( reader.next() ) {
+            if ( !CONTENT_ENCODING.equals( reader.getIdentifier() ) ) {
+                continue;
+            }
+            long order = 0L;
+            long scope = ContentEncoding.SCOPE_FRAMES;
+            long type = ContentEncoding.TYPE_COMPRESSION;
+            long algorithm = ContentEncoding.ALGORITHM_ZLIB;
+            byte[] settings = null;
+            reader.enterContainer();
+            while ( reader.next() ) {
+                VariableLengthInteger identifier = reader.getIdentifier();
+                if ( CONTENT_ENCODING_ORDER.equals( identifier ) ) {
+                    order = reader.readUnsignedInteger();
+                } else if ( CONTENT_ENCODING_SCOPE.equals( identifier ) ) {
+                    scope = reader.readUnsignedInteger();
+                } else if ( CONTENT_ENCODING_TYPE.equals( identifier ) ) {
+                    type = reader.readUnsignedInteger();
+                } else if ( CONTENT_COMPRESSION.equals( identifier ) ) {
+                    reader.enterContainer();
+                    while ( reader.next() ) {
+                        if ( CONTENT_COMP_ALGO.equals( reader.getIdentifier() ) ) {
+                            algorithm = reader.readUnsignedInteger();
+                        } else if ( CONTENT_COMP_SETTINGS.equals( reader.getIdentifier() ) ) {
+                            long size = reader.getSize().getPlainValue();
+                            if ( size > Integer.MAX_VALUE ) {
+                                throw new EbmlIoException( reader.getElementPosition(), "compression settings are too large" );
+                            }
+                            ByteBuffer buffer = ByteBuffer.allocate( ( int ) size );
+                            reader.readBinary( buffer );
+                            settings = buffer.array();
+                        }
+                    }
+                    reader.leaveContainer();
+                }
+            }
+            reader.leaveContainer();
+            encodings.add( new ContentEncoding( order, scope, type, algorithm, settings ) );
+        }
+        reader.leaveContainer();
+        return new FrameDecoder( encodings );
+    }
+
+
+    /** The per-thread decoding state. */
+    private static final class Scratch {
+
+        private final Inflater inflater = new Inflater();
+
+        private final ByteBuffer[] buffers = { ByteBuffer.allocate( INITIAL_BUFFER_SIZE ), ByteBuffer.allocate( INITIAL_BUFFER_SIZE ) };
+
+        private byte[] input = new byte[ 0 ];
+
+
+        /**
+         * Returns the cleared pooled buffer with at least the specified capacity.
+         *
+         * @param index the pooled buffer index
+         * @param capacity the required capacity
+         *
+         * @return the pooled buffer
+         */
+        ByteBuffer getBuffer( int index, int capacity ) {
+            if ( buffers[ index ].capacity() < capacity ) {
+                buffers[ index ] = ByteBuffer.allocate( Math.max( capacity, buffers[ index ].capacity() * 2 ) );
+            }
+            buffers[ index ].clear();
+            return buffers[ index ];
+        }
+
+        /**
+         * Grows the pooled buffer, preserving its contents, so that it has at least the specified number of bytes
+         * remaining.
+         *
+         * @param index the pooled buffer index
+         * @param buffer the current pooled buffer
+         * @param remaining the required number of remaining bytes
+         *
+         * @return the pooled buffer
+         */
+        ByteBuffer ensureRemaining( int index, ByteBuffer buffer, int remaining ) {
+            if ( buffer.remaining() >= remaining ) {
+                return buffer;
+            }
+            ByteBuffer grown = ByteBuffer.allocate( Math.max( buffer.position() + remaining, buffer.capacity() * 2 ) );
+            buffer.flip();
+            grown.put( buffer );
+            buffers[ index ] = grown;
+            return grown;
+        }
+
+        byte[] getInput( int length ) {
+            if ( input.length < length ) {
+                input = new byte[ Math.max( length, input.length * 2 ) ];
+            }
+            return input;
+        }
+
+    }
+
+}
@@ -36,13 +36,43 @@ import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CodingErrorAction;
+import java.nio.charset.MalformedInputException;
 import java.util.concurrent.TimeUnit;
 
 /** Decodes data from the EBML format. */
 public final class EbmlDecoder {
 
+    private static final int UNSIGNED_INTEGER = 0;
+
+    private static final int SIGNED_INTEGER = 1;
+
+    private static final int FLOATING_POINT = 2;
+
+    private static final ThreadLocal<CharsetDecoder> UNICODE_DECODER = new ThreadLocal<CharsetDecoder>() {
+        @Override
+        protected CharsetDecoder initialValue() {
+            return Charset.forName( "UTF-8" ).newDecoder()
+                    .onMalformedInput( CodingErrorAction.REPORT )
+                    .onUnmappableCharacter( CodingErrorAction.REPORT );
+        }
+    };
+
+
+    private final StringCache stringCache;
+
+
     /** Creates a new {@code EbmlDecoder} object. */
     public EbmlDecoder() {
+        this( null );
+    }
+
+    /**
+     * Creates a new {@code EbmlDecoder} object which looks up the decoded string values in the specified cache.
+     *
+     * @param stringCache the string cache, or {@code null} if the string values should not be cached
+     */
+    public EbmlDecoder( StringCache stringCache ) {
+        this.stringCache = stringCache;
     }
 
 
@@ -217,7 +247,7 @@ public final class EbmlDecoder {
      * @throws CharacterCodingException if a character decoding error occurs
      */
     public String decodeAsciiString( ByteBuffer buffer, int encodedLength ) throws CharacterCodingException {
-        return decodeString( buffer, encodedLength, "ASCII" );
+        return decodeString( buffer, encodedLength, false );
     }
 
     /**
@@ -235,39 +265,70 @@ public final class EbmlDecoder {
      * @throws CharacterCodingException if a character decoding error occurs
      */
     public String decodeUnicodeString( ByteBuffer buffer, int encodedLength ) throws CharacterCodingException {
-        return decodeString( buffer, encodedLength, "UTF-8" );
+        return decodeString( buffer, encodedLength, true );
     }
 
-    private String decodeString( ByteBuffer buffer, int encodedLength, String charsetName ) throws CharacterCodingException {
+    private String decodeString( ByteBuffer buffer, int encodedLength, boolean unicode ) throws CharacterCodingException {
         if ( buffer == null ) {
             throw new IllegalArgumentException( "buffer is null" );
         }
         if ( encodedLength < 0 ) {
             throw new IllegalEncodedLengthException( String.format( "the length of the encoded string value is invalid: %d", encodedLength ) );
         }
-        int mark = buffer.position();
-        int limit = buffer.limit();
-        if ( mark + encodedLength > limit ) {
+        int position = buffer.position();
+        if ( position + encodedLength > buffer.limit() ) {
             throw new BufferUnderflowException();
         }
-        try {
-            buffer.limit( mark + encodedLength );
-            ByteBuffer in = ByteBuffer.allocate( encodedLength );
-            CharsetDecoder decoder = Charset.forName( charsetName ).newDecoder()
-                    .onMalformedInput( CodingErrorAction.REPORT )
-                    .onUnmappableCharacter( CodingErrorAction.REPORT );
-            in.put( buffer );
-            in.flip();
-            while ( in.limit() > 0 && in.get( in.limit() - 1 ) == 0 ) {
-                in.limit( in.limit() - 1 );
+        int length = encodedLength;
+        while ( length > 0 && buffer.get( position + length - 1 ) == 0 ) {
+            length--;
+        }
+        String result = stringCache == null ? null : stringCache.get( buffer, position, length, unicode );
+        if ( result == null ) {
+            result = decodeAsciiCharacters( buffer, position, length );
+            if ( result == null ) {
+                if ( !unicode ) {
+                    throw new MalformedInputException( 1 );
+                }
+                ByteBuffer in = buffer.duplicate();
+                in.limit( position + length );
+                result = UNICODE_DECODER.get().decode( in ).toString();
+            }
+            if ( stringCache != null ) {
+                stringCache.put( buffer, position, length, unicode, result );
+            }
+        }
+        buffer.position( position + encodedLength );
+        return result;
+    }
+
+    /**
+     * Decodes the specified bytes as a string if all of them are ASCII characters.
+     *
+     * @return the decoded string, or {@code null} if some byte is not an ASCII character
+     */
+    private static String decodeAsciiCharacters( ByteBuffer buffer, int position, int length ) {
+        char[] chars = new char[ length ];
+        if ( buffer.hasArray() ) {
+            byte[] array = buffer.array();
+            int offset = buffer.arrayOffset() + position;
+            for ( int i = 0; i < length; i++ ) {
+                byte b = array[ offset + i ];
+                if ( b < 0 ) {
+                    return null;
+                }
+                chars[ i ] = ( char ) b;
+            }
+        } else {
+            for ( int i = 0; i < length; i++ ) {
+                byte b = buffer.get( position + i );
+                if ( b < 0 ) {
+                    return null;
+                }
+                chars[ i ] = ( char ) b;
             }
-            String result = decoder.decode( in ).toString();
-            mark += encodedLength;
-            return result;
-        } finally {
-            buffer.limit( limit );
-            buffer.position( mark );
         }
+        return new String( chars );
     }
 
 
@@ -304,4 +365,167 @@ public final class EbmlDecoder {
         }
     }
 
+
+    /**
+     * Decodes the unsigned integer values of all elements with the specified identifier from the sequence of sibling
+     * elements contained in the specified buffer, and appends them to the destination column. The elements with other
+     * identifiers are skipped.
+     * <p/>
+     * The decoding stops at the first element that is not completely contained in the buffer, the buffer position is
+     * then set to the start of that element so the decoding can be continued after the buffer is refilled.
+     *
+     * @param buffer the input buffer
+     * @param identifier the identifier of the elements to decode
+     * @param destination the column to append the decoded values to
+     *
+     * @return the number of decoded values
+     *
+     * @throws IllegalArgumentException if {@code buffer}, {@code identifier} or {@code destination} is {@code null}
+     * @throws EbmlFormatException if the buffer does not contain a valid sequence of elements
+     * @throws IllegalEncodedLengthException if the size of a decoded element is not valid for an unsigned integer
+     */
+    public int decodeUnsignedIntegers( ByteBuffer buffer, VariableLengthInteger identifier, LongColumn destination ) {
+        if ( destination == null ) {
+            throw new IllegalArgumentException( "destination is null" );
+        }
+        return decodeValues( buffer, identifier, UNSIGNED_INTEGER, destination, null );
+    }
+
+    /**
+     * Decodes the signed integer values of all elements with the specified identifier from the sequence of sibling
+     * elements contained in the specified buffer, and appends them to the destination column.
+     *
+     * @param buffer the input buffer
+     * @param identifier the identifier of the elements to decode
+     * @param destination the column to append the decoded values to
+     *
+     * @return the number of decoded values
+     *
+     * @throws IllegalArgumentException if {@code buffer}, {@code identifier} or {@code destination} is {@code null}
+     * @throws EbmlFormatException if the buffer does not contain a valid sequence of elements
+     * @throws IllegalEncodedLengthException if the size of a decoded element is not valid for a signed integer
+     * @see #decodeUnsignedIntegers(ByteBuffer, VariableLengthInteger, LongColumn)
+     */
+    public int decodeSignedIntegers( ByteBuffer buffer, VariableLengthInteger identifier, LongColumn destination ) {
+        if ( destination == null ) {
+            throw new IllegalArgumentException( "destination is null" );
+        }
+        return decodeValues( buffer, identifier, SIGNED_INTEGER, destination, null );
+    }
+
+    /**
+     * Decodes the floating-point values of all elements with the specified identifier from the sequence of sibling
+     * elements contained in the specified buffer, and appends them to the destination column.
+     *
+     * @param buffer the input buffer
+     * @param identifier the identifier of the elements to decode
+     * @param destination the column to append the decoded values to
+     *
+     * @return the number of decoded values
+     *
+     * @throws IllegalArgumentException if {@code buffer}, {@code identifier} or {@code destination} is {@code null}
+     * @throws EbmlFormatException if the buffer does not contain a valid sequence of elements
+     * @throws IllegalEncodedLengthException if the size of a decoded element is not valid for a floating-point number
+     * @see #decodeUnsignedIntegers(ByteBuffer, VariableLengthInteger, LongColumn)
+     */
+    public int decodeFloatingPoints( ByteBuffer buffer, VariableLengthInteger identifier, DoubleColumn destination ) {
+        if ( destination == null ) {
+            throw new IllegalArgumentException( "destination is null" );
+        }
+        return decodeValues( buffer, identifier, FLOATING_POINT, null, destination );
+    }
+
+    private int decodeValues( ByteBuffer buffer, VariableLengthInteger identifier, int type, LongColumn longs, DoubleColumn doubles ) {
+        if ( buffer == null ) {
+            throw new IllegalArgumentException( "buffer is null" );
+        }
+        if ( identifier == null ) {
+            throw new IllegalArgumentException( "identifier is null" );
+        }
+        long expectedIdentifier = identifier.getEncodedValue();
+        int limit = buffer.limit();
+        int position = buffer.position();
+        int count = 0;
+        try {
+            while ( position < limit ) {
+                // the bounds are checked once per element header, the element data is then read without checks
+                int lengthDescriptor = buffer.get( position ) & 0xff;
+                if ( lengthDescriptor == 0 ) {
+                    throw new EbmlFormatException( "length descriptor is 0b00000000" );
+                }
+                int identifierLength = Integer.numberOfLeadingZeros( lengthDescriptor ) - 23;
+                if ( limit - position <= identifierLength ) {
+                    break;
+                }
+                long elementIdentifier = lengthDescriptor;
+                for ( int i = 1; i < identifierLength; i++ ) {
+                    elementIdentifier = elementIdentifier << 8 | buffer.get( position + i ) & 0xff;
+                }
+                int sizePosition = position + identifierLength;
+                lengthDescriptor = buffer.get( sizePosition ) & 0xff;
+                if ( lengthDescriptor == 0 ) {
+                    throw new EbmlFormatException( "length descriptor is 0b00000000" );
+                }
+                int sizeLength = Integer.numberOfLeadingZeros( lengthDescriptor ) - 23;
+                if ( limit - sizePosition < sizeLength ) {
+                    break;
+                }
+                long size = lengthDescriptor & 0xff >> sizeLength;
+                for ( int i = 1; i < sizeLength; i++ ) {
+                    size = size << 8 | buffer.get( sizePosition + i ) & 0xff;
+                }
+                if ( size == ( 1L << 7 * sizeLength ) - 1L ) {
+                    throw new EbmlFormatException( "element size has reserved value" );
+                }
+                int dataPosition = sizePosition + sizeLength;
+                if ( limit - dataPosition < size ) {
+                    break;
+                }
+                if ( elementIdentifier == expectedIdentifier ) {
+                    int length = ( int ) size;
+                    switch ( type ) {
+                        case UNSIGNED_INTEGER:
+                            if ( length > 8 ) {
+                                throw new IllegalEncodedLengthException( String.format( "the length of the encoded unsigned integer value is invalid: %d", length ) );
+                            }
+                            longs.add( getLong( buffer, dataPosition, length, 0L ) );
+                            break;
+                        case SIGNED_INTEGER:
+                            if ( length > 8 ) {
+                                throw new IllegalEncodedLengthException( String.format( "the length of the encoded signed integer value is invalid: %d", length ) );
+                            }
+                            longs.add( length == 0 ? 0L : getLong( buffer, dataPosition + 1, length - 1, buffer.get( dataPosition ) ) );
+                            break;
+                        case FLOATING_POINT:
+                            if ( length == 0 ) {
+                                doubles.add( 0.0 );
+                            } else if ( length == 4 ) {
+                                doubles.add( Float.intBitsToFloat( ( int ) getLong( buffer, dataPosition, 4, 0L ) ) );
+                            } else if ( length == 8 ) {
+                                doubles.add( Double.longBitsToDouble( getLong( buffer, dataPosition, 8, 0L ) ) );
+                            } else {
+                                throw new IllegalEncodedLengthException( String.format( "the length of the encoded floating-point value is invalid: %d", length ) );
+                            }
+                            break;
+                        default:
+                            throw new AssertionError( type );
+                    }
+                    count++;
+                }
+                position = dataPosition + ( int ) size;
+            }
+            return count;
+        } finally {
+            buffer.position( position );
+        }
+    }
+
+    private static long getLong( ByteBuffer buffer, int position, int length, long initial ) {
+        long result = initial;
+        for ( int i = 0; i < length; i++ ) {
+            result = result << 8 | buffer.get( position + i ) & 0xff;
+        }
+        return result;
+    }
+
 }
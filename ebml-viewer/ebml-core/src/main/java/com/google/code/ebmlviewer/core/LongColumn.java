@@ -0,0 +1,127 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.core;
+
+import java.util.Arrays;
+
+/**
+ * A growable column of primitive {@code long} values.
+ * <p/>
+ * The column is used as the destination of the bulk decoding methods, so a long run of sibling values is stored without
+ * a wrapper object per value.
+ */
+public final class LongColumn {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+
+    private long[] values;
+
+    private int size;
+
+
+    /** Creates a new empty {@code LongColumn} with the default initial capacity. */
+    public LongColumn() {
+        this( DEFAULT_CAPACITY );
+    }
+
+    /**
+     * Creates a new empty {@code LongColumn} with the specified initial capacity.
+     *
+     * @param capacity the initial capacity
+     *
+     * @throws IllegalArgumentException if {@code capacity} is negative
+     */
+    public LongColumn( int capacity ) {
+        if ( capacity < 0 ) {
+            throw new IllegalArgumentException( "capacity is negative" );
+        }
+        values = new long[ capacity ];
+    }
+
+
+    /**
+     * Returns the number of values in this column.
+     *
+     * @return the number of values
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the value at the specified index.
+     *
+     * @param index the value index
+     *
+     * @return the value
+     *
+     * @throws IndexOutOfBoundsException if {@code index} is out of range
+     */
+    public long get( int index ) {
+        if ( index < 0 || index >= size ) {
+            throw new IndexOutOfBoundsException( String.format( "index %s is out of range [0, %s)", index, size ) );
+        }
+        return values[ index ];
+    }
+
+    /**
+     * Appends the value to this column.
+     *
+     * @param value the value
+     */
+    public void add( long value ) {
+        if ( size == values.length ) {
+            values = Arrays.copyOf( values, size * 3 / 2 + 1 );
+        }
+        values[ size++ ] = value;
+    }
+
+    /** Removes all values from this column, retaining the allocated capacity. */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Returns the values of this column as a new array.
+     *
+     * @return the array containing the values
+     */
+    public long[] toArray() {
+        return Arrays.copyOf( values, size );
+    }
+
+
+    @Override
+    public String toString() {
+        return String.format( "LongColumn(%s)", size );
+    }
+
+}
@@ -0,0 +1,152 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.core;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A bounded cache of the decoded string values.
+ * <p/>
+ * The metadata of the EBML files repeats the same short strings (codec identifiers, languages, tag names) many times.
+ * An {@link EbmlDecoder} created with a string cache looks up the encoded bytes in the cache before decoding them, so
+ * the repeated values are neither decoded again nor stored as separate {@code String} objects.
+ * <p/>
+ * The cache is a direct-mapped table of fixed capacity, a new value replaces the value that has the same slot. Only
+ * the values not longer than the maximum length are cached. The cache can be shared by several threads.
+ */
+public final class StringCache {
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private static final int DEFAULT_MAXIMUM_LENGTH = 64;
+
+
+    private final Entry[] entries;
+
+    private final int maximumLength;
+
+
+    /** Creates a new {@code StringCache} with the default capacity and maximum length. */
+    public StringCache() {
+        this( DEFAULT_CAPACITY, DEFAULT_MAXIMUM_LENGTH );
+    }
+
+    /**
+     * Creates a new {@code StringCache}.
+     *
+     * @param capacity the number of cached values, rounded up to a power of two
+     * @param maximumLength the maximum encoded length of a cached value
+     *
+     * @throws IllegalArgumentException if {@code capacity} is not positive or greater than {@code 1 << 30}
+     * @throws IllegalArgumentException if {@code maximumLength} is negative
+     */
+    public StringCache( int capacity, int maximumLength ) {
+        if ( capacity <= 0 || capacity > 1 << 30 ) {
+            throw new IllegalArgumentException( String.format( "capacity is out of valid range: %d", capacity ) );
+        }
+        if ( maximumLength < 0 ) {
+            throw new IllegalArgumentException( "maximumLength is negative" );
+        }
+        int size = 1;
+        while ( size < capacity ) {
+            size <<= 1;
+        }
+        entries = new Entry[ size ];
+        this.maximumLength = maximumLength;
+    }
+
+
+    /**
+     * Returns the maximum encoded length of a cached value.
+     *
+     * @return the maximum length
+     */
+    public int getMaximumLength() {
+        return maximumLength;
+    }
+
+
+    String get( ByteBuffer buffer, int position, int length, boolean unicode ) {
+        if ( length > maximumLength ) {
+            return null;
+        }
+        Entry entry = entries[ hash( buffer, position, length ) & entries.length - 1 ];
+        return entry != null && entry.matches( buffer, position, length, unicode ) ? entry.value : null;
+    }
+
+    void put( ByteBuffer buffer, int position, int length, boolean unicode, String value ) {
+        if ( length > maximumLength ) {
+            return;
+        }
+        byte[] bytes = new byte[ length ];
+        for ( int i = 0; i < length; i++ ) {
+            bytes[ i ] = buffer.get( position + i );
+        }
+        entries[ hash( buffer, position, length ) & entries.length - 1 ] = new Entry( bytes, unicode, value );
+    }
+
+    private static int hash( ByteBuffer buffer, int position, int length ) {
+        int hash = length;
+        for ( int i = 0; i < length; i++ ) {
+            hash = 31 * hash + buffer.get( position + i );
+        }
+        return hash ^ hash >>> 16;
+    }
+
+
+    private static final class Entry {
+
+        private final byte[] bytes;
+
+        private final boolean unicode;
+
+        private final String value;
+
+        private Entry( byte[] bytes, boolean unicode, String value ) {
+            this.bytes = bytes;
+            this.unicode = unicode;
+            this.value = value;
+        }
+
+        private boolean matches( ByteBuffer buffer, int position, int length, boolean unicode ) {
+            if ( this.unicode != unicode || bytes.length != length ) {
+                return false;
+            }
+            for ( int i = 0; i < length; i++ ) {
+                if ( bytes[ i ] != buffer.get( position + i ) ) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    }
+
+}
@@ -61,12 +61,101 @@ public final class VariableLengthInteger {
     public static final long MAXIMUM_PLAIN_VALUE = 0x00fffffffffffffeL;
 
 
+    /** The plain values below this limit have canonical instances for every encoded length. */
+    private static final int SMALL_VALUES = 256;
+
+    /** The canonical instances of the small values, indexed by the encoded length and the plain value. */
+    private static final VariableLengthInteger[][] SMALL = new VariableLengthInteger[ 9 ][];
+
+    static {
+        SMALL[ 0 ] = new VariableLengthInteger[ 0 ];
+        for ( int encodedLength = 1; encodedLength <= 8; encodedLength++ ) {
+            int count = ( int ) Math.min( SMALL_VALUES, VALUE_MASK[ encodedLength ] + 1L );
+            SMALL[ encodedLength ] = new VariableLengthInteger[ count ];
+            for ( int plainValue = 0; plainValue < count; plainValue++ ) {
+                SMALL[ encodedLength ][ plainValue ] = new VariableLengthInteger( plainValue, plainValue | DESCRIPTOR_MASK[ encodedLength ], encodedLength );
+            }
+        }
+    }
+
+    /** The canonical instances of the interned identifiers. */
+    private static volatile IdentifierTable identifiers = new IdentifierTable( 256 );
+
+
+    /**
+     * Returns the canonical instance of the variable-length integer with the specified values, creating a new instance
+     * if there is none.
+     */
+    private static VariableLengthInteger valueOf( long plainValue, long encodedValue, int encodedLength ) {
+        VariableLengthInteger[] small = SMALL[ encodedLength ];
+        if ( plainValue < small.length ) {
+            return small[ ( int ) plainValue ];
+        }
+        if ( encodedLength <= 4 ) {
+            VariableLengthInteger identifier = identifiers.get( encodedValue );
+            if ( identifier != null ) {
+                return identifier;
+            }
+        }
+        return new VariableLengthInteger( plainValue, encodedValue, encodedLength );
+    }
+
+    /**
+     * Returns the canonical instance of the specified identifier.
+     * <p/>
+     * The instances returned by the factory methods of this class and by the {@link EbmlDecoder} are canonical for all
+     * the values with the plain value less than {@code 256} and for all the interned identifiers, so such values can be
+     * compared by reference. The element descriptors intern the identifiers of the described elements when they are
+     * loaded. The identifiers should not be interned from the untrusted data, as the interned instances are never
+     * released.
+     *
+     * @param identifier the identifier to intern
+     *
+     * @return the canonical instance equal to the specified identifier
+     *
+     * @throws IllegalArgumentException if {@code identifier} is {@code null}
+     * @throws IllegalArgumentException if {@code identifier} is longer than four bytes
+     */
+    public static VariableLengthInteger intern( VariableLengthInteger identifier ) {
+        if ( identifier == null ) {
+            throw new IllegalArgumentException( "identifier is null" );
+        }
+        if ( identifier.encodedLength > 4 ) {
+            throw new IllegalArgumentException( "identifier is longer than four bytes: " + identifier );
+        }
+        VariableLengthInteger[] small = SMALL[ identifier.encodedLength ];
+        if ( identifier.plainValue < small.length ) {
+            return small[ ( int ) identifier.plainValue ];
+        }
+        synchronized ( IdentifierTable.class ) {
+            VariableLengthInteger canonical = identifiers.get( identifier.encodedValue );
+            if ( canonical == null ) {
+                identifiers = identifiers.with( identifier );
+                canonical = identifier;
+            }
+            return canonical;
+        }
+    }
+
+    /** Returns the current table of the interned identifiers, so that the tests can restore it afterwards. */
+    static IdentifierTable getIdentifierTable() {
+        return identifiers;
+    }
+
+    /** Replaces the table of the interned identifiers with the table returned by {@link #getIdentifierTable()}. */
+    static void setIdentifierTable( IdentifierTable table ) {
+        synchronized ( IdentifierTable.class ) {
+            identifiers = table;
+        }
+    }
+
+
     /**
      * Creates a variable-length integer with the specified plain value.
      *
      * @param plainValue the plain value
      *
-     * @return a new {@code VariableLengthInteger} object
+     * @return a {@code VariableLengthInteger} object
      *
      * @throws IllegalArgumentException if {@code plainValue} is negative or greater than {@value #MAXIMUM_PLAIN_VALUE}
      */
@@ -81,7 +170,7 @@ public final class VariableLengthInteger {
         if ( ( plainValue & VALUE_MASK[ encodedLength ] ) == VALUE_MASK[ encodedLength ] ) {
             encodedLength++;
         }
-        return new VariableLengthInteger( plainValue, plainValue | DESCRIPTOR_MASK[ encodedLength ], encodedLength );
+        return valueOf( plainValue, plainValue | DESCRIPTOR_MASK[ encodedLength ], encodedLength );
     }
 
     /**
@@ -90,7 +179,7 @@ public final class VariableLengthInteger {
      * @param plainValue the plain value
      * @param encodedLength the required length of the encoded value
      *
-     * @return a new {@code VariableLengthInteger} object
+     * @return a {@code VariableLengthInteger} object
      *
      * @throws IllegalArgumentException if {@code plainValue} is negative or greater than {@value #MAXIMUM_PLAIN_VALUE}
      * @throws IllegalEncodedLengthException if {@code encodedLength} is less than {@code 0} of greater than {@code 8}
@@ -108,7 +197,7 @@ public final class VariableLengthInteger {
                 || ( plainValue & VALUE_MASK[ encodedLength ] ) == VALUE_MASK[ encodedLength ] ) {
             throw new EbmlFormatException( String.format( "plain value %#018xL can not be encoded as a variable-length integer of length %d", plainValue, encodedLength ) );
         }
-        return new VariableLengthInteger( plainValue, plainValue | DESCRIPTOR_MASK[ encodedLength ], encodedLength );
+        return valueOf( plainValue, plainValue | DESCRIPTOR_MASK[ encodedLength ], encodedLength );
     }
 
 
@@ -117,7 +206,7 @@ public final class VariableLengthInteger {
      *
      * @param encodedValue the encoded value
      *
-     * @return a new {@code VariableLengthInteger} object
+     * @return a {@code VariableLengthInteger} object
      *
      * @throws EbmlFormatException if {@code encodedValue} is not a valid encoded representation of a variable-length
      * integer
@@ -131,7 +220,7 @@ public final class VariableLengthInteger {
         if ( encodedLength > 8 ) {
             throw new EbmlFormatException( String.format( "%#xL is not a valid encoded representation of a variable-length integer", encodedValue ) );
         }
-        return new VariableLengthInteger( encodedValue & VALUE_MASK[ encodedLength ], encodedValue, encodedLength );
+        return valueOf( encodedValue & VALUE_MASK[ encodedLength ], encodedValue, encodedLength );
     }
 
     /**
@@ -140,7 +229,7 @@ public final class VariableLengthInteger {
      * @param encodedValue the encoded value
      * @param encodedLength the length of the encoded value
      *
-     * @return a new {@code VariableLengthInteger} object
+     * @return a {@code VariableLengthInteger} object
      *
      * @throws IllegalEncodedLengthException if {@code encodedLength} is less than {@code 0} of greater than {@code 8}
      * @throws EbmlFormatException if {@code encodedValue} is not a valid encoded representation of a variable-length
@@ -153,7 +242,7 @@ public final class VariableLengthInteger {
         if ( ( encodedValue & VALUE_MASK[ encodedLength ] ) != ( encodedValue ^ DESCRIPTOR_MASK[ encodedLength ] ) ) {
             throw new EbmlFormatException( String.format( "%#xL is not a valid encoded representation of a variable-length integer of length %d", encodedValue, encodedLength ) );
         }
-        return new VariableLengthInteger( encodedValue & VALUE_MASK[ encodedLength ], encodedValue, encodedLength );
+        return valueOf( encodedValue & VALUE_MASK[ encodedLength ], encodedValue, encodedLength );
     }
 
     /**
@@ -181,6 +270,8 @@ public final class VariableLengthInteger {
 
     private final int encodedLength;
 
+    private final int hashCode;
+
 
     /**
      * Creates a new {@code VariableLengthInteger} object.
@@ -193,6 +284,11 @@ public final class VariableLengthInteger {
         this.plainValue = plainValue;
         this.encodedValue = encodedValue;
         this.encodedLength = encodedLength;
+        int result = 17;
+        result = 37 * result + ( int ) ( plainValue ^ plainValue >>> 32 );
+        result = 37 * result + ( int ) ( encodedValue ^ encodedValue >>> 32 );
+        result = 37 * result + encodedLength;
+        hashCode = result;
     }
 
 
@@ -249,11 +345,7 @@ public final class VariableLengthInteger {
 
     @Override
     public int hashCode() {
-        int result = 17;
-        result = 37 * result + ( int ) ( plainValue ^ plainValue >>> 32 );
-        result = 37 * result + ( int ) ( encodedValue ^ encodedValue >>> 32 );
-        result = 37 * result + encodedLength;
-        return result;
+        return hashCode;
     }
 
     @Override
@@ -282,4 +374,64 @@ public final class VariableLengthInteger {
         return buffer.toString();
     }
 
+
+    /** The immutable open-addressing table of the interned identifiers keyed by the encoded value. */
+    static final class IdentifierTable {
+
+        private final long[] keys;
+
+        private final VariableLengthInteger[] values;
+
+        private final int size;
+
+
+        private IdentifierTable( int capacity ) {
+            keys = new long[ capacity ];
+            values = new VariableLengthInteger[ capacity ];
+            size = 0;
+        }
+
+        private IdentifierTable( IdentifierTable table, VariableLengthInteger identifier ) {
+            int capacity = ( table.size + 1 ) * 2 > table.keys.length ? table.keys.length * 2 : table.keys.length;
+            keys = new long[ capacity ];
+            values = new VariableLengthInteger[ capacity ];
+            for ( VariableLengthInteger value : table.values ) {
+                if ( value != null ) {
+                    put( value );
+                }
+            }
+            put( identifier );
+            size = table.size + 1;
+        }
+
+
+        private VariableLengthInteger get( long encodedValue ) {
+            int mask = keys.length - 1;
+            int slot = ( int ) ( encodedValue * 0x9E3779B9L >>> 16 ) & mask;
+            VariableLengthInteger value;
+            while ( ( value = values[ slot ] ) != null ) {
+                if ( keys[ slot ] == encodedValue ) {
+                    return value;
+                }
+                slot = slot + 1 & mask;
+            }
+            return null;
+        }
+
+        private IdentifierTable with( VariableLengthInteger identifier ) {
+            return new IdentifierTable( this, identifier );
+        }
+
+        private void put( VariableLengthInteger identifier ) {
+            int mask = keys.length - 1;
+            int slot = ( int ) ( identifier.encodedValue * 0x9E3779B9L >>> 16 ) & mask;
+            while ( values[ slot ] != null ) {
+                slot = slot + 1 & mask;
+            }
+            keys[ slot ] = identifier.encodedValue;
+            values[ slot ] = identifier;
+        }
+
+    }
+
 }
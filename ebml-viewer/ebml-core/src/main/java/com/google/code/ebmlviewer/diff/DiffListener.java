@@ -0,0 +1,91 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.diff;
+
+import com.google.code.ebmlviewer.io.EbmlFileEntry;
+
+/**
+ * Receives the differences found by the {@link EbmlDiff}.
+ * <p/>
+ * The element paths consist of the element names separated by slashes, every name is followed by the index of the
+ * element among its siblings with the same identifier, for example {@code Segment[0]/Cluster[12]/Timecode[0]}. The
+ * indices of the removed and moved elements refer to the left file, the indices of the added elements refer to the
+ * right file.
+ */
+public interface DiffListener {
+
+    /**
+     * Called when an element is present only in the right file.
+     *
+     * @param path the element path
+     * @param right the element in the right file
+     */
+    void added( String path, EbmlFileEntry right );
+
+    /**
+     * Called when an element is present only in the left file.
+     *
+     * @param path the element path
+     * @param left the element in the left file
+     */
+    void removed( String path, EbmlFileEntry left );
+
+    /**
+     * Called when an identical element is present in both files, but at a different place among its siblings.
+     *
+     * @param path the element path
+     * @param left the element in the left file
+     * @param right the element in the right file
+     */
+    void moved( String path, EbmlFileEntry left, EbmlFileEntry right );
+
+    /**
+     * Called when the data size of a master element differs. The differences of the children are reported
+     * separately.
+     *
+     * @param path the element path
+     * @param left the element in the left file
+     * @param right the element in the right file
+     */
+    void resized( String path, EbmlFileEntry left, EbmlFileEntry right );
+
+    /**
+     * Called when the value of a non-master element differs.
+     *
+     * @param path the element path
+     * @param left the element in the left file
+     * @param right the element in the right file
+     * @param leftValue the decoded value in the left file, or {@code null} if the value is binary or can not be decoded
+     * @param rightValue the decoded value in the right file, or {@code null} if the value is binary or can not be
+     * decoded
+     */
+    void changed( String path, EbmlFileEntry left, EbmlFileEntry right, Object leftValue, Object rightValue );
+
+}
@@ -0,0 +1,477 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.diff;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import com.google.code.ebmlviewer.core.EbmlDecoder;
+import com.google.code.ebmlviewer.core.IllegalEncodedLengthException;
+import com.google.code.ebmlviewer.core.VariableLengthInteger;
+import com.google.code.ebmlviewer.elements.ElementDescriptor;
+import com.google.code.ebmlviewer.elements.ElementDescriptors;
+import com.google.code.ebmlviewer.elements.ElementType;
+import com.google.code.ebmlviewer.io.EbmlFile;
+import com.google.code.ebmlviewer.io.EbmlFileEntry;
+
+/**
+ * Compares the element trees of two EBML files.
+ * <p/>
+ * The children of every pair of matching master elements are aligned in three steps. First, the common prefix and
+ * suffix of identical elements are skipped, which makes the comparison of mostly identical files linear. Then the
+ * remaining children are aligned by their identifiers with the longest common subsequence algorithm, or with a greedy
+ * forward matcher if there are too many of them. Finally, the unaligned elements with identical contents are reported
+ * as moved. The identity of two elements is decided by comparing their data directly, so identical subtrees are never
+ * parsed, and the data of the master elements is parsed only when it differs.
+ */
+public final class EbmlDiff {
+
+    /** The maximum number of cells in the longest common subsequence table. */
+    private static final int LCS_LIMIT = 1 << 20;
+
+    /** The number of elements the greedy matcher looks ahead for the matching identifier. */
+    private static final int LOOKAHEAD = 16;
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    /** The maximum size of the string values that are decoded for the report. */
+    private static final int MAXIMUM_STRING_SIZE = 64 * 1024;
+
+
+    private final Map<VariableLengthInteger, ElementDescriptor> descriptors;
+
+    private final EbmlDecoder decoder = new EbmlDecoder();
+
+    private final ByteBuffer leftBuffer = ByteBuffer.allocate( CHUNK_SIZE );
+
+    private final ByteBuffer rightBuffer = ByteBuffer.allocate( CHUNK_SIZE );
+
+
+    private DiffListener listener;
+
+    private boolean different;
+
+
+    /** Creates a new {@code EbmlDiff} which uses the default element descriptors. */
+    public EbmlDiff() {
+        this( ElementDescriptors.getDefaultDescriptors() );
+    }
+
+    /**
+     * Creates a new {@code EbmlDiff}.
+     *
+     * @param descriptors the element descriptors used to recognize master elements and decode values
+     *
+     * @throws IllegalArgumentException if {@code descriptors} is {@code null}
+     */
+    public EbmlDiff( Map<VariableLengthInteger, ElementDescriptor> descriptors ) {
+        if ( descriptors == null ) {
+            throw new IllegalArgumentException( "descriptors is null" );
+        }
+        this.descriptors = descriptors;
+    }
+
+
+    /**
+     * Compares two files and reports the differences to the specified listener.
+     *
+     * @param left the left file
+     * @param right the right file
+     * @param listener the listener to report the differences to
+     *
+     * @return {@code true} if the files are different; {@code false} otherwise
+     *
+     * @throws IllegalArgumentException if {@code left}, {@code right} or {@code listener} is {@code null}
+     * @throws IOException if an I/O error has occurred
+     */
+    public boolean diff( EbmlFile left, EbmlFile right, DiffListener listener ) throws IOException {
+        if ( left == null ) {
+            throw new IllegalArgumentException( "left is null" );
+        }
+        if ( right == null ) {
+            throw new IllegalArgumentException( "right is null" );
+        }
+        if ( listener == null ) {
+            throw new IllegalArgumentException( "listener is null" );
+        }
+        this.listener = listener;
+        different = false;
+        try {
+            diffChildren( "", left.getEntries(), right.getEntries() );
+        } finally {
+            this.listener = null;
+        }
+        return different;
+    }
+
+
+    private void diffChildren( String path, List<EbmlFileEntry> leftEntries, List<EbmlFileEntry> rightEntries ) throws IOException {
+        List<EbmlFileEntry> left = leftEntries instanceof LinkedList ? new ArrayList<EbmlFileEntry>( leftEntries ) : leftEntries;
+        List<EbmlFileEntry> right = rightEntries instanceof LinkedList ? new ArrayList<EbmlFileEntry>( rightEntries ) : rightEntries;
+        int start = 0;
+        int leftEnd = left.size();
+        int rightEnd = right.size();
+        while ( start < leftEnd && start < rightEnd && isIdentical( left.get( start ), right.get( start ) ) ) {
+            start++;
+        }
+        while ( leftEnd > start && rightEnd > start && isIdentical( left.get( leftEnd - 1 ), right.get( rightEnd - 1 ) ) ) {
+            leftEnd--;
+            rightEnd--;
+        }
+        if ( start == leftEnd && start == rightEnd ) {
+            return;
+        }
+        // the loops above stopped at the first and the last pairs that differ, so these are not compared again
+        boolean firstDifferent = start < leftEnd && start < rightEnd;
+        boolean lastDifferent = leftEnd > start && rightEnd > start;
+
+        int[] leftOccurrences = countOccurrences( left );
+        int[] rightOccurrences = countOccurrences( right );
+        int[] matches = align( left, start, leftEnd, right, start, rightEnd );
+        boolean[] rightMatched = new boolean[ right.size() ];
+        for ( int i = start; i < leftEnd; i++ ) {
+            if ( matches[ i ] >= 0 ) {
+                rightMatched[ matches[ i ] ] = true;
+            }
+        }
+        int[] moves = findMoves( left, start, leftEnd, right, start, rightEnd, matches, rightMatched );
+        boolean[] rightMoved = new boolean[ right.size() ];
+        for ( int move : moves ) {
+            if ( move >= 0 ) {
+                rightMoved[ move ] = true;
+            }
+        }
+
+        int i = start;
+        int j = start;
+        while ( i < leftEnd || j < rightEnd ) {
+            if ( i < leftEnd && matches[ i ] < 0 ) {
+                EbmlFileEntry entry = left.get( i );
+                String childPath = childPath( path, entry, leftOccurrences[ i ] );
+                different = true;
+                if ( moves[ i ] >= 0 ) {
+                    listener.moved( childPath, entry, right.get( moves[ i ] ) );
+                } else {
+                    listener.removed( childPath, entry );
+                }
+                i++;
+            } else if ( j < rightEnd && !rightMatched[ j ] ) {
+                if ( !rightMoved[ j ] ) {
+                    different = true;
+                    listener.added( childPath( path, right.get( j ), rightOccurrences[ j ] ), right.get( j ) );
+                }
+                j++;
+            } else {
+                boolean knownDifferent = i == start && j == start && firstDifferent
+                        || i == leftEnd - 1 && j == rightEnd - 1 && lastDifferent;
+                diffEntries( childPath( path, left.get( i ), leftOccurrences[ i ] ), left.get( i ), right.get( j ), knownDifferent );
+                i++;
+                j++;
+            }
+        }
+    }
+
+    /**
+     * Reports the differences between the matched entries.
+     *
+     * @param knownDifferent whether the entries are already known to differ, which saves comparing their data again
+     */
+    private void diffEntries( String path, EbmlFileEntry left, EbmlFileEntry right, boolean knownDifferent ) throws IOException {
+        if ( !knownDifferent && isIdentical( left, right ) ) {
+            return;
+        }
+        different = true;
+        ElementType type = getType( left.getIdentifier() );
+        if ( type == ElementType.MASTER ) {
+            if ( left.getSize().getPlainValue() != right.getSize().getPlainValue() ) {
+                listener.resized( path, left, right );
+            }
+            diffChildren( path, left.getEntries(), right.getEntries() );
+        } else {
+            listener.changed( path, left, right, decode( left, type ), decode( right, type ) );
+        }
+    }
+
+
+    /**
+     * Aligns the children by their identifiers.
+     *
+     * @return the array which maps the indices of the left children to the indices of the matching right children, or
+     *         to {@code -1} if there is no match
+     */
+    private static int[] align( List<EbmlFileEntry> left, int leftStart, int leftEnd, List<EbmlFileEntry> right, int rightStart, int rightEnd ) {
+        int[] matches = new int[ left.size() ];
+        Arrays.fill( matches, -1 );
+        int n = leftEnd - leftStart;
+        int m = rightEnd - rightStart;
+        if ( n == 0 || m == 0 ) {
+            return matches;
+        }
+        if ( ( long ) ( n + 1 ) * ( m + 1 ) <= LCS_LIMIT ) {
+            // lengths[ i ][ j ] is the LCS length of the left suffix starting at i and the right suffix starting at j
+            int[] lengths = new int[ ( n + 1 ) * ( m + 1 ) ];
+            for ( int i = n - 1; i >= 0; i-- ) {
+                VariableLengthInteger identifier = left.get( leftStart + i ).getIdentifier();
+                for ( int j = m - 1; j >= 0; j-- ) {
+                    if ( identifier.equals( right.get( rightStart + j ).getIdentifier() ) ) {
+                        lengths[ i * ( m + 1 ) + j ] = lengths[ ( i + 1 ) * ( m + 1 ) + j + 1 ] + 1;
+                    } else {
+                        lengths[ i * ( m + 1 ) + j ] = Math.max( lengths[ ( i + 1 ) * ( m + 1 ) + j ], lengths[ i * ( m + 1 ) + j + 1 ] );
+                    }
+                }
+            }
+            int i = 0;
+            int j = 0;
+            while ( i < n && j < m ) {
+                if ( left.get( leftStart + i ).getIdentifier().equals( right.get( rightStart + j ).getIdentifier() ) ) {
+                    matches[ leftStart + i ] = rightStart + j;
+                    i++;
+                    j++;
+                } else if ( lengths[ ( i + 1 ) * ( m + 1 ) + j ] >= lengths[ i * ( m + 1 ) + j + 1 ] ) {
+                    i++;
+                } else {
+                    j++;
+                }
+            }
+        } else {
+            int i = leftStart;
+            int j = rightStart;
+            while ( i < leftEnd && j < rightEnd ) {
+                VariableLengthInteger identifier = left.get( i ).getIdentifier();
+                int k = j;
+                while ( k < rightEnd && k < j + LOOKAHEAD && !identifier.equals( right.get( k ).getIdentifier() ) ) {
+                    k++;
+                }
+                if ( k < rightEnd && k < j + LOOKAHEAD ) {
+                    matches[ i ] = k;
+                    j = k + 1;
+                }
+                i++;
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Pairs the unaligned left and right children with identical contents.
+     *
+     * @return the array which maps the indices of the unaligned left children to the indices of the identical right
+     *         children, or to {@code -1} if there is no such child
+     */
+    private int[] findMoves( List<EbmlFileEntry> left, int leftStart, int leftEnd, List<EbmlFileEntry> right, int rightStart, int rightEnd,
+                             int[] matches, boolean[] rightMatched ) throws IOException {
+        int[] moves = new int[ left.size() ];
+        Arrays.fill( moves, -1 );
+        Map<String, List<Integer>> candidates = new HashMap<String, List<Integer>>();
+        for ( int j = rightStart; j < rightEnd; j++ ) {
+            if ( !rightMatched[ j ] ) {
+                String key = right.get( j ).getIdentifier() + "/" + right.get( j ).getSize().getPlainValue();
+                List<Integer> list = candidates.get( key );
+                if ( list == null ) {
+                    list = new LinkedList<Integer>();
+                    candidates.put( key, list );
+                }
+                list.add( j );
+            }
+        }
+        for ( int i = leftStart; i < leftEnd && !candidates.isEmpty(); i++ ) {
+            if ( matches[ i ] >= 0 ) {
+                continue;
+            }
+            List<Integer> list = candidates.get( left.get( i ).getIdentifier() + "/" + left.get( i ).getSize().getPlainValue() );
+            if ( list == null ) {
+                continue;
+            }
+            for ( Integer j : list ) {
+                if ( isDataEqual( left.get( i ), right.get( j ) ) ) {
+                    moves[ i ] = j;
+                    list.remove( j );
+                    break;
+                }
+            }
+        }
+        return moves;
+    }
+
+    private static int[] countOccurrences( List<EbmlFileEntry> entries ) {
+        int[] occurrences = new int[ entries.size() ];
+        Map<VariableLengthInteger, Integer> counts = new HashMap<VariableLengthInteger, Integer>();
+        for ( int i = 0; i < occurrences.length; i++ ) {
+            VariableLengthInteger identifier = entries.get( i ).getIdentifier();
+            Integer count = counts.get( identifier );
+            occurrences[ i ] = count == null ? 0 : count;
+            counts.put( identifier, occurrences[ i ] + 1 );
+        }
+        return occurrences;
+    }
+
+    private String childPath( String path, EbmlFileEntry entry, int occurrence ) {
+        ElementDescriptor descriptor = descriptors.get( entry.getIdentifier() );
+        String name = descriptor == null ? entry.getIdentifier().toString() : descriptor.getName();
+        return String.format( "%s%s%s[%d]", path, path.length() == 0 ? "" : "/", name, occurrence );
+    }
+
+
+    private boolean isIdentical( EbmlFileEntry left, EbmlFileEntry right ) throws IOException {
+        return left.getIdentifier().equals( right.getIdentifier() ) && isDataEqual( left, right );
+    }
+
+    private boolean isDataEqual( EbmlFileEntry left, EbmlFileEntry right ) throws IOException {
+        long size = left.getSize().getPlainValue();
+        if ( size != right.getSize().getPlainValue() ) {
+            return false;
+        }
+        for ( long offset = 0L; offset < size; offset += CHUNK_SIZE ) {
+            fill( left, leftBuffer, offset );
+            fill( right, rightBuffer, offset );
+            if ( !leftBuffer.equals( rightBuffer ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void fill( EbmlFileEntry entry, ByteBuffer buffer, long offset ) throws IOException {
+        buffer.clear();
+        while ( buffer.hasRemaining() ) {
+            int read = entry.read( buffer, offset + buffer.position() );
+            if ( read <= 0 ) {
+                break;
+            }
+        }
+        buffer.flip();
+    }
+
+
+    private ElementType getType( VariableLengthInteger identifier ) {
+        ElementDescriptor descriptor = descriptors.get( identifier );
+        return descriptor == null ? ElementType.BINARY : descriptor.getType();
+    }
+
+    private Object decode( EbmlFileEntry entry, ElementType type ) throws IOException {
+        long size = entry.getSize().getPlainValue();
+        int maximumSize = type == ElementType.ASCII_STRING || type == ElementType.UNICODE_STRING ? MAXIMUM_STRING_SIZE : 8;
+        if ( type == ElementType.BINARY || size > maximumSize ) {
+            return null;
+        }
+        ByteBuffer buffer = size <= leftBuffer.capacity() ? leftBuffer : ByteBuffer.allocate( ( int ) size );
+        fill( entry, buffer, 0L );
+        if ( buffer.remaining() < size ) {
+            return null;
+        }
+        try {
+            switch ( type ) {
+                case SIGNED_INTEGER:
+                    return decoder.decodeSignedInteger( buffer, ( int ) size );
+                case UNSIGNED_INTEGER:
+                    return decoder.decodeUnsignedInteger( buffer, ( int ) size );
+                case FLOATING_POINT:
+                    return decoder.decodeFloatingPoint( buffer, ( int ) size );
+                case ASCII_STRING:
+                    return decoder.decodeAsciiString( buffer, ( int ) size );
+                case UNICODE_STRING:
+                    return decoder.decodeUnicodeString( buffer, ( int ) size );
+                case DATE:
+                    return decoder.decodeDate( buffer, ( int ) size );
+                default:
+                    return null;
+            }
+        } catch ( CharacterCodingException e ) {
+            return null;
+        } catch ( IllegalEncodedLengthException e ) {
+            return null;
+        }
+    }
+
+
+    /**
+     * Compares the two files specified as the command line arguments and prints the differences to the standard output.
+     * <p/>
+     * Usage: {@code EbmlDiff left right}
+     *
+     * @param args the left and the right file
+     *
+     * @throws IOException if an I/O error has occurred
+     */
+    public static void main( String[] args ) throws IOException {
+        if ( args.length != 2 ) {
+            System.err.println( "usage: EbmlDiff left right" );
+            return;
+        }
+        EbmlFile left = new EbmlFile( args[ 0 ] );
+        try {
+            EbmlFile right = new EbmlFile( args[ 1 ] );
+            try {
+                new EbmlDiff().diff( left, right, new DiffListener() {
+                    @Override
+                    public void added( String path, EbmlFileEntry right ) {
+                        System.out.printf( "+ %s at %d%n", path, right.getEntryPosition() );
+                    }
+
+                    @Override
+                    public void removed( String path, EbmlFileEntry left ) {
+                        System.out.printf( "- %s at %d%n", path, left.getEntryPosition() );
+                    }
+
+                    @Override
+                    public void moved( String path, EbmlFileEntry left, EbmlFileEntry right ) {
+                        System.out.printf( "> %s moved from %d to %d%n", path, left.getEntryPosition(), right.getEntryPosition() );
+                    }
+
+                    @Override
+                    public void resized( String path, EbmlFileEntry left, EbmlFileEntry right ) {
+                        System.out.printf( "* %s size %d -> %d%n", path, left.getSize().getPlainValue(), right.getSize().getPlainValue() );
+                    }
+
+                    @Override
+                    public void changed( String path, EbmlFileEntry left, EbmlFileEntry right, Object leftValue, Object rightValue ) {
+                        if ( leftValue == null || rightValue == null ) {
+                            System.out.printf( "~ %s data differs (%d and %d bytes)%n", path, left.getSize().getPlainValue(), right.getSize().getPlainValue() );
+                        } else {
+                            System.out.printf( "~ %s %s -> %s%n", path, leftValue, rightValue );
+                        }
+                    }
+                } );
+            } finally {
+                right.close();
+            }
+        } finally {
+            left.close();
+        }
+    }
+
+}
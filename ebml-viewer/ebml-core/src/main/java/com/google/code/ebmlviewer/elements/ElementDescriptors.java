@@ -187,7 +187,7 @@ public final class ElementDescriptors {
             throw new XMLStreamException( "the 'type' attribute is required", current.getLocation() );
         }
 
-        ElementDescriptor descriptor = new ElementDescriptor( VariableLengthInteger.fromString( identifier.getValue() ), name.getValue(), ElementType.fromString( type.getValue() ) );
+        ElementDescriptor descriptor = new ElementDescriptor( VariableLengthInteger.intern( VariableLengthInteger.fromString( identifier.getValue() ) ), name.getValue(), ElementType.fromString( type.getValue() ) );
 
         descriptor.setMandatory( readAttribute( current, "mandatory", false ) );
 
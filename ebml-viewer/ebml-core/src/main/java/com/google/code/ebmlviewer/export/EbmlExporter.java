@@ -0,0 +1,366 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.export;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Map;
+import java.util.TimeZone;
+
+import com.google.code.ebmlviewer.core.VariableLengthInteger;
+import com.google.code.ebmlviewer.elements.ElementDescriptor;
+import com.google.code.ebmlviewer.elements.ElementType;
+import com.google.code.ebmlviewer.io.EbmlIoException;
+import com.google.code.ebmlviewer.stream.EbmlStreamReader;
+
+import static com.google.code.ebmlviewer.elements.ElementDescriptors.getDefaultDescriptors;
+
+/**
+ * Exports the structure and the values of the EBML data in a single sequential pass.
+ * <p/>
+ * The exporter walks the data with the {@link EbmlStreamReader} and reports every element to the format-specific
+ * subclass as soon as it is read, so the memory usage depends only on the nesting depth of the data and on the maximum
+ * binary size, but not on the size of the data itself. The element names and types are taken from the element
+ * descriptors, elements without a descriptor are exported as binary elements.
+ */
+public abstract class EbmlExporter {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+
+    private final Map<VariableLengthInteger, ElementDescriptor> descriptors;
+
+    private BinaryMode binaryMode = BinaryMode.CONTENT;
+
+    private int maximumBinarySize = 64;
+
+
+    private ByteBuffer binaryBuffer;
+
+    private StringBuilder binaryText;
+
+    private DateFormat dateFormat;
+
+
+    /**
+     * Creates a new {@code EbmlExporter}.
+     *
+     * @param descriptors the element descriptors
+     *
+     * @throws IllegalArgumentException if {@code descriptors} is {@code null}
+     */
+    protected EbmlExporter( Map<VariableLengthInteger, ElementDescriptor> descriptors ) {
+        if ( descriptors == null ) {
+            throw new IllegalArgumentException( "descriptors is null" );
+        }
+        this.descriptors = descriptors;
+    }
+
+
+    /**
+     * Returns how the contents of binary elements are exported.
+     *
+     * @return the binary export mode
+     */
+    public BinaryMode getBinaryMode() {
+        return binaryMode;
+    }
+
+    /**
+     * Sets how the contents of binary elements are exported.
+     *
+     * @param binaryMode the new binary export mode
+     *
+     * @throws IllegalArgumentException if {@code binaryMode} is {@code null}
+     */
+    public void setBinaryMode( BinaryMode binaryMode ) {
+        if ( binaryMode == null ) {
+            throw new IllegalArgumentException( "binaryMode is null" );
+        }
+        this.binaryMode = binaryMode;
+    }
+
+    /**
+     * Returns the maximum number of bytes of binary element contents that are exported.
+     *
+     * @return the maximum binary size
+     */
+    public int getMaximumBinarySize() {
+        return maximumBinarySize;
+    }
+
+    /**
+     * Sets the maximum number of bytes of binary element contents that are exported. The contents of larger elements
+     * are truncated.
+     *
+     * @param maximumBinarySize the new maximum binary size
+     *
+     * @throws IllegalArgumentException if {@code maximumBinarySize} is negative
+     */
+    public void setMaximumBinarySize( int maximumBinarySize ) {
+        if ( maximumBinarySize < 0 ) {
+            throw new IllegalArgumentException( "maximumBinarySize is negative" );
+        }
+        this.maximumBinarySize = maximumBinarySize;
+        binaryBuffer = null;
+        binaryText = null;
+    }
+
+
+    /**
+     * Exports all elements provided by the specified reader.
+     *
+     * @param reader the reader positioned before the first element of the data to export
+     *
+     * @throws IllegalArgumentException if {@code reader} is {@code null}
+     * @throws IOException if an I/O error has occurred while reading the data or writing the output
+     */
+    public void export( EbmlStreamReader reader ) throws IOException {
+        if ( reader == null ) {
+            throw new IllegalArgumentException( "reader is null" );
+        }
+        startDocument();
+        exportElements( reader );
+        endDocument();
+    }
+
+    private void exportElements( EbmlStreamReader reader ) throws IOException {
+        while ( reader.next() ) {
+            VariableLengthInteger identifier = reader.getIdentifier();
+            ElementDescriptor descriptor = descriptors.get( identifier );
+            ElementType type = descriptor == null ? ElementType.BINARY : descriptor.getType();
+            startElement( identifier, descriptor, reader.getElementPosition(), reader.getDataPosition(), reader.getSize().getPlainValue() );
+            if ( type == ElementType.MASTER ) {
+                startChildren();
+                reader.enterContainer();
+                exportElements( reader );
+                reader.leaveContainer();
+                endChildren();
+            } else {
+                try {
+                    exportValue( reader, type );
+                } catch ( CharacterCodingException e ) {
+                    writeError( e.toString() );
+                } catch ( EbmlIoException e ) {
+                    writeError( e.getLocalizedMessage() );
+                }
+            }
+            endElement();
+        }
+    }
+
+    private void exportValue( EbmlStreamReader reader, ElementType type ) throws IOException {
+        switch ( type ) {
+            case SIGNED_INTEGER:
+                writeValue( Long.toString( reader.readSignedInteger() ), false );
+                break;
+            case UNSIGNED_INTEGER:
+                long unsignedInteger = reader.readUnsignedInteger();
+                if ( unsignedInteger >= 0L ) {
+                    writeValue( Long.toString( unsignedInteger ), false );
+                } else {
+                    writeValue( BigInteger.valueOf( unsignedInteger ).add( BigInteger.ONE.shiftLeft( 64 ) ).toString(), false );
+                }
+                break;
+            case FLOATING_POINT:
+                double floatingPoint = reader.readFloatingPoint();
+                writeValue( Double.toString( floatingPoint ), Double.isNaN( floatingPoint ) || Double.isInfinite( floatingPoint ) );
+                break;
+            case ASCII_STRING:
+                writeValue( reader.readAsciiString(), true );
+                break;
+            case UNICODE_STRING:
+                writeValue( reader.readUnicodeString(), true );
+                break;
+            case DATE:
+                if ( dateFormat == null ) {
+                    dateFormat = new SimpleDateFormat( "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'" );
+                    dateFormat.setTimeZone( TimeZone.getTimeZone( "UTC" ) );
+                }
+                writeValue( dateFormat.format( reader.readDate() ), true );
+                break;
+            case BINARY:
+                if ( binaryMode == BinaryMode.CONTENT ) {
+                    exportBinary( reader );
+                }
+                break;
+            default:
+                throw new AssertionError( type );
+        }
+    }
+
+    private void exportBinary( EbmlStreamReader reader ) throws IOException {
+        if ( binaryBuffer == null ) {
+            binaryBuffer = ByteBuffer.allocate( maximumBinarySize );
+            binaryText = new StringBuilder( maximumBinarySize * 2 );
+        }
+        binaryBuffer.clear();
+        reader.readBinary( binaryBuffer );
+        binaryBuffer.flip();
+        binaryText.setLength( 0 );
+        while ( binaryBuffer.hasRemaining() ) {
+            int b = binaryBuffer.get() & 0xff;
+            binaryText.append( HEX_DIGITS[ b >>> 4 ] ).append( HEX_DIGITS[ b & 0x0f ] );
+        }
+        writeBinary( binaryText, binaryBuffer.limit() < reader.getSize().getPlainValue() );
+    }
+
+
+    /**
+     * Called before the first element is exported.
+     *
+     * @throws IOException if an I/O error has occurred
+     */
+    protected abstract void startDocument() throws IOException;
+
+    /**
+     * Called after the last element is exported.
+     *
+     * @throws IOException if an I/O error has occurred
+     */
+    protected abstract void endDocument() throws IOException;
+
+    /**
+     * Called when an element starts.
+     *
+     * @param identifier the element identifier
+     * @param descriptor the element descriptor or {@code null} if the element is unknown
+     * @param position the position at which the element starts
+     * @param dataPosition the position at which the element data starts
+     * @param size the element data size
+     *
+     * @throws IOException if an I/O error has occurred
+     */
+    protected abstract void startElement( VariableLengthInteger identifier, ElementDescriptor descriptor, long position, long dataPosition, long size ) throws IOException;
+
+    /**
+     * Called when the element ends.
+     *
+     * @throws IOException if an I/O error has occurred
+     */
+    protected abstract void endElement() throws IOException;
+
+    /**
+     * Called before the child elements of the current master element are exported.
+     *
+     * @throws IOException if an I/O error has occurred
+     */
+    protected abstract void startChildren() throws IOException;
+
+    /**
+     * Called after the child elements of the current master element are exported.
+     *
+     * @throws IOException if an I/O error has occurred
+     */
+    protected abstract void endChildren() throws IOException;
+
+    /**
+     * Called to export the value of the current element.
+     *
+     * @param value the text representation of the value
+     * @param text {@code true} if the value is a text, {@code false} if the value is a number
+     *
+     * @throws IOException if an I/O error has occurred
+     */
+    protected abstract void writeValue( String value, boolean text ) throws IOException;
+
+    /**
+     * Called to export the contents of the current binary element.
+     *
+     * @param hex the hexadecimal representation of the contents, the sequence is reused between calls
+     * @param truncated {@code true} if the contents were truncated
+     *
+     * @throws IOException if an I/O error has occurred
+     */
+    protected abstract void writeBinary( CharSequence hex, boolean truncated ) throws IOException;
+
+    /**
+     * Called when the value of the current element can not be decoded.
+     *
+     * @param message the error description
+     *
+     * @throws IOException if an I/O error has occurred
+     */
+    protected abstract void writeError( String message ) throws IOException;
+
+
+    /**
+     * Exports the specified file to the standard output.
+     * <p/>
+     * Usage: {@code EbmlExporter [-xml] [-offsets | -binary N] file}
+     *
+     * @param args the command line arguments
+     *
+     * @throws IOException if an I/O error has occurred
+     */
+    public static void main( String[] args ) throws IOException {
+        boolean xml = false;
+        BinaryMode binaryMode = BinaryMode.CONTENT;
+        int maximumBinarySize = 64;
+        String file = null;
+        for ( int i = 0; i < args.length; i++ ) {
+            if ( "-xml".equals( args[ i ] ) ) {
+                xml = true;
+            } else if ( "-offsets".equals( args[ i ] ) ) {
+                binaryMode = BinaryMode.OFFSETS;
+            } else if ( "-binary".equals( args[ i ] ) && i + 1 < args.length ) {
+                maximumBinarySize = Integer.parseInt( args[ ++i ] );
+            } else {
+                file = args[ i ];
+            }
+        }
+        if ( file == null ) {
+            System.err.println( "usage: EbmlExporter [-xml] [-offsets | -binary N] file" );
+            return;
+        }
+        Writer writer = new OutputStreamWriter( System.out, "UTF-8" );
+        EbmlExporter exporter = xml ? new XmlExporter( writer, getDefaultDescriptors() ) : new JsonExporter( writer, getDefaultDescriptors() );
+        exporter.setBinaryMode( binaryMode );
+        exporter.setMaximumBinarySize( maximumBinarySize );
+        FileInputStream stream = new FileInputStream( new File( file ) );
+        try {
+            FileChannel channel = stream.getChannel();
+            exporter.export( new EbmlStreamReader( channel, channel.size() ) );
+        } finally {
+            stream.close();
+        }
+        writer.flush();
+    }
+
+}
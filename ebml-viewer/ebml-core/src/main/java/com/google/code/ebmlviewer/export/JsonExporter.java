@@ -0,0 +1,204 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.export;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+import com.google.code.ebmlviewer.core.VariableLengthInteger;
+import com.google.code.ebmlviewer.elements.ElementDescriptor;
+
+/**
+ * Exports the EBML data as a JSON array of element objects.
+ * <p/>
+ * Every element is written as an object with the {@code name}, {@code id}, {@code type}, {@code position}, {@code
+ * dataPosition} and {@code size} members, followed by either the {@code children} array, the {@code value} member or
+ * the {@code error} member. Truncated binary values are marked with the {@code "truncated": true} member.
+ */
+public final class JsonExporter extends EbmlExporter {
+
+    private final Writer writer;
+
+    /** Indicates whether the next element is the first element at the corresponding depth. */
+    private boolean[] first = new boolean[ 16 ];
+
+    private int depth;
+
+
+    /**
+     * Creates a new {@code JsonExporter}.
+     *
+     * @param writer the output writer
+     * @param descriptors the element descriptors
+     *
+     * @throws IllegalArgumentException if {@code writer} or {@code descriptors} is {@code null}
+     */
+    public JsonExporter( Writer writer, Map<VariableLengthInteger, ElementDescriptor> descriptors ) {
+        super( descriptors );
+        if ( writer == null ) {
+            throw new IllegalArgumentException( "writer is null" );
+        }
+        this.writer = writer;
+    }
+
+
+    @Override
+    protected void startDocument() throws IOException {
+        depth = 0;
+        first[ depth ] = true;
+        writer.write( '[' );
+    }
+
+    @Override
+    protected void endDocument() throws IOException {
+        writer.write( "\n]\n" );
+        writer.flush();
+    }
+
+    @Override
+    protected void startElement( VariableLengthInteger identifier, ElementDescriptor descriptor, long position, long dataPosition, long size ) throws IOException {
+        if ( !first[ depth ] ) {
+            writer.write( ',' );
+        }
+        first[ depth ] = false;
+        writer.write( '\n' );
+        indent();
+        writer.write( "{\"name\": " );
+        writeString( descriptor == null ? null : descriptor.getName() );
+        writer.write( ", \"id\": \"" );
+        writer.write( identifier.toString() );
+        writer.write( "\", \"type\": " );
+        writeString( descriptor == null ? null : descriptor.getType().toString() );
+        writer.write( ", \"position\": " );
+        writer.write( Long.toString( position ) );
+        writer.write( ", \"dataPosition\": " );
+        writer.write( Long.toString( dataPosition ) );
+        writer.write( ", \"size\": " );
+        writer.write( Long.toString( size ) );
+    }
+
+    @Override
+    protected void endElement() throws IOException {
+        writer.write( '}' );
+    }
+
+    @Override
+    protected void startChildren() throws IOException {
+        writer.write( ", \"children\": [" );
+        depth++;
+        if ( depth == first.length ) {
+            boolean[] temp = new boolean[ first.length * 2 ];
+            System.arraycopy( first, 0, temp, 0, first.length );
+            first = temp;
+        }
+        first[ depth ] = true;
+    }
+
+    @Override
+    protected void endChildren() throws IOException {
+        boolean empty = first[ depth ];
+        depth--;
+        if ( !empty ) {
+            writer.write( '\n' );
+            indent();
+        }
+        writer.write( ']' );
+    }
+
+    @Override
+    protected void writeValue( String value, boolean text ) throws IOException {
+        writer.write( ", \"value\": " );
+        if ( text ) {
+            writeString( value );
+        } else {
+            writer.write( value );
+        }
+    }
+
+    @Override
+    protected void writeBinary( CharSequence hex, boolean truncated ) throws IOException {
+        writer.write( ", \"value\": \"" );
+        writer.append( hex );
+        writer.write( '"' );
+        if ( truncated ) {
+            writer.write( ", \"truncated\": true" );
+        }
+    }
+
+    @Override
+    protected void writeError( String message ) throws IOException {
+        writer.write( ", \"error\": " );
+        writeString( message );
+    }
+
+
+    private void indent() throws IOException {
+        for ( int i = 0; i <= depth; i++ ) {
+            writer.write( "  " );
+        }
+    }
+
+    private void writeString( String s ) throws IOException {
+        if ( s == null ) {
+            writer.write( "null" );
+            return;
+        }
+        writer.write( '"' );
+        for ( int i = 0; i < s.length(); i++ ) {
+            char c = s.charAt( i );
+            switch ( c ) {
+                case '"':
+                    writer.write( "\\\"" );
+                    break;
+                case '\\':
+                    writer.write( "\\\\" );
+                    break;
+                case '\n':
+                    writer.write( "\\n" );
+                    break;
+                case '\r':
+                    writer.write( "\\r" );
+                    break;
+                case '\t':
+                    writer.write( "\\t" );
+                    break;
+                default:
+                    if ( c < 0x20 ) {
+                        writer.write( String.format( "\\u%04x", ( int ) c ) );
+                    } else {
+                        writer.write( c );
+                    }
+            }
+        }
+        writer.write( '"' );
+    }
+
+}
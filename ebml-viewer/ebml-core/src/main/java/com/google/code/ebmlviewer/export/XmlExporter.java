@@ -0,0 +1,166 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.export;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import com.google.code.ebmlviewer.core.VariableLengthInteger;
+import com.google.code.ebmlviewer.elements.ElementDescriptor;
+
+/**
+ * Exports the EBML data as an XML document.
+ * <p/>
+ * Every element is written as an {@code element} XML element with the {@code name}, {@code id}, {@code type}, {@code
+ * position}, {@code dataPosition} and {@code size} attributes. The child elements of master elements are nested, the
+ * values are written as the text content, the decoding errors are written as the {@code error} attribute and truncated
+ * binary values are marked with the {@code truncated="true"} attribute.
+ */
+public final class XmlExporter extends EbmlExporter {
+
+    private final Writer output;
+
+    private XMLStreamWriter writer;
+
+
+    /**
+     * Creates a new {@code XmlExporter}.
+     *
+     * @param output the output writer
+     * @param descriptors the element descriptors
+     *
+     * @throws IllegalArgumentException if {@code output} or {@code descriptors} is {@code null}
+     */
+    public XmlExporter( Writer output, Map<VariableLengthInteger, ElementDescriptor> descriptors ) {
+        super( descriptors );
+        if ( output == null ) {
+            throw new IllegalArgumentException( "output is null" );
+        }
+        this.output = output;
+    }
+
+
+    @Override
+    protected void startDocument() throws IOException {
+        try {
+            writer = XMLOutputFactory.newFactory().createXMLStreamWriter( output );
+            writer.writeStartDocument( "UTF-8", "1.0" );
+            writer.writeStartElement( "ebml" );
+        } catch ( XMLStreamException e ) {
+            throw new IOException( e );
+        }
+    }
+
+    @Override
+    protected void endDocument() throws IOException {
+        try {
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.flush();
+            writer.close();
+        } catch ( XMLStreamException e ) {
+            throw new IOException( e );
+        } finally {
+            writer = null;
+        }
+    }
+
+    @Override
+    protected void startElement( VariableLengthInteger identifier, ElementDescriptor descriptor, long position, long dataPosition, long size ) throws IOException {
+        try {
+            writer.writeStartElement( "element" );
+            if ( descriptor != null ) {
+                writer.writeAttribute( "name", descriptor.getName() );
+            }
+            writer.writeAttribute( "id", identifier.toString() );
+            if ( descriptor != null ) {
+                writer.writeAttribute( "type", descriptor.getType().toString() );
+            }
+            writer.writeAttribute( "position", Long.toString( position ) );
+            writer.writeAttribute( "dataPosition", Long.toString( dataPosition ) );
+            writer.writeAttribute( "size", Long.toString( size ) );
+        } catch ( XMLStreamException e ) {
+            throw new IOException( e );
+        }
+    }
+
+    @Override
+    protected void endElement() throws IOException {
+        try {
+            writer.writeEndElement();
+        } catch ( XMLStreamException e ) {
+            throw new IOException( e );
+        }
+    }
+
+    @Override
+    protected void startChildren() {
+    }
+
+    @Override
+    protected void endChildren() {
+    }
+
+    @Override
+    protected void writeValue( String value, boolean text ) throws IOException {
+        try {
+            writer.writeCharacters( value );
+        } catch ( XMLStreamException e ) {
+            throw new IOException( e );
+        }
+    }
+
+    @Override
+    protected void writeBinary( CharSequence hex, boolean truncated ) throws IOException {
+        try {
+            if ( truncated ) {
+                writer.writeAttribute( "truncated", "true" );
+            }
+            writer.writeCharacters( hex.toString() );
+        } catch ( XMLStreamException e ) {
+            throw new IOException( e );
+        }
+    }
+
+    @Override
+    protected void writeError( String message ) throws IOException {
+        try {
+            writer.writeAttribute( "error", message == null ? "" : message );
+        } catch ( XMLStreamException e ) {
+            throw new IOException( e );
+        }
+    }
+
+}
@@ -0,0 +1,458 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.extract;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.google.code.ebmlviewer.block.BlockHeader;
+import com.google.code.ebmlviewer.core.EbmlDecoder;
+import com.google.code.ebmlviewer.core.EbmlEncoder;
+import com.google.code.ebmlviewer.core.EbmlFormatException;
+import com.google.code.ebmlviewer.core.VariableLengthInteger;
+import com.google.code.ebmlviewer.io.EbmlIoException;
+
+/**
+ * Extracts a subset of tracks and/or a time range of a Matroska file without copying the block data through the heap.
+ * <p/>
+ * The extraction runs in two passes. The first pass reads only the element headers, the cluster timecodes and the
+ * block headers with positional reads, and produces a plan: a sequence of the source byte ranges to be copied as is
+ * and of the rewritten element headers. The second pass writes the plan to the target, copying the source ranges with
+ * {@link FileChannel#transferTo(long, long, WritableByteChannel)} which lets the operating system move the data
+ * without user space buffers when the target is a file or a socket.
+ * <p/>
+ * Only the {@code Segment}, {@code Tracks} and {@code Cluster} headers are rewritten, all other elements are copied
+ * verbatim or dropped. The {@code SeekHead} and {@code Cues} elements are dropped because the positions they refer to
+ * are no longer valid, the {@code Position}, {@code PrevSize}, {@code CRC-32} and {@code Void} children of clusters are
+ * dropped for the same reason. The timestamps of the blocks are not changed, and when a time range is specified every
+ * track starts with its first keyframe in that range.
+ */
+public final class TrackExtractor {
+
+    private static final VariableLengthInteger SEGMENT = VariableLengthInteger.fromEncoded( 0x18538067 );
+
+    private static final VariableLengthInteger SEEK_HEAD = VariableLengthInteger.fromEncoded( 0x114D9B74 );
+
+    private static final VariableLengthInteger CUES = VariableLengthInteger.fromEncoded( 0x1C53BB6B );
+
+    private static final VariableLengthInteger TRACKS = VariableLengthInteger.fromEncoded( 0x1654AE6B );
+
+    private static final VariableLengthInteger TRACK_ENTRY = VariableLengthInteger.fromEncoded( 0xAE );
+
+    private static final VariableLengthInteger TRACK_NUMBER = VariableLengthInteger.fromEncoded( 0xD7 );
+
+    private static final VariableLengthInteger CLUSTER = VariableLengthInteger.fromEncoded( 0x1F43B675 );
+
+    private static final VariableLengthInteger TIMECODE = VariableLengthInteger.fromEncoded( 0xE7 );
+
+    private static final VariableLengthInteger POSITION = VariableLengthInteger.fromEncoded( 0xA7 );
+
+    private static final VariableLengthInteger PREV_SIZE = VariableLengthInteger.fromEncoded( 0xAB );
+
+    private static final VariableLengthInteger SIMPLE_BLOCK = VariableLengthInteger.fromEncoded( 0xA3 );
+
+    private static final VariableLengthInteger BLOCK_GROUP = VariableLengthInteger.fromEncoded( 0xA0 );
+
+    private static final VariableLengthInteger BLOCK = VariableLengthInteger.fromEncoded( 0xA1 );
+
+    private static final VariableLengthInteger REFERENCE_BLOCK = VariableLengthInteger.fromEncoded( 0xFB );
+
+    private static final VariableLengthInteger CRC_32 = VariableLengthInteger.fromEncoded( 0xBF );
+
+    private static final VariableLengthInteger VOID = VariableLengthInteger.fromEncoded( 0xEC );
+
+
+    private final FileChannel source;
+
+    private final EbmlDecoder decoder = new EbmlDecoder();
+
+    private final EbmlEncoder encoder = new EbmlEncoder();
+
+    private final ByteBuffer buffer = ByteBuffer.allocate( 16 );
+
+
+    private Set<Long> tracks;
+
+    private long startTimecode = Long.MIN_VALUE;
+
+    private long endTimecode = Long.MAX_VALUE;
+
+    /** The tracks that already have a block in the output. */
+    private final Set<Long> startedTracks = new HashSet<Long>();
+
+
+    /**
+     * Creates a new {@code TrackExtractor}.
+     * <p/>
+     * The channel will not be closed by the extractor.
+     *
+     * @param source the source file
+     *
+     * @throws IllegalArgumentException if {@code source} is {@code null}
+     */
+    public TrackExtractor( FileChannel source ) {
+        if ( source == null ) {
+            throw new IllegalArgumentException( "source is null" );
+        }
+        this.source = source;
+    }
+
+
+    /**
+     * Sets the numbers of the tracks to extract.
+     *
+     * @param tracks the track numbers, or {@code null} to extract all tracks
+     */
+    public void setTracks( Collection<Long> tracks ) {
+        this.tracks = tracks == null ? null : new HashSet<Long>( tracks );
+    }
+
+    /**
+     * Sets the time range to extract, in the units of the segment timecode scale. A block is extracted if its timestamp
+     * is greater than or equal to {@code startTimecode} and less than {@code endTimecode}.
+     *
+     * @param startTimecode the start of the range, inclusive
+     * @param endTimecode the end of the range, exclusive
+     *
+     * @throws IllegalArgumentException if {@code startTimecode} is greater than {@code endTimecode}
+     */
+    public void setTimeRange( long startTimecode, long endTimecode ) {
+        if ( startTimecode > endTimecode ) {
+            throw new IllegalArgumentException( "startTimecode is greater than endTimecode" );
+        }
+        this.startTimecode = startTimecode;
+        this.endTimecode = endTimecode;
+    }
+
+
+    /**
+     * Writes the extracted file to the specified channel.
+     *
+     * @param target the blocking channel to write to
+     *
+     * @return the number of bytes written
+     *
+     * @throws IllegalArgumentException if {@code target} is {@code null}
+     * @throws IOException if an I/O error has occurred
+     */
+    public long extract( WritableByteChannel target ) throws IOException {
+        if ( target == null ) {
+            throw new IllegalArgumentException( "target is null" );
+        }
+        startedTracks.clear();
+        Plan plan = new Plan();
+        long size = source.size();
+        long position = 0L;
+        while ( position < size ) {
+            Header header = readHeader( position, size );
+            if ( SEGMENT.equals( header.identifier ) ) {
+                planSegment( header, plan );
+            } else {
+                plan.addRange( header.position, header.end - header.position );
+            }
+            position = header.end;
+        }
+        plan.writeTo( source, target );
+        return plan.size;
+    }
+
+
+    private void planSegment( Header segment, Plan plan ) throws IOException {
+        Plan children = new Plan();
+        long position = segment.dataPosition;
+        while ( position < segment.end ) {
+            Header header = readHeader( position, segment.end );
+            if ( CLUSTER.equals( header.identifier ) ) {
+                planCluster( header, children );
+            } else if ( TRACKS.equals( header.identifier ) && tracks != null ) {
+                planTracks( header, children );
+            } else if ( !SEEK_HEAD.equals( header.identifier ) && !CUES.equals( header.identifier ) && !VOID.equals( header.identifier ) ) {
+                children.addRange( header.position, header.end - header.position );
+            }
+            position = header.end;
+        }
+        plan.addHeader( SEGMENT, children );
+    }
+
+    private void planTracks( Header tracksHeader, Plan plan ) throws IOException {
+        Plan children = new Plan();
+        long position = tracksHeader.dataPosition;
+        while ( position < tracksHeader.end ) {
+            Header header = readHeader( position, tracksHeader.end );
+            if ( TRACK_ENTRY.equals( header.identifier ) ) {
+                long trackNumber = -1L;
+                long childPosition = header.dataPosition;
+                while ( childPosition < header.end ) {
+                    Header child = readHeader( childPosition, header.end );
+                    if ( TRACK_NUMBER.equals( child.identifier ) ) {
+                        trackNumber = readUnsignedInteger( child );
+                    }
+                    childPosition = child.end;
+                }
+                if ( tracks.contains( trackNumber ) ) {
+                    children.addRange( header.position, header.end - header.position );
+                }
+            } else {
+                children.addRange( header.position, header.end - header.position );
+            }
+            position = header.end;
+        }
+        plan.addHeader( TRACKS, children );
+    }
+
+    private void planCluster( Header cluster, Plan plan ) throws IOException {
+        long timecode = 0L;
+        long position = cluster.dataPosition;
+        while ( position < cluster.end ) {
+            Header header = readHeader( position, cluster.end );
+            if ( TIMECODE.equals( header.identifier ) ) {
+                timecode = readUnsignedInteger( header );
+                break;
+            }
+            position = header.end;
+        }
+
+        Plan children = new Plan();
+        boolean hasBlocks = false;
+        position = cluster.dataPosition;
+        while ( position < cluster.end ) {
+            Header header = readHeader( position, cluster.end );
+            VariableLengthInteger identifier = header.identifier;
+            if ( SIMPLE_BLOCK.equals( identifier ) ) {
+                BlockHeader blockHeader = readBlockHeader( header );
+                if ( accept( blockHeader.getTrackNumber(), timecode + blockHeader.getTimecode(), blockHeader.isKeyframe() ) ) {
+                    children.addRange( header.position, header.end - header.position );
+                    hasBlocks = true;
+                }
+            } else if ( BLOCK_GROUP.equals( identifier ) ) {
+                BlockHeader blockHeader = null;
+                boolean referenced = false;
+                long childPosition = header.dataPosition;
+                while ( childPosition < header.end ) {
+                    Header child = readHeader( childPosition, header.end );
+                    if ( BLOCK.equals( child.identifier ) ) {
+                        blockHeader = readBlockHeader( child );
+                    } else if ( REFERENCE_BLOCK.equals( child.identifier ) ) {
+                        referenced = true;
+                    }
+                    childPosition = child.end;
+                }
+                if ( blockHeader != null && accept( blockHeader.getTrackNumber(), timecode + blockHeader.getTimecode(), !referenced ) ) {
+                    children.addRange( header.position, header.end - header.position );
+                    hasBlocks = true;
+                }
+            } else if ( !POSITION.equals( identifier ) && !PREV_SIZE.equals( identifier ) && !CRC_32.equals( identifier ) && !VOID.equals( identifier ) ) {
+                children.addRange( header.position, header.end - header.position );
+            }
+            position = header.end;
+        }
+        if ( hasBlocks ) {
+            plan.addHeader( CLUSTER, children );
+        }
+    }
+
+    private boolean accept( long trackNumber, long timestamp, boolean keyframe ) {
+        if ( tracks != null && !tracks.contains( trackNumber ) ) {
+            return false;
+        }
+        if ( timestamp < startTimecode || timestamp >= endTimecode ) {
+            return false;
+        }
+        if ( startTimecode != Long.MIN_VALUE && !startedTracks.contains( trackNumber ) ) {
+            if ( !keyframe ) {
+                return false;
+            }
+            startedTracks.add( trackNumber );
+        }
+        return true;
+    }
+
+
+    private void read( long position, long limit, int length ) throws IOException {
+        buffer.clear();
+        buffer.limit( ( int ) Math.min( length, limit - position ) );
+        while ( buffer.hasRemaining() ) {
+            if ( source.read( buffer, position + buffer.position() ) < 0 ) {
+                break;
+            }
+        }
+        buffer.flip();
+    }
+
+    private Header readHeader( long position, long limit ) throws IOException {
+        read( position, limit, buffer.capacity() );
+        VariableLengthInteger identifier;
+        VariableLengthInteger size;
+        try {
+            identifier = decoder.decodeVariableLengthInteger( buffer );
+            size = decoder.decodeVariableLengthInteger( buffer );
+        } catch ( EbmlFormatException e ) {
+            throw new EbmlIoException( position, e );
+        } catch ( BufferUnderflowException e ) {
+            throw new EbmlIoException( position, "unexpected end of data while reading element header", e );
+        }
+        if ( size.isReserved() ) {
+            throw new EbmlIoException( position, "elements of unknown size are not supported" );
+        }
+        Header header = new Header( identifier, position, position + buffer.position(), size.getPlainValue() );
+        if ( header.end > limit ) {
+            throw new EbmlIoException( position, "the data size of the element exceeds the number of bytes remaining in the parent element" );
+        }
+        return header;
+    }
+
+    private long readUnsignedInteger( Header header ) throws IOException {
+        long size = header.end - header.dataPosition;
+        if ( size > 8L ) {
+            throw new EbmlIoException( header.position, "unsigned integer is too long" );
+        }
+        read( header.dataPosition, header.end, ( int ) size );
+        if ( buffer.remaining() < size ) {
+            throw new EbmlIoException( header.position, "unexpected end of data while reading unsigned integer" );
+        }
+        return decoder.decodeUnsignedInteger( buffer, ( int ) size );
+    }
+
+    private BlockHeader readBlockHeader( Header header ) throws IOException {
+        read( header.dataPosition, header.end, BlockHeader.MAXIMUM_SIZE );
+        try {
+            return BlockHeader.decode( buffer );
+        } catch ( EbmlFormatException e ) {
+            throw new EbmlIoException( header.position, e );
+        } catch ( BufferUnderflowException e ) {
+            throw new EbmlIoException( header.position, "unexpected end of data while reading block header", e );
+        }
+    }
+
+
+    private static final class Header {
+
+        private final VariableLengthInteger identifier;
+
+        private final long position;
+
+        private final long dataPosition;
+
+        private final long end;
+
+
+        private Header( VariableLengthInteger identifier, long position, long dataPosition, long dataSize ) {
+            this.identifier = identifier;
+            this.position = position;
+            this.dataPosition = dataPosition;
+            end = dataPosition + dataSize;
+        }
+
+    }
+
+    /** The sequence of the source ranges and the literal bytes that form the output. */
+    private final class Plan {
+
+        private final List<long[]> ranges = new ArrayList<long[]>();
+
+        private final List<byte[]> literals = new ArrayList<byte[]>();
+
+        private long size;
+
+
+        /**
+         * Adds a source range, merging it with the previous range if they are adjacent.
+         *
+         * @param position the source position
+         * @param length the number of bytes
+         */
+        void addRange( long position, long length ) {
+            if ( !ranges.isEmpty() ) {
+                long[] last = ranges.get( ranges.size() - 1 );
+                if ( last != null && last[ 0 ] + last[ 1 ] == position ) {
+                    last[ 1 ] += length;
+                    size += length;
+                    return;
+                }
+            }
+            ranges.add( new long[]{ position, length } );
+            literals.add( null );
+            size += length;
+        }
+
+        /**
+         * Adds a new element header followed by the contents of the specified plan.
+         *
+         * @param identifier the element identifier
+         * @param children the element data
+         */
+        void addHeader( VariableLengthInteger identifier, Plan children ) {
+            ByteBuffer header = ByteBuffer.allocate( 16 );
+            encoder.encodeVariableLengthInteger( header, identifier );
+            encoder.encodeVariableLengthInteger( header, VariableLengthInteger.fromPlain( children.size ) );
+            header.flip();
+            byte[] bytes = new byte[ header.remaining() ];
+            header.get( bytes );
+            ranges.add( null );
+            literals.add( bytes );
+            size += bytes.length;
+            ranges.addAll( children.ranges );
+            literals.addAll( children.literals );
+            size += children.size;
+        }
+
+        void writeTo( FileChannel source, WritableByteChannel target ) throws IOException {
+            for ( int i = 0; i < ranges.size(); i++ ) {
+                long[] range = ranges.get( i );
+                if ( range == null ) {
+                    ByteBuffer bytes = ByteBuffer.wrap( literals.get( i ) );
+                    while ( bytes.hasRemaining() ) {
+                        target.write( bytes );
+                    }
+                } else {
+                    long transferred = 0L;
+                    while ( transferred < range[ 1 ] ) {
+                        long count = source.transferTo( range[ 0 ] + transferred, range[ 1 ] - transferred, target );
+                        if ( count <= 0L ) {
+                            throw new EOFException();
+                        }
+                        transferred += count;
+                    }
+                }
+            }
+        }
+
+    }
+
+}
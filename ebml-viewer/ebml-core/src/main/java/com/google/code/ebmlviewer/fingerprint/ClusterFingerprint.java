@@ -0,0 +1,148 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.fingerprint;
+
+import java.util.Arrays;
+
+/**
+ * Contains the fingerprints of the frames of a single {@code Cluster} element in the file order.
+ * <p/>
+ * The frame fingerprints are the hashes of the frame payloads without the block headers and the lacing data, so a
+ * frame has the same fingerprint regardless of the track number, the timecode and the lacing used by the container.
+ */
+public final class ClusterFingerprint {
+
+    private final long position;
+
+    private final long[] tracks;
+
+    private final long[] frames;
+
+    private final int size;
+
+    private final long fingerprint;
+
+
+    ClusterFingerprint( long position, long[] tracks, long[] frames, int size ) {
+        this.position = position;
+        this.tracks = tracks;
+        this.frames = frames;
+        this.size = size;
+        fingerprint = PayloadHash.hash( frames, size );
+    }
+
+
+    /**
+     * Returns the file position of the cluster element.
+     *
+     * @return the cluster position
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Returns the fingerprint of the whole cluster, the hash of the sequence of its frame fingerprints.
+     *
+     * @return the cluster fingerprint
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Returns the number of frames in the cluster.
+     *
+     * @return the number of frames
+     */
+    public int getFrameCount() {
+        return size;
+    }
+
+    /**
+     * Returns the track number of the specified frame.
+     *
+     * @param index the frame index
+     *
+     * @return the track number
+     *
+     * @throws IndexOutOfBoundsException if {@code index} is out of range
+     */
+    public long getTrackNumber( int index ) {
+        checkIndex( index );
+        return tracks[ index ];
+    }
+
+    /**
+     * Returns the fingerprint of the specified frame.
+     *
+     * @param index the frame index
+     *
+     * @return the frame fingerprint
+     *
+     * @throws IndexOutOfBoundsException if {@code index} is out of range
+     */
+    public long getFrameFingerprint( int index ) {
+        checkIndex( index );
+        return frames[ index ];
+    }
+
+    private void checkIndex( int index ) {
+        if ( index < 0 || index >= size ) {
+            throw new IndexOutOfBoundsException( String.format( "index %s is out of range [0, %s)", index, size ) );
+        }
+    }
+
+
+    /**
+     * Returns the fingerprints of the frames of the specified track.
+     *
+     * @param trackNumber the track number
+     *
+     * @return the frame fingerprints in the file order
+     */
+    public long[] getTrackFingerprints( long trackNumber ) {
+        long[] result = new long[ size ];
+        int count = 0;
+        for ( int i = 0; i < size; i++ ) {
+            if ( tracks[ i ] == trackNumber ) {
+                result[ count++ ] = frames[ i ];
+            }
+        }
+        return Arrays.copyOf( result, count );
+    }
+
+
+    @Override
+    public String toString() {
+        return String.format( "ClusterFingerprint(%s, %s, %016x)", position, size, fingerprint );
+    }
+
+}
@@ -0,0 +1,102 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.fingerprint;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/** Contains the payload fingerprints of all clusters of a file in the file order. */
+public final class FileFingerprint {
+
+    private final List<ClusterFingerprint> clusters;
+
+
+    FileFingerprint( List<ClusterFingerprint> clusters ) {
+        this.clusters = Collections.unmodifiableList( clusters );
+    }
+
+
+    /**
+     * Returns the fingerprints of the clusters.
+     *
+     * @return the unmodifiable list of the cluster fingerprints in the file order
+     */
+    public List<ClusterFingerprint> getClusters() {
+        return clusters;
+    }
+
+    /**
+     * Returns the numbers of the tracks that have at least one frame.
+     *
+     * @return the sorted set of the track numbers
+     */
+    public SortedSet<Long> getTracks() {
+        SortedSet<Long> result = new TreeSet<Long>();
+        for ( ClusterFingerprint cluster : clusters ) {
+            for ( int i = 0; i < cluster.getFrameCount(); i++ ) {
+                result.add( cluster.getTrackNumber( i ) );
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the fingerprints of the frames of the specified track across all clusters.
+     *
+     * @param trackNumber the track number
+     *
+     * @return the frame fingerprints in the file order
+     */
+    public long[] getTrackFingerprints( long trackNumber ) {
+        long[] result = new long[ 64 ];
+        int size = 0;
+        for ( ClusterFingerprint cluster : clusters ) {
+            for ( int i = 0; i < cluster.getFrameCount(); i++ ) {
+                if ( cluster.getTrackNumber( i ) == trackNumber ) {
+                    if ( size == result.length ) {
+                        result = Arrays.copyOf( result, size * 2 );
+                    }
+                    result[ size++ ] = cluster.getFrameFingerprint( i );
+                }
+            }
+        }
+        return Arrays.copyOf( result, size );
+    }
+
+
+    @Override
+    public String toString() {
+        return String.format( "FileFingerprint(%s clusters)", clusters.size() );
+    }
+
+}
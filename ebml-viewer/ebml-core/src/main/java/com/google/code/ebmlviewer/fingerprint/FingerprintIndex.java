@@ -0,0 +1,213 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.fingerprint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Indexes the per-track frame fingerprint sequences of many files and finds the runs of frames shared with a query
+ * file.
+ * <p/>
+ * The index maps every frame fingerprint to the list of its occurrences. Both the hash table and the occurrence lists
+ * are stored in the parallel primitive arrays, so an indexed frame occupies about 24 bytes and requires no per-frame
+ * objects.
+ */
+public final class FingerprintIndex {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+
+    private final List<String> sequenceNames = new ArrayList<String>();
+
+    private long[] sequenceTracks = new long[ 16 ];
+
+    private final List<long[]> sequences = new ArrayList<long[]>();
+
+
+    /** The open-addressing table of the distinct fingerprints, the capacity is a power of two. */
+    private long[] tableFingerprints = new long[ INITIAL_CAPACITY ];
+
+    /** The index of the last occurrence of the fingerprint plus one, or {@code 0} for an empty slot. */
+    private int[] tableHeads = new int[ INITIAL_CAPACITY ];
+
+    private int tableSize;
+
+
+    private int[] occurrenceSequences = new int[ INITIAL_CAPACITY ];
+
+    private int[] occurrenceOffsets = new int[ INITIAL_CAPACITY ];
+
+    /** The index of the previous occurrence of the same fingerprint plus one, or {@code 0} if there is none. */
+    private int[] occurrenceNext = new int[ INITIAL_CAPACITY ];
+
+    private int occurrenceCount;
+
+
+    /**
+     * Adds the tracks of the specified file to this index.
+     *
+     * @param name the name that identifies the file in the search results
+     * @param fingerprint the file fingerprint
+     *
+     * @throws IllegalArgumentException if {@code name} or {@code fingerprint} is {@code null}
+     */
+    public void add( String name, FileFingerprint fingerprint ) {
+        if ( name == null ) {
+            throw new IllegalArgumentException( "name is null" );
+        }
+        if ( fingerprint == null ) {
+            throw new IllegalArgumentException( "fingerprint is null" );
+        }
+        for ( long track : fingerprint.getTracks() ) {
+            long[] frames = fingerprint.getTrackFingerprints( track );
+            int sequence = sequences.size();
+            sequences.add( frames );
+            sequenceNames.add( name );
+            if ( sequence == sequenceTracks.length ) {
+                sequenceTracks = Arrays.copyOf( sequenceTracks, sequence * 2 );
+            }
+            sequenceTracks[ sequence ] = track;
+            for ( int i = 0; i < frames.length; i++ ) {
+                addOccurrence( frames[ i ], sequence, i );
+            }
+        }
+    }
+
+    /**
+     * Returns the number of indexed frames.
+     *
+     * @return the number of frames
+     */
+    public int size() {
+        return occurrenceCount;
+    }
+
+
+    /**
+     * Finds the runs of at least the specified number of consecutive frames that the tracks of the specified file share
+     * with the tracks of the indexed files. Each run is reported once, starting at its first shared frame.
+     *
+     * @param fingerprint the fingerprint of the query file
+     * @param minimumLength the minimum number of frames in a run
+     *
+     * @return the shared runs
+     *
+     * @throws IllegalArgumentException if {@code fingerprint} is {@code null}
+     * @throws IllegalArgumentException if {@code minimumLength} is not positive
+     */
+    public List<SharedRun> findSharedRuns( FileFingerprint fingerprint, int minimumLength ) {
+        if ( fingerprint == null ) {
+            throw new IllegalArgumentException( "fingerprint is null" );
+        }
+        if ( minimumLength <= 0 ) {
+            throw new IllegalArgumentException( "minimumLength is not positive" );
+        }
+        List<SharedRun> result = new ArrayList<SharedRun>();
+        for ( long track : fingerprint.getTracks() ) {
+            long[] frames = fingerprint.getTrackFingerprints( track );
+            for ( int i = 0; i < frames.length; i++ ) {
+                int slot = findSlot( frames[ i ] );
+                for ( int occurrence = tableHeads[ slot ]; occurrence != 0; occurrence = occurrenceNext[ occurrence - 1 ] ) {
+                    int sequence = occurrenceSequences[ occurrence - 1 ];
+                    int offset = occurrenceOffsets[ occurrence - 1 ];
+                    long[] other = sequences.get( sequence );
+                    if ( i > 0 && offset > 0 && frames[ i - 1 ] == other[ offset - 1 ] ) {
+                        // the frame continues a run that was already reported
+                        continue;
+                    }
+                    int length = 1;
+                    while ( i + length < frames.length && offset + length < other.length && frames[ i + length ] == other[ offset + length ] ) {
+                        length++;
+                    }
+                    if ( length >= minimumLength ) {
+                        result.add( new SharedRun( sequenceNames.get( sequence ), track, i, sequenceTracks[ sequence ], offset, length ) );
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+
+    private void addOccurrence( long fingerprint, int sequence, int offset ) {
+        if ( occurrenceCount == occurrenceOffsets.length ) {
+            int capacity = occurrenceCount * 3 / 2 + 1;
+            occurrenceSequences = Arrays.copyOf( occurrenceSequences, capacity );
+            occurrenceOffsets = Arrays.copyOf( occurrenceOffsets, capacity );
+            occurrenceNext = Arrays.copyOf( occurrenceNext, capacity );
+        }
+        int slot = findSlot( fingerprint );
+        if ( tableHeads[ slot ] == 0 ) {
+            tableFingerprints[ slot ] = fingerprint;
+            tableSize++;
+        }
+        occurrenceSequences[ occurrenceCount ] = sequence;
+        occurrenceOffsets[ occurrenceCount ] = offset;
+        occurrenceNext[ occurrenceCount ] = tableHeads[ slot ];
+        occurrenceCount++;
+        tableHeads[ slot ] = occurrenceCount;
+        if ( tableSize * 2 > tableHeads.length ) {
+            rehash();
+        }
+    }
+
+    /** Returns the slot of the specified fingerprint, or the empty slot where it should be inserted. */
+    private int findSlot( long fingerprint ) {
+        int mask = tableHeads.length - 1;
+        int slot = ( int ) ( fingerprint ^ fingerprint >>> 32 ) & mask;
+        while ( tableHeads[ slot ] != 0 && tableFingerprints[ slot ] != fingerprint ) {
+            slot = slot + 1 & mask;
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        long[] fingerprints = tableFingerprints;
+        int[] heads = tableHeads;
+        tableFingerprints = new long[ heads.length * 2 ];
+        tableHeads = new int[ heads.length * 2 ];
+        for ( int i = 0; i < heads.length; i++ ) {
+            if ( heads[ i ] != 0 ) {
+                int slot = findSlot( fingerprints[ i ] );
+                tableFingerprints[ slot ] = fingerprints[ i ];
+                tableHeads[ slot ] = heads[ i ];
+            }
+        }
+    }
+
+
+    @Override
+    public String toString() {
+        return String.format( "FingerprintIndex(%s, %s)", sequences.size(), occurrenceCount );
+    }
+
+}
@@ -0,0 +1,293 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.fingerprint;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.code.ebmlviewer.block.BlockFrames;
+import com.google.code.ebmlviewer.block.BlockHeader;
+import com.google.code.ebmlviewer.core.EbmlDecoder;
+import com.google.code.ebmlviewer.core.EbmlFormatException;
+import com.google.code.ebmlviewer.core.VariableLengthInteger;
+import com.google.code.ebmlviewer.io.EbmlFile;
+import com.google.code.ebmlviewer.io.EbmlFileEntry;
+import com.google.code.ebmlviewer.io.EbmlIoException;
+
+/**
+ * Computes the payload fingerprints of Matroska files for the cross-file deduplication.
+ * <p/>
+ * The clusters are located with the {@link EbmlFile}, which reads only the element headers of the segment children.
+ * The data of each cluster is then memory-mapped and its {@code SimpleBlock} and {@code Block} elements are decoded
+ * directly from the mapped buffer: the block headers and the lacing data are skipped and each frame payload is hashed
+ * with the {@link PayloadHash}. No media data is decoded or copied.
+ * <p/>
+ * If the fingerprinter is created with an executor, the clusters are hashed concurrently by the executor threads.
+ */
+public final class PayloadFingerprinter {
+
+    private static final VariableLengthInteger SEGMENT = VariableLengthInteger.fromEncoded( 0x18538067 );
+
+    private static final VariableLengthInteger CLUSTER = VariableLengthInteger.fromEncoded( 0x1F43B675 );
+
+    private static final long SIMPLE_BLOCK = 0xA3;
+
+    private static final long BLOCK_GROUP = 0xA0;
+
+    private static final long BLOCK = 0xA1;
+
+
+    private final ExecutorService executor;
+
+
+    /** Creates a new {@code PayloadFingerprinter} that hashes the clusters in the calling thread. */
+    public PayloadFingerprinter() {
+        this( null );
+    }
+
+    /**
+     * Creates a new {@code PayloadFingerprinter}.
+     * <p/>
+     * The executor is not shut down by the fingerprinter.
+     *
+     * @param executor the executor that hashes the clusters, or {@code null} to hash the clusters in the calling thread
+     */
+    public PayloadFingerprinter( ExecutorService executor ) {
+        this.executor = executor;
+    }
+
+
+    /**
+     * Computes the fingerprint of the specified file.
+     *
+     * @param file the file to fingerprint
+     *
+     * @return the file fingerprint
+     *
+     * @throws IllegalArgumentException if {@code file} is {@code null}
+     * @throws IOException if an I/O error has occurred or the file structure is not valid
+     */
+    public FileFingerprint fingerprint( File file ) throws IOException {
+        if ( file == null ) {
+            throw new IllegalArgumentException( "file is null" );
+        }
+        FileInputStream stream = new FileInputStream( file );
+        try {
+            return fingerprint( stream.getChannel() );
+        } finally {
+            try {
+                stream.close();
+            } catch ( IOException e ) {
+                Logger.getLogger( getClass().getName() ).log( Level.WARNING, "exception thrown while closing an I/O resource", e );
+            }
+        }
+    }
+
+    /**
+     * Computes the fingerprint of the file accessed through the specified channel.
+     * <p/>
+     * The channel will not be closed by the fingerprinter.
+     *
+     * @param channel the file channel
+     *
+     * @return the file fingerprint
+     *
+     * @throws IllegalArgumentException if {@code channel} is {@code null}
+     * @throws IOException if an I/O error has occurred or the file structure is not valid
+     */
+    public FileFingerprint fingerprint( FileChannel channel ) throws IOException {
+        if ( channel == null ) {
+            throw new IllegalArgumentException( "channel is null" );
+        }
+        List<Callable<ClusterFingerprint>> tasks = new ArrayList<Callable<ClusterFingerprint>>();
+        EbmlFile file = new EbmlFile( channel );
+        for ( EbmlFileEntry entry : file.getEntries() ) {
+            if ( SEGMENT.equals( entry.getIdentifier() ) ) {
+                for ( EbmlFileEntry child : entry.getEntries() ) {
+                    if ( CLUSTER.equals( child.getIdentifier() ) ) {
+                        if ( child.getSize().isReserved() ) {
+                            throw new EbmlIoException( "clusters of unknown size are not supported" );
+                        }
+                        tasks.add( new ClusterTask( channel, child.getEntryPosition(), child.getDataPosition(), child.getSize().getPlainValue() ) );
+                    }
+                }
+            }
+        }
+        List<ClusterFingerprint> clusters = new ArrayList<ClusterFingerprint>( tasks.size() );
+        if ( executor == null ) {
+            for ( Callable<ClusterFingerprint> task : tasks ) {
+                clusters.add( call( task ) );
+            }
+        } else {
+            List<Future<ClusterFingerprint>> futures = new ArrayList<Future<ClusterFingerprint>>( tasks.size() );
+            try {
+                for ( Callable<ClusterFingerprint> task : tasks ) {
+                    futures.add( executor.submit( task ) );
+                }
+                for ( Future<ClusterFingerprint> future : futures ) {
+                    clusters.add( get( future ) );
+                }
+            } finally {
+                for ( Future<ClusterFingerprint> future : futures ) {
+                    future.cancel( true );
+                }
+            }
+        }
+        return new FileFingerprint( clusters );
+    }
+
+    private static ClusterFingerprint call( Callable<ClusterFingerprint> task ) throws IOException {
+        try {
+            return task.call();
+        } catch ( IOException e ) {
+            throw e;
+        } catch ( RuntimeException e ) {
+            throw e;
+        } catch ( Exception e ) {
+            throw new AssertionError( e );
+        }
+    }
+
+    private static ClusterFingerprint get( Future<ClusterFingerprint> future ) throws IOException {
+        try {
+            return future.get();
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new EbmlIoException( "interrupted while waiting for the cluster fingerprints", e );
+        } catch ( ExecutionException e ) {
+            Throwable cause = e.getCause();
+            if ( cause instanceof IOException ) {
+                throw ( IOException ) cause;
+            } else if ( cause instanceof RuntimeException ) {
+                throw ( RuntimeException ) cause;
+            } else {
+                throw ( Error ) cause;
+            }
+        }
+    }
+
+
+    /** Hashes the frames of a single cluster from its memory-mapped data. */
+    private static final class ClusterTask implements Callable<ClusterFingerprint> {
+
+        private final FileChannel channel;
+
+        private final long position;
+
+        private final long dataPosition;
+
+        private final long size;
+
+
+        private final EbmlDecoder decoder = new EbmlDecoder();
+
+        private long[] tracks = new long[ 64 ];
+
+        private long[] frames = new long[ 64 ];
+
+        private int count;
+
+
+        private ClusterTask( FileChannel channel, long position, long dataPosition, long size ) {
+            this.channel = channel;
+            this.position = position;
+            this.dataPosition = dataPosition;
+            this.size = size;
+        }
+
+
+        @Override
+        public ClusterFingerprint call() throws IOException {
+            if ( size > Integer.MAX_VALUE ) {
+                throw new EbmlIoException( String.format( "cluster at %d is too large: %d", position, size ) );
+            }
+            MappedByteBuffer data = channel.map( FileChannel.MapMode.READ_ONLY, dataPosition, size );
+            try {
+                hashBlocks( data, 0, data.limit() );
+            } catch ( BufferUnderflowException e ) {
+                throw new EbmlIoException( String.format( "cluster at %d is truncated", position ), e );
+            } catch ( EbmlFormatException e ) {
+                throw new EbmlIoException( String.format( "cluster at %d is not valid", position ), e );
+            }
+            return new ClusterFingerprint( position, tracks, frames, count );
+        }
+
+        private void hashBlocks( ByteBuffer data, int start, int end ) throws EbmlIoException {
+            data.position( start );
+            while ( data.position() < end ) {
+                long identifier = decoder.decodeVariableLengthInteger( data ).getEncodedValue();
+                VariableLengthInteger elementSize = decoder.decodeVariableLengthInteger( data );
+                if ( elementSize.isReserved() || elementSize.getPlainValue() > end - data.position() ) {
+                    throw new EbmlIoException( "element size exceeds space remaining in the container" );
+                }
+                int dataStart = data.position();
+                int dataEnd = dataStart + ( int ) elementSize.getPlainValue();
+                if ( identifier == SIMPLE_BLOCK || identifier == BLOCK ) {
+                    hashFrames( data, dataStart, dataEnd );
+                } else if ( identifier == BLOCK_GROUP ) {
+                    hashBlocks( data, dataStart, dataEnd );
+                }
+                data.limit( data.capacity() );
+                data.position( dataEnd );
+            }
+        }
+
+        private void hashFrames( ByteBuffer data, int start, int end ) throws EbmlIoException {
+            data.limit( end );
+            data.position( start );
+            BlockHeader header = BlockHeader.decode( data );
+            for ( ByteBuffer frame : BlockFrames.split( data, header.getLacing() ) ) {
+                if ( count == frames.length ) {
+                    tracks = Arrays.copyOf( tracks, count * 2 );
+                    frames = Arrays.copyOf( frames, count * 2 );
+                }
+                tracks[ count ] = header.getTrackNumber();
+                frames[ count ] = PayloadHash.hash( frame, 0L );
+                count++;
+            }
+        }
+
+    }
+
+}
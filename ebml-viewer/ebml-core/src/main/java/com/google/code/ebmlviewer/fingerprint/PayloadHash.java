@@ -0,0 +1,187 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.fingerprint;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Implements the 64-bit xxHash (XXH64) non-cryptographic hash function over the contents of byte buffers.
+ * <p/>
+ * The hash is computed with the absolute little-endian reads, so the buffers, including the memory-mapped ones, are
+ * neither copied nor modified.
+ */
+public final class PayloadHash {
+
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+
+    private PayloadHash() {
+    }
+
+
+    /**
+     * Computes the hash of the remaining bytes of the specified buffer.
+     *
+     * @param buffer the buffer to hash
+     * @param seed the hash seed
+     *
+     * @return the hash value
+     *
+     * @throws IllegalArgumentException if {@code buffer} is {@code null}
+     */
+    public static long hash( ByteBuffer buffer, long seed ) {
+        if ( buffer == null ) {
+            throw new IllegalArgumentException( "buffer is null" );
+        }
+        return hash( buffer, buffer.position(), buffer.remaining(), seed );
+    }
+
+    /**
+     * Computes the hash of the specified range of the buffer.
+     *
+     * @param buffer the buffer to hash
+     * @param offset the absolute index of the first byte
+     * @param length the number of bytes to hash
+     * @param seed the hash seed
+     *
+     * @return the hash value
+     *
+     * @throws IllegalArgumentException if {@code buffer} is {@code null}
+     * @throws IndexOutOfBoundsException if the range is not within the buffer limit
+     */
+    public static long hash( ByteBuffer buffer, int offset, int length, long seed ) {
+        if ( buffer == null ) {
+            throw new IllegalArgumentException( "buffer is null" );
+        }
+        if ( offset < 0 || length < 0 || offset + length > buffer.limit() ) {
+            throw new IndexOutOfBoundsException( String.format( "range [%d, %d) is out of buffer bounds", offset, offset + length ) );
+        }
+        ByteBuffer in = buffer.order() == ByteOrder.LITTLE_ENDIAN ? buffer : buffer.duplicate().order( ByteOrder.LITTLE_ENDIAN );
+        int end = offset + length;
+        int position = offset;
+        long hash;
+        if ( length >= 32 ) {
+            long v1 = seed + PRIME1 + PRIME2;
+            long v2 = seed + PRIME2;
+            long v3 = seed;
+            long v4 = seed - PRIME1;
+            int limit = end - 32;
+            do {
+                v1 = round( v1, in.getLong( position ) );
+                v2 = round( v2, in.getLong( position + 8 ) );
+                v3 = round( v3, in.getLong( position + 16 ) );
+                v4 = round( v4, in.getLong( position + 24 ) );
+                position += 32;
+            } while ( position <= limit );
+            hash = Long.rotateLeft( v1, 1 ) + Long.rotateLeft( v2, 7 ) + Long.rotateLeft( v3, 12 ) + Long.rotateLeft( v4, 18 );
+            hash = mergeRound( hash, v1 );
+            hash = mergeRound( hash, v2 );
+            hash = mergeRound( hash, v3 );
+            hash = mergeRound( hash, v4 );
+        } else {
+            hash = seed + PRIME5;
+        }
+        hash += length;
+        while ( position + 8 <= end ) {
+            hash = combine( hash, in.getLong( position ) );
+            position += 8;
+        }
+        if ( position + 4 <= end ) {
+            hash ^= ( in.getInt( position ) & 0xffffffffL ) * PRIME1;
+            hash = Long.rotateLeft( hash, 23 ) * PRIME2 + PRIME3;
+            position += 4;
+        }
+        while ( position < end ) {
+            hash ^= ( in.get( position ) & 0xff ) * PRIME5;
+            hash = Long.rotateLeft( hash, 11 ) * PRIME1;
+            position++;
+        }
+        return avalanche( hash );
+    }
+
+
+    /**
+     * Mixes the specified value into the intermediate hash of a sequence of values.
+     *
+     * @param hash the intermediate hash
+     * @param value the next value of the sequence
+     *
+     * @return the updated intermediate hash
+     */
+    static long combine( long hash, long value ) {
+        long result = hash ^ round( 0L, value );
+        return Long.rotateLeft( result, 27 ) * PRIME1 + PRIME4;
+    }
+
+    /**
+     * Computes the hash of a sequence of values.
+     *
+     * @param values the values
+     * @param length the number of values to hash
+     *
+     * @return the hash value
+     */
+    static long hash( long[] values, int length ) {
+        long hash = PRIME5 + 8L * length;
+        for ( int i = 0; i < length; i++ ) {
+            hash = combine( hash, values[ i ] );
+        }
+        return avalanche( hash );
+    }
+
+
+    private static long round( long accumulator, long input ) {
+        return Long.rotateLeft( accumulator + input * PRIME2, 31 ) * PRIME1;
+    }
+
+    private static long mergeRound( long accumulator, long value ) {
+        return ( accumulator ^ round( 0L, value ) ) * PRIME1 + PRIME4;
+    }
+
+    private static long avalanche( long hash ) {
+        long result = hash;
+        result ^= result >>> 33;
+        result *= PRIME2;
+        result ^= result >>> 29;
+        result *= PRIME3;
+        result ^= result >>> 32;
+        return result;
+    }
+
+}
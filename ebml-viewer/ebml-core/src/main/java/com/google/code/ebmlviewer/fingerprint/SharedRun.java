@@ -0,0 +1,118 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.fingerprint;
+
+/** Describes a run of identical consecutive frames shared by a track of the query file and a track of an indexed file. */
+public final class SharedRun {
+
+    private final String name;
+
+    private final long trackNumber;
+
+    private final int offset;
+
+    private final long otherTrackNumber;
+
+    private final int otherOffset;
+
+    private final int length;
+
+
+    SharedRun( String name, long trackNumber, int offset, long otherTrackNumber, int otherOffset, int length ) {
+        this.name = name;
+        this.trackNumber = trackNumber;
+        this.offset = offset;
+        this.otherTrackNumber = otherTrackNumber;
+        this.otherOffset = otherOffset;
+        this.length = length;
+    }
+
+
+    /**
+     * Returns the name of the indexed file that shares the frames.
+     *
+     * @return the file name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the track number in the query file.
+     *
+     * @return the track number
+     */
+    public long getTrackNumber() {
+        return trackNumber;
+    }
+
+    /**
+     * Returns the index of the first shared frame within the track of the query file.
+     *
+     * @return the frame offset
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Returns the track number in the indexed file.
+     *
+     * @return the track number
+     */
+    public long getOtherTrackNumber() {
+        return otherTrackNumber;
+    }
+
+    /**
+     * Returns the index of the first shared frame within the track of the indexed file.
+     *
+     * @return the frame offset
+     */
+    public int getOtherOffset() {
+        return otherOffset;
+    }
+
+    /**
+     * Returns the number of shared frames.
+     *
+     * @return the run length
+     */
+    public int getLength() {
+        return length;
+    }
+
+
+    @Override
+    public String toString() {
+        return String.format( "SharedRun(%s, %s@%s, %s@%s, %s)", name, trackNumber, offset, otherTrackNumber, otherOffset, length );
+    }
+
+}
@@ -0,0 +1,490 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.index;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.google.code.ebmlviewer.core.VariableLengthInteger;
+import com.google.code.ebmlviewer.elements.ElementDescriptor;
+import com.google.code.ebmlviewer.elements.ElementDescriptors;
+import com.google.code.ebmlviewer.elements.ElementType;
+import com.google.code.ebmlviewer.io.EbmlFile;
+import com.google.code.ebmlviewer.io.EbmlFileEntry;
+
+/**
+ * Stores the metadata of the EBML elements outside of the Java heap.
+ * <p/>
+ * Each element occupies a fixed-size record that holds the element position, identifier and size, and the links to
+ * its parent, first child, last child and next sibling. The records are addressed by their {@code long} index and are
+ * stored in chunks of direct or memory-mapped buffers, so the number of stored elements does not affect the heap size
+ * or the garbage collection pauses. The lookups read the fields directly from the buffers with absolute reads and do
+ * not create any objects, except for the {@link #getIdentifier(long)} and {@link #getSize(long)} methods.
+ * <p/>
+ * Every stored file is represented by a root record without an identifier whose children are the top-level elements
+ * of the file.
+ * <p/>
+ * The store is not thread-safe for modification. Once the added records are safely published, any number of threads
+ * can perform the lookups concurrently.
+ */
+public final class EntryStore implements Closeable {
+
+    /** The value of the record links that do not point to a record. */
+    public static final long NONE = -1L;
+
+    /** The default number of records in a chunk. */
+    public static final int DEFAULT_CHUNK_RECORDS = 1 << 16;
+
+
+    private static final int RECORD_SIZE = 56;
+
+    private static final int POSITION = 0;
+
+    /** The plain value of the size in the lower 56 bits and its encoded length in the upper 8 bits. */
+    private static final int SIZE = 8;
+
+    private static final int PARENT = 16;
+
+    private static final int FIRST_CHILD = 24;
+
+    private static final int LAST_CHILD = 32;
+
+    private static final int NEXT_SIBLING = 40;
+
+    /** The encoded identifier, {@code 0} for the file roots, followed by four unused bytes. */
+    private static final int IDENTIFIER = 48;
+
+
+    /**
+     * Creates a new store backed by the direct buffers.
+     *
+     * @param chunkRecords the number of records in a chunk, must be a power of two
+     *
+     * @return the new store
+     *
+     * @throws IllegalArgumentException if {@code chunkRecords} is not a positive power of two or the chunk size exceeds
+     * the maximum buffer size
+     */
+    public static EntryStore allocateDirect( int chunkRecords ) {
+        return new EntryStore( null, chunkRecords );
+    }
+
+    /**
+     * Creates a new store backed by the memory-mapped chunks of the specified file. The file is truncated, grows as the
+     * records are added, and serves only as the backing storage of this store instance.
+     *
+     * @param file the backing file
+     * @param chunkRecords the number of records in a chunk, must be a power of two
+     *
+     * @return the new store
+     *
+     * @throws IllegalArgumentException if {@code file} is {@code null}
+     * @throws IllegalArgumentException if {@code chunkRecords} is not a positive power of two or the chunk size exceeds
+     * the maximum buffer size
+     * @throws IOException if an I/O error has occurred
+     */
+    public static EntryStore map( File file, int chunkRecords ) throws IOException {
+        if ( file == null ) {
+            throw new IllegalArgumentException( "file is null" );
+        }
+        RandomAccessFile backing = new RandomAccessFile( file, "rw" );
+        try {
+            backing.setLength( 0L );
+            return new EntryStore( backing, chunkRecords );
+        } catch ( RuntimeException e ) {
+            backing.close();
+            throw e;
+        }
+    }
+
+
+    private final RandomAccessFile backing;
+
+    private final int chunkShift;
+
+    private final int chunkMask;
+
+    private ByteBuffer[] chunks = new ByteBuffer[ 16 ];
+
+    private long size;
+
+
+    private EntryStore( RandomAccessFile backing, int chunkRecords ) {
+        if ( chunkRecords <= 0 || Integer.bitCount( chunkRecords ) != 1 ) {
+            throw new IllegalArgumentException( "chunkRecords is not a positive power of two" );
+        }
+        if ( chunkRecords > Integer.MAX_VALUE / RECORD_SIZE ) {
+            throw new IllegalArgumentException( "chunkRecords is too large" );
+        }
+        this.backing = backing;
+        chunkShift = Integer.numberOfTrailingZeros( chunkRecords );
+        chunkMask = chunkRecords - 1;
+    }
+
+
+    /**
+     * Releases the buffers of this store and closes the backing file, if any. The store must not be used after it was
+     * closed.
+     *
+     * @throws IOException if an I/O error has occurred
+     */
+    @Override
+    public void close() throws IOException {
+        Arrays.fill( chunks, null );
+        size = 0L;
+        if ( backing != null ) {
+            backing.close();
+        }
+    }
+
+
+    /**
+     * Returns the number of records in this store.
+     *
+     * @return the number of records
+     */
+    public long size() {
+        return size;
+    }
+
+
+    /**
+     * Adds a root record that represents a file.
+     *
+     * @return the index of the root record
+     *
+     * @throws IOException if an I/O error has occurred while extending the backing file
+     */
+    public long addRoot() throws IOException {
+        return append( NONE, 0L, 0L, 0 );
+    }
+
+    /**
+     * Adds a record as the last child of the specified record.
+     *
+     * @param parent the index of the parent record
+     * @param position the file position of the element
+     * @param identifier the element identifier
+     * @param size the element size
+     *
+     * @return the index of the added record
+     *
+     * @throws IllegalArgumentException if {@code identifier} or {@code size} is {@code null}
+     * @throws IllegalArgumentException if {@code identifier} is longer than four bytes
+     * @throws IndexOutOfBoundsException if {@code parent} is out of range
+     * @throws IOException if an I/O error has occurred while extending the backing file
+     */
+    public long add( long parent, long position, VariableLengthInteger identifier, VariableLengthInteger size ) throws IOException {
+        if ( identifier == null ) {
+            throw new IllegalArgumentException( "identifier is null" );
+        }
+        if ( identifier.getEncodedLength() > 4 ) {
+            throw new IllegalArgumentException( "identifier is longer than four bytes: " + identifier );
+        }
+        if ( size == null ) {
+            throw new IllegalArgumentException( "size is null" );
+        }
+        checkIndex( parent );
+        long packedSize = ( long ) size.getEncodedLength() << 56 | size.getPlainValue();
+        return append( parent, position, packedSize, ( int ) identifier.getEncodedValue() );
+    }
+
+    /**
+     * Adds the elements of the specified file, descending into every element that is described as a master element by
+     * the default element descriptors.
+     *
+     * @param file the file to add
+     *
+     * @return the index of the root record of the file
+     *
+     * @throws IllegalArgumentException if {@code file} is {@code null}
+     * @throws IOException if an I/O error has occurred
+     */
+    public long add( EbmlFile file ) throws IOException {
+        return add( file, DefaultDescriptors.DESCRIPTORS );
+    }
+
+    /**
+     * Adds the elements of the specified file, descending into every element that is described as a master element.
+     *
+     * @param file the file to add
+     * @param descriptors the element descriptors used to recognize master elements
+     *
+     * @return the index of the root record of the file
+     *
+     * @throws IllegalArgumentException if {@code file} or {@code descriptors} is {@code null}
+     * @throws IOException if an I/O error has occurred
+     */
+    public long add( EbmlFile file, Map<VariableLengthInteger, ElementDescriptor> descriptors ) throws IOException {
+        if ( file == null ) {
+            throw new IllegalArgumentException( "file is null" );
+        }
+        if ( descriptors == null ) {
+            throw new IllegalArgumentException( "descriptors is null" );
+        }
+        long root = addRoot();
+        add( root, file.getEntries(), descriptors );
+        return root;
+    }
+
+    private void add( long parent, List<EbmlFileEntry> entries, Map<VariableLengthInteger, ElementDescriptor> descriptors ) throws IOException {
+        for ( EbmlFileEntry entry : entries ) {
+            long record = add( parent, entry.getEntryPosition(), entry.getIdentifier(), entry.getSize() );
+            ElementDescriptor descriptor = descriptors.get( entry.getIdentifier() );
+            if ( descriptor != null && descriptor.getType() == ElementType.MASTER ) {
+                add( record, entry.getEntries(), descriptors );
+            }
+        }
+    }
+
+    private long append( long parent, long position, long packedSize, int identifier ) throws IOException {
+        long record = size;
+        int chunk = ( int ) ( record >>> chunkShift );
+        if ( chunk == chunks.length ) {
+            chunks = Arrays.copyOf( chunks, chunk * 2 );
+        }
+        if ( chunks[ chunk ] == null ) {
+            chunks[ chunk ] = allocateChunk( chunk );
+        }
+        ByteBuffer buffer = chunks[ chunk ];
+        int offset = ( int ) ( record & chunkMask ) * RECORD_SIZE;
+        buffer.putLong( offset + POSITION, position );
+        buffer.putLong( offset + SIZE, packedSize );
+        buffer.putLong( offset + PARENT, parent );
+        buffer.putLong( offset + FIRST_CHILD, NONE );
+        buffer.putLong( offset + LAST_CHILD, NONE );
+        buffer.putLong( offset + NEXT_SIBLING, NONE );
+        buffer.putInt( offset + IDENTIFIER, identifier );
+        size++;
+        if ( parent != NONE ) {
+            long last = getLong( parent, LAST_CHILD );
+            if ( last == NONE ) {
+                putLong( parent, FIRST_CHILD, record );
+            } else {
+                putLong( last, NEXT_SIBLING, record );
+            }
+            putLong( parent, LAST_CHILD, record );
+        }
+        return record;
+    }
+
+    private ByteBuffer allocateChunk( int chunk ) throws IOException {
+        int capacity = ( chunkMask + 1 ) * RECORD_SIZE;
+        if ( backing == null ) {
+            return ByteBuffer.allocateDirect( capacity );
+        }
+        return backing.getChannel().map( FileChannel.MapMode.READ_WRITE, ( long ) chunk * capacity, capacity );
+    }
+
+
+    /**
+     * Returns the file position of the element.
+     *
+     * @param record the record index
+     *
+     * @return the element position
+     *
+     * @throws IndexOutOfBoundsException if {@code record} is out of range
+     */
+    public long getPosition( long record ) {
+        return getLong( record, POSITION );
+    }
+
+    /**
+     * Returns the file position of the element data.
+     *
+     * @param record the record index
+     *
+     * @return the element data position
+     *
+     * @throws IndexOutOfBoundsException if {@code record} is out of range
+     */
+    public long getDataPosition( long record ) {
+        int identifier = getInt( record, IDENTIFIER );
+        int identifierLength = identifier == 0 ? 0 : 4 - Integer.numberOfLeadingZeros( identifier ) / 8;
+        return getLong( record, POSITION ) + identifierLength + ( int ) ( getLong( record, SIZE ) >>> 56 );
+    }
+
+    /**
+     * Returns the encoded value of the element identifier.
+     *
+     * @param record the record index
+     *
+     * @return the encoded identifier, or {@code 0} for the file roots
+     *
+     * @throws IndexOutOfBoundsException if {@code record} is out of range
+     */
+    public long getEncodedIdentifier( long record ) {
+        return getInt( record, IDENTIFIER ) & 0xffffffffL;
+    }
+
+    /**
+     * Returns the element identifier.
+     *
+     * @param record the record index
+     *
+     * @return the element identifier, or {@code null} for the file roots
+     *
+     * @throws IndexOutOfBoundsException if {@code record} is out of range
+     */
+    public VariableLengthInteger getIdentifier( long record ) {
+        long identifier = getEncodedIdentifier( record );
+        return identifier == 0L ? null : VariableLengthInteger.fromEncoded( identifier );
+    }
+
+    /**
+     * Returns the plain value of the element size.
+     *
+     * @param record the record index
+     *
+     * @return the element data size, or {@code 0} for the file roots
+     *
+     * @throws IndexOutOfBoundsException if {@code record} is out of range
+     */
+    public long getPlainSize( long record ) {
+        return getLong( record, SIZE ) & 0x00ffffffffffffffL;
+    }
+
+    /**
+     * Returns the element size.
+     *
+     * @param record the record index
+     *
+     * @return the element size, or {@code null} for the file roots
+     *
+     * @throws IndexOutOfBoundsException if {@code record} is out of range
+     */
+    public VariableLengthInteger getSize( long record ) {
+        long size = getLong( record, SIZE );
+        int length = ( int ) ( size >>> 56 );
+        return length == 0 ? null : VariableLengthInteger.fromPlain( size & 0x00ffffffffffffffL, length );
+    }
+
+    /**
+     * Returns the parent of the element.
+     *
+     * @param record the record index
+     *
+     * @return the index of the parent record, or {@link #NONE} for the file roots
+     *
+     * @throws IndexOutOfBoundsException if {@code record} is out of range
+     */
+    public long getParent( long record ) {
+        return getLong( record, PARENT );
+    }
+
+    /**
+     * Returns the first child of the element.
+     *
+     * @param record the record index
+     *
+     * @return the index of the first child record, or {@link #NONE} if the element has no children
+     *
+     * @throws IndexOutOfBoundsException if {@code record} is out of range
+     */
+    public long getFirstChild( long record ) {
+        return getLong( record, FIRST_CHILD );
+    }
+
+    /**
+     * Returns the next sibling of the element.
+     *
+     * @param record the record index
+     *
+     * @return the index of the next sibling record, or {@link #NONE} if the element is the last child of its parent
+     *
+     * @throws IndexOutOfBoundsException if {@code record} is out of range
+     */
+    public long getNextSibling( long record ) {
+        return getLong( record, NEXT_SIBLING );
+    }
+
+    /**
+     * Finds the first child of the element with the specified identifier.
+     *
+     * @param record the record index
+     * @param identifier the encoded identifier of the child
+     *
+     * @return the index of the child record, or {@link #NONE} if there is no such child
+     *
+     * @throws IndexOutOfBoundsException if {@code record} is out of range
+     */
+    public long findChild( long record, long identifier ) {
+        for ( long child = getFirstChild( record ); child != NONE; child = getNextSibling( child ) ) {
+            if ( getEncodedIdentifier( child ) == identifier ) {
+                return child;
+            }
+        }
+        return NONE;
+    }
+
+
+    private void checkIndex( long record ) {
+        if ( record < 0L || record >= size ) {
+            throw new IndexOutOfBoundsException( String.format( "record %s is out of range [0, %s)", record, size ) );
+        }
+    }
+
+    private long getLong( long record, int field ) {
+        checkIndex( record );
+        return chunks[ ( int ) ( record >>> chunkShift ) ].getLong( ( int ) ( record & chunkMask ) * RECORD_SIZE + field );
+    }
+
+    private int getInt( long record, int field ) {
+        checkIndex( record );
+        return chunks[ ( int ) ( record >>> chunkShift ) ].getInt( ( int ) ( record & chunkMask ) * RECORD_SIZE + field );
+    }
+
+    private void putLong( long record, int field, long value ) {
+        chunks[ ( int ) ( record >>> chunkShift ) ].putLong( ( int ) ( record & chunkMask ) * RECORD_SIZE + field, value );
+    }
+
+
+    @Override
+    public String toString() {
+        return String.format( "EntryStore(%s)", size );
+    }
+
+
+    /** Loads the default element descriptors on the first use. */
+    private static final class DefaultDescriptors {
+
+        private static final Map<VariableLengthInteger, ElementDescriptor> DESCRIPTORS = ElementDescriptors.getDefaultDescriptors();
+
+    }
+
+}
@@ -0,0 +1,237 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.index;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Maps the timestamps to the file positions for every track of a segment.
+ * <p/>
+ * The index can be built by the {@link SeekIndexBuilder} while scanning the file, stored with the
+ * {@link #writeTo(DataOutput)} method and later restored with the {@link #readFrom(DataInput)} method without scanning
+ * the file again.
+ */
+public final class SeekIndex {
+
+    /** The magic number of the persisted index, "EBIX". */
+    private static final int MAGIC = 0x45424958;
+
+    private static final int VERSION = 1;
+
+    /** The default value of the {@code TimecodeScale} element. */
+    public static final long DEFAULT_TIMECODE_SCALE = 1000000L;
+
+
+    private final Map<Long, TrackIndex> tracks = new TreeMap<Long, TrackIndex>();
+
+    private long timecodeScale = DEFAULT_TIMECODE_SCALE;
+
+
+    /**
+     * Returns the timecode scale of the indexed segment, the number of nanoseconds in one timestamp unit.
+     *
+     * @return the timecode scale
+     */
+    public long getTimecodeScale() {
+        return timecodeScale;
+    }
+
+    /**
+     * Sets the timecode scale of the indexed segment.
+     *
+     * @param timecodeScale the timecode scale
+     *
+     * @throws IllegalArgumentException if {@code timecodeScale} is not positive
+     */
+    public void setTimecodeScale( long timecodeScale ) {
+        if ( timecodeScale <= 0L ) {
+            throw new IllegalArgumentException( "timecodeScale is not positive" );
+        }
+        this.timecodeScale = timecodeScale;
+    }
+
+
+    /**
+     * Returns the indices of all tracks in the order of the track numbers.
+     *
+     * @return the track indices
+     */
+    public Collection<TrackIndex> getTracks() {
+        return new ArrayList<TrackIndex>( tracks.values() );
+    }
+
+    /**
+     * Returns the index of the specified track.
+     *
+     * @param trackNumber the track number
+     *
+     * @return the track index, or {@code null} if the track has no seek points
+     */
+    public TrackIndex getTrack( long trackNumber ) {
+        return tracks.get( trackNumber );
+    }
+
+    /**
+     * Adds a seek point to the index of the specified track, creating the track index if necessary.
+     *
+     * @param trackNumber the track number
+     * @param timestamp the keyframe timestamp
+     * @param clusterPosition the file position of the cluster
+     * @param blockPosition the file position of the block, or {@code -1} if not known
+     */
+    public void add( long trackNumber, long timestamp, long clusterPosition, long blockPosition ) {
+        TrackIndex track = tracks.get( trackNumber );
+        if ( track == null ) {
+            track = new TrackIndex( trackNumber );
+            tracks.put( trackNumber, track );
+        }
+        track.add( timestamp, clusterPosition, blockPosition );
+    }
+
+    /**
+     * Adds all seek points of the specified index to this index.
+     *
+     * @param index the index to merge into this index
+     *
+     * @throws IllegalArgumentException if {@code index} is {@code null}
+     */
+    public void merge( SeekIndex index ) {
+        if ( index == null ) {
+            throw new IllegalArgumentException( "index is null" );
+        }
+        for ( TrackIndex track : index.tracks.values() ) {
+            TrackIndex existing = tracks.get( track.getTrackNumber() );
+            if ( existing == null ) {
+                existing = new TrackIndex( track.getTrackNumber() );
+                tracks.put( track.getTrackNumber(), existing );
+            }
+            existing.merge( track );
+        }
+    }
+
+
+    /**
+     * Finds the keyframe of the specified track to start playing from in order to reach the specified time.
+     *
+     * @param trackNumber the track number
+     * @param time the target time in nanoseconds
+     *
+     * @return the file position of the block if known, otherwise the file position of the cluster, or {@code -1} if the
+     *         track has no keyframes before the specified time
+     */
+    public long seek( long trackNumber, long time ) {
+        TrackIndex track = tracks.get( trackNumber );
+        if ( track == null ) {
+            return -1L;
+        }
+        int index = track.find( time / timecodeScale );
+        if ( index < 0 ) {
+            return -1L;
+        }
+        long blockPosition = track.getBlockPosition( index );
+        return blockPosition >= 0L ? blockPosition : track.getClusterPosition( index );
+    }
+
+
+    /**
+     * Writes this index to the specified output.
+     *
+     * @param output the output to write to
+     *
+     * @throws IllegalArgumentException if {@code output} is {@code null}
+     * @throws IOException if an I/O error has occurred
+     */
+    public void writeTo( DataOutput output ) throws IOException {
+        if ( output == null ) {
+            throw new IllegalArgumentException( "output is null" );
+        }
+        output.writeInt( MAGIC );
+        output.writeInt( VERSION );
+        output.writeLong( timecodeScale );
+        output.writeInt( tracks.size() );
+        for ( TrackIndex track : tracks.values() ) {
+            output.writeLong( track.getTrackNumber() );
+            output.writeInt( track.size() );
+            for ( int i = 0; i < track.size(); i++ ) {
+                output.writeLong( track.getTimestamp( i ) );
+                output.writeLong( track.getClusterPosition( i ) );
+                output.writeLong( track.getBlockPosition( i ) );
+            }
+        }
+    }
+
+    /**
+     * Reads an index previously written by the {@link #writeTo(DataOutput)} method.
+     *
+     * @param input the input to read from
+     *
+     * @return the index
+     *
+     * @throws IllegalArgumentException if {@code input} is {@code null}
+     * @throws IOException if an I/O error has occurred or if the input does not contain a valid index
+     */
+    public static SeekIndex readFrom( DataInput input ) throws IOException {
+        if ( input == null ) {
+            throw new IllegalArgumentException( "input is null" );
+        }
+        if ( input.readInt() != MAGIC ) {
+            throw new IOException( "input does not contain a seek index" );
+        }
+        int version = input.readInt();
+        if ( version != VERSION ) {
+            throw new IOException( String.format( "seek index version %s is not supported", version ) );
+        }
+        SeekIndex index = new SeekIndex();
+        index.setTimecodeScale( input.readLong() );
+        int trackCount = input.readInt();
+        for ( int i = 0; i < trackCount; i++ ) {
+            TrackIndex track = new TrackIndex( input.readLong() );
+            int size = input.readInt();
+            for ( int j = 0; j < size; j++ ) {
+                track.add( input.readLong(), input.readLong(), input.readLong() );
+            }
+            index.tracks.put( track.getTrackNumber(), track );
+        }
+        return index;
+    }
+
+
+    @Override
+    public String toString() {
+        return String.format( "SeekIndex(%s, %s)", timecodeScale, tracks.values() );
+    }
+
+}
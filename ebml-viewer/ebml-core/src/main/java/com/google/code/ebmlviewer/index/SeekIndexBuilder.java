@@ -0,0 +1,425 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.index;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import com.google.code.ebmlviewer.block.BlockHeader;
+import com.google.code.ebmlviewer.core.EbmlDecoder;
+import com.google.code.ebmlviewer.core.EbmlFormatException;
+import com.google.code.ebmlviewer.core.VariableLengthInteger;
+import com.google.code.ebmlviewer.io.EbmlIoException;
+import com.google.code.ebmlviewer.stream.EbmlStreamReader;
+
+/**
+ * Builds the {@link SeekIndex} incrementally from the elements encountered while scanning a Matroska file.
+ * <p/>
+ * The builder can be driven by the {@link #scan(EbmlStreamReader)} and {@link #scan(File)} methods, or by any
+ * other code that already walks the file, which calls the element methods such as {@link #startCluster(long)} and
+ * {@link #simpleBlock(long, BlockHeader)} in the file order. Only the keyframes are indexed: the {@code SimpleBlock}
+ * elements with the keyframe flag and the {@code Block} elements of the {@code BlockGroup} elements without
+ * {@code ReferenceBlock} elements. The {@code CuePoint} elements are merged into the same index, so the index of a file
+ * with {@code Cues} is complete even if only a part of the clusters was scanned.
+ */
+public final class SeekIndexBuilder {
+
+    private static final VariableLengthInteger SEGMENT = VariableLengthInteger.fromEncoded( 0x18538067 );
+
+    private static final VariableLengthInteger INFO = VariableLengthInteger.fromEncoded( 0x1549A966 );
+
+    private static final VariableLengthInteger TIMECODE_SCALE = VariableLengthInteger.fromEncoded( 0x2AD7B1 );
+
+    private static final VariableLengthInteger CLUSTER = VariableLengthInteger.fromEncoded( 0x1F43B675 );
+
+    private static final VariableLengthInteger TIMECODE = VariableLengthInteger.fromEncoded( 0xE7 );
+
+    private static final VariableLengthInteger SIMPLE_BLOCK = VariableLengthInteger.fromEncoded( 0xA3 );
+
+    private static final VariableLengthInteger BLOCK_GROUP = VariableLengthInteger.fromEncoded( 0xA0 );
+
+    private static final VariableLengthInteger BLOCK = VariableLengthInteger.fromEncoded( 0xA1 );
+
+    private static final VariableLengthInteger REFERENCE_BLOCK = VariableLengthInteger.fromEncoded( 0xFB );
+
+    private static final VariableLengthInteger CUES = VariableLengthInteger.fromEncoded( 0x1C53BB6B );
+
+    private static final VariableLengthInteger CUE_POINT = VariableLengthInteger.fromEncoded( 0xBB );
+
+    private static final VariableLengthInteger CUE_TIME = VariableLengthInteger.fromEncoded( 0xB3 );
+
+    private static final VariableLengthInteger CUE_TRACK_POSITIONS = VariableLengthInteger.fromEncoded( 0xB7 );
+
+    private static final VariableLengthInteger CUE_TRACK = VariableLengthInteger.fromEncoded( 0xF7 );
+
+    private static final VariableLengthInteger CUE_CLUSTER_POSITION = VariableLengthInteger.fromEncoded( 0xF1 );
+
+
+    private final SeekIndex index = new SeekIndex();
+
+    private final EbmlDecoder decoder = new EbmlDecoder();
+
+    private final ByteBuffer buffer = ByteBuffer.allocate( BlockHeader.MAXIMUM_SIZE );
+
+
+    private long segmentDataPosition = -1L;
+
+    private long clusterPosition = -1L;
+
+    private long clusterTimecode;
+
+    private boolean clusterTimecodeKnown;
+
+    /** The keyframes of the current cluster encountered before its timecode. */
+    private long[] pendingTracks = new long[ 16 ];
+
+    private int[] pendingTimecodes = new int[ 16 ];
+
+    private long[] pendingPositions = new long[ 16 ];
+
+    private int pendingCount;
+
+    private long groupBlockPosition = -1L;
+
+    private BlockHeader groupBlockHeader;
+
+    private boolean groupReferenced;
+
+
+    /**
+     * Returns the index built so far.
+     *
+     * @return the seek index
+     */
+    public SeekIndex getIndex() {
+        return index;
+    }
+
+
+    /**
+     * Notifies the builder about the start of a {@code Segment} element.
+     *
+     * @param dataPosition the file position of the segment data, the cluster positions in the {@code Cues} element are
+     * relative to it
+     */
+    public void startSegment( long dataPosition ) {
+        segmentDataPosition = dataPosition;
+    }
+
+    /**
+     * Notifies the builder about the value of the {@code TimecodeScale} element.
+     *
+     * @param timecodeScale the timecode scale
+     */
+    public void timecodeScale( long timecodeScale ) {
+        if ( timecodeScale > 0L ) {
+            index.setTimecodeScale( timecodeScale );
+        }
+    }
+
+    /**
+     * Notifies the builder about the start of a {@code Cluster} element.
+     *
+     * @param position the file position of the cluster element
+     */
+    public void startCluster( long position ) {
+        endCluster();
+        clusterPosition = position;
+    }
+
+    /**
+     * Notifies the builder about the value of the {@code Timecode} element of the current cluster.
+     *
+     * @param timecode the cluster timecode
+     */
+    public void clusterTimecode( long timecode ) {
+        clusterTimecode = timecode;
+        clusterTimecodeKnown = true;
+        for ( int i = 0; i < pendingCount; i++ ) {
+            index.add( pendingTracks[ i ], clusterTimecode + pendingTimecodes[ i ], clusterPosition, pendingPositions[ i ] );
+        }
+        pendingCount = 0;
+    }
+
+    /**
+     * Notifies the builder about a {@code SimpleBlock} element of the current cluster.
+     *
+     * @param position the file position of the block element
+     * @param header the block header
+     */
+    public void simpleBlock( long position, BlockHeader header ) {
+        if ( header.isKeyframe() ) {
+            keyframe( header.getTrackNumber(), header.getTimecode(), position );
+        }
+    }
+
+    /** Notifies the builder about the start of a {@code BlockGroup} element of the current cluster. */
+    public void startBlockGroup() {
+        groupBlockHeader = null;
+        groupBlockPosition = -1L;
+        groupReferenced = false;
+    }
+
+    /**
+     * Notifies the builder about the {@code Block} element of the current block group.
+     *
+     * @param position the file position of the block element
+     * @param header the block header
+     */
+    public void block( long position, BlockHeader header ) {
+        groupBlockHeader = header;
+        groupBlockPosition = position;
+    }
+
+    /** Notifies the builder about a {@code ReferenceBlock} element of the current block group. */
+    public void referenceBlock() {
+        groupReferenced = true;
+    }
+
+    /** Notifies the builder about the end of the current block group. */
+    public void endBlockGroup() {
+        if ( groupBlockHeader != null && !groupReferenced ) {
+            keyframe( groupBlockHeader.getTrackNumber(), groupBlockHeader.getTimecode(), groupBlockPosition );
+        }
+        groupBlockHeader = null;
+    }
+
+    /** Notifies the builder about the end of the current cluster. */
+    public void endCluster() {
+        // the keyframes of a cluster without timecode can not be indexed
+        pendingCount = 0;
+        clusterTimecodeKnown = false;
+        clusterPosition = -1L;
+    }
+
+    /**
+     * Notifies the builder about a track position of a {@code CuePoint} element.
+     *
+     * @param time the value of the {@code CueTime} element
+     * @param trackNumber the value of the {@code CueTrack} element
+     * @param clusterPosition the value of the {@code CueClusterPosition} element, relative to the segment data
+     */
+    public void cuePoint( long time, long trackNumber, long clusterPosition ) {
+        if ( segmentDataPosition >= 0L ) {
+            index.add( trackNumber, time, segmentDataPosition + clusterPosition, -1L );
+        }
+    }
+
+    private void keyframe( long trackNumber, int timecode, long position ) {
+        if ( clusterPosition < 0L ) {
+            return;
+        }
+        if ( clusterTimecodeKnown ) {
+            index.add( trackNumber, clusterTimecode + timecode, clusterPosition, position );
+            return;
+        }
+        if ( pendingCount == pendingTracks.length ) {
+            int capacity = pendingCount * 2;
+            pendingTracks = Arrays.copyOf( pendingTracks, capacity );
+            pendingTimecodes = Arrays.copyOf( pendingTimecodes, capacity );
+            pendingPositions = Arrays.copyOf( pendingPositions, capacity );
+        }
+        pendingTracks[ pendingCount ] = trackNumber;
+        pendingTimecodes[ pendingCount ] = timecode;
+        pendingPositions[ pendingCount ] = position;
+        pendingCount++;
+    }
+
+
+    /**
+     * Scans the top level elements of the specified reader and indexes every segment. Only the headers of the block
+     * elements are read, the rest of the block data is skipped.
+     *
+     * @param reader the reader positioned before the first top level element
+     *
+     * @throws IllegalArgumentException if {@code reader} is {@code null}
+     * @throws IOException if an I/O error has occurred
+     */
+    public void scan( EbmlStreamReader reader ) throws IOException {
+        if ( reader == null ) {
+            throw new IllegalArgumentException( "reader is null" );
+        }
+        while ( reader.next() ) {
+            if ( !SEGMENT.equals( reader.getIdentifier() ) ) {
+                continue;
+            }
+            startSegment( reader.getDataPosition() );
+            reader.enterContainer();
+            while ( reader.next() ) {
+                VariableLengthInteger identifier = reader.getIdentifier();
+                if ( INFO.equals( identifier ) ) {
+                    reader.enterContainer();
+                    while ( reader.next() ) {
+                        if ( TIMECODE_SCALE.equals( reader.getIdentifier() ) ) {
+                            timecodeScale( reader.readUnsignedInteger() );
+                        }
+                    }
+                    reader.leaveContainer();
+                } else if ( CLUSTER.equals( identifier ) ) {
+                    scanCluster( reader );
+                } else if ( CUES.equals( identifier ) ) {
+                    scanCues( reader );
+                }
+            }
+            reader.leaveContainer();
+        }
+    }
+
+    private void scanCluster( EbmlStreamReader reader ) throws IOException {
+        startCluster( reader.getElementPosition() );
+        reader.enterContainer();
+        while ( reader.next() ) {
+            VariableLengthInteger identifier = reader.getIdentifier();
+            if ( TIMECODE.equals( identifier ) ) {
+                clusterTimecode( reader.readUnsignedInteger() );
+            } else if ( SIMPLE_BLOCK.equals( identifier ) ) {
+                simpleBlock( reader.getElementPosition(), readBlockHeader( reader ) );
+            } else if ( BLOCK_GROUP.equals( identifier ) ) {
+                startBlockGroup();
+                reader.enterContainer();
+                while ( reader.next() ) {
+                    if ( BLOCK.equals( reader.getIdentifier() ) ) {
+                        block( reader.getElementPosition(), readBlockHeader( reader ) );
+                    } else if ( REFERENCE_BLOCK.equals( reader.getIdentifier() ) ) {
+                        referenceBlock();
+                    }
+                }
+                reader.leaveContainer();
+                endBlockGroup();
+            }
+        }
+        reader.leaveContainer();
+        endCluster();
+    }
+
+    private BlockHeader readBlockHeader( EbmlStreamReader reader ) throws IOException {
+        buffer.clear();
+        reader.readBinary( buffer );
+        buffer.flip();
+        return decodeBlockHeader( reader.getElementPosition() );
+    }
+
+    private void scanCues( EbmlStreamReader reader ) throws IOException {
+        reader.enterContainer();
+        while ( reader.next() ) {
+            if ( !CUE_POINT.equals( reader.getIdentifier() ) ) {
+                continue;
+            }
+            long time = -1L;
+            long[] positions = new long[ 0 ];
+            reader.enterContainer();
+            while ( reader.next() ) {
+                if ( CUE_TIME.equals( reader.getIdentifier() ) ) {
+                    time = reader.readUnsignedInteger();
+                } else if ( CUE_TRACK_POSITIONS.equals( reader.getIdentifier() ) ) {
+                    long track = -1L;
+                    long position = -1L;
+                    reader.enterContainer();
+                    while ( reader.next() ) {
+                        if ( CUE_TRACK.equals( reader.getIdentifier() ) ) {
+                            track = reader.readUnsignedInteger();
+                        } else if ( CUE_CLUSTER_POSITION.equals( reader.getIdentifier() ) ) {
+                            position = reader.readUnsignedInteger();
+                        }
+                    }
+                    reader.leaveContainer();
+                    positions = addCuePosition( positions, track, position );
+                }
+            }
+            reader.leaveContainer();
+            addCuePoint( time, positions );
+        }
+        reader.leaveContainer();
+    }
+
+
+    /**
+     * Scans the specified file with a single sequential pass and indexes every segment. The elements of the file are not
+     * kept in memory, only the headers of the block elements are read.
+     *
+     * @param file the file to scan
+     *
+     * @throws IllegalArgumentException if {@code file} is {@code null}
+     * @throws IOException if an I/O error has occurred
+     */
+    public void scan( File file ) throws IOException {
+        if ( file == null ) {
+            throw new IllegalArgumentException( "file is null" );
+        }
+        FileInputStream stream = new FileInputStream( file );
+        try {
+            FileChannel channel = stream.getChannel();
+            EbmlStreamReader reader = new EbmlStreamReader( channel, channel.size() );
+            try {
+                scan( reader );
+            } finally {
+                reader.close();
+            }
+        } finally {
+            stream.close();
+        }
+    }
+
+
+    private BlockHeader decodeBlockHeader( long position ) throws EbmlIoException {
+        try {
+            return BlockHeader.decode( buffer );
+        } catch ( EbmlFormatException e ) {
+            throw new EbmlIoException( position, e );
+        } catch ( BufferUnderflowException e ) {
+            throw new EbmlIoException( position, "unexpected end of data while reading block header", e );
+        }
+    }
+
+    private static long[] addCuePosition( long[] positions, long track, long position ) {
+        if ( track < 0L || position < 0L ) {
+            return positions;
+        }
+        long[] result = Arrays.copyOf( positions, positions.length + 2 );
+        result[ positions.length ] = track;
+        result[ positions.length + 1 ] = position;
+        return result;
+    }
+
+    private void addCuePoint( long time, long[] positions ) {
+        if ( time < 0L ) {
+            return;
+        }
+        for ( int i = 0; i < positions.length; i += 2 ) {
+            cuePoint( time, positions[ i ], positions[ i + 1 ] );
+        }
+    }
+
+}
@@ -0,0 +1,271 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.index;
+
+import java.util.Arrays;
+
+/**
+ * Contains the seek points of a single track ordered by the timestamp.
+ * <p/>
+ * A seek point associates the timestamp of a keyframe with the position of the {@code Cluster} element that contains
+ * it and, if known, the position of the block element itself. The seek points are stored in the parallel primitive
+ * arrays, so a track with a million seek points occupies about 24 megabytes and requires no per-point objects.
+ */
+public final class TrackIndex {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+
+    private final long trackNumber;
+
+    private long[] timestamps;
+
+    private long[] clusterPositions;
+
+    private long[] blockPositions;
+
+    private int size;
+
+
+    /**
+     * Creates a new empty {@code TrackIndex}.
+     *
+     * @param trackNumber the track number
+     */
+    public TrackIndex( long trackNumber ) {
+        this.trackNumber = trackNumber;
+        timestamps = new long[ INITIAL_CAPACITY ];
+        clusterPositions = new long[ INITIAL_CAPACITY ];
+        blockPositions = new long[ INITIAL_CAPACITY ];
+    }
+
+
+    /**
+     * Returns the number of the indexed track.
+     *
+     * @return the track number
+     */
+    public long getTrackNumber() {
+        return trackNumber;
+    }
+
+    /**
+     * Returns the number of seek points in this index.
+     *
+     * @return the number of seek points
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the timestamp of the specified seek point, in the units of the segment timecode scale.
+     *
+     * @param index the seek point index
+     *
+     * @return the timestamp
+     *
+     * @throws IndexOutOfBoundsException if {@code index} is out of range
+     */
+    public long getTimestamp( int index ) {
+        checkIndex( index );
+        return timestamps[ index ];
+    }
+
+    /**
+     * Returns the file position of the {@code Cluster} element containing the specified seek point.
+     *
+     * @param index the seek point index
+     *
+     * @return the cluster position
+     *
+     * @throws IndexOutOfBoundsException if {@code index} is out of range
+     */
+    public long getClusterPosition( int index ) {
+        checkIndex( index );
+        return clusterPositions[ index ];
+    }
+
+    /**
+     * Returns the file position of the block element of the specified seek point.
+     *
+     * @param index the seek point index
+     *
+     * @return the block position, or {@code -1} if the position is not known (for example, if the seek point comes from
+     *         the {@code Cues} element)
+     *
+     * @throws IndexOutOfBoundsException if {@code index} is out of range
+     */
+    public long getBlockPosition( int index ) {
+        checkIndex( index );
+        return blockPositions[ index ];
+    }
+
+    private void checkIndex( int index ) {
+        if ( index < 0 || index >= size ) {
+            throw new IndexOutOfBoundsException( String.format( "index %s is out of range [0, %s)", index, size ) );
+        }
+    }
+
+
+    /**
+     * Adds a seek point to this index. The seek points are usually added in the timestamp order, in which case the
+     * operation takes constant time. If a seek point with the same timestamp and cluster position already exists, the
+     * points are merged and the known block position is preserved.
+     *
+     * @param timestamp the keyframe timestamp
+     * @param clusterPosition the file position of the cluster
+     * @param blockPosition the file position of the block, or {@code -1} if not known
+     */
+    public void add( long timestamp, long clusterPosition, long blockPosition ) {
+        int index = size == 0 || timestamps[ size - 1 ] <= timestamp ? size : upperBound( timestamp );
+        for ( int i = index - 1; i >= 0 && timestamps[ i ] == timestamp; i-- ) {
+            if ( clusterPositions[ i ] == clusterPosition ) {
+                if ( blockPositions[ i ] < 0L ) {
+                    blockPositions[ i ] = blockPosition;
+                }
+                return;
+            }
+        }
+        if ( size == timestamps.length ) {
+            int capacity = size * 3 / 2 + 1;
+            timestamps = Arrays.copyOf( timestamps, capacity );
+            clusterPositions = Arrays.copyOf( clusterPositions, capacity );
+            blockPositions = Arrays.copyOf( blockPositions, capacity );
+        }
+        if ( index < size ) {
+            System.arraycopy( timestamps, index, timestamps, index + 1, size - index );
+            System.arraycopy( clusterPositions, index, clusterPositions, index + 1, size - index );
+            System.arraycopy( blockPositions, index, blockPositions, index + 1, size - index );
+        }
+        timestamps[ index ] = timestamp;
+        clusterPositions[ index ] = clusterPosition;
+        blockPositions[ index ] = blockPosition;
+        size++;
+    }
+
+    /**
+     * Adds all seek points of the specified index to this index. Both indexes are ordered, so they are merged in one
+     * pass, the seek points with the same timestamp and cluster position are merged as by {@link #add(long, long,
+     * long)}.
+     *
+     * @param index the index to merge into this index
+     *
+     * @throws IllegalArgumentException if {@code index} is {@code null}
+     */
+    public void merge( TrackIndex index ) {
+        if ( index == null ) {
+            throw new IllegalArgumentException( "index is null" );
+        }
+        if ( index.size == 0 ) {
+            return;
+        }
+        int capacity = Math.max( size + index.size, INITIAL_CAPACITY );
+        long[] mergedTimestamps = new long[ capacity ];
+        long[] mergedClusterPositions = new long[ capacity ];
+        long[] mergedBlockPositions = new long[ capacity ];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while ( i < size || j < index.size ) {
+            if ( j == index.size || i < size && timestamps[ i ] <= index.timestamps[ j ] ) {
+                mergedTimestamps[ count ] = timestamps[ i ];
+                mergedClusterPositions[ count ] = clusterPositions[ i ];
+                mergedBlockPositions[ count ] = blockPositions[ i ];
+                count++;
+                i++;
+                continue;
+            }
+            long timestamp = index.timestamps[ j ];
+            long clusterPosition = index.clusterPositions[ j ];
+            long blockPosition = index.blockPositions[ j ];
+            j++;
+            int k = count - 1;
+            while ( k >= 0 && mergedTimestamps[ k ] == timestamp && mergedClusterPositions[ k ] != clusterPosition ) {
+                k--;
+            }
+            if ( k >= 0 && mergedTimestamps[ k ] == timestamp ) {
+                if ( mergedBlockPositions[ k ] < 0L ) {
+                    mergedBlockPositions[ k ] = blockPosition;
+                }
+            } else {
+                mergedTimestamps[ count ] = timestamp;
+                mergedClusterPositions[ count ] = clusterPosition;
+                mergedBlockPositions[ count ] = blockPosition;
+                count++;
+            }
+        }
+        timestamps = mergedTimestamps;
+        clusterPositions = mergedClusterPositions;
+        blockPositions = mergedBlockPositions;
+        size = count;
+    }
+
+
+    /**
+     * Finds the seek point to start playing from in order to reach the specified timestamp, that is the last seek
+     * point with the timestamp less than or equal to the specified timestamp.
+     *
+     * @param timestamp the target timestamp
+     *
+     * @return the index of the seek point, or {@code -1} if all seek points are after the specified timestamp
+     */
+    public int find( long timestamp ) {
+        return upperBound( timestamp ) - 1;
+    }
+
+    /**
+     * Returns the index of the first seek point with the timestamp greater than the specified timestamp.
+     *
+     * @param timestamp the timestamp
+     *
+     * @return the index of the first greater seek point, or the size of this index if there is none
+     */
+    private int upperBound( long timestamp ) {
+        int low = 0;
+        int high = size;
+        while ( low < high ) {
+            int middle = low + high >>> 1;
+            if ( timestamps[ middle ] <= timestamp ) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+
+    @Override
+    public String toString() {
+        return String.format( "TrackIndex(%s, %s)", trackNumber, size );
+    }
+
+}
@@ -0,0 +1,194 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.io;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import com.google.code.ebmlviewer.core.VariableLengthInteger;
+
+/**
+ * The thread-safe {@code ReaderMetrics} which accumulates the events in atomic counters and exposes them through JMX.
+ * <p/>
+ * A single instance can be shared by all readers of a service to get the aggregated figures.
+ */
+public final class AtomicReaderMetrics implements ReaderMetrics, ReaderMetricsMXBean {
+
+    private final AtomicLong bytesRead = new AtomicLong();
+
+    private final AtomicLong readCalls = new AtomicLong();
+
+    private final AtomicLong bytesSkipped = new AtomicLong();
+
+    private final AtomicLong bufferRefills = new AtomicLong();
+
+    private final AtomicLong elementsParsed = new AtomicLong();
+
+    private final AtomicLong ioTimeNanos = new AtomicLong();
+
+    private final AtomicLong decodeTimeNanos = new AtomicLong();
+
+    private final ConcurrentMap<VariableLengthInteger, AtomicLong> elementCounts = new ConcurrentHashMap<VariableLengthInteger, AtomicLong>();
+
+
+    @Override
+    public void readCompleted( int bytes, long nanos ) {
+        if ( bytes > 0 ) {
+            bytesRead.addAndGet( bytes );
+        }
+        readCalls.incrementAndGet();
+        ioTimeNanos.addAndGet( nanos );
+    }
+
+    @Override
+    public void bytesSkipped( long bytes ) {
+        bytesSkipped.addAndGet( bytes );
+    }
+
+    @Override
+    public void bufferRefilled( int bytes ) {
+        bufferRefills.incrementAndGet();
+    }
+
+    @Override
+    public void elementParsed( VariableLengthInteger identifier ) {
+        elementsParsed.incrementAndGet();
+        AtomicLong count = elementCounts.get( identifier );
+        if ( count == null ) {
+            AtomicLong newCount = new AtomicLong();
+            count = elementCounts.putIfAbsent( identifier, newCount );
+            if ( count == null ) {
+                count = newCount;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    @Override
+    public void decodeCompleted( long nanos ) {
+        decodeTimeNanos.addAndGet( nanos );
+    }
+
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    @Override
+    public long getReadCalls() {
+        return readCalls.get();
+    }
+
+    @Override
+    public long getBytesSkipped() {
+        return bytesSkipped.get();
+    }
+
+    @Override
+    public long getBufferRefills() {
+        return bufferRefills.get();
+    }
+
+    @Override
+    public long getElementsParsed() {
+        return elementsParsed.get();
+    }
+
+    @Override
+    public long getIoTimeNanos() {
+        return ioTimeNanos.get();
+    }
+
+    @Override
+    public long getDecodeTimeNanos() {
+        return decodeTimeNanos.get();
+    }
+
+    @Override
+    public Map<String, Long> getElementCounts() {
+        Map<String, Long> result = new TreeMap<String, Long>();
+        for ( Map.Entry<VariableLengthInteger, AtomicLong> entry : elementCounts.entrySet() ) {
+            result.put( entry.getKey().toString(), entry.getValue().get() );
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of parsed elements with the specified identifier.
+     *
+     * @param identifier the element identifier
+     *
+     * @return the number of parsed elements
+     */
+    public long getElementCount( VariableLengthInteger identifier ) {
+        AtomicLong count = elementCounts.get( identifier );
+        return count == null ? 0L : count.get();
+    }
+
+    @Override
+    public void reset() {
+        bytesRead.set( 0L );
+        readCalls.set( 0L );
+        bytesSkipped.set( 0L );
+        bufferRefills.set( 0L );
+        elementsParsed.set( 0L );
+        ioTimeNanos.set( 0L );
+        decodeTimeNanos.set( 0L );
+        elementCounts.clear();
+    }
+
+
+    /**
+     * Registers this metrics in the platform MBean server.
+     *
+     * @param name the value of the {@code name} key of the object name
+     *
+     * @return the object name under which this metrics was registered
+     *
+     * @throws IllegalArgumentException if {@code name} is {@code null}
+     * @throws JMException if the registration fails
+     */
+    public ObjectName register( String name ) throws JMException {
+        if ( name == null ) {
+            throw new IllegalArgumentException( "name is null" );
+        }
+        ObjectName objectName = new ObjectName( "com.google.code.ebmlviewer:type=ReaderMetrics,name=" + ObjectName.quote( name ) );
+        ManagementFactory.getPlatformMBeanServer().registerMBean( this, objectName );
+        return objectName;
+    }
+
+}
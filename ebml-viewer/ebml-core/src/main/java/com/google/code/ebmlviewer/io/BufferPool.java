@@ -0,0 +1,140 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.io;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * A pool of the input buffers shared by the EBML readers.
+ * <p/>
+ * The buffer capacities are rounded up to a power of two, and the released buffers are kept in a separate bounded
+ * stack for each capacity and buffer kind, so the direct buffers, which are expensive to allocate, are reused by the
+ * readers created one after another. The pool is thread-safe.
+ */
+public final class BufferPool {
+
+    private static final BufferPool SHARED_POOL = new BufferPool( 4 );
+
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+
+    /**
+     * Returns the pool shared by the readers that were not configured to use a specific pool.
+     *
+     * @return the shared pool
+     */
+    public static BufferPool getSharedPool() {
+        return SHARED_POOL;
+    }
+
+
+    private final int buffersPerCapacity;
+
+    private final Deque<ByteBuffer>[] heapBuffers;
+
+    private final Deque<ByteBuffer>[] directBuffers;
+
+
+    /**
+     * Creates a new {@code BufferPool}.
+     *
+     * @param buffersPerCapacity the maximum number of the released buffers of the same capacity and kind to keep
+     *
+     * @throws IllegalArgumentException if {@code buffersPerCapacity} is negative
+     */
+    @SuppressWarnings( "unchecked" )
+    public BufferPool( int buffersPerCapacity ) {
+        if ( buffersPerCapacity < 0 ) {
+            throw new IllegalArgumentException( "buffersPerCapacity is negative" );
+        }
+        this.buffersPerCapacity = buffersPerCapacity;
+        heapBuffers = new Deque[ 31 ];
+        directBuffers = new Deque[ 31 ];
+        for ( int i = 0; i < heapBuffers.length; i++ ) {
+            heapBuffers[ i ] = new ArrayDeque<ByteBuffer>();
+            directBuffers[ i ] = new ArrayDeque<ByteBuffer>();
+        }
+    }
+
+
+    /**
+     * Returns a cleared buffer with at least the specified capacity.
+     *
+     * @param capacity the minimum capacity
+     * @param direct whether the buffer should be direct
+     *
+     * @return the buffer
+     *
+     * @throws IllegalArgumentException if {@code capacity} is not positive or greater than {@code 1 << 30}
+     */
+    public ByteBuffer acquire( int capacity, boolean direct ) {
+        if ( capacity <= 0 || capacity > MAXIMUM_CAPACITY ) {
+            throw new IllegalArgumentException( String.format( "capacity is out of valid range: %d", capacity ) );
+        }
+        int index = 32 - Integer.numberOfLeadingZeros( capacity - 1 );
+        Deque<ByteBuffer> buffers = direct ? directBuffers[ index ] : heapBuffers[ index ];
+        ByteBuffer buffer;
+        synchronized ( buffers ) {
+            buffer = buffers.pollFirst();
+        }
+        if ( buffer == null ) {
+            buffer = direct ? ByteBuffer.allocateDirect( 1 << index ) : ByteBuffer.allocate( 1 << index );
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Returns the buffer to this pool. The buffer must not be used by the caller after it was released.
+     *
+     * @param buffer the buffer acquired from this pool
+     *
+     * @throws IllegalArgumentException if {@code buffer} is {@code null}
+     */
+    public void release( ByteBuffer buffer ) {
+        if ( buffer == null ) {
+            throw new IllegalArgumentException( "buffer is null" );
+        }
+        int capacity = buffer.capacity();
+        if ( buffer.isReadOnly() || capacity == 0 || Integer.bitCount( capacity ) != 1 ) {
+            return;
+        }
+        int index = Integer.numberOfTrailingZeros( capacity );
+        Deque<ByteBuffer> buffers = buffer.isDirect() ? directBuffers[ index ] : heapBuffers[ index ];
+        synchronized ( buffers ) {
+            if ( buffers.size() < buffersPerCapacity ) {
+                buffers.addFirst( buffer );
+            }
+        }
+    }
+
+}
@@ -36,6 +36,7 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
 
 /** The {@code EbmlFile} class allows read-only access to the EBML data. */
@@ -75,7 +76,20 @@ public final class EbmlFile implements Closeable {
      * @throws FileNotFoundException if the file does not exist
      */
     public EbmlFile( File file ) throws FileNotFoundException {
-        this( new FileInputStream( file ), true );
+        this( file, new ReaderOptions() );
+    }
+
+    /**
+     * Creates a new {@code EbmlFile} from the specified file.
+     *
+     * @param file the file to be opened for reading
+     * @param options the reader options
+     *
+     * @throws IllegalArgumentException if {@code options} is {@code null}
+     * @throws FileNotFoundException if the file does not exist
+     */
+    public EbmlFile( File file, ReaderOptions options ) throws FileNotFoundException {
+        this( new FileInputStream( file ), true, options );
     }
 
     /**
@@ -88,10 +102,10 @@ public final class EbmlFile implements Closeable {
      * @throws IllegalArgumentException if {@code stream} is {@code null}
      */
     public EbmlFile( FileInputStream stream ) {
-        this( stream, false );
+        this( stream, false, new ReaderOptions() );
     }
 
-    private EbmlFile( FileInputStream stream, boolean manageStream ) {
+    private EbmlFile( FileInputStream stream, boolean manageStream, ReaderOptions options ) {
         if ( stream == null ) {
             throw new IllegalArgumentException( "stream is null" );
         }
@@ -99,7 +113,7 @@ public final class EbmlFile implements Closeable {
         this.manageStream = manageStream;
         channel = stream.getChannel();
         manageChannel = true;
-        reader = new EbmlFileReader( channel );
+        reader = new EbmlFileReader( channel, options );
     }
 
     /**
@@ -112,10 +126,24 @@ public final class EbmlFile implements Closeable {
      * @throws IllegalArgumentException if {@code channel} is {@code null}
      */
     public EbmlFile( FileChannel channel ) {
-        this( channel, false );
+        this( channel, new ReaderOptions() );
+    }
+
+    /**
+     * Creates a new {@code EbmlFile} from the specified file channel.
+     * <p/>
+     * The channel will not be closed when this {@code EbmlFile} is closed.
+     *
+     * @param channel the file channel to be used for reading
+     * @param options the reader options
+     *
+     * @throws IllegalArgumentException if {@code channel} or {@code options} is {@code null}
+     */
+    public EbmlFile( FileChannel channel, ReaderOptions options ) {
+        this( channel, false, options );
     }
 
-    private EbmlFile( FileChannel channel, boolean manageChannel ) {
+    private EbmlFile( FileChannel channel, boolean manageChannel, ReaderOptions options ) {
         if ( channel == null ) {
             throw new IllegalArgumentException( "channel is null" );
         }
@@ -123,7 +151,7 @@ public final class EbmlFile implements Closeable {
         manageStream = false;
         this.channel = channel;
         this.manageChannel = manageChannel;
-        reader = new EbmlFileReader( channel );
+        reader = new EbmlFileReader( channel, options );
     }
 
 
@@ -162,4 +190,46 @@ public final class EbmlFile implements Closeable {
         return new ArrayList<EbmlFileEntry>( entries );
     }
 
+    /**
+     * Returns a list of entries contained in this file, reporting each read entry and the progress of reading to
+     * the specified listener.
+     * <p/>
+     * The listener can cancel the reading by throwing an exception, in which case the entries are not cached.
+     *
+     * @param listener the progress listener
+     *
+     * @return a list of entries contained in this file
+     *
+     * @throws IllegalArgumentException if {@code listener} is {@code null}
+     * @throws IOException if an I/O error has occurred or the listener cancelled the reading
+     */
+    public List<EbmlFileEntry> getEntries( ReadProgressListener listener ) throws IOException {
+        if ( listener == null ) {
+            throw new IllegalArgumentException( "listener is null" );
+        }
+        if ( entries == null ) {
+            entries = reader.readEntries( 0L, channel.size(), null, listener );
+        }
+        return new ArrayList<EbmlFileEntry>( entries );
+    }
+
+
+    /**
+     * Creates a follower which appends the entries written to the file after this moment to the entries of this file.
+     * <p/>
+     * If the entries of this file were not read yet, the follower starts from the beginning of the file, so this method
+     * can be used with the files that are not completely written yet. If the last entry of this file is not completely
+     * written yet, the follower appends the new children to it.
+     *
+     * @return the file follower
+     *
+     * @throws IOException if an I/O error has occurred
+     */
+    public EbmlFileFollower follow() throws IOException {
+        if ( entries == null ) {
+            entries = new LinkedList<EbmlFileEntry>();
+        }
+        return new EbmlFileFollower( channel, reader, entries );
+    }
+
 }
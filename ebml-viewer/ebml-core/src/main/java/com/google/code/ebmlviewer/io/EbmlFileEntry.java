@@ -177,11 +177,42 @@ public final class EbmlFileEntry {
      */
     public List<EbmlFileEntry> getEntries() throws IOException {
         if ( entries == null ) {
-            entries = reader.readEntries( entryPosition + identifier.getEncodedLength() + size.getEncodedLength(), size.getPlainValue(), getData() );
+            entries = reader.readEntries( entryPosition + identifier.getEncodedLength() + size.getEncodedLength(), size.getPlainValue(), getData(), null );
         }
         return entries;
     }
 
+    /**
+     * Returns a list of entries contained in this entry, reporting each read entry and the progress of reading to
+     * the specified listener.
+     * <p/>
+     * The listener can cancel the reading by throwing an exception, in which case the entries are not cached.
+     *
+     * @param listener the progress listener
+     *
+     * @return a list of entries contained in this entry
+     *
+     * @throws IllegalArgumentException if {@code listener} is {@code null}
+     * @throws IOException if an I/O error has occurred or the listener cancelled the reading
+     */
+    public List<EbmlFileEntry> getEntries( ReadProgressListener listener ) throws IOException {
+        if ( listener == null ) {
+            throw new IllegalArgumentException( "listener is null" );
+        }
+        if ( entries == null ) {
+            entries = reader.readEntries( entryPosition + identifier.getEncodedLength() + size.getEncodedLength(), size.getPlainValue(), getData(), listener );
+        }
+        return entries;
+    }
+
+
+    void setEntries( List<EbmlFileEntry> entries ) {
+        this.entries = entries;
+    }
+
+    void addEntry( EbmlFileEntry entry ) {
+        entries.add( entry );
+    }
 
     void setData( ByteBuffer data ) {
         this.data = data;
@@ -0,0 +1,217 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.io;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Follows the {@code EbmlFile} which is still being written and appends the newly written entries to the entries of
+ * the file.
+ * <p/>
+ * Each {@link #poll()} compares the current file length with the length seen by the previous poll and parses only the
+ * appended bytes. A top-level entry which data is not completely written yet (such as the {@code Segment} element of a
+ * recording, usually written with the unknown size) is added as soon as its header is available, and its children are
+ * appended to it as they become complete. An entry which is only partially written is skipped until the next poll.
+ * <p/>
+ * The children of an open top-level entry must have the known size, an unknown-size child stops the follower with an
+ * {@code EbmlIoException}.
+ * <p/>
+ * The follower implements {@code Runnable} so it can be scheduled with a {@code ScheduledExecutorService}. The
+ * follower is not thread-safe, the entries of the file should not be accessed while a poll is in progress, and the
+ * listeners are notified in the polling thread.
+ */
+public final class EbmlFileFollower implements Runnable {
+
+    private static final Logger logger = Logger.getLogger( EbmlFileFollower.class.getName() );
+
+
+    private final FileChannel channel;
+
+    private final EbmlFileReader reader;
+
+    private final List<EbmlFileEntry> entries;
+
+    private final List<EbmlFileListener> listeners = new CopyOnWriteArrayList<EbmlFileListener>();
+
+
+    /** The file length seen by the last poll. */
+    private long length;
+
+    /** The file position of the next top-level entry. */
+    private long position;
+
+    /** The top-level entry which data is not completely available yet. */
+    private EbmlFileEntry openEntry;
+
+    /** The file position of the next child of the open entry. */
+    private long openPosition;
+
+
+    EbmlFileFollower( FileChannel channel, EbmlFileReader reader, List<EbmlFileEntry> entries ) throws IOException {
+        this.channel = channel;
+        this.reader = reader;
+        this.entries = entries;
+        length = -1L;
+        if ( !entries.isEmpty() ) {
+            EbmlFileEntry last = entries.get( entries.size() - 1 );
+            if ( last.getSize().isReserved() || last.getDataPosition() + last.getSize().getPlainValue() > channel.size() ) {
+                // the last entry is still being written, continue after its last complete child
+                openEntry = last;
+                openPosition = last.getDataPosition();
+                if ( last.getEntriesWillBlock() ) {
+                    last.setEntries( new LinkedList<EbmlFileEntry>() );
+                } else {
+                    List<EbmlFileEntry> children = last.getEntries();
+                    if ( !children.isEmpty() ) {
+                        EbmlFileEntry child = children.get( children.size() - 1 );
+                        openPosition = child.getDataPosition() + child.getSize().getPlainValue();
+                    }
+                }
+            } else {
+                position = last.getDataPosition() + last.getSize().getPlainValue();
+            }
+        }
+    }
+
+
+    /**
+     * Adds the listener to be notified of the new entries.
+     *
+     * @param listener the listener
+     *
+     * @throws IllegalArgumentException if {@code listener} is {@code null}
+     */
+    public void addListener( EbmlFileListener listener ) {
+        if ( listener == null ) {
+            throw new IllegalArgumentException( "listener is null" );
+        }
+        listeners.add( listener );
+    }
+
+    /**
+     * Removes the listener.
+     *
+     * @param listener the listener
+     */
+    public void removeListener( EbmlFileListener listener ) {
+        listeners.remove( listener );
+    }
+
+
+    /**
+     * Parses the data appended to the file since the last poll.
+     *
+     * @return the number of new entries
+     *
+     * @throws EbmlIoException if the file was truncated or the appended data is not valid
+     * @throws IOException if an I/O error has occurred
+     */
+    public int poll() throws IOException {
+        long newLength = channel.size();
+        if ( newLength == length ) {
+            return 0;
+        }
+        if ( newLength < length ) {
+            throw new EbmlIoException( newLength, "the file was truncated" );
+        }
+        length = newLength;
+        int count = 0;
+        while ( true ) {
+            if ( openEntry != null ) {
+                boolean unknownSize = openEntry.getSize().isReserved();
+                long end = unknownSize ? length : openEntry.getDataPosition() + openEntry.getSize().getPlainValue();
+                count += readChildren( Math.min( end, length ) );
+                if ( unknownSize || openPosition < end ) {
+                    return count;
+                }
+                position = end;
+                openEntry = null;
+            }
+            EbmlFileEntry entry = reader.readEntryHeader( position, length );
+            if ( entry == null ) {
+                return count;
+            }
+            entries.add( entry );
+            count++;
+            fireEntryAdded( null, entry );
+            if ( entry.getSize().isReserved() || entry.getDataPosition() + entry.getSize().getPlainValue() > length ) {
+                entry.setEntries( new LinkedList<EbmlFileEntry>() );
+                openEntry = entry;
+                openPosition = entry.getDataPosition();
+            } else {
+                position = entry.getDataPosition() + entry.getSize().getPlainValue();
+            }
+        }
+    }
+
+    private int readChildren( long end ) throws IOException {
+        int count = 0;
+        while ( true ) {
+            EbmlFileEntry entry = reader.readEntryHeader( openPosition, end );
+            if ( entry == null ) {
+                return count;
+            }
+            if ( entry.getSize().isReserved() ) {
+                throw new EbmlIoException( openPosition, "the size of the child of the open entry is unknown" );
+            }
+            long entryEnd = entry.getDataPosition() + entry.getSize().getPlainValue();
+            if ( entryEnd > end ) {
+                return count;
+            }
+            openEntry.addEntry( entry );
+            openPosition = entryEnd;
+            count++;
+            fireEntryAdded( openEntry, entry );
+        }
+    }
+
+    private void fireEntryAdded( EbmlFileEntry parent, EbmlFileEntry entry ) {
+        for ( EbmlFileListener listener : listeners ) {
+            listener.entryAdded( parent, entry );
+        }
+    }
+
+
+    /** Polls the file, logging the errors instead of throwing them. */
+    public void run() {
+        try {
+            poll();
+        } catch ( IOException e ) {
+            logger.log( Level.WARNING, "failed to follow the file", e );
+        }
+    }
+
+}
@@ -42,24 +42,57 @@ import com.google.code.ebmlviewer.core.VariableLengthInteger;
 
 final class EbmlFileReader {
 
-    private static final int INPUT_BUFFER_SIZE = 8 * 1024;
+    /** The maximum length of an element header: a 4-byte identifier and an 8-byte size. */
+    private static final int MAXIMUM_HEADER_LENGTH = 12;
 
 
     private final FileChannel channel;
 
+    private final int bufferSize;
+
+    private final int maximumBufferSize;
+
+    private final boolean directBuffers;
+
+    private final BufferPool bufferPool;
+
+    private final ReaderMetrics metrics;
+
+    /** Whether the time is measured for the metrics. */
+    private final boolean timed;
+
+
+    /** The current read-ahead size. */
+    private int readAhead;
+
+    /** The file position at which the last read-ahead ended. */
+    private long readAheadEnd;
+
 
     /**
      * Creates a new {@code EbmlFileReader}.
      *
      * @param channel the data source
+     * @param options the reader options
      *
-     * @throws IllegalArgumentException if {@code channel} is {@code null}
+     * @throws IllegalArgumentException if {@code channel} or {@code options} is {@code null}
      */
-    EbmlFileReader( FileChannel channel ) {
+    EbmlFileReader( FileChannel channel, ReaderOptions options ) {
         if ( channel == null ) {
             throw new IllegalArgumentException( "channel is null" );
         }
+        if ( options == null ) {
+            throw new IllegalArgumentException( "options is null" );
+        }
         this.channel = channel;
+        bufferSize = options.getBufferSize();
+        maximumBufferSize = options.getMaximumBufferSize();
+        directBuffers = options.isDirectBuffers();
+        bufferPool = options.getBufferPool();
+        metrics = options.getMetrics();
+        timed = metrics != ReaderMetrics.NONE;
+        readAhead = bufferSize;
+        readAheadEnd = -1L;
     }
 
 
@@ -94,7 +127,9 @@ final class EbmlFileReader {
         try {
             int read = 0;
             while ( buffer.hasRemaining() ) {
+                long start = timed ? System.nanoTime() : 0L;
                 int r = channel.read( buffer, position + read );
+                metrics.readCompleted( r, timed ? System.nanoTime() - start : 0L );
                 if ( r < 0 ) {
                     if ( read == 0 ) {
                         read = -1;
@@ -114,9 +149,54 @@ final class EbmlFileReader {
         buffer.compact();
         int read = read( buffer, position, size );
         buffer.flip();
-        return read >= 0 ? read : 0;
+        read = read >= 0 ? read : 0;
+        metrics.bufferRefilled( read );
+        return read;
     }
 
+    private long startDecode() {
+        return timed ? System.nanoTime() : 0L;
+    }
+
+    private void endDecode( long start ) {
+        if ( timed ) {
+            metrics.decodeCompleted( System.nanoTime() - start );
+        }
+    }
+
+
+    /**
+     * Reads the header of the entry at the given file position. The entry data may be not available yet and the entry
+     * size may be unknown.
+     *
+     * @param position the file position of the entry
+     * @param limit the file position at which the available data ends
+     *
+     * @return the entry, or {@code null} if the entry header is not completely available
+     *
+     * @throws IOException if an I/O error has occurred
+     */
+    EbmlFileEntry readEntryHeader( long position, long limit ) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate( 16 );
+        read( buffer, position, Math.max( 0L, limit - position ) );
+        buffer.flip();
+        EbmlDecoder decoder = new EbmlDecoder();
+        VariableLengthInteger entryIdentifier;
+        VariableLengthInteger entrySize;
+        try {
+            entryIdentifier = decoder.decodeVariableLengthInteger( buffer );
+            if ( !entryIdentifier.isIdentifier() ) {
+                throw new EbmlIoException( position, String.format( "the vli %s does not represent valid entry identifier", entryIdentifier ) );
+            }
+            entrySize = decoder.decodeVariableLengthInteger( buffer );
+        } catch ( EbmlFormatException e ) {
+            throw new EbmlIoException( position, e );
+        } catch ( BufferUnderflowException ignored ) {
+            return null;
+        }
+        metrics.elementParsed( entryIdentifier );
+        return new EbmlFileEntry( this, position, entryIdentifier, entrySize );
+    }
 
     /**
      * Reads a sequence of entries from this reader, starting at the given file position.
@@ -129,15 +209,63 @@ final class EbmlFileReader {
      * @throws IOException if an I/O error has occurred
      */
     public List<EbmlFileEntry> readEntries( long position, long size ) throws IOException {
-        return readEntries( position, size, null );
+        return readEntries( position, size, null, null );
     }
 
-    List<EbmlFileEntry> readEntries( long position, long size, ByteBuffer buffer ) throws IOException {
-        if ( buffer == null ) {
-            buffer = ByteBuffer.allocate( INPUT_BUFFER_SIZE );
-            buffer.flip();
+    /**
+     * Reads a sequence of entries from the specified buffer, or from this reader if the buffer is {@code null},
+     * starting at the given file position.
+     *
+     * @param position the file position at which the transfer is to begin
+     * @param size the maximum number of bytes to read from the file
+     * @param buffer the buffer with the data, or {@code null}
+     * @param listener the listener notified after each entry, or {@code null}
+     *
+     * @return a list of entries
+     *
+     * @throws IOException if an I/O error has occurred or the listener cancelled the read
+     */
+    List<EbmlFileEntry> readEntries( long position, long size, ByteBuffer buffer, ReadProgressListener listener ) throws IOException {
+        if ( buffer != null ) {
+            return readEntries( position, size, buffer, false, listener );
         }
+        buffer = bufferPool.acquire( ( int ) Math.min( startReadAhead( position ), Math.max( size, 16L ) ), directBuffers );
+        buffer.flip();
+        try {
+            return readEntries( position, size, buffer, true, listener );
+        } finally {
+            bufferPool.release( buffer );
+        }
+    }
+
+    /**
+     * Returns the read-ahead size for the read starting at the given file position. The read-ahead grows if the read
+     * continues the previous one and shrinks if the read jumps backward or far forward.
+     * <p/>
+     * The read of the next sibling's children starts after the sibling's header, so a forward gap of up to one element
+     * header still continues the previous read.
+     */
+    private synchronized int startReadAhead( long position ) {
+        if ( position >= readAheadEnd && position - readAheadEnd <= MAXIMUM_HEADER_LENGTH ) {
+            readAhead = Math.min( readAhead * 2, maximumBufferSize );
+        } else if ( position < readAheadEnd || position - readAheadEnd > readAhead ) {
+            readAhead = Math.max( readAhead / 2, bufferSize );
+        }
+        return readAhead;
+    }
 
+    private synchronized void endReadAhead( long position ) {
+        readAheadEnd = position;
+    }
+
+    /** Returns the current read-ahead size. */
+    synchronized int getReadAhead() {
+        return readAhead;
+    }
+
+    private List<EbmlFileEntry> readEntries( long position, long size, ByteBuffer buffer, boolean pooled, ReadProgressListener listener ) throws IOException {
+        // the data of the entries read into the pooled buffer is copied, so only the small entries are cached
+        long cacheLimit = pooled ? bufferSize : Long.MAX_VALUE;
         EbmlDecoder decoder = new EbmlDecoder();
         List<EbmlFileEntry> entries = new LinkedList<EbmlFileEntry>();
 
@@ -154,6 +282,7 @@ final class EbmlFileReader {
                 remainingSize -= fill;
             }
             VariableLengthInteger entryIdentifier;
+            long decodeStart = startDecode();
             try {
                 entryIdentifier = decoder.decodeVariableLengthInteger( buffer ); // EbmlFormatException, BufferUnderflowException
             } catch ( EbmlFormatException e ) {
@@ -162,6 +291,7 @@ final class EbmlFileReader {
                 throw new EbmlIoException( filePosition, "unexpected end of data while reading identifier vli", e );
                 //throw new EbmlIoException( String.format( "the entry identifier is expected at %s, but the current frame does not have enough remaining data", filePosition ), e );
             }
+            endDecode( decodeStart );
             if ( !entryIdentifier.isIdentifier() ) {
                 throw new EbmlIoException( filePosition, String.format( "the vli %s does not represent valid entry identifier", entryIdentifier ) );
             }
@@ -173,6 +303,7 @@ final class EbmlFileReader {
                 remainingSize -= fill;
             }
             VariableLengthInteger entrySize;
+            decodeStart = startDecode();
             try {
                 entrySize = decoder.decodeVariableLengthInteger( buffer ); // EbmlFormatException, BufferUnderflowException
             } catch ( EbmlFormatException e ) {
@@ -180,6 +311,7 @@ final class EbmlFileReader {
             } catch ( BufferUnderflowException e ) {
                 throw new EbmlIoException( filePosition, "unexpected end of data while reading identifier vli", e );
             }
+            endDecode( decodeStart );
             if ( entrySize.isReserved() ) {
                 throw new EbmlIoException( filePosition, String.format( "the variable-length integer %s does not represent valid entry size", entrySize ) );
             }
@@ -190,8 +322,12 @@ final class EbmlFileReader {
             filePosition += entrySize.getEncodedLength();
             // create next entry or read data of the next entry
             EbmlFileEntry entry = new EbmlFileEntry( this, entryPosition, entryIdentifier, entrySize );
+            metrics.elementParsed( entryIdentifier );
             if ( dataSize <= buffer.remaining() ) {
-                if ( buffer.isReadOnly() ) {
+                if ( dataSize > cacheLimit ) {
+                    buffer.position( buffer.position() + ( int ) dataSize );
+                    metrics.bytesSkipped( dataSize );
+                } else if ( buffer.isReadOnly() ) {
                     int limit = buffer.limit();
                     buffer.limit( buffer.position() + ( int ) dataSize );
                     entry.setData( buffer.slice() );
@@ -207,9 +343,16 @@ final class EbmlFileReader {
                 buffer.position( buffer.limit() );
                 remainingPosition += skip; // should be equal to the current filePosition + dataSize
                 remainingSize -= skip; // should be non-negative
+                metrics.bytesSkipped( dataSize );
             }
             entries.add( entry );
             filePosition += dataSize;
+            if ( listener != null ) {
+                listener.progressed( entry, filePosition - position, size );
+            }
+        }
+        if ( pooled ) {
+            endReadAhead( remainingPosition );
         }
         return entries;
     }
@@ -0,0 +1,59 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.io;
+
+import java.io.IOException;
+
+/**
+ * The listener interface for receiving the entries of an {@code EbmlFile} or an {@code EbmlFileEntry} while they are
+ * read.
+ * <p/>
+ * The listener is called in the reading thread after each read entry, in the file order, so the entries can be shown
+ * before the whole parent is read. The listener should be cheap. The listener can cancel the
+ * read by throwing an exception, usually an {@link java.io.InterruptedIOException}, which is propagated to the caller
+ * of the read. Unlike the interruption of the reading thread, this does not close the underlying channel.
+ *
+ * @see EbmlFile#getEntries(ReadProgressListener)
+ * @see EbmlFileEntry#getEntries(ReadProgressListener)
+ */
+public interface ReadProgressListener {
+
+    /**
+     * Invoked after an entry has been read.
+     *
+     * @param entry the read entry
+     * @param bytesScanned the number of bytes of the parent data scanned so far
+     * @param bytesTotal the size of the parent data
+     *
+     * @throws IOException to cancel the read
+     */
+    void progressed( EbmlFileEntry entry, long bytesScanned, long bytesTotal ) throws IOException;
+
+}
@@ -0,0 +1,108 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.io;
+
+import com.google.code.ebmlviewer.core.VariableLengthInteger;
+
+/**
+ * The listener interface for receiving the I/O and parse metrics of the EBML readers.
+ * <p/>
+ * The readers measure the time only if the configured metrics is not {@link #NONE}, so the default configuration does
+ * not pay for the calls to {@code System.nanoTime()}. The methods are called in the reading thread and should be
+ * cheap.
+ *
+ * @see ReaderOptions#setMetrics(ReaderMetrics)
+ */
+public interface ReaderMetrics {
+
+    /** The metrics that ignores all events. */
+    ReaderMetrics NONE = new ReaderMetrics() {
+
+        @Override
+        public void readCompleted( int bytes, long nanos ) {
+        }
+
+        @Override
+        public void bytesSkipped( long bytes ) {
+        }
+
+        @Override
+        public void bufferRefilled( int bytes ) {
+        }
+
+        @Override
+        public void elementParsed( VariableLengthInteger identifier ) {
+        }
+
+        @Override
+        public void decodeCompleted( long nanos ) {
+        }
+
+    };
+
+
+    /**
+     * Invoked after a read call on the data source.
+     *
+     * @param bytes the number of bytes read
+     * @param nanos the time spent in the read call, in nanoseconds
+     */
+    void readCompleted( int bytes, long nanos );
+
+    /**
+     * Invoked when the reader skips the data without decoding it.
+     *
+     * @param bytes the number of bytes skipped
+     */
+    void bytesSkipped( long bytes );
+
+    /**
+     * Invoked when the reader refills its input buffer.
+     *
+     * @param bytes the number of bytes added to the buffer
+     */
+    void bufferRefilled( int bytes );
+
+    /**
+     * Invoked when the reader parses the element header. The elements decoded by the bulk value reads of the {@code
+     * EbmlStreamReader} are not reported.
+     *
+     * @param identifier the element identifier
+     */
+    void elementParsed( VariableLengthInteger identifier );
+
+    /**
+     * Invoked after the reader decodes an element header or value.
+     *
+     * @param nanos the time spent in decoding, in nanoseconds
+     */
+    void decodeCompleted( long nanos );
+
+}
@@ -0,0 +1,68 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.io;
+
+import java.util.Map;
+
+/** The management interface of the {@link AtomicReaderMetrics}. */
+public interface ReaderMetricsMXBean {
+
+    /** Returns the number of bytes read from the data sources. */
+    long getBytesRead();
+
+    /** Returns the number of read calls on the data sources. */
+    long getReadCalls();
+
+    /** Returns the number of bytes skipped without decoding. */
+    long getBytesSkipped();
+
+    /** Returns the number of input buffer refills. */
+    long getBufferRefills();
+
+    /** Returns the number of parsed element headers. */
+    long getElementsParsed();
+
+    /** Returns the time spent in the read calls, in nanoseconds. */
+    long getIoTimeNanos();
+
+    /** Returns the time spent in decoding, in nanoseconds. */
+    long getDecodeTimeNanos();
+
+    /**
+     * Returns the number of parsed elements per element identifier.
+     *
+     * @return the map of the element identifiers to the number of parsed elements
+     */
+    Map<String, Long> getElementCounts();
+
+    /** Resets all counters. */
+    void reset();
+
+}
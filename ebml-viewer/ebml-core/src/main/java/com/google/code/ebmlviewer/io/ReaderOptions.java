@@ -0,0 +1,188 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.io;
+
+/**
+ * The options of the EBML readers.
+ * <p/>
+ * The buffer size is the initial size of the input buffer, the read-ahead adapts to the observed access pattern
+ * between the buffer size and the maximum buffer size: it grows while the data is read sequentially and shrinks on
+ * random access. The options are copied by the readers when they are created.
+ */
+public final class ReaderOptions {
+
+    /** The default size of the input buffer. */
+    public static final int DEFAULT_BUFFER_SIZE = 8 * 1024;
+
+    /** The default maximum size of the input buffer. */
+    public static final int DEFAULT_MAXIMUM_BUFFER_SIZE = 1024 * 1024;
+
+    /** The minimum size of the input buffer, large enough for any element header. */
+    public static final int MINIMUM_BUFFER_SIZE = 64;
+
+
+    private int bufferSize;
+
+    private int maximumBufferSize;
+
+    private boolean directBuffers;
+
+    private BufferPool bufferPool;
+
+    private ReaderMetrics metrics;
+
+
+    /** Creates a new {@code ReaderOptions} with the default values. */
+    public ReaderOptions() {
+        bufferSize = DEFAULT_BUFFER_SIZE;
+        maximumBufferSize = DEFAULT_MAXIMUM_BUFFER_SIZE;
+        bufferPool = BufferPool.getSharedPool();
+        metrics = ReaderMetrics.NONE;
+    }
+
+
+    /**
+     * Returns the initial size of the input buffer.
+     *
+     * @return the buffer size
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Sets the initial size of the input buffer. The maximum buffer size is increased if it is smaller than the new
+     * buffer size.
+     *
+     * @param bufferSize the buffer size
+     *
+     * @throws IllegalArgumentException if {@code bufferSize} is less than {@value #MINIMUM_BUFFER_SIZE} or greater than
+     * {@code 1 << 30}
+     */
+    public void setBufferSize( int bufferSize ) {
+        if ( bufferSize < MINIMUM_BUFFER_SIZE || bufferSize > 1 << 30 ) {
+            throw new IllegalArgumentException( String.format( "bufferSize is out of valid range: %d", bufferSize ) );
+        }
+        this.bufferSize = bufferSize;
+        if ( maximumBufferSize < bufferSize ) {
+            maximumBufferSize = bufferSize;
+        }
+    }
+
+    /**
+     * Returns the maximum size of the input buffer.
+     *
+     * @return the maximum buffer size
+     */
+    public int getMaximumBufferSize() {
+        return maximumBufferSize;
+    }
+
+    /**
+     * Sets the maximum size of the input buffer. Setting the maximum buffer size equal to the buffer size disables the
+     * adaptive read-ahead.
+     *
+     * @param maximumBufferSize the maximum buffer size
+     *
+     * @throws IllegalArgumentException if {@code maximumBufferSize} is less than the buffer size or greater than {@code
+     * 1 << 30}
+     */
+    public void setMaximumBufferSize( int maximumBufferSize ) {
+        if ( maximumBufferSize < bufferSize || maximumBufferSize > 1 << 30 ) {
+            throw new IllegalArgumentException( String.format( "maximumBufferSize is out of valid range: %d", maximumBufferSize ) );
+        }
+        this.maximumBufferSize = maximumBufferSize;
+    }
+
+    /**
+     * Returns whether the readers use the direct input buffers.
+     *
+     * @return {@code true} if the direct buffers are used; {@code false} if the heap buffers are used
+     */
+    public boolean isDirectBuffers() {
+        return directBuffers;
+    }
+
+    /**
+     * Sets whether the readers use the direct input buffers.
+     *
+     * @param directBuffers {@code true} to use the direct buffers; {@code false} to use the heap buffers
+     */
+    public void setDirectBuffers( boolean directBuffers ) {
+        this.directBuffers = directBuffers;
+    }
+
+    /**
+     * Returns the pool from which the input buffers are acquired.
+     *
+     * @return the buffer pool
+     */
+    public BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    /**
+     * Sets the pool from which the input buffers are acquired.
+     *
+     * @param bufferPool the buffer pool
+     *
+     * @throws IllegalArgumentException if {@code bufferPool} is {@code null}
+     */
+    public void setBufferPool( BufferPool bufferPool ) {
+        if ( bufferPool == null ) {
+            throw new IllegalArgumentException( "bufferPool is null" );
+        }
+        this.bufferPool = bufferPool;
+    }
+
+    /**
+     * Returns the metrics which receives the I/O and parse events of the readers.
+     *
+     * @return the reader metrics
+     */
+    public ReaderMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the metrics which receives the I/O and parse events of the readers.
+     *
+     * @param metrics the reader metrics, or {@link ReaderMetrics#NONE} to disable the metrics
+     *
+     * @throws IllegalArgumentException if {@code metrics} is {@code null}
+     */
+    public void setMetrics( ReaderMetrics metrics ) {
+        if ( metrics == null ) {
+            throw new IllegalArgumentException( "metrics is null" );
+        }
+        this.metrics = metrics;
+    }
+
+}
@@ -0,0 +1,162 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.probe;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Probes large numbers of files concurrently with the {@link HeaderProbe}.
+ * <p/>
+ * Each call to {@link #probe(Iterator)} starts a bounded pool of worker threads that keeps at most {@link
+ * #getConcurrency()} probes in flight, so the aggregate throughput is limited by the storage rather than by the
+ * latency of the individual reads. The files are taken from the source iterator only as the results are consumed, so
+ * the memory usage does not depend on the number of files.
+ */
+public final class BatchProber {
+
+    private final HeaderProbe probe;
+
+    private final int concurrency;
+
+    private long timeoutNanos;
+
+
+    /**
+     * Creates a new {@code BatchProber}.
+     *
+     * @param probe the probe to apply to each file
+     * @param concurrency the maximum number of files probed concurrently
+     *
+     * @throws IllegalArgumentException if {@code probe} is {@code null}
+     * @throws IllegalArgumentException if {@code concurrency} is not positive
+     */
+    public BatchProber( HeaderProbe probe, int concurrency ) {
+        if ( probe == null ) {
+            throw new IllegalArgumentException( "probe is null" );
+        }
+        if ( concurrency <= 0 ) {
+            throw new IllegalArgumentException( "concurrency is not positive" );
+        }
+        this.probe = probe;
+        this.concurrency = concurrency;
+    }
+
+
+    /**
+     * Returns the probe applied to each file.
+     *
+     * @return the probe
+     */
+    public HeaderProbe getProbe() {
+        return probe;
+    }
+
+    /**
+     * Returns the maximum number of files probed concurrently.
+     *
+     * @return the concurrency limit
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Returns the per-file timeout.
+     *
+     * @param unit the time unit of the result
+     *
+     * @return the timeout, or {@code 0} if the probes are not timed out
+     *
+     * @throws IllegalArgumentException if {@code unit} is {@code null}
+     */
+    public long getTimeout( TimeUnit unit ) {
+        if ( unit == null ) {
+            throw new IllegalArgumentException( "unit is null" );
+        }
+        return unit.convert( timeoutNanos, TimeUnit.NANOSECONDS );
+    }
+
+    /**
+     * Sets the per-file timeout. A probe that does not complete in time is interrupted and produces a result with a
+     * {@link java.util.concurrent.TimeoutException} as the {@link ProbeResult#getError() error}.
+     *
+     * @param timeout the timeout, or {@code 0} to disable the timeout
+     * @param unit the time unit of the timeout
+     *
+     * @throws IllegalArgumentException if {@code timeout} is negative
+     * @throws IllegalArgumentException if {@code unit} is {@code null}
+     */
+    public void setTimeout( long timeout, TimeUnit unit ) {
+        if ( timeout < 0L ) {
+            throw new IllegalArgumentException( "timeout is negative" );
+        }
+        if ( unit == null ) {
+            throw new IllegalArgumentException( "unit is null" );
+        }
+        timeoutNanos = unit.toNanos( timeout );
+    }
+
+
+    /**
+     * Starts probing the specified files.
+     *
+     * @param files the files to probe
+     *
+     * @return the results, in the order of completion
+     *
+     * @throws IllegalArgumentException if {@code files} is {@code null}
+     */
+    public ProbeResults probe( Iterable<File> files ) {
+        if ( files == null ) {
+            throw new IllegalArgumentException( "files is null" );
+        }
+        return probe( files.iterator() );
+    }
+
+    /**
+     * Starts probing the files provided by the specified iterator. The iterator is accessed only by the thread that
+     * consumes the results.
+     *
+     * @param files the files to probe
+     *
+     * @return the results, in the order of completion
+     *
+     * @throws IllegalArgumentException if {@code files} is {@code null}
+     */
+    public ProbeResults probe( Iterator<File> files ) {
+        if ( files == null ) {
+            throw new IllegalArgumentException( "files is null" );
+        }
+        return new ProbeResults( probe, files, concurrency, timeoutNanos );
+    }
+
+}
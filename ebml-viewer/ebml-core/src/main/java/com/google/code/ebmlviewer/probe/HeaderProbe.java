@@ -0,0 +1,515 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.probe;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.code.ebmlviewer.core.EbmlDecoder;
+import com.google.code.ebmlviewer.core.EbmlFormatException;
+import com.google.code.ebmlviewer.core.VariableLengthInteger;
+import com.google.code.ebmlviewer.io.BufferPool;
+
+/**
+ * Reads the structural information from the beginning of a Matroska or WebM file.
+ * <p/>
+ * The probe reads at most {@link #getLimit()} bytes from the start of the file with a single positional read and
+ * decodes the EBML header, the {@code Info} element and the {@code Tracks} element of the first segment from the
+ * buffer, stopping at the first {@code Cluster} element. If the {@code Info} or the {@code Tracks} element is located
+ * after the probed part of the file, for example after the clusters, and the {@code SeekHead} element points to it,
+ * the probe reads the element with another positional read of at most {@link #getLimit()} bytes, as long as the total
+ * number of bytes read stays within the {@link #getBudget() budget}. The elements that could not be read are skipped,
+ * in which case the result is not {@link ProbeResult#isComplete() complete}. The cost of a probe thus depends only on
+ * the limit and the budget, not on the size of the file.
+ * <p/>
+ * The probe is thread-safe and can be shared by any number of threads.
+ */
+public final class HeaderProbe {
+
+    /** The default number of bytes read from the start of the file. */
+    public static final int DEFAULT_LIMIT = 16 * 1024;
+
+    private static final int MINIMUM_LIMIT = 64;
+
+    /** The default total number of bytes read from each file, enough for the start of the file and two seeks. */
+    public static final int DEFAULT_BUDGET = 3 * DEFAULT_LIMIT;
+
+
+    private static final VariableLengthInteger EBML = VariableLengthInteger.fromEncoded( 0x1A45DFA3 );
+
+    private static final VariableLengthInteger DOC_TYPE = VariableLengthInteger.fromEncoded( 0x4282 );
+
+    private static final VariableLengthInteger DOC_TYPE_VERSION = VariableLengthInteger.fromEncoded( 0x4287 );
+
+    private static final VariableLengthInteger DOC_TYPE_READ_VERSION = VariableLengthInteger.fromEncoded( 0x4285 );
+
+    private static final VariableLengthInteger SEGMENT = VariableLengthInteger.fromEncoded( 0x18538067 );
+
+    private static final VariableLengthInteger INFO = VariableLengthInteger.fromEncoded( 0x1549A966 );
+
+    private static final VariableLengthInteger TIMECODE_SCALE = VariableLengthInteger.fromEncoded( 0x2AD7B1 );
+
+    private static final VariableLengthInteger DURATION = VariableLengthInteger.fromEncoded( 0x4489 );
+
+    private static final VariableLengthInteger TITLE = VariableLengthInteger.fromEncoded( 0x7BA9 );
+
+    private static final VariableLengthInteger MUXING_APP = VariableLengthInteger.fromEncoded( 0x4D80 );
+
+    private static final VariableLengthInteger WRITING_APP = VariableLengthInteger.fromEncoded( 0x5741 );
+
+    private static final VariableLengthInteger TRACKS = VariableLengthInteger.fromEncoded( 0x1654AE6B );
+
+    private static final VariableLengthInteger TRACK_ENTRY = VariableLengthInteger.fromEncoded( 0xAE );
+
+    private static final VariableLengthInteger TRACK_NUMBER = VariableLengthInteger.fromEncoded( 0xD7 );
+
+    private static final VariableLengthInteger TRACK_TYPE = VariableLengthInteger.fromEncoded( 0x83 );
+
+    private static final VariableLengthInteger CODEC_ID = VariableLengthInteger.fromEncoded( 0x86 );
+
+    private static final VariableLengthInteger LANGUAGE = VariableLengthInteger.fromEncoded( 0x22B59C );
+
+    private static final VariableLengthInteger NAME = VariableLengthInteger.fromEncoded( 0x536E );
+
+    private static final VariableLengthInteger CLUSTER = VariableLengthInteger.fromEncoded( 0x1F43B675 );
+
+    private static final VariableLengthInteger SEEK_HEAD = VariableLengthInteger.fromEncoded( 0x114D9B74 );
+
+    private static final VariableLengthInteger SEEK = VariableLengthInteger.fromEncoded( 0x4DBB );
+
+    private static final VariableLengthInteger SEEK_ID = VariableLengthInteger.fromEncoded( 0x53AB );
+
+    private static final VariableLengthInteger SEEK_POSITION = VariableLengthInteger.fromEncoded( 0x53AC );
+
+
+    private final EbmlDecoder decoder = new EbmlDecoder();
+
+    private final int limit;
+
+    private final long budget;
+
+
+    /**
+     * Creates a new {@code HeaderProbe} that reads at most {@link #DEFAULT_LIMIT} bytes at once and at most {@link
+     * #DEFAULT_BUDGET} bytes of each file.
+     */
+    public HeaderProbe() {
+        this( DEFAULT_LIMIT, DEFAULT_BUDGET );
+    }
+
+    /**
+     * Creates a new {@code HeaderProbe} that reads at most three times the limit bytes of each file.
+     *
+     * @param limit the maximum number of bytes read at once
+     *
+     * @throws IllegalArgumentException if {@code limit} is less than {@code 64}
+     */
+    public HeaderProbe( int limit ) {
+        this( limit, 3L * limit );
+    }
+
+    /**
+     * Creates a new {@code HeaderProbe}.
+     *
+     * @param limit the maximum number of bytes read at once
+     * @param budget the maximum total number of bytes read from each file
+     *
+     * @throws IllegalArgumentException if {@code limit} is less than {@code 64}
+     * @throws IllegalArgumentException if {@code budget} is less than {@code limit}
+     */
+    public HeaderProbe( int limit, long budget ) {
+        if ( limit < MINIMUM_LIMIT ) {
+            throw new IllegalArgumentException( String.format( "limit is less than %d: %d", MINIMUM_LIMIT, limit ) );
+        }
+        if ( budget < limit ) {
+            throw new IllegalArgumentException( String.format( "budget is less than limit: %d < %d", budget, limit ) );
+        }
+        this.limit = limit;
+        this.budget = budget;
+    }
+
+
+    /**
+     * Returns the maximum number of bytes read at once, either from the start of the file or from the position of an
+     * element found in the {@code SeekHead} element.
+     *
+     * @return the limit
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Returns the maximum total number of bytes read from each file.
+     *
+     * @return the budget
+     */
+    public long getBudget() {
+        return budget;
+    }
+
+
+    /**
+     * Probes the specified file.
+     *
+     * @param file the file to probe
+     *
+     * @return the probe result
+     *
+     * @throws IllegalArgumentException if {@code file} is {@code null}
+     * @throws IOException if an I/O error has occurred
+     * @throws EbmlFormatException if the file does not start with the EBML header or contains malformed elements
+     */
+    public ProbeResult probe( File file ) throws IOException {
+        if ( file == null ) {
+            throw new IllegalArgumentException( "file is null" );
+        }
+        ByteBuffer buffer = BufferPool.getSharedPool().acquire( limit, false );
+        try {
+            FileInputStream stream = new FileInputStream( file );
+            try {
+                FileChannel channel = stream.getChannel();
+                ProbeResult result = new ProbeResult( file );
+                read( channel, buffer, 0L, limit, result );
+                Parser parser = new Parser( buffer, 0L, result );
+                parser.parse();
+                if ( !result.complete ) {
+                    seek( channel, buffer, parser, result );
+                    result.complete = parser.headerFound && result.infoFound && result.tracksFound;
+                }
+                return result;
+            } finally {
+                try {
+                    stream.close();
+                } catch ( IOException e ) {
+                    Logger.getLogger( getClass().getName() ).log( Level.WARNING, "exception thrown while closing an I/O resource", e );
+                }
+            }
+        } finally {
+            BufferPool.getSharedPool().release( buffer );
+        }
+    }
+
+    /**
+     * Reads the elements found in the {@code SeekHead} element that were not read from the start of the file. The
+     * buffer still contains the start of the file, so the elements located within it are parsed without reading.
+     */
+    private void seek( FileChannel channel, ByteBuffer buffer, Parser parser, ProbeResult result ) throws IOException {
+        long[] targets = { parser.infoPosition, parser.tracksPosition };
+        if ( targets[ 0 ] > targets[ 1 ] ) {
+            targets = new long[] { targets[ 1 ], targets[ 0 ] };
+        }
+        long offset = 0L;
+        for ( long target : targets ) {
+            if ( target < 0L || target == parser.infoPosition && result.infoFound || target == parser.tracksPosition && result.tracksFound ) {
+                continue;
+            }
+            if ( target < offset || target >= offset + buffer.limit() ) {
+                int length = ( int ) Math.min( limit, budget - result.bytesRead );
+                if ( length < MINIMUM_LIMIT ) {
+                    break;
+                }
+                read( channel, buffer, target, length, result );
+                offset = target;
+            }
+            buffer.position( ( int ) ( target - offset ) );
+            new Parser( buffer, offset, result ).parseSegment( buffer.limit() );
+        }
+    }
+
+    /** Reads at most the specified number of bytes at the specified position into the buffer and flips the buffer. */
+    private static void read( FileChannel channel, ByteBuffer buffer, long position, int length, ProbeResult result ) throws IOException {
+        buffer.clear();
+        buffer.limit( length );
+        while ( buffer.hasRemaining() ) {
+            int count = channel.read( buffer, position + buffer.position() );
+            if ( count < 0 ) {
+                break;
+            }
+        }
+        buffer.flip();
+        result.bytesRead += buffer.limit();
+        result.reads++;
+    }
+
+
+    /** Decodes the elements from the buffer with the probed part of the file. */
+    private final class Parser {
+
+        private final ByteBuffer buffer;
+
+        /** The file position of the start of the buffer. */
+        private final long offset;
+
+        private final ProbeResult result;
+
+
+        /** Whether the EBML header was read completely. */
+        private boolean headerFound;
+
+        /** The file position of the data of the first segment, or {@code -1} if the segment was not found. */
+        private long segmentDataPosition = -1L;
+
+        /** The file position of the {@code Info} element found in the {@code SeekHead} element, or {@code -1}. */
+        private long infoPosition = -1L;
+
+        /** The file position of the {@code Tracks} element found in the {@code SeekHead} element, or {@code -1}. */
+        private long tracksPosition = -1L;
+
+
+        private VariableLengthInteger identifier;
+
+        /** The data size of the current element, or {@code -1} if the size is unknown. */
+        private long size;
+
+        /** Whether the probed part of the file ended before the end of an element that was being read. */
+        private boolean truncated;
+
+
+        private Parser( ByteBuffer buffer, long offset, ProbeResult result ) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.result = result;
+        }
+
+
+        private void parse() throws CharacterCodingException {
+            if ( !next( buffer.limit() ) ) {
+                throw new EbmlFormatException( "the file is empty" );
+            }
+            if ( !EBML.equals( identifier ) ) {
+                throw new EbmlFormatException( "the file does not start with the EBML header" );
+            }
+            parseHeader( end( buffer.limit() ) );
+            headerFound = !truncated;
+            while ( !truncated && next( buffer.limit() ) ) {
+                if ( SEGMENT.equals( identifier ) ) {
+                    // the segment usually extends beyond the buffer, which does not make its children truncated
+                    segmentDataPosition = offset + buffer.position();
+                    parseSegment( size < 0L ? buffer.limit() : ( int ) Math.min( buffer.position() + size, buffer.limit() ) );
+                    break;
+                }
+                skip( end( buffer.limit() ) );
+            }
+            result.complete = headerFound && result.infoFound && result.tracksFound;
+        }
+
+        private void parseHeader( int end ) throws CharacterCodingException {
+            while ( next( end ) && hasData( end ) ) {
+                int length = ( int ) size;
+                if ( DOC_TYPE.equals( identifier ) ) {
+                    result.docType = decoder.decodeAsciiString( buffer, length );
+                } else if ( DOC_TYPE_VERSION.equals( identifier ) ) {
+                    result.docTypeVersion = decoder.decodeUnsignedInteger( buffer, length );
+                } else if ( DOC_TYPE_READ_VERSION.equals( identifier ) ) {
+                    result.docTypeReadVersion = decoder.decodeUnsignedInteger( buffer, length );
+                } else {
+                    skip( buffer.position() + length );
+                }
+            }
+        }
+
+        private void parseSegment( int end ) throws CharacterCodingException {
+            while ( !truncated && !( result.infoFound && result.tracksFound ) && next( end ) ) {
+                if ( CLUSTER.equals( identifier ) ) {
+                    break;
+                }
+                int elementEnd = end( end );
+                if ( INFO.equals( identifier ) ) {
+                    parseInfo( elementEnd );
+                    result.infoFound = !truncated;
+                } else if ( TRACKS.equals( identifier ) ) {
+                    parseTracks( elementEnd );
+                    result.tracksFound = !truncated;
+                } else if ( SEEK_HEAD.equals( identifier ) && segmentDataPosition >= 0L ) {
+                    parseSeekHead( elementEnd );
+                } else {
+                    skip( elementEnd );
+                }
+            }
+        }
+
+        private void parseSeekHead( int end ) {
+            while ( next( end ) ) {
+                int elementEnd = end( end );
+                if ( SEEK.equals( identifier ) ) {
+                    parseSeek( elementEnd );
+                } else {
+                    skip( elementEnd );
+                }
+                if ( truncated ) {
+                    break;
+                }
+            }
+        }
+
+        private void parseSeek( int end ) {
+            long seekIdentifier = -1L;
+            long seekPosition = -1L;
+            while ( next( end ) && hasData( end ) ) {
+                int length = ( int ) size;
+                if ( SEEK_ID.equals( identifier ) && length <= 4 ) {
+                    seekIdentifier = decoder.decodeUnsignedInteger( buffer, length );
+                } else if ( SEEK_POSITION.equals( identifier ) ) {
+                    seekPosition = decoder.decodeUnsignedInteger( buffer, length );
+                } else {
+                    skip( buffer.position() + length );
+                }
+            }
+            if ( seekPosition >= 0L ) {
+                if ( seekIdentifier == INFO.getEncodedValue() && infoPosition < 0L ) {
+                    infoPosition = segmentDataPosition + seekPosition;
+                } else if ( seekIdentifier == TRACKS.getEncodedValue() && tracksPosition < 0L ) {
+                    tracksPosition = segmentDataPosition + seekPosition;
+                }
+            }
+        }
+
+        private void parseInfo( int end ) throws CharacterCodingException {
+            while ( next( end ) && hasData( end ) ) {
+                int length = ( int ) size;
+                if ( TIMECODE_SCALE.equals( identifier ) ) {
+                    result.timecodeScale = decoder.decodeUnsignedInteger( buffer, length );
+                } else if ( DURATION.equals( identifier ) ) {
+                    result.duration = decoder.decodeFloatingPoint( buffer, length );
+                } else if ( TITLE.equals( identifier ) ) {
+                    result.title = decoder.decodeUnicodeString( buffer, length );
+                } else if ( MUXING_APP.equals( identifier ) ) {
+                    result.muxingApp = decoder.decodeUnicodeString( buffer, length );
+                } else if ( WRITING_APP.equals( identifier ) ) {
+                    result.writingApp = decoder.decodeUnicodeString( buffer, length );
+                } else {
+                    skip( buffer.position() + length );
+                }
+            }
+        }
+
+        private void parseTracks( int end ) throws CharacterCodingException {
+            result.tracks.clear();
+            while ( next( end ) ) {
+                int elementEnd = end( end );
+                if ( TRACK_ENTRY.equals( identifier ) ) {
+                    ProbeTrack track = new ProbeTrack();
+                    parseTrackEntry( elementEnd, track );
+                    result.tracks.add( track );
+                } else {
+                    skip( elementEnd );
+                }
+                if ( truncated ) {
+                    break;
+                }
+            }
+        }
+
+        private void parseTrackEntry( int end, ProbeTrack track ) throws CharacterCodingException {
+            while ( next( end ) && hasData( end ) ) {
+                int length = ( int ) size;
+                if ( TRACK_NUMBER.equals( identifier ) ) {
+                    track.number = decoder.decodeUnsignedInteger( buffer, length );
+                } else if ( TRACK_TYPE.equals( identifier ) ) {
+                    track.type = decoder.decodeUnsignedInteger( buffer, length );
+                } else if ( CODEC_ID.equals( identifier ) ) {
+                    track.codecId = decoder.decodeAsciiString( buffer, length );
+                } else if ( LANGUAGE.equals( identifier ) ) {
+                    track.language = decoder.decodeAsciiString( buffer, length );
+                } else if ( NAME.equals( identifier ) ) {
+                    track.name = decoder.decodeUnicodeString( buffer, length );
+                } else {
+                    skip( buffer.position() + length );
+                }
+            }
+        }
+
+
+        /**
+         * Reads the header of the next element that starts before the specified position.
+         *
+         * @return {@code true} if the header was read, {@code false} if there are no more elements or the header is
+         *         truncated
+         */
+        private boolean next( int end ) {
+            if ( truncated || buffer.position() >= end ) {
+                return false;
+            }
+            try {
+                identifier = decoder.decodeVariableLengthInteger( buffer );
+                VariableLengthInteger elementSize = decoder.decodeVariableLengthInteger( buffer );
+                size = elementSize.isReserved() ? -1L : elementSize.getPlainValue();
+                return true;
+            } catch ( BufferUnderflowException ignored ) {
+                truncated = true;
+                return false;
+            }
+        }
+
+        /**
+         * Returns the end of the data of the current master element within the buffer. Elements of unknown size extend
+         * to the end of the parent element.
+         */
+        private int end( int parentEnd ) {
+            if ( size < 0L ) {
+                return parentEnd;
+            }
+            long end = buffer.position() + size;
+            if ( end > buffer.limit() ) {
+                truncated = true;
+                return buffer.limit();
+            }
+            return ( int ) end;
+        }
+
+        /** Checks whether the data of the current non-master element is available in the buffer. */
+        private boolean hasData( int end ) {
+            if ( size < 0L ) {
+                throw new EbmlFormatException( String.format( "the size of the element %s is unknown", identifier ) );
+            }
+            if ( buffer.position() + size > Math.min( end, buffer.limit() ) ) {
+                truncated = true;
+                return false;
+            }
+            return true;
+        }
+
+        private void skip( int end ) {
+            if ( !truncated ) {
+                buffer.position( end );
+            }
+        }
+
+    }
+
+}
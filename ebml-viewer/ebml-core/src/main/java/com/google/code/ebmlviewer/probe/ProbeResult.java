@@ -0,0 +1,227 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.probe;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Contains the structural information found by the {@link HeaderProbe} at the beginning of a file: the values of the
+ * EBML header, the {@code Info} element and the {@code Tracks} element of the first segment.
+ * <p/>
+ * A probe that failed produces a result without the structural information, the cause of the failure is available
+ * from the {@link #getError()} method.
+ */
+public final class ProbeResult {
+
+    private final File file;
+
+    private final Exception error;
+
+
+    String docType;
+
+    long docTypeVersion = 1L;
+
+    long docTypeReadVersion = 1L;
+
+    long timecodeScale = 1000000L;
+
+    double duration = Double.NaN;
+
+    String title;
+
+    String muxingApp;
+
+    String writingApp;
+
+    final List<ProbeTrack> tracks = new ArrayList<ProbeTrack>();
+
+    boolean infoFound;
+
+    boolean tracksFound;
+
+    boolean complete;
+
+    long bytesRead;
+
+    int reads;
+
+
+    ProbeResult( File file ) {
+        this( file, null );
+    }
+
+    ProbeResult( File file, Exception error ) {
+        this.file = file;
+        this.error = error;
+    }
+
+
+    /**
+     * Returns the probed file.
+     *
+     * @return the file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the cause of the probe failure.
+     *
+     * @return the exception thrown by the probe, a {@link java.util.concurrent.TimeoutException} if the probe did not
+     *         complete in time, or {@code null} if the probe succeeded
+     */
+    public Exception getError() {
+        return error;
+    }
+
+    /**
+     * Returns the value of the {@code DocType} element of the EBML header.
+     *
+     * @return the document type, or {@code null} if the EBML header was not found
+     */
+    public String getDocType() {
+        return docType;
+    }
+
+    /**
+     * Returns the value of the {@code DocTypeVersion} element of the EBML header.
+     *
+     * @return the document type version
+     */
+    public long getDocTypeVersion() {
+        return docTypeVersion;
+    }
+
+    /**
+     * Returns the value of the {@code DocTypeReadVersion} element of the EBML header.
+     *
+     * @return the document type read version
+     */
+    public long getDocTypeReadVersion() {
+        return docTypeReadVersion;
+    }
+
+    /**
+     * Returns the value of the {@code TimecodeScale} element.
+     *
+     * @return the timecode scale in nanoseconds
+     */
+    public long getTimecodeScale() {
+        return timecodeScale;
+    }
+
+    /**
+     * Returns the value of the {@code Duration} element.
+     *
+     * @return the segment duration in the units of the timecode scale, or {@link Double#NaN} if the element is absent
+     */
+    public double getDuration() {
+        return duration;
+    }
+
+    /**
+     * Returns the value of the {@code Title} element.
+     *
+     * @return the segment title, or {@code null} if the element is absent
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * Returns the value of the {@code MuxingApp} element.
+     *
+     * @return the muxing application, or {@code null} if the element is absent
+     */
+    public String getMuxingApp() {
+        return muxingApp;
+    }
+
+    /**
+     * Returns the value of the {@code WritingApp} element.
+     *
+     * @return the writing application, or {@code null} if the element is absent
+     */
+    public String getWritingApp() {
+        return writingApp;
+    }
+
+    /**
+     * Returns the tracks described by the {@code Tracks} element.
+     *
+     * @return the unmodifiable list of the tracks
+     */
+    public List<ProbeTrack> getTracks() {
+        return Collections.unmodifiableList( tracks );
+    }
+
+    /**
+     * Returns the number of bytes read from the file by the probe.
+     *
+     * @return the number of bytes read
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Returns the number of positional reads performed by the probe.
+     *
+     * @return the number of reads
+     */
+    public int getReads() {
+        return reads;
+    }
+
+    /**
+     * Checks whether the EBML header, the {@code Info} element and the {@code Tracks} element were found and read
+     * completely within the probed part of the file.
+     *
+     * @return {@code true} if the result is complete, {@code false} if some of the elements are located after the probed
+     *         part of the file or the probe failed
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+
+    @Override
+    public String toString() {
+        return error == null
+                ? String.format( "ProbeResult(%s, %s, %s tracks)", file, docType, tracks.size() )
+                : String.format( "ProbeResult(%s, %s)", file, error );
+    }
+
+}
@@ -0,0 +1,238 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.probe;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Provides the results of a batch probe started by the {@link BatchProber} in the order of completion.
+ * <p/>
+ * The results must be consumed by a single thread. The next files are submitted to the workers as the results are
+ * consumed, and the per-file timeouts are enforced while the consumer waits for the next result. If the consuming
+ * thread is interrupted while waiting, the remaining probes are cancelled, the iteration ends and the interrupt status
+ * of the thread is preserved. The results should be {@link #close() closed} if they are not consumed completely.
+ */
+public final class ProbeResults implements Iterator<ProbeResult>, Closeable {
+
+    private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+
+    private final HeaderProbe probe;
+
+    private final Iterator<File> files;
+
+    private final int concurrency;
+
+    private final long timeoutNanos;
+
+    private final ThreadPoolExecutor executor;
+
+    private final BlockingQueue<ProbeTask> completed = new LinkedBlockingQueue<ProbeTask>();
+
+    /** The submitted tasks whose results were not consumed yet, in the order of submission. */
+    private final List<ProbeTask> pending = new ArrayList<ProbeTask>();
+
+
+    private ProbeResult next;
+
+    private boolean closed;
+
+
+    ProbeResults( HeaderProbe probe, Iterator<File> files, int concurrency, long timeoutNanos ) {
+        this.probe = probe;
+        this.files = files;
+        this.concurrency = concurrency;
+        this.timeoutNanos = timeoutNanos;
+        executor = new ThreadPoolExecutor( concurrency, concurrency, 1L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new WorkerFactory() );
+        executor.allowCoreThreadTimeOut( true );
+    }
+
+
+    @Override
+    public boolean hasNext() {
+        if ( next != null ) {
+            return true;
+        }
+        if ( closed ) {
+            return false;
+        }
+        while ( pending.size() < concurrency && files.hasNext() ) {
+            ProbeTask task = new ProbeTask( files.next() );
+            pending.add( task );
+            executor.execute( task );
+        }
+        if ( pending.isEmpty() ) {
+            close();
+            return false;
+        }
+        try {
+            next = take();
+            return true;
+        } catch ( InterruptedException ignored ) {
+            close();
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Override
+    public ProbeResult next() {
+        if ( !hasNext() ) {
+            throw new NoSuchElementException();
+        }
+        ProbeResult result = next;
+        next = null;
+        return result;
+    }
+
+    /**
+     * Throws {@code UnsupportedOperationException}.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /** Cancels the remaining probes and stops the worker threads. */
+    @Override
+    public void close() {
+        if ( !closed ) {
+            closed = true;
+            executor.shutdownNow();
+            pending.clear();
+            completed.clear();
+        }
+    }
+
+
+    private ProbeResult take() throws InterruptedException {
+        while ( true ) {
+            ProbeTask task;
+            if ( timeoutNanos == 0L ) {
+                task = completed.take();
+            } else {
+                long now = System.nanoTime();
+                long deadline = Long.MAX_VALUE;
+                for ( ProbeTask candidate : pending ) {
+                    if ( candidate.deadline - now <= 0L ) {
+                        candidate.cancel( true );
+                    } else if ( deadline == Long.MAX_VALUE || candidate.deadline - deadline < 0L ) {
+                        deadline = candidate.deadline;
+                    }
+                }
+                task = deadline == Long.MAX_VALUE ? completed.take() : completed.poll( deadline - now, TimeUnit.NANOSECONDS );
+            }
+            if ( task != null ) {
+                pending.remove( task );
+                return task.getResult();
+            }
+        }
+    }
+
+
+    private final class ProbeTask extends FutureTask<ProbeResult> {
+
+        private final File file;
+
+        /** The time when the probe is timed out, it is submitted only when a worker is available to start it. */
+        private final long deadline;
+
+
+        private ProbeTask( final File file ) {
+            super( new Callable<ProbeResult>() {
+                @Override
+                public ProbeResult call() throws Exception {
+                    return probe.probe( file );
+                }
+            } );
+            this.file = file;
+            deadline = System.nanoTime() + timeoutNanos;
+        }
+
+
+        @Override
+        protected void done() {
+            completed.add( this );
+        }
+
+        private ProbeResult getResult() throws InterruptedException {
+            try {
+                return get();
+            } catch ( CancellationException ignored ) {
+                return new ProbeResult( file, new TimeoutException( String.format( "the probe of %s did not complete in %d ms",
+                        file, TimeUnit.NANOSECONDS.toMillis( timeoutNanos ) ) ) );
+            } catch ( ExecutionException e ) {
+                Throwable cause = e.getCause();
+                if ( cause instanceof Exception ) {
+                    return new ProbeResult( file, ( Exception ) cause );
+                }
+                throw ( Error ) cause;
+            }
+        }
+
+    }
+
+
+    private static final class WorkerFactory implements ThreadFactory {
+
+        private final String prefix = "ebml-probe-" + POOL_NUMBER.incrementAndGet() + "-";
+
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+
+        @Override
+        public Thread newThread( Runnable runnable ) {
+            Thread thread = new Thread( runnable, prefix + threadNumber.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        }
+
+    }
+
+}
@@ -0,0 +1,101 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.probe;
+
+/** Describes a single {@code TrackEntry} element found by the {@link HeaderProbe}. */
+public final class ProbeTrack {
+
+    long number;
+
+    long type;
+
+    String codecId;
+
+    String language = "eng";
+
+    String name;
+
+
+    ProbeTrack() {
+    }
+
+
+    /**
+     * Returns the value of the {@code TrackNumber} element.
+     *
+     * @return the track number, or {@code 0} if the element is absent
+     */
+    public long getNumber() {
+        return number;
+    }
+
+    /**
+     * Returns the value of the {@code TrackType} element.
+     *
+     * @return the track type, or {@code 0} if the element is absent
+     */
+    public long getType() {
+        return type;
+    }
+
+    /**
+     * Returns the value of the {@code CodecID} element.
+     *
+     * @return the codec identifier, or {@code null} if the element is absent
+     */
+    public String getCodecId() {
+        return codecId;
+    }
+
+    /**
+     * Returns the value of the {@code Language} element.
+     *
+     * @return the track language, {@code "eng"} if the element is absent
+     */
+    public String getLanguage() {
+        return language;
+    }
+
+    /**
+     * Returns the value of the {@code Name} element.
+     *
+     * @return the track name, or {@code null} if the element is absent
+     */
+    public String getName() {
+        return name;
+    }
+
+
+    @Override
+    public String toString() {
+        return String.format( "ProbeTrack(%s, %s, %s)", number, type, codecId );
+    }
+
+}
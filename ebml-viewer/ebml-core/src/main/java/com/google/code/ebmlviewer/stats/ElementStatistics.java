@@ -0,0 +1,247 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.stats;
+
+import com.google.code.ebmlviewer.core.VariableLengthInteger;
+import com.google.code.ebmlviewer.elements.ElementDescriptor;
+
+/**
+ * Accumulates the statistics for all elements with the same identifier.
+ * <p/>
+ * The data sizes are collected into a logarithmic histogram, where the bucket {@code i} counts the elements whose data
+ * size needs exactly {@code i} bits to be represented (the bucket {@code 0} counts the empty elements).
+ */
+public final class ElementStatistics {
+
+    /** The number of buckets in the data size histogram. */
+    public static final int HISTOGRAM_SIZE = 65;
+
+
+    private final VariableLengthInteger identifier;
+
+    private final ElementDescriptor descriptor;
+
+
+    private long count;
+
+    private long totalHeaderSize;
+
+    private long totalDataSize;
+
+    private long minimumDataSize = Long.MAX_VALUE;
+
+    private long maximumDataSize = -1L;
+
+    private int maximumDepth = -1;
+
+    private final long[] histogram = new long[ HISTOGRAM_SIZE ];
+
+
+    /**
+     * Creates a new empty {@code ElementStatistics}.
+     *
+     * @param identifier the element identifier
+     * @param descriptor the element descriptor, can be {@code null} for unknown elements
+     *
+     * @throws IllegalArgumentException if {@code identifier} is {@code null}
+     */
+    public ElementStatistics( VariableLengthInteger identifier, ElementDescriptor descriptor ) {
+        if ( identifier == null ) {
+            throw new IllegalArgumentException( "identifier is null" );
+        }
+        this.identifier = identifier;
+        this.descriptor = descriptor;
+    }
+
+
+    /**
+     * Returns the identifier of the elements described by this statistics.
+     *
+     * @return the element identifier
+     */
+    public VariableLengthInteger getIdentifier() {
+        return identifier;
+    }
+
+    /**
+     * Returns the descriptor of the elements described by this statistics.
+     *
+     * @return the element descriptor or {@code null} if the element is unknown
+     */
+    public ElementDescriptor getDescriptor() {
+        return descriptor;
+    }
+
+    /**
+     * Returns the name of the elements described by this statistics.
+     *
+     * @return the element name or {@code "?"} if the element is unknown
+     */
+    public String getName() {
+        return descriptor == null ? "?" : descriptor.getName();
+    }
+
+
+    /**
+     * Returns the number of elements.
+     *
+     * @return the number of elements
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the total number of bytes occupied by the identifiers and sizes of the elements.
+     *
+     * @return the total header size
+     */
+    public long getTotalHeaderSize() {
+        return totalHeaderSize;
+    }
+
+    /**
+     * Returns the total number of bytes occupied by the data of the elements. The data of the master elements includes
+     * their child elements.
+     *
+     * @return the total data size
+     */
+    public long getTotalDataSize() {
+        return totalDataSize;
+    }
+
+    /**
+     * Returns the smallest data size.
+     *
+     * @return the minimum data size or {@code -1} if no elements were recorded
+     */
+    public long getMinimumDataSize() {
+        return count == 0L ? -1L : minimumDataSize;
+    }
+
+    /**
+     * Returns the largest data size.
+     *
+     * @return the maximum data size or {@code -1} if no elements were recorded
+     */
+    public long getMaximumDataSize() {
+        return maximumDataSize;
+    }
+
+    /**
+     * Returns the deepest level at which the elements were found, the top-level elements have the depth {@code 0}.
+     *
+     * @return the maximum depth or {@code -1} if no elements were recorded
+     */
+    public int getMaximumDepth() {
+        return maximumDepth;
+    }
+
+    /**
+     * Returns the number of elements in the specified bucket of the data size histogram.
+     *
+     * @param bucket the histogram bucket
+     *
+     * @return the number of elements whose data size needs exactly {@code bucket} bits to be represented
+     *
+     * @throws IndexOutOfBoundsException if {@code bucket} is negative or not less than {@value #HISTOGRAM_SIZE}
+     */
+    public long getHistogramCount( int bucket ) {
+        return histogram[ bucket ];
+    }
+
+    /**
+     * Returns the histogram bucket the specified data size falls into.
+     *
+     * @param dataSize the data size
+     *
+     * @return the histogram bucket
+     */
+    public static int getHistogramBucket( long dataSize ) {
+        return 64 - Long.numberOfLeadingZeros( dataSize );
+    }
+
+
+    /**
+     * Records a single element.
+     *
+     * @param headerSize the number of bytes occupied by the element identifier and size
+     * @param dataSize the number of bytes occupied by the element data
+     * @param depth the depth at which the element was found
+     */
+    public void record( int headerSize, long dataSize, int depth ) {
+        count++;
+        totalHeaderSize += headerSize;
+        totalDataSize += dataSize;
+        if ( dataSize < minimumDataSize ) {
+            minimumDataSize = dataSize;
+        }
+        if ( dataSize > maximumDataSize ) {
+            maximumDataSize = dataSize;
+        }
+        if ( depth > maximumDepth ) {
+            maximumDepth = depth;
+        }
+        histogram[ getHistogramBucket( dataSize ) ]++;
+    }
+
+    /**
+     * Adds the contents of the specified statistics to this statistics.
+     *
+     * @param other the statistics to add
+     *
+     * @throws IllegalArgumentException if {@code other} is {@code null} or describes elements with a different
+     * identifier
+     */
+    public void merge( ElementStatistics other ) {
+        if ( other == null ) {
+            throw new IllegalArgumentException( "other is null" );
+        }
+        if ( !identifier.equals( other.identifier ) ) {
+            throw new IllegalArgumentException( String.format( "identifiers do not match: %s and %s", identifier, other.identifier ) );
+        }
+        count += other.count;
+        totalHeaderSize += other.totalHeaderSize;
+        totalDataSize += other.totalDataSize;
+        minimumDataSize = Math.min( minimumDataSize, other.minimumDataSize );
+        maximumDataSize = Math.max( maximumDataSize, other.maximumDataSize );
+        maximumDepth = Math.max( maximumDepth, other.maximumDepth );
+        for ( int i = 0; i < HISTOGRAM_SIZE; i++ ) {
+            histogram[ i ] += other.histogram[ i ];
+        }
+    }
+
+
+    @Override
+    public String toString() {
+        return String.format( "ElementStatistics(%s, %s, count %d, header %d, data %d)", identifier, getName(), count, totalHeaderSize, totalDataSize );
+    }
+
+}
@@ -0,0 +1,284 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.stats;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.code.ebmlviewer.core.VariableLengthInteger;
+import com.google.code.ebmlviewer.elements.ElementDescriptor;
+import com.google.code.ebmlviewer.elements.ElementType;
+import com.google.code.ebmlviewer.stream.EbmlStreamReader;
+
+import static com.google.code.ebmlviewer.elements.ElementDescriptors.getDefaultDescriptors;
+
+/**
+ * Collects the structural statistics of EBML files.
+ * <p/>
+ * The scanner walks the files sequentially with the {@link EbmlStreamReader}, descending into every element that is
+ * described as a master element, so the memory usage does not depend on the file size. Directories are scanned by a
+ * bounded pool of worker threads, each file is scanned into its own {@link StructureStatistics} which is then merged
+ * into the combined result.
+ */
+public final class StructureScanner {
+
+    private final Map<VariableLengthInteger, ElementDescriptor> descriptors;
+
+
+    /** Creates a new {@code StructureScanner} that uses the default element descriptors. */
+    public StructureScanner() {
+        this( getDefaultDescriptors() );
+    }
+
+    /**
+     * Creates a new {@code StructureScanner}.
+     *
+     * @param descriptors the element descriptors used to recognize master elements and resolve element names
+     *
+     * @throws IllegalArgumentException if {@code descriptors} is {@code null}
+     */
+    public StructureScanner( Map<VariableLengthInteger, ElementDescriptor> descriptors ) {
+        if ( descriptors == null ) {
+            throw new IllegalArgumentException( "descriptors is null" );
+        }
+        this.descriptors = descriptors;
+    }
+
+
+    /**
+     * Scans the data provided by the specified reader and records every element into the specified statistics.
+     *
+     * @param reader the reader positioned before the first element of the data to scan
+     * @param statistics the statistics to update
+     *
+     * @throws IllegalArgumentException if {@code reader} or {@code statistics} is {@code null}
+     * @throws IOException if an I/O error has occurred
+     */
+    public void scan( EbmlStreamReader reader, StructureStatistics statistics ) throws IOException {
+        if ( reader == null ) {
+            throw new IllegalArgumentException( "reader is null" );
+        }
+        if ( statistics == null ) {
+            throw new IllegalArgumentException( "statistics is null" );
+        }
+        scan( reader, statistics, 0 );
+    }
+
+    private void scan( EbmlStreamReader reader, StructureStatistics statistics, int depth ) throws IOException {
+        while ( reader.next() ) {
+            VariableLengthInteger identifier = reader.getIdentifier();
+            VariableLengthInteger size = reader.getSize();
+            statistics.record( identifier, identifier.getEncodedLength() + size.getEncodedLength(), size.getPlainValue(), depth );
+            ElementDescriptor descriptor = descriptors.get( identifier );
+            if ( descriptor != null && descriptor.getType() == ElementType.MASTER ) {
+                reader.enterContainer();
+                scan( reader, statistics, depth + 1 );
+                reader.leaveContainer();
+            }
+        }
+    }
+
+
+    /**
+     * Scans the specified file.
+     *
+     * @param file the file to scan
+     *
+     * @return the statistics of the file
+     *
+     * @throws IllegalArgumentException if {@code file} is {@code null}
+     * @throws IOException if an I/O error has occurred
+     */
+    public StructureStatistics scan( File file ) throws IOException {
+        if ( file == null ) {
+            throw new IllegalArgumentException( "file is null" );
+        }
+        StructureStatistics statistics = new StructureStatistics( descriptors );
+        FileInputStream stream = new FileInputStream( file );
+        EbmlStreamReader reader = null;
+        try {
+            FileChannel channel = stream.getChannel();
+            long size = channel.size();
+            reader = new EbmlStreamReader( channel, size );
+            scan( reader, statistics );
+            statistics.recordFile( size );
+        } finally {
+            try {
+                // the reader returns its buffer to the pool
+                if ( reader != null ) {
+                    reader.close();
+                }
+                stream.close();
+            } catch ( IOException e ) {
+                Logger.getLogger( getClass().getName() ).log( Level.WARNING, "exception thrown while closing an I/O resource", e );
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Scans all files accepted by the specified filter in the specified directory and its subdirectories.
+     * <p/>
+     * The files that can not be scanned are not included in the result, but are counted in the {@link
+     * StructureStatistics#getFailedFileCount()}.
+     *
+     * @param directory the directory to scan
+     * @param filter the filter that selects the files to scan, or {@code null} to scan all files
+     * @param parallelism the maximum number of files scanned concurrently
+     *
+     * @return the combined statistics of all scanned files
+     *
+     * @throws IllegalArgumentException if {@code directory} is {@code null}
+     * @throws IllegalArgumentException if {@code parallelism} is not positive
+     * @throws InterruptedException if the current thread was interrupted while waiting for the workers
+     */
+    public StructureStatistics scan( File directory, FileFilter filter, int parallelism ) throws InterruptedException {
+        if ( directory == null ) {
+            throw new IllegalArgumentException( "directory is null" );
+        }
+        if ( parallelism <= 0 ) {
+            throw new IllegalArgumentException( "parallelism is not positive" );
+        }
+        StructureStatistics result = new StructureStatistics( descriptors );
+        // the bounded queue together with the caller-runs policy keeps the number of pending tasks constant
+        ExecutorService executor = new ThreadPoolExecutor( parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>( parallelism * 4 ), new ThreadPoolExecutor.CallerRunsPolicy() );
+        try {
+            submit( executor, directory, filter, result );
+        } finally {
+            executor.shutdown();
+        }
+        while ( !executor.awaitTermination( 1L, TimeUnit.SECONDS ) ) {
+            // keep waiting for the submitted files
+        }
+        return result;
+    }
+
+    private void submit( ExecutorService executor, File directory, FileFilter filter, StructureStatistics result ) throws InterruptedException {
+        File[] files = directory.listFiles();
+        if ( files == null ) {
+            return;
+        }
+        for ( File file : files ) {
+            if ( Thread.interrupted() ) {
+                throw new InterruptedException();
+            }
+            if ( file.isDirectory() ) {
+                submit( executor, file, filter, result );
+            } else if ( filter == null || filter.accept( file ) ) {
+                executor.execute( new ScanTask( file, result ) );
+            }
+        }
+    }
+
+
+    private final class ScanTask implements Runnable {
+
+        private final File file;
+
+        private final StructureStatistics result;
+
+
+        private ScanTask( File file, StructureStatistics result ) {
+            this.file = file;
+            this.result = result;
+        }
+
+
+        @Override
+        public void run() {
+            StructureStatistics statistics;
+            try {
+                statistics = scan( file );
+            } catch ( Exception e ) {
+                // a runtime exception from a malformed file must not abort the scan of the other files
+                Logger.getLogger( StructureScanner.class.getName() ).log( Level.FINE, "unable to scan " + file, e );
+                statistics = new StructureStatistics( descriptors );
+                statistics.recordFailedFile();
+            }
+            synchronized ( result ) {
+                result.merge( statistics );
+            }
+        }
+
+    }
+
+
+    /**
+     * Scans the files and directories specified as the command line arguments and prints the combined statistics to
+     * the standard output.
+     *
+     * @param args the files and directories to scan
+     *
+     * @throws InterruptedException if the scan was interrupted
+     */
+    public static void main( String[] args ) throws InterruptedException {
+        StructureScanner scanner = new StructureScanner();
+        StructureStatistics statistics = new StructureStatistics( scanner.descriptors );
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        for ( String arg : args ) {
+            File file = new File( arg );
+            if ( file.isDirectory() ) {
+                statistics.merge( scanner.scan( file, null, parallelism ) );
+            } else {
+                try {
+                    statistics.merge( scanner.scan( file ) );
+                } catch ( IOException e ) {
+                    System.err.printf( "%s: %s%n", file, e.getLocalizedMessage() );
+                    statistics.recordFailedFile();
+                }
+            }
+        }
+        print( statistics, System.out );
+    }
+
+    private static void print( StructureStatistics statistics, PrintStream out ) {
+        out.printf( "files: %,d (%,d failed), total size: %,d, maximum depth: %d%n",
+                statistics.getFileCount(), statistics.getFailedFileCount(), statistics.getTotalFileSize(), statistics.getMaximumDepth() );
+        out.printf( "%-32s %-12s %14s %16s %18s %14s %14s %5s%n", "name", "identifier", "count", "header bytes", "data bytes", "min size", "max size", "depth" );
+        for ( ElementStatistics element : statistics.getElements() ) {
+            out.printf( "%-32s %-12s %,14d %,16d %,18d %,14d %,14d %5d%n",
+                    element.getName(), element.getIdentifier(), element.getCount(), element.getTotalHeaderSize(), element.getTotalDataSize(),
+                    element.getMinimumDataSize(), element.getMaximumDataSize(), element.getMaximumDepth() );
+        }
+    }
+
+}
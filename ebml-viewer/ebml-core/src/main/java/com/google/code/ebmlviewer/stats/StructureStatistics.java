@@ -0,0 +1,207 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.stats;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.code.ebmlviewer.core.VariableLengthInteger;
+import com.google.code.ebmlviewer.elements.ElementDescriptor;
+
+/**
+ * Accumulates the structural statistics of one or more EBML files.
+ * <p/>
+ * The memory required by the statistics depends only on the number of distinct element identifiers and not on the
+ * number or the size of the scanned files. The {@link #merge(StructureStatistics)} operation is associative and
+ * commutative, so the statistics of individual files can be collected independently and combined in any order.
+ */
+public final class StructureStatistics {
+
+    private final Map<VariableLengthInteger, ElementDescriptor> descriptors;
+
+    private final Map<VariableLengthInteger, ElementStatistics> elements;
+
+
+    private long fileCount;
+
+    private long failedFileCount;
+
+    private long totalFileSize;
+
+    private int maximumDepth = -1;
+
+
+    /**
+     * Creates a new empty {@code StructureStatistics}.
+     *
+     * @param descriptors the element descriptors used to resolve the element names
+     *
+     * @throws IllegalArgumentException if {@code descriptors} is {@code null}
+     */
+    public StructureStatistics( Map<VariableLengthInteger, ElementDescriptor> descriptors ) {
+        if ( descriptors == null ) {
+            throw new IllegalArgumentException( "descriptors is null" );
+        }
+        this.descriptors = descriptors;
+        elements = new LinkedHashMap<VariableLengthInteger, ElementStatistics>();
+    }
+
+
+    /**
+     * Returns the statistics of all recorded elements, in the order the identifiers were first encountered.
+     *
+     * @return the element statistics
+     */
+    public List<ElementStatistics> getElements() {
+        return Collections.unmodifiableList( new ArrayList<ElementStatistics>( elements.values() ) );
+    }
+
+    /**
+     * Returns the statistics of the elements with the specified identifier.
+     *
+     * @param identifier the element identifier
+     *
+     * @return the element statistics or {@code null} if no such elements were recorded
+     */
+    public ElementStatistics getElement( VariableLengthInteger identifier ) {
+        return elements.get( identifier );
+    }
+
+
+    /**
+     * Returns the number of successfully scanned files.
+     *
+     * @return the number of files
+     */
+    public long getFileCount() {
+        return fileCount;
+    }
+
+    /**
+     * Returns the number of files that could not be scanned.
+     *
+     * @return the number of failed files
+     */
+    public long getFailedFileCount() {
+        return failedFileCount;
+    }
+
+    /**
+     * Returns the total size of the successfully scanned files.
+     *
+     * @return the total file size
+     */
+    public long getTotalFileSize() {
+        return totalFileSize;
+    }
+
+    /**
+     * Returns the deepest level at which any element was found.
+     *
+     * @return the maximum depth or {@code -1} if no elements were recorded
+     */
+    public int getMaximumDepth() {
+        return maximumDepth;
+    }
+
+
+    /**
+     * Records a single element.
+     *
+     * @param identifier the element identifier
+     * @param headerSize the number of bytes occupied by the element identifier and size
+     * @param dataSize the number of bytes occupied by the element data
+     * @param depth the depth at which the element was found
+     *
+     * @throws IllegalArgumentException if {@code identifier} is {@code null}
+     */
+    public void record( VariableLengthInteger identifier, int headerSize, long dataSize, int depth ) {
+        getOrCreate( identifier ).record( headerSize, dataSize, depth );
+        if ( depth > maximumDepth ) {
+            maximumDepth = depth;
+        }
+    }
+
+    /**
+     * Records a successfully scanned file.
+     *
+     * @param fileSize the file size
+     */
+    public void recordFile( long fileSize ) {
+        fileCount++;
+        totalFileSize += fileSize;
+    }
+
+    /** Records a file that could not be scanned. */
+    public void recordFailedFile() {
+        failedFileCount++;
+    }
+
+
+    /**
+     * Adds the contents of the specified statistics to this statistics.
+     *
+     * @param other the statistics to add
+     *
+     * @throws IllegalArgumentException if {@code other} is {@code null}
+     */
+    public void merge( StructureStatistics other ) {
+        if ( other == null ) {
+            throw new IllegalArgumentException( "other is null" );
+        }
+        for ( ElementStatistics element : other.elements.values() ) {
+            getOrCreate( element.getIdentifier() ).merge( element );
+        }
+        fileCount += other.fileCount;
+        failedFileCount += other.failedFileCount;
+        totalFileSize += other.totalFileSize;
+        maximumDepth = Math.max( maximumDepth, other.maximumDepth );
+    }
+
+
+    private ElementStatistics getOrCreate( VariableLengthInteger identifier ) {
+        ElementStatistics element = elements.get( identifier );
+        if ( element == null ) {
+            element = new ElementStatistics( identifier, descriptors.get( identifier ) );
+            elements.put( identifier, element );
+        }
+        return element;
+    }
+
+
+    @Override
+    public String toString() {
+        return String.format( "StructureStatistics(%d files, %d failed, %d identifiers, depth %d)", fileCount, failedFileCount, elements.size(), maximumDepth );
+    }
+
+}
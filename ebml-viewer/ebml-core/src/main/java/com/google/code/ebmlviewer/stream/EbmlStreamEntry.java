@@ -38,12 +38,14 @@ final class EbmlStreamEntry {
 
     private final VariableLengthInteger size;
 
+    private final long position;
+
     private long remaining;
 
     private boolean touched;
 
 
-    EbmlStreamEntry( VariableLengthInteger identifier, VariableLengthInteger size ) {
+    EbmlStreamEntry( VariableLengthInteger identifier, VariableLengthInteger size, long position ) {
         if ( identifier == null ) {
             throw new IllegalArgumentException( "identifier is null" );
         }
@@ -52,6 +54,7 @@ final class EbmlStreamEntry {
         }
         this.identifier = identifier;
         this.size = size;
+        this.position = position;
         remaining = size.getPlainValue();
     }
 
@@ -64,6 +67,10 @@ final class EbmlStreamEntry {
         return size;
     }
 
+    public long getPosition() {
+        return position;
+    }
+
 
     public long getRemaining() {
         return remaining;
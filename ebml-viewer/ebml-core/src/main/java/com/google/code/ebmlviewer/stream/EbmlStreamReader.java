@@ -36,26 +36,56 @@ import java.io.InputStream;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.util.Deque;
 import java.util.LinkedList;
 
+import com.google.code.ebmlviewer.core.DoubleColumn;
 import com.google.code.ebmlviewer.core.EbmlDecoder;
 import com.google.code.ebmlviewer.core.EbmlFormatException;
 import com.google.code.ebmlviewer.core.IllegalEncodedLengthException;
+import com.google.code.ebmlviewer.core.LongColumn;
+import com.google.code.ebmlviewer.core.StringCache;
 import com.google.code.ebmlviewer.core.VariableLengthInteger;
+import com.google.code.ebmlviewer.io.BufferPool;
 import com.google.code.ebmlviewer.io.EbmlIoException;
+import com.google.code.ebmlviewer.io.ReaderMetrics;
+import com.google.code.ebmlviewer.io.ReaderOptions;
 
 /** The {@code EbmlStreamReader} class allows sequential read-only access to the EBML data. */
 public final class EbmlStreamReader implements Closeable {
 
-    private static final int INPUT_BUFFER_SIZE = 8 * 1024;
+    private static final int UNSIGNED_INTEGER = 0;
+
+    private static final int SIGNED_INTEGER = 1;
+
+    private static final int FLOATING_POINT = 2;
 
 
     private final ReadableByteChannel source;
 
+    private final int bufferSize;
+
+    private final int maximumBufferSize;
+
+    private final boolean directBuffers;
+
+    private final BufferPool bufferPool;
+
+    private final ReaderMetrics metrics;
+
+    /** Whether the time is measured for the metrics. */
+    private final boolean timed;
+
     private ByteBuffer buffer;
 
+    /** The number of bytes read from the source so far. */
+    private long sourcePosition;
+
+    /** Whether the next read from the source continues the previous one. */
+    private boolean sequential;
+
     private EbmlDecoder decoder;
 
 
@@ -100,38 +130,106 @@ public final class EbmlStreamReader implements Closeable {
      * VariableLengthInteger#MAXIMUM_PLAIN_VALUE}
      */
     public EbmlStreamReader( ReadableByteChannel source, long size ) {
+        this( source, size, new ReaderOptions() );
+    }
+
+    /**
+     * Creates a new EBML stream reader.
+     * <p/>
+     * The input buffer starts with the configured buffer size and grows up to the maximum buffer size while the data is
+     * read sequentially or the reader reads the elements larger than the buffer. If the source is a {@code
+     * FileChannel}, the skipped element data larger than the buffer is not read at all, the source is repositioned
+     * instead and the buffer shrinks back towards the configured buffer size.
+     *
+     * @param source the data source
+     * @param size the maximum number of bytes to read from the source
+     * @param options the reader options
+     *
+     * @throws IllegalArgumentException if {@code source} or {@code options} is {@code null}
+     * @throws IllegalArgumentException if {@code size} is negative or greater than {@value
+     * VariableLengthInteger#MAXIMUM_PLAIN_VALUE}
+     */
+    public EbmlStreamReader( ReadableByteChannel source, long size, ReaderOptions options ) {
         if ( source == null ) {
             throw new IllegalArgumentException( "source is null" );
         }
         if ( size < 0L || size > VariableLengthInteger.MAXIMUM_PLAIN_VALUE ) {
             throw new IllegalArgumentException( String.format( "size is out of valid range: %#018xL", size ) );
         }
+        if ( options == null ) {
+            throw new IllegalArgumentException( "options is null" );
+        }
         this.source = source;
-        buffer = ByteBuffer.allocate( INPUT_BUFFER_SIZE );
+        bufferSize = options.getBufferSize();
+        maximumBufferSize = options.getMaximumBufferSize();
+        directBuffers = options.isDirectBuffers();
+        bufferPool = options.getBufferPool();
+        metrics = options.getMetrics();
+        timed = metrics != ReaderMetrics.NONE;
+        buffer = bufferPool.acquire( options.getBufferSize(), directBuffers );
         buffer.flip();
         decoder = new EbmlDecoder();
         containers = new LinkedList<EbmlStreamEntry>();
-        container = new EbmlStreamEntry( VariableLengthInteger.fromEncoded( 0xffL ), VariableLengthInteger.fromPlain( size ) );
+        container = new EbmlStreamEntry( VariableLengthInteger.fromEncoded( 0xffL ), VariableLengthInteger.fromPlain( size ), 0L );
+    }
+
+
+    /**
+     * Sets the cache used to deduplicate the string values read by this reader.
+     *
+     * @param stringCache the string cache, or {@code null} if the string values should not be cached
+     */
+    public void setStringCache( StringCache stringCache ) {
+        decoder = new EbmlDecoder( stringCache );
     }
 
 
     @Override
     public void close() throws IOException {
+        if ( buffer.capacity() > 0 ) {
+            bufferPool.release( buffer );
+            buffer = ByteBuffer.allocate( 0 );
+        }
         source.close();
     }
 
 
     private void skip( long skip ) throws IOException {
+        if ( skip > 0L ) {
+            metrics.bytesSkipped( skip );
+        }
         if ( skip < buffer.remaining() ) {
             buffer.position( buffer.position() + ( int ) skip );
         } else {
             long remaining = skip - buffer.remaining();
+            if ( remaining > buffer.capacity() && source instanceof FileChannel ) {
+                FileChannel channel = ( FileChannel ) source;
+                long position = channel.position() + remaining;
+                if ( position > channel.size() ) {
+                    throw new EOFException();
+                }
+                channel.position( position );
+                sourcePosition += remaining;
+                buffer.clear();
+                buffer.flip();
+                // random access, read ahead less data at once
+                sequential = false;
+                if ( buffer.capacity() > bufferSize ) {
+                    resize( Math.max( buffer.capacity() / 2, bufferSize ) );
+                }
+                return;
+            }
+            if ( remaining > 0L ) {
+                buffer.position( buffer.limit() );
+                readAhead();
+            }
             while ( remaining > 0L ) {
                 buffer.clear();
-                int read = source.read( buffer );
+                int read = readSource();
                 if ( read < 0 ) {
                     throw new EOFException();
                 }
+                sourcePosition += read;
                 remaining -= read;
             }
             buffer.flip();
@@ -141,20 +239,88 @@ public final class EbmlStreamReader implements Closeable {
 
     private void fill( long required ) throws IOException {
         if ( required > buffer.capacity() ) {
-            throw new AssertionError( required );
+            if ( required > maximumBufferSize ) {
+                throw new EbmlIoException( getPosition(), String.format( "element data is too large to be decoded: %d", required ) );
+            }
+            resize( ( int ) required );
         }
         if ( buffer.remaining() < required ) {
+            readAhead();
             buffer.compact();
+            int filled = 0;
             while ( buffer.hasRemaining() ) {
-                int read = source.read( buffer );
+                int read = readSource();
                 if ( read < 0 ) {
                     break;
                 }
+                sourcePosition += read;
+                filled += read;
             }
             buffer.flip();
+            metrics.bufferRefilled( filled );
+        }
+    }
+
+    private int readSource() throws IOException {
+        long start = timed ? System.nanoTime() : 0L;
+        int read = source.read( buffer );
+        metrics.readCompleted( read, timed ? System.nanoTime() - start : 0L );
+        return read;
+    }
+
+    private long startDecode() {
+        return timed ? System.nanoTime() : 0L;
+    }
+
+    private void endDecode( long start ) {
+        if ( timed ) {
+            metrics.decodeCompleted( System.nanoTime() - start );
+        }
+    }
+
+    /** Grows the input buffer before the read from the source that continues the previous one. */
+    private void readAhead() {
+        if ( sequential && buffer.capacity() < maximumBufferSize ) {
+            resize( Math.min( buffer.capacity() * 2, maximumBufferSize ) );
+        }
+        sequential = true;
+    }
+
+    /**
+     * Replaces the input buffer with another buffer from the pool, preserving the unprocessed data.
+     *
+     * @param capacity the minimum capacity of the new buffer, not less than the amount of the unprocessed data
+     */
+    private void resize( int capacity ) {
+        ByteBuffer resized = bufferPool.acquire( capacity, directBuffers );
+        resized.put( buffer );
+        resized.flip();
+        bufferPool.release( buffer );
+        buffer = resized;
+    }
+
+    /** Returns the current capacity of the input buffer. */
+    int getReadAhead() {
+        return buffer.capacity();
+    }
+
+    private void skipElement() throws IOException {
+        if ( element != null ) {
+            skip( element.getRemaining() );
+            container.decreaseRemaining( element.getSize().getPlainValue() );
+            element = null;
         }
     }
 
+    /**
+     * Returns the position of the next unprocessed byte relative to the start of the source.
+     *
+     * @return the current source position
+     */
+    private long getPosition() {
+        return sourcePosition - buffer.remaining();
+    }
+
 
     /**
      * Reads the next child element of the current container.
@@ -165,11 +331,7 @@ public final class EbmlStreamReader implements Closeable {
      * @throws IOException if an I/O error has occurred
      */
     public boolean next() throws IOException {
-        if ( element != null ) {
-            skip( element.getRemaining() );
-            container.decreaseRemaining( element.getSize().getPlainValue() );
-            element = null;
-        }
+        skipElement();
         if ( !container.hasRemaining() ) {
             return false;
         }
@@ -177,7 +339,9 @@ public final class EbmlStreamReader implements Closeable {
         if ( !buffer.hasRemaining() ) {
             return false;
         }
+        long position = getPosition();
         VariableLengthInteger identifier;
+        long decodeStart = startDecode();
         try {
             identifier = decoder.decodeVariableLengthInteger( buffer );
         } catch ( EbmlFormatException e ) {
@@ -187,6 +351,7 @@ public final class EbmlStreamReader implements Closeable {
             eof.initCause( e );
             throw eof;
         }
+        endDecode( decodeStart );
         container.decreaseRemaining( identifier.getEncodedLength() );
         if ( container.getRemaining() < 0L ) {
             throw new EbmlIoException( "container size is invalid" );
@@ -196,6 +361,7 @@ public final class EbmlStreamReader implements Closeable {
         }
         fill( 8 );
         VariableLengthInteger size;
+        decodeStart = startDecode();
         try {
             size = decoder.decodeVariableLengthInteger( buffer );
         } catch ( EbmlFormatException e ) {
@@ -205,6 +371,7 @@ public final class EbmlStreamReader implements Closeable {
             eof.initCause( e );
             throw eof;
         }
+        endDecode( decodeStart );
         container.decreaseRemaining( size.getEncodedLength() );
         if ( container.getRemaining() < 0L ) {
             throw new EbmlIoException( "container size is invalid" );
@@ -215,7 +382,8 @@ public final class EbmlStreamReader implements Closeable {
         if ( container.getRemaining() < size.getPlainValue() ) {
             throw new EbmlIoException( "element size exceeds space remaining in the container" );
         }
-        element = new EbmlStreamEntry( identifier, size );
+        element = new EbmlStreamEntry( identifier, size, position );
+        metrics.elementParsed( identifier );
         return true;
     }
 
@@ -248,6 +416,34 @@ public final class EbmlStreamReader implements Closeable {
         return element.getSize();
     }
 
+    /**
+     * Returns the position at which the current element starts, relative to the start of the source.
+     *
+     * @return the element position
+     *
+     * @throws IllegalStateException if the current element is not available
+     */
+    public long getElementPosition() {
+        if ( element == null ) {
+            throw new IllegalStateException( "the current element is not available" );
+        }
+        return element.getPosition();
+    }
+
+    /**
+     * Returns the position at which the data of the current element starts, relative to the start of the source.
+     *
+     * @return the element data position
+     *
+     * @throws IllegalStateException if the current element is not available
+     */
+    public long getDataPosition() {
+        if ( element == null ) {
+            throw new IllegalStateException( "the current element is not available" );
+        }
+        return element.getPosition() + element.getIdentifier().getEncodedLength() + element.getSize().getEncodedLength();
+    }
+
 
     /**
      * Instructs the reader to parse the current element data as sub-elements. The current container will be saved on
@@ -286,6 +482,52 @@ public final class EbmlStreamReader implements Closeable {
     }
 
 
+    /**
+     * Reads a sequence of bytes from the contents of the current element into the given buffer.
+     * <p/>
+     * This method can be called repeatedly to read the element data in parts, the data that was not read is skipped
+     * when the reader advances to the next element.
+     *
+     * @param destination the buffer into which bytes are to be transferred
+     *
+     * @return the number of bytes read, possibly zero, or {@code -1} if there is no unprocessed element data left
+     *
+     * @throws IllegalArgumentException if {@code destination} is {@code null}
+     * @throws IllegalStateException if the current element is not available
+     * @throws EOFException if the input source reaches the end before reading all required data
+     * @throws IOException if an I/O error has occurred
+     */
+    public int readBinary( ByteBuffer destination ) throws IOException {
+        if ( destination == null ) {
+            throw new IllegalArgumentException( "destination is null" );
+        }
+        if ( element == null ) {
+            throw new IllegalStateException( "the current element is not available" );
+        }
+        element.touch();
+        if ( !element.hasRemaining() ) {
+            return -1;
+        }
+        int read = 0;
+        while ( destination.hasRemaining() && element.hasRemaining() ) {
+            if ( !buffer.hasRemaining() ) {
+                fill( 1 );
+                if ( !buffer.hasRemaining() ) {
+                    throw new EOFException();
+                }
+            }
+            int count = ( int ) Math.min( Math.min( buffer.remaining(), destination.remaining() ), element.getRemaining() );
+            int limit = buffer.limit();
+            buffer.limit( buffer.position() + count );
+            destination.put( buffer );
+            buffer.limit( limit );
+            element.decreaseRemaining( count );
+            read += count;
+        }
+        return read;
+    }
+
+
     /**
      * Reads the contents of the current element as a signed integer.
      *
@@ -306,7 +548,9 @@ public final class EbmlStreamReader implements Closeable {
         fill( element.getSize().getPlainValue() );
         try {
             int valueSize = ( int ) element.getSize().getPlainValue();
+            long decodeStart = startDecode();
             long value = decoder.decodeSignedInteger( buffer, valueSize );
+            endDecode( decodeStart );
             element.decreaseRemaining( valueSize );
             return value;
         } catch ( IllegalEncodedLengthException e ) {
@@ -338,7 +582,9 @@ public final class EbmlStreamReader implements Closeable {
         fill( element.getSize().getPlainValue() );
         try {
             int valueSize = ( int ) element.getSize().getPlainValue();
+            long decodeStart = startDecode();
             long value = decoder.decodeUnsignedInteger( buffer, valueSize );
+            endDecode( decodeStart );
             element.decreaseRemaining( valueSize );
             return value;
         } catch ( IllegalEncodedLengthException e ) {
@@ -370,7 +616,9 @@ public final class EbmlStreamReader implements Closeable {
         fill( element.getSize().getPlainValue() );
         try {
             int valueSize = ( int ) element.getSize().getPlainValue();
+            long decodeStart = startDecode();
             double value = decoder.decodeFloatingPoint( buffer, valueSize );
+            endDecode( decodeStart );
             element.decreaseRemaining( valueSize );
             return value;
         } catch ( IllegalEncodedLengthException e ) {
@@ -402,7 +650,9 @@ public final class EbmlStreamReader implements Closeable {
         fill( element.getSize().getPlainValue() );
         try {
             int valueSize = ( int ) element.getSize().getPlainValue();
+            long decodeStart = startDecode();
             String value = decoder.decodeAsciiString( buffer, valueSize );
+            endDecode( decodeStart );
             element.decreaseRemaining( valueSize );
             return value;
         } catch ( IllegalEncodedLengthException e ) {
@@ -434,7 +684,9 @@ public final class EbmlStreamReader implements Closeable {
         fill( element.getSize().getPlainValue() );
         try {
             int valueSize = ( int ) element.getSize().getPlainValue();
+            long decodeStart = startDecode();
             String value = decoder.decodeUnicodeString( buffer, valueSize );
+            endDecode( decodeStart );
             element.decreaseRemaining( valueSize );
             return value;
         } catch ( IllegalEncodedLengthException e ) {
@@ -466,7 +718,9 @@ public final class EbmlStreamReader implements Closeable {
         fill( element.getSize().getPlainValue() );
         try {
             int valueSize = ( int ) element.getSize().getPlainValue();
+            long decodeStart = startDecode();
             long value = decoder.decodeDate( buffer, valueSize );
+            endDecode( decodeStart );
             element.decreaseRemaining( valueSize );
             return value;
         } catch ( IllegalEncodedLengthException e ) {
@@ -478,4 +732,145 @@ public final class EbmlStreamReader implements Closeable {
         }
     }
 
+
+    /**
+     * Reads all remaining child elements of the current container and appends the unsigned integer values of the
+     * elements with the specified identifier to the destination column. The elements with other identifiers are
+     * skipped.
+     * <p/>
+     * The values are decoded directly from the input buffer, one buffer fill at a time, so reading a long run of
+     * sibling values does not require a call to {@link #next()} per value. After this method returns the current
+     * container has no remaining elements.
+     *
+     * @param identifier the identifier of the elements to read
+     * @param destination the column to append the values to
+     *
+     * @return the number of values read
+     *
+     * @throws IllegalArgumentException if {@code identifier} or {@code destination} is {@code null}
+     * @throws EOFException if the input source reaches the end before reading all required data
+     * @throws IOException if an I/O error has occurred
+     */
+    public int readUnsignedIntegers( VariableLengthInteger identifier, LongColumn destination ) throws IOException {
+        if ( destination == null ) {
+            throw new IllegalArgumentException( "destination is null" );
+        }
+        return readValues( identifier, UNSIGNED_INTEGER, destination, null );
+    }
+
+    /**
+     * Reads all remaining child elements of the current container and appends the signed integer values of the
+     * elements with the specified identifier to the destination column.
+     *
+     * @param identifier the identifier of the elements to read
+     * @param destination the column to append the values to
+     *
+     * @return the number of values read
+     *
+     * @throws IllegalArgumentException if {@code identifier} or {@code destination} is {@code null}
+     * @throws EOFException if the input source reaches the end before reading all required data
+     * @throws IOException if an I/O error has occurred
+     * @see #readUnsignedIntegers(VariableLengthInteger, LongColumn)
+     */
+    public int readSignedIntegers( VariableLengthInteger identifier, LongColumn destination ) throws IOException {
+        if ( destination == null ) {
+            throw new IllegalArgumentException( "destination is null" );
+        }
+        return readValues( identifier, SIGNED_INTEGER, destination, null );
+    }
+
+    /**
+     * Reads all remaining child elements of the current container and appends the floating-point values of the
+     * elements with the specified identifier to the destination column.
+     *
+     * @param identifier the identifier of the elements to read
+     * @param destination the column to append the values to
+     *
+     * @return the number of values read
+     *
+     * @throws IllegalArgumentException if {@code identifier} or {@code destination} is {@code null}
+     * @throws EOFException if the input source reaches the end before reading all required data
+     * @throws IOException if an I/O error has occurred
+     * @see #readUnsignedIntegers(VariableLengthInteger, LongColumn)
+     */
+    public int readFloatingPoints( VariableLengthInteger identifier, DoubleColumn destination ) throws IOException {
+        if ( destination == null ) {
+            throw new IllegalArgumentException( "destination is null" );
+        }
+        return readValues( identifier, FLOATING_POINT, null, destination );
+    }
+
+    private int readValues( VariableLengthInteger identifier, int type, LongColumn longs, DoubleColumn doubles ) throws IOException {
+        if ( identifier == null ) {
+            throw new IllegalArgumentException( "identifier is null" );
+        }
+        skipElement();
+        int count = 0;
+        boolean filled = false;
+        while ( container.hasRemaining() ) {
+            int limit = buffer.limit();
+            int start = buffer.position();
+            buffer.limit( start + ( int ) Math.min( buffer.remaining(), container.getRemaining() ) );
+            long decodeStart = startDecode();
+            try {
+                switch ( type ) {
+                    case UNSIGNED_INTEGER:
+                        count += decoder.decodeUnsignedIntegers( buffer, identifier, longs );
+                        break;
+                    case SIGNED_INTEGER:
+                        count += decoder.decodeSignedIntegers( buffer, identifier, longs );
+                        break;
+                    case FLOATING_POINT:
+                        count += decoder.decodeFloatingPoints( buffer, identifier, doubles );
+                        break;
+                    default:
+                        throw new AssertionError( type );
+                }
+            } catch ( EbmlFormatException e ) {
+                throw new EbmlIoException( getPosition(), e );
+            } catch ( IllegalEncodedLengthException e ) {
+                throw new EbmlIoException( getPosition(), e );
+            } finally {
+                endDecode( decodeStart );
+                container.decreaseRemaining( buffer.position() - start );
+                buffer.limit( limit );
+            }
+            if ( buffer.position() > start ) {
+                filled = false;
+            } else if ( !filled && buffer.remaining() < container.getRemaining() && buffer.remaining() < buffer.capacity() ) {
+                // the next element is incomplete, refill the buffer unless it is already full
+                int remaining = buffer.remaining();
+                fill( buffer.capacity() );
+                if ( buffer.remaining() == remaining ) {
+                    throw new EOFException();
+                }
+                filled = true;
+            } else {
+                // the next element does not fit into the buffer, fall back to the element by element reading
+                if ( !next() ) {
+                    break;
+                }
+                if ( element.getIdentifier().equals( identifier ) ) {
+                    switch ( type ) {
+                        case UNSIGNED_INTEGER:
+                            longs.add( readUnsignedInteger() );
+                            break;
+                        case SIGNED_INTEGER:
+                            longs.add( readSignedInteger() );
+                            break;
+                        case FLOATING_POINT:
+                            doubles.add( readFloatingPoint() );
+                            break;
+                        default:
+                            throw new AssertionError( type );
+                    }
+                    count++;
+                }
+                skipElement();
+                filled = false;
+            }
+        }
+        return count;
+    }
+
 }
@@ -0,0 +1,202 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.validation;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+
+import com.google.code.ebmlviewer.elements.ElementDescriptor;
+import com.google.code.ebmlviewer.elements.ElementType;
+
+/**
+ * Contains the constraints of a single element compiled from its {@link ElementDescriptor}, together with the table of
+ * the elements allowed as its children.
+ * <p/>
+ * The child table is sorted by the encoded identifier, so a child is looked up by a binary search over an array of
+ * primitive identifiers and its occurrences can be counted in an {@code int} array indexed by the same position.
+ */
+final class ElementRule {
+
+    private static final long[] NO_IDENTIFIERS = new long[ 0 ];
+
+    private static final ElementRule[] NO_RULES = new ElementRule[ 0 ];
+
+    private static final int[] NO_INDEXES = new int[ 0 ];
+
+    private static final Comparator<ElementRule> IDENTIFIER_ORDER = new Comparator<ElementRule>() {
+        @Override
+        public int compare( ElementRule o1, ElementRule o2 ) {
+            return o1.identifier < o2.identifier ? -1 : o1.identifier == o2.identifier ? 0 : 1;
+        }
+    };
+
+
+    /**
+     * Sorts the specified rules by the identifier.
+     *
+     * @param rules the rules to sort
+     *
+     * @return the sorted array of rules without duplicates
+     */
+    static ElementRule[] sort( Collection<ElementRule> rules ) {
+        ElementRule[] result = rules.toArray( new ElementRule[ rules.size() ] );
+        Arrays.sort( result, IDENTIFIER_ORDER );
+        int size = 0;
+        for ( ElementRule rule : result ) {
+            if ( size == 0 || result[ size - 1 ].identifier != rule.identifier ) {
+                result[ size++ ] = rule;
+            }
+        }
+        return size == result.length ? result : Arrays.copyOf( result, size );
+    }
+
+    /**
+     * Returns the identifiers of the specified rules.
+     *
+     * @param rules the rules sorted by the identifier
+     *
+     * @return the sorted identifiers
+     */
+    static long[] identifiers( ElementRule[] rules ) {
+        long[] result = new long[ rules.length ];
+        for ( int i = 0; i < rules.length; i++ ) {
+            result[ i ] = rules[ i ].identifier;
+        }
+        return result;
+    }
+
+
+    final long identifier;
+
+    final String name;
+
+    final ElementType type;
+
+    final int level;
+
+    /** Whether the element must be present in its parent; the mandatory elements with a default value may be omitted. */
+    final boolean mandatory;
+
+    final boolean multiple;
+
+    final int minimumVersion;
+
+    /** The required data size of a binary element, or {@code 0} if the size is not constrained. */
+    final int bytesize;
+
+    /** The range of valid values of a numeric element, or {@code null} if the values are not constrained. */
+    final ValueRange range;
+
+    /** Whether the element contains the version of the document type. */
+    final boolean docTypeVersion;
+
+
+    long[] childIdentifiers = NO_IDENTIFIERS;
+
+    ElementRule[] children = NO_RULES;
+
+    /** The indexes of the mandatory elements in the child table. */
+    int[] mandatoryChildren = NO_INDEXES;
+
+
+    /**
+     * Creates a new rule for the specified element.
+     *
+     * @param descriptor the element descriptor
+     */
+    ElementRule( ElementDescriptor descriptor ) {
+        identifier = descriptor.getIdentifier().getEncodedValue();
+        name = descriptor.getName();
+        type = descriptor.getType();
+        level = descriptor.getLevel();
+        mandatory = descriptor.isMandatory() && descriptor.getDefaultValue() == null;
+        multiple = descriptor.isMultiple();
+        minimumVersion = descriptor.getMinimumVersion();
+        bytesize = type == ElementType.BINARY && descriptor.getBytesize() > 1 ? descriptor.getBytesize() : 0;
+        range = descriptor.getValuesRange() == null || type == ElementType.BINARY ? null : ValueRange.parse( descriptor.getValuesRange() );
+        docTypeVersion = "DocTypeVersion".equals( name ) && level == 1;
+    }
+
+    /**
+     * Creates a new rule for the pseudo-element that contains the top-level elements.
+     *
+     * @param name the pseudo-element name
+     */
+    ElementRule( String name ) {
+        identifier = -1L;
+        this.name = name;
+        type = ElementType.MASTER;
+        level = -1;
+        mandatory = false;
+        multiple = false;
+        minimumVersion = 0;
+        bytesize = 0;
+        range = null;
+        docTypeVersion = false;
+    }
+
+
+    /**
+     * Sets the elements allowed as the children of this element.
+     *
+     * @param rules the child rules
+     */
+    void setChildren( Collection<ElementRule> rules ) {
+        children = sort( rules );
+        childIdentifiers = identifiers( children );
+        int count = 0;
+        int[] indexes = new int[ children.length ];
+        for ( int i = 0; i < children.length; i++ ) {
+            if ( children[ i ].mandatory ) {
+                indexes[ count++ ] = i;
+            }
+        }
+        mandatoryChildren = Arrays.copyOf( indexes, count );
+    }
+
+    /**
+     * Returns the index of the specified child element in the child table.
+     *
+     * @param identifier the encoded identifier of the child element
+     *
+     * @return the index of the child, or a negative value if the element is not allowed in this element
+     */
+    int indexOf( long identifier ) {
+        return Arrays.binarySearch( childIdentifiers, identifier );
+    }
+
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+}
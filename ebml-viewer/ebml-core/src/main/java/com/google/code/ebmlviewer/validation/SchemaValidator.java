@@ -0,0 +1,378 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.validation;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.code.ebmlviewer.core.VariableLengthInteger;
+import com.google.code.ebmlviewer.elements.ElementDescriptor;
+import com.google.code.ebmlviewer.elements.ElementType;
+import com.google.code.ebmlviewer.stream.EbmlStreamReader;
+
+import static com.google.code.ebmlviewer.elements.ElementDescriptors.getDefaultDescriptors;
+
+/**
+ * Validates the structure of EBML files against the constraints of the element descriptors.
+ * <p/>
+ * The descriptors are compiled once into per-parent child tables. The parent of an element is derived from the order
+ * of the descriptors, as in the "source" Matroska specification: it is the nearest preceding master element with a
+ * lower level. The global elements (level {@code -1}) are allowed in any master element, and the recursive elements
+ * are allowed within themselves.
+ * <p/>
+ * The files are validated in a single pass with the {@link EbmlStreamReader}, so the memory usage does not depend on
+ * the file size. The validator checks that every element is allowed within its parent, that the elements without the
+ * 'multiple' flag occur at most once and the mandatory elements without a default value are present, that the values
+ * of the numeric elements are within their ranges, that the data sizes are valid for the element types, and that the
+ * elements are supported by the document type version declared in the EBML header.
+ * <p/>
+ * The validator is thread-safe and can be shared by any number of threads.
+ */
+public final class SchemaValidator {
+
+    private static final int DEFAULT_MAXIMUM_VIOLATIONS = 1000;
+
+
+    /** The pseudo-element that contains the top-level elements. */
+    private final ElementRule root = new ElementRule( "the file" );
+
+    private final ElementRule[] globals;
+
+    private final long[] globalIdentifiers;
+
+    private final ElementRule[] rules;
+
+    private final long[] identifiers;
+
+    private volatile int maximumViolations = DEFAULT_MAXIMUM_VIOLATIONS;
+
+
+    /** Creates a new {@code SchemaValidator} that uses the default element descriptors. */
+    public SchemaValidator() {
+        this( getDefaultDescriptors() );
+    }
+
+    /**
+     * Creates a new {@code SchemaValidator}.
+     *
+     * @param descriptors the element descriptors in the specification order
+     *
+     * @throws IllegalArgumentException if {@code descriptors} is {@code null}
+     */
+    public SchemaValidator( Map<VariableLengthInteger, ElementDescriptor> descriptors ) {
+        if ( descriptors == null ) {
+            throw new IllegalArgumentException( "descriptors is null" );
+        }
+        Map<ElementRule, List<ElementRule>> children = new IdentityHashMap<ElementRule, List<ElementRule>>();
+        children.put( root, new ArrayList<ElementRule>() );
+        List<ElementRule> all = new ArrayList<ElementRule>();
+        List<ElementRule> global = new ArrayList<ElementRule>();
+        // the chain of the master elements that may contain the next element
+        List<ElementRule> parents = new ArrayList<ElementRule>();
+        List<Integer> parentLevels = new ArrayList<Integer>();
+        for ( ElementDescriptor descriptor : descriptors.values() ) {
+            ElementRule rule = new ElementRule( descriptor );
+            all.add( rule );
+            if ( rule.type == ElementType.MASTER ) {
+                children.put( rule, new ArrayList<ElementRule>() );
+            }
+            int level = rule.level;
+            if ( level < 0 ) {
+                global.add( rule );
+                if ( rule.type == ElementType.MASTER ) {
+                    // the children of a global master element are described starting from level 1
+                    parents.clear();
+                    parentLevels.clear();
+                    level = 0;
+                }
+            } else {
+                while ( !parents.isEmpty() && parentLevels.get( parents.size() - 1 ) >= level ) {
+                    parentLevels.remove( parents.size() - 1 );
+                    parents.remove( parents.size() - 1 );
+                }
+                if ( level == 0 ) {
+                    children.get( root ).add( rule );
+                } else if ( !parents.isEmpty() ) {
+                    children.get( parents.get( parents.size() - 1 ) ).add( rule );
+                }
+            }
+            if ( rule.type == ElementType.MASTER ) {
+                parents.add( rule );
+                parentLevels.add( level );
+                if ( descriptor.isRecursive() ) {
+                    children.get( rule ).add( rule );
+                }
+            }
+        }
+        for ( Map.Entry<ElementRule, List<ElementRule>> entry : children.entrySet() ) {
+            entry.getKey().setChildren( entry.getValue() );
+        }
+        globals = ElementRule.sort( global );
+        globalIdentifiers = ElementRule.identifiers( globals );
+        rules = ElementRule.sort( all );
+        identifiers = ElementRule.identifiers( rules );
+    }
+
+
+    /**
+     * Returns the maximum number of violations reported for a single file.
+     *
+     * @return the maximum number of violations
+     */
+    public int getMaximumViolations() {
+        return maximumViolations;
+    }
+
+    /**
+     * Sets the maximum number of violations reported for a single file. The validation stops when the limit is
+     * reached.
+     *
+     * @param maximumViolations the maximum number of violations, {@code 1000} by default
+     *
+     * @throws IllegalArgumentException if {@code maximumViolations} is not positive
+     */
+    public void setMaximumViolations( int maximumViolations ) {
+        if ( maximumViolations <= 0 ) {
+            throw new IllegalArgumentException( "maximumViolations is not positive" );
+        }
+        this.maximumViolations = maximumViolations;
+    }
+
+
+    /**
+     * Validates the data provided by the specified reader.
+     *
+     * @param reader the reader positioned before the first top-level element
+     *
+     * @return the violations in the file order of the offending elements, empty if the data is valid
+     *
+     * @throws IllegalArgumentException if {@code reader} is {@code null}
+     * @throws IOException if an I/O error has occurred or the data can not be parsed as EBML
+     */
+    public List<Violation> validate( EbmlStreamReader reader ) throws IOException {
+        if ( reader == null ) {
+            throw new IllegalArgumentException( "reader is null" );
+        }
+        Validation validation = new Validation( reader, maximumViolations );
+        validation.validateChildren( root, -1L, 0 );
+        return validation.violations;
+    }
+
+    /**
+     * Validates the specified file.
+     *
+     * @param file the file to validate
+     *
+     * @return the violations in the file order of the offending elements, empty if the file is valid
+     *
+     * @throws IllegalArgumentException if {@code file} is {@code null}
+     * @throws IOException if an I/O error has occurred or the file can not be parsed as EBML
+     */
+    public List<Violation> validate( File file ) throws IOException {
+        if ( file == null ) {
+            throw new IllegalArgumentException( "file is null" );
+        }
+        FileInputStream stream = new FileInputStream( file );
+        try {
+            FileChannel channel = stream.getChannel();
+            return validate( new EbmlStreamReader( channel, channel.size() ) );
+        } finally {
+            try {
+                stream.close();
+            } catch ( IOException e ) {
+                Logger.getLogger( getClass().getName() ).log( Level.WARNING, "exception thrown while closing an I/O resource", e );
+            }
+        }
+    }
+
+
+    private static ElementRule find( ElementRule[] rules, long[] identifiers, long identifier ) {
+        int index = Arrays.binarySearch( identifiers, identifier );
+        return index < 0 ? null : rules[ index ];
+    }
+
+
+    /** Holds the state of the validation of a single file. */
+    private final class Validation {
+
+        private final EbmlStreamReader reader;
+
+        private final int maximumViolations;
+
+        private final List<Violation> violations = new ArrayList<Violation>();
+
+        /** The occurrence counts of the children of the current elements, indexed by the depth. */
+        private final List<int[]> counts = new ArrayList<int[]>();
+
+        /** The declared document type version, or {@code 0} if the EBML header was not read yet. */
+        private long docTypeVersion;
+
+
+        private Validation( EbmlStreamReader reader, int maximumViolations ) {
+            this.reader = reader;
+            this.maximumViolations = maximumViolations;
+        }
+
+
+        private void validateChildren( ElementRule parent, long parentPosition, int depth ) throws IOException {
+            int[] occurrences = counts( depth, parent.children.length );
+            while ( violations.size() < maximumViolations && reader.next() ) {
+                VariableLengthInteger identifier = reader.getIdentifier();
+                long position = reader.getElementPosition();
+                ElementRule rule;
+                int index = parent.indexOf( identifier.getEncodedValue() );
+                if ( index >= 0 ) {
+                    rule = parent.children[ index ];
+                    if ( ++occurrences[ index ] == 2 && !rule.multiple ) {
+                        report( ViolationType.DUPLICATE_ELEMENT, identifier, position, "%s may occur only once in %s", rule, parent );
+                    }
+                } else {
+                    rule = find( globals, globalIdentifiers, identifier.getEncodedValue() );
+                    if ( rule == null ) {
+                        rule = find( rules, identifiers, identifier.getEncodedValue() );
+                        if ( rule == null ) {
+                            report( ViolationType.UNKNOWN_ELEMENT, identifier, position, "unknown element %s", identifier );
+                            continue;
+                        }
+                        report( ViolationType.UNEXPECTED_ELEMENT, identifier, position, "%s (level %d) is not allowed in %s at level %d", rule, rule.level, parent, depth );
+                    }
+                }
+                if ( docTypeVersion > 0L && rule.minimumVersion > docTypeVersion ) {
+                    report( ViolationType.UNSUPPORTED_VERSION, identifier, position, "%s requires the document type version %d, but the file declares the version %d", rule, rule.minimumVersion, docTypeVersion );
+                }
+                if ( rule.type == ElementType.MASTER ) {
+                    reader.enterContainer();
+                    validateChildren( rule, position, depth + 1 );
+                    reader.leaveContainer();
+                } else {
+                    validateValue( rule, identifier, position );
+                }
+            }
+            for ( int i : parent.mandatoryChildren ) {
+                if ( occurrences[ i ] == 0 ) {
+                    ElementRule child = parent.children[ i ];
+                    report( ViolationType.MISSING_ELEMENT, VariableLengthInteger.fromEncoded( child.identifier ), parentPosition, "%s is missing in %s", child, parent );
+                }
+            }
+        }
+
+        private void validateValue( ElementRule rule, VariableLengthInteger identifier, long position ) throws IOException {
+            long size = reader.getSize().getPlainValue();
+            double value;
+            Object displayedValue;
+            switch ( rule.type ) {
+                case UNSIGNED_INTEGER:
+                    if ( size > 8L ) {
+                        report( ViolationType.INVALID_SIZE, identifier, position, "%s has %d bytes, at most 8 bytes are expected", rule, size );
+                        return;
+                    }
+                    if ( rule.range == null && !rule.docTypeVersion ) {
+                        return;
+                    }
+                    long unsigned = reader.readUnsignedInteger();
+                    if ( rule.docTypeVersion ) {
+                        docTypeVersion = unsigned;
+                    }
+                    value = unsigned < 0L ? unsigned + 0x1p64 : unsigned;
+                    displayedValue = unsigned < 0L ? "0x" + Long.toHexString( unsigned ) : unsigned;
+                    break;
+                case SIGNED_INTEGER:
+                    if ( size > 8L ) {
+                        report( ViolationType.INVALID_SIZE, identifier, position, "%s has %d bytes, at most 8 bytes are expected", rule, size );
+                        return;
+                    }
+                    if ( rule.range == null ) {
+                        return;
+                    }
+                    long signed = reader.readSignedInteger();
+                    value = signed;
+                    displayedValue = signed;
+                    break;
+                case FLOATING_POINT:
+                    if ( size != 0L && size != 4L && size != 8L ) {
+                        report( ViolationType.INVALID_SIZE, identifier, position, "%s has %d bytes, 0, 4 or 8 bytes are expected", rule, size );
+                        return;
+                    }
+                    if ( rule.range == null ) {
+                        return;
+                    }
+                    value = reader.readFloatingPoint();
+                    displayedValue = value;
+                    break;
+                case DATE:
+                    if ( size != 8L ) {
+                        report( ViolationType.INVALID_SIZE, identifier, position, "%s has %d bytes, 8 bytes are expected", rule, size );
+                    }
+                    return;
+                case BINARY:
+                    if ( rule.bytesize > 0 && size != rule.bytesize ) {
+                        report( ViolationType.INVALID_SIZE, identifier, position, "%s has %d bytes, %d bytes are expected", rule, size, rule.bytesize );
+                    }
+                    return;
+                default:
+                    return;
+            }
+            if ( rule.range != null && !rule.range.contains( value ) ) {
+                report( ViolationType.VALUE_OUT_OF_RANGE, identifier, position, "the value %s of %s is out of the range %s", displayedValue, rule, rule.range );
+            }
+        }
+
+        private int[] counts( int depth, int size ) {
+            while ( counts.size() <= depth ) {
+                counts.add( new int[ 0 ] );
+            }
+            int[] result = counts.get( depth );
+            if ( result.length < size ) {
+                result = new int[ size ];
+                counts.set( depth, result );
+            } else {
+                Arrays.fill( result, 0, size, 0 );
+            }
+            return result;
+        }
+
+        private void report( ViolationType type, VariableLengthInteger identifier, long position, String format, Object... args ) {
+            if ( violations.size() < maximumViolations ) {
+                violations.add( new Violation( type, identifier, position, String.format( format, args ) ) );
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,110 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.validation;
+
+/**
+ * Defines a range of valid numeric values in the format used by the 'element/@range' attribute of the "source"
+ * Matroska specification, such as {@code "0-1"}, {@code "> 0"} or {@code "not 0"}.
+ */
+final class ValueRange {
+
+    /**
+     * Parses the specified range.
+     *
+     * @param s the range to parse
+     *
+     * @return the range, or {@code null} if the string does not contain a parsable range
+     */
+    static ValueRange parse( String s ) {
+        String range = s.trim();
+        try {
+            if ( range.startsWith( "not " ) ) {
+                double excluded = Double.parseDouble( range.substring( 4 ).trim() );
+                return new ValueRange( range, Double.NEGATIVE_INFINITY, true, Double.POSITIVE_INFINITY, true, excluded );
+            } else if ( range.startsWith( ">=" ) ) {
+                return new ValueRange( range, Double.parseDouble( range.substring( 2 ).trim() ), true, Double.POSITIVE_INFINITY, true, Double.NaN );
+            } else if ( range.startsWith( ">" ) ) {
+                return new ValueRange( range, Double.parseDouble( range.substring( 1 ).trim() ), false, Double.POSITIVE_INFINITY, true, Double.NaN );
+            } else if ( range.startsWith( "<=" ) ) {
+                return new ValueRange( range, Double.NEGATIVE_INFINITY, true, Double.parseDouble( range.substring( 2 ).trim() ), true, Double.NaN );
+            } else if ( range.startsWith( "<" ) ) {
+                return new ValueRange( range, Double.NEGATIVE_INFINITY, true, Double.parseDouble( range.substring( 1 ).trim() ), false, Double.NaN );
+            }
+            int separator = range.indexOf( '-', 1 );
+            if ( separator > 0 ) {
+                double minimum = Double.parseDouble( range.substring( 0, separator ).trim() );
+                double maximum = Double.parseDouble( range.substring( separator + 1 ).trim() );
+                return new ValueRange( range, minimum, true, maximum, true, Double.NaN );
+            }
+            double value = Double.parseDouble( range );
+            return new ValueRange( range, value, true, value, true, Double.NaN );
+        } catch ( NumberFormatException ignored ) {
+            return null;
+        }
+    }
+
+
+    private final String text;
+
+    private final double minimum;
+
+    private final boolean minimumInclusive;
+
+    private final double maximum;
+
+    private final boolean maximumInclusive;
+
+    /** The value excluded from the range, or {@code NaN} if there is none. */
+    private final double excluded;
+
+
+    private ValueRange( String text, double minimum, boolean minimumInclusive, double maximum, boolean maximumInclusive, double excluded ) {
+        this.text = text;
+        this.minimum = minimum;
+        this.minimumInclusive = minimumInclusive;
+        this.maximum = maximum;
+        this.maximumInclusive = maximumInclusive;
+        this.excluded = excluded;
+    }
+
+
+    boolean contains( double value ) {
+        return ( minimumInclusive ? value >= minimum : value > minimum )
+                && ( maximumInclusive ? value <= maximum : value < maximum )
+                && value != excluded;
+    }
+
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+}
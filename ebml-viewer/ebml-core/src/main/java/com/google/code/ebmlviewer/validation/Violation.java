@@ -0,0 +1,117 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.validation;
+
+import com.google.code.ebmlviewer.core.VariableLengthInteger;
+
+/** Describes a single schema violation found by the {@link SchemaValidator}. */
+public final class Violation {
+
+    private final ViolationType type;
+
+    private final VariableLengthInteger identifier;
+
+    private final long position;
+
+    private final String message;
+
+
+    /**
+     * Creates a new {@code Violation}.
+     *
+     * @param type the violation type
+     * @param identifier the identifier of the offending element
+     * @param position the file position of the offending element
+     * @param message the violation description
+     *
+     * @throws IllegalArgumentException if {@code type}, {@code identifier} or {@code message} is {@code null}
+     */
+    public Violation( ViolationType type, VariableLengthInteger identifier, long position, String message ) {
+        if ( type == null ) {
+            throw new IllegalArgumentException( "type is null" );
+        }
+        if ( identifier == null ) {
+            throw new IllegalArgumentException( "identifier is null" );
+        }
+        if ( message == null ) {
+            throw new IllegalArgumentException( "message is null" );
+        }
+        this.type = type;
+        this.identifier = identifier;
+        this.position = position;
+        this.message = message;
+    }
+
+
+    /**
+     * Returns the violation type.
+     *
+     * @return the violation type
+     */
+    public ViolationType getType() {
+        return type;
+    }
+
+    /**
+     * Returns the identifier of the offending element. For the {@link ViolationType#MISSING_ELEMENT} violations it is
+     * the identifier of the missing element.
+     *
+     * @return the element identifier
+     */
+    public VariableLengthInteger getIdentifier() {
+        return identifier;
+    }
+
+    /**
+     * Returns the file position of the offending element. For the {@link ViolationType#MISSING_ELEMENT} violations it
+     * is the position of the parent element, or {@code -1} if the missing element is a top-level element.
+     *
+     * @return the element position
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Returns the violation description.
+     *
+     * @return the violation description
+     */
+    public String getMessage() {
+        return message;
+    }
+
+
+    @Override
+    public String toString() {
+        return String.format( "%s at %d: %s", type, position, message );
+    }
+
+}
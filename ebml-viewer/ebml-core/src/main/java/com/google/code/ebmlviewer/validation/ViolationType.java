@@ -0,0 +1,56 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.validation;
+
+/** Defines the kinds of the schema violations reported by the {@link SchemaValidator}. */
+public enum ViolationType {
+
+    /** An element whose identifier is not described by the schema. */
+    UNKNOWN_ELEMENT,
+
+    /** An element that is described by the schema but is not allowed within its parent element. */
+    UNEXPECTED_ELEMENT,
+
+    /** A repeated occurrence of an element that may appear only once within its parent element. */
+    DUPLICATE_ELEMENT,
+
+    /** A mandatory element without a default value that is absent from its parent element. */
+    MISSING_ELEMENT,
+
+    /** An element whose value is outside of the valid range. */
+    VALUE_OUT_OF_RANGE,
+
+    /** An element whose data size is not valid for its type. */
+    INVALID_SIZE,
+
+    /** An element that was introduced in a later version than the document type version of the file. */
+    UNSUPPORTED_VERSION
+
+}
@@ -0,0 +1,148 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Builds the EBML test data: elements with the shortest size encoding, raw bytes and temporary files.
+ * <p/>
+ * The class is public because the tests that use it are spread over the packages of the readers they test.
+ */
+public final class EbmlTestData {
+
+    private EbmlTestData() {
+    }
+
+
+    /**
+     * Encodes an element with the specified identifier and the concatenation of the specified children as data. The
+     * size is encoded with the shortest length that can represent it.
+     *
+     * @param identifier the encoded identifier, written without the leading zero bytes
+     * @param children the element data parts
+     *
+     * @return the encoded element
+     */
+    public static byte[] element( int identifier, byte[]... children ) {
+        byte[] data = concat( children );
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        for ( int shift = 24; shift >= 0; shift -= 8 ) {
+            if ( identifier >>> shift != 0 ) {
+                result.write( identifier >>> shift & 0xff );
+            }
+        }
+        // the all-ones value of each length is reserved for the unknown size
+        int length = 1;
+        while ( data.length >= ( 1 << 7 * length ) - 1 ) {
+            length++;
+        }
+        result.write( 0x80 >>> length - 1 | data.length >>> 8 * ( length - 1 ) );
+        for ( int shift = 8 * ( length - 2 ); shift >= 0; shift -= 8 ) {
+            result.write( data.length >>> shift & 0xff );
+        }
+        result.write( data, 0, data.length );
+        return result.toByteArray();
+    }
+
+    /**
+     * Converts the specified values into bytes, keeping the low eight bits of each value.
+     *
+     * @param values the byte values
+     *
+     * @return the bytes
+     */
+    public static byte[] bytes( int... values ) {
+        byte[] result = new byte[ values.length ];
+        for ( int i = 0; i < values.length; i++ ) {
+            result[ i ] = ( byte ) values[ i ];
+        }
+        return result;
+    }
+
+    /**
+     * Encodes the specified string in ASCII.
+     *
+     * @param value the string
+     *
+     * @return the string bytes
+     */
+    public static byte[] string( String value ) {
+        byte[] result = new byte[ value.length() ];
+        for ( int i = 0; i < result.length; i++ ) {
+            result[ i ] = ( byte ) value.charAt( i );
+        }
+        return result;
+    }
+
+    /**
+     * Concatenates the specified parts.
+     *
+     * @param parts the parts
+     *
+     * @return the concatenation of the parts
+     */
+    public static byte[] concat( byte[]... parts ) {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        for ( byte[] part : parts ) {
+            result.write( part, 0, part.length );
+        }
+        return result.toByteArray();
+    }
+
+    /**
+     * Writes the concatenation of the specified parts into a new temporary file, which is deleted when the virtual
+     * machine terminates.
+     *
+     * @param prefix the prefix of the file name
+     * @param parts the file data parts
+     *
+     * @return the file
+     *
+     * @throws IOException if an I/O error has occurred
+     */
+    public static File file( String prefix, byte[]... parts ) throws IOException {
+        File file = File.createTempFile( prefix, ".mkv" );
+        file.deleteOnExit();
+        FileOutputStream output = new FileOutputStream( file );
+        try {
+            for ( byte[] part : parts ) {
+                output.write( part );
+            }
+        } finally {
+            output.close();
+        }
+        return file;
+    }
+
+}
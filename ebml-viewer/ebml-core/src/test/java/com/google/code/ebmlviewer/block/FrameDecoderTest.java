@@ -0,0 +1,177 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.block;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.Deflater;
+
+import org.testng.annotations.Test;
+import com.google.code.ebmlviewer.stream.EbmlStreamReader;
+
+import static com.google.code.ebmlviewer.EbmlTestData.bytes;
+import static com.google.code.ebmlviewer.EbmlTestData.element;
+import static com.google.code.ebmlviewer.EbmlTestData.string;
+import static oe.assertions.Assertions.assertThat;
+import static oe.assertions.Predicates.isEqualTo;
+import static oe.assertions.Predicates.isFalse;
+import static oe.assertions.Predicates.isSameAs;
+import static oe.assertions.Predicates.isTrue;
+
+public class FrameDecoderTest {
+
+    private static byte[] toArray( ByteBuffer buffer ) {
+        byte[] result = new byte[ buffer.remaining() ];
+        buffer.duplicate().get( result );
+        return result;
+    }
+
+    private static byte[] compress( byte[] data ) {
+        Deflater deflater = new Deflater();
+        deflater.setInput( data );
+        deflater.finish();
+        byte[] buffer = new byte[ data.length + 64 ];
+        int length = deflater.deflate( buffer );
+        deflater.end();
+        return Arrays.copyOf( buffer, length );
+    }
+
+    private static byte[] createFrame( int size ) {
+        byte[] frame = new byte[ size ];
+        for ( int i = 0; i < frame.length; i++ ) {
+            frame[ i ] = ( byte ) ( i % 17 );
+        }
+        return frame;
+    }
+
+    @Test
+    public void notEncoded() throws IOException {
+        FrameDecoder decoder = new FrameDecoder( Collections.<ContentEncoding>emptyList() );
+        ByteBuffer frame = ByteBuffer.wrap( createFrame( 10 ) );
+        assertThat( decoder.isEncoded(), isFalse() );
+        assertThat( decoder.decode( frame, null ), isSameAs( frame ) );
+    }
+
+    @Test
+    public void zlib() throws IOException {
+        byte[] frame = createFrame( 100000 );
+        FrameDecoder decoder = new FrameDecoder( Arrays.asList( new ContentEncoding( 0L, 1L, 0L, 0L, null ) ) );
+        assertThat( decoder.isEncoded(), isTrue() );
+
+        ByteBuffer pooled = decoder.decode( ByteBuffer.wrap( compress( frame ) ), null );
+        assertThat( Arrays.equals( toArray( pooled ), frame ), isTrue() );
+
+        ByteBuffer destination = ByteBuffer.allocate( frame.length + 10 );
+        destination.position( 5 );
+        ByteBuffer result = decoder.decode( ByteBuffer.wrap( compress( frame ) ), destination );
+        assertThat( result.position(), isEqualTo( 5 ) );
+        assertThat( destination.position(), isEqualTo( frame.length + 5 ) );
+        assertThat( Arrays.equals( toArray( result ), frame ), isTrue() );
+
+        ByteBuffer direct = ByteBuffer.allocateDirect( frame.length );
+        ByteBuffer compressed = ByteBuffer.allocateDirect( frame.length );
+        compressed.put( compress( frame ) ).flip();
+        result = decoder.decode( compressed, direct );
+        assertThat( Arrays.equals( toArray( result ), frame ), isTrue() );
+    }
+
+    @Test( expectedExceptions = BufferOverflowException.class )
+    public void zlibOverflow() throws IOException {
+        byte[] frame = createFrame( 1000 );
+        FrameDecoder decoder = new FrameDecoder( Arrays.asList( new ContentEncoding( 0L, 1L, 0L, 0L, null ) ) );
+        decoder.decode( ByteBuffer.wrap( compress( frame ) ), ByteBuffer.allocate( 999 ) );
+    }
+
+    @Test
+    public void headerStrippingAndZlib() throws IOException {
+        byte[] frame = createFrame( 1000 );
+        // the header was stripped first, then the rest was compressed
+        ContentEncoding stripping = new ContentEncoding( 0L, 1L, 0L, 3L, Arrays.copyOf( frame, 4 ) );
+        ContentEncoding zlib = new ContentEncoding( 1L, 1L, 0L, 0L, null );
+        FrameDecoder decoder = new FrameDecoder( Arrays.asList( stripping, zlib ) );
+        ByteBuffer result = decoder.decode( ByteBuffer.wrap( compress( Arrays.copyOfRange( frame, 4, frame.length ) ) ), null );
+        assertThat( Arrays.equals( toArray( result ), frame ), isTrue() );
+    }
+
+    @Test
+    public void read() throws IOException {
+        byte[] data = element( 0x6d80,
+                element( 0x6240,
+                        element( 0x5034, element( 0x4254, bytes( 0x03 ) ), element( 0x4255, string( "HD" ) ) ) ) );
+        EbmlStreamReader reader = new EbmlStreamReader( new ByteArrayInputStream( data ) );
+        FrameDecoder decoder;
+        try {
+            assertThat( reader.next(), isTrue() );
+            decoder = FrameDecoder.read( reader );
+            assertThat( reader.next(), isFalse() );
+        } finally {
+            reader.close();
+        }
+
+        ByteBuffer frame = ByteBuffer.wrap( string( "R1" ) );
+        assertThat( new String( toArray( decoder.decode( frame.duplicate(), null ) ), "US-ASCII" ), isEqualTo( "HDR1" ) );
+
+        ByteBuffer[] parts = decoder.decodeToParts( frame );
+        assertThat( parts.length, isEqualTo( 2 ) );
+        assertThat( new String( toArray( parts[ 0 ] ), "US-ASCII" ), isEqualTo( "HD" ) );
+        assertThat( parts[ 1 ], isSameAs( frame ) );
+    }
+
+    @Test
+    public void lacing() throws IOException {
+        // sizes 255 + 1, 2, and the rest
+        ByteBuffer xiph = ByteBuffer.allocate( 4 + 256 + 2 + 4 );
+        xiph.put( bytes( 2, 0xff, 0x01, 0x02 ) ).position( xiph.capacity() ).flip();
+        ByteBuffer[] frames = BlockFrames.split( xiph, BlockHeader.LACING_XIPH );
+        assertThat( frames.length, isEqualTo( 3 ) );
+        assertThat( frames[ 0 ].remaining(), isEqualTo( 256 ) );
+        assertThat( frames[ 1 ].remaining(), isEqualTo( 2 ) );
+        assertThat( frames[ 2 ].remaining(), isEqualTo( 4 ) );
+
+        ByteBuffer fixed = ByteBuffer.wrap( bytes( 1, 1, 2, 3, 4 ) );
+        frames = BlockFrames.split( fixed, BlockHeader.LACING_FIXED );
+        assertThat( frames.length, isEqualTo( 2 ) );
+        assertThat( frames[ 1 ].get( 0 ), isEqualTo( ( byte ) 3 ) );
+
+        // sizes 3, 1 (difference -2 encoded as 0x80 | 63 - 2), and the rest
+        ByteBuffer ebml = ByteBuffer.wrap( bytes( 2, 0x83, 0xbd, 1, 2, 3, 4, 5, 6 ) );
+        frames = BlockFrames.split( ebml, BlockHeader.LACING_EBML );
+        assertThat( frames.length, isEqualTo( 3 ) );
+        assertThat( frames[ 0 ].remaining(), isEqualTo( 3 ) );
+        assertThat( frames[ 1 ].remaining(), isEqualTo( 1 ) );
+        assertThat( frames[ 1 ].get( 0 ), isEqualTo( ( byte ) 4 ) );
+        assertThat( frames[ 2 ].remaining(), isEqualTo( 2 ) );
+    }
+
+}
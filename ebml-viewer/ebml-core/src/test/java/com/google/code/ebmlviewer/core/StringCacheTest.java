@@ -0,0 +1,113 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.core;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+
+import org.testng.annotations.Test;
+
+import static oe.assertions.Assertions.assertThat;
+import static oe.assertions.Predicates.isEqualTo;
+import static oe.assertions.Predicates.isNotSameAs;
+import static oe.assertions.Predicates.isSameAs;
+
+public class StringCacheTest {
+
+    private static ByteBuffer encode( String value, int padding, boolean direct ) throws UnsupportedEncodingException {
+        byte[] bytes = value.getBytes( "UTF-8" );
+        ByteBuffer buffer = direct ? ByteBuffer.allocateDirect( bytes.length + padding ) : ByteBuffer.allocate( bytes.length + padding );
+        buffer.put( bytes );
+        buffer.position( 0 );
+        return buffer;
+    }
+
+
+    @Test
+    public void repeatedValuesAreShared() throws CharacterCodingException, UnsupportedEncodingException {
+        EbmlDecoder decoder = new EbmlDecoder( new StringCache() );
+        String first = decoder.decodeAsciiString( encode( "V_MPEG4/ISO/AVC", 0, false ), 15 );
+        String second = decoder.decodeAsciiString( encode( "V_MPEG4/ISO/AVC", 0, true ), 15 );
+        assertThat( first, isEqualTo( "V_MPEG4/ISO/AVC" ) );
+        assertThat( second, isSameAs( first ) );
+    }
+
+    @Test
+    public void valuesAreNotSharedWithoutCache() throws CharacterCodingException, UnsupportedEncodingException {
+        EbmlDecoder decoder = new EbmlDecoder();
+        String first = decoder.decodeAsciiString( encode( "eng", 0, false ), 3 );
+        String second = decoder.decodeAsciiString( encode( "eng", 0, false ), 3 );
+        assertThat( second, isEqualTo( first ) );
+        assertThat( second, isNotSameAs( first ) );
+    }
+
+    @Test
+    public void longValuesAreNotCached() throws CharacterCodingException, UnsupportedEncodingException {
+        EbmlDecoder decoder = new EbmlDecoder( new StringCache( 16, 4 ) );
+        String first = decoder.decodeAsciiString( encode( "title", 0, false ), 5 );
+        String second = decoder.decodeAsciiString( encode( "title", 0, false ), 5 );
+        assertThat( second, isNotSameAs( first ) );
+    }
+
+    @Test
+    public void trailingZerosAreIgnored() throws CharacterCodingException, UnsupportedEncodingException {
+        EbmlDecoder decoder = new EbmlDecoder( new StringCache() );
+        ByteBuffer buffer = encode( "und", 5, false );
+        String value = decoder.decodeAsciiString( buffer, 8 );
+        assertThat( value, isEqualTo( "und" ) );
+        assertThat( buffer.position(), isEqualTo( 8 ) );
+        assertThat( decoder.decodeAsciiString( encode( "und", 0, true ), 3 ), isSameAs( value ) );
+    }
+
+    @Test
+    public void unicodeValues() throws CharacterCodingException, UnsupportedEncodingException {
+        EbmlDecoder decoder = new EbmlDecoder( new StringCache() );
+        String value = "\u0417\u0430\u0433\u043e\u043b\u043e\u0432\u043e\u043a";
+        int length = value.getBytes( "UTF-8" ).length;
+        String first = decoder.decodeUnicodeString( encode( value, 0, true ), length );
+        assertThat( first, isEqualTo( value ) );
+        assertThat( decoder.decodeUnicodeString( encode( value, 0, false ), length ), isSameAs( first ) );
+    }
+
+    @Test( expectedExceptions = CharacterCodingException.class )
+    public void cachedUnicodeValueIsNotValidAscii() throws CharacterCodingException, UnsupportedEncodingException {
+        EbmlDecoder decoder = new EbmlDecoder( new StringCache() );
+        String value = "caf\u00e9";
+        decoder.decodeUnicodeString( encode( value, 0, false ), 5 );
+        ByteBuffer buffer = encode( value, 0, false );
+        try {
+            decoder.decodeAsciiString( buffer, 5 );
+        } finally {
+            assertThat( buffer.position(), isEqualTo( 0 ) );
+        }
+    }
+
+}
@@ -33,11 +33,14 @@ import java.nio.ByteBuffer;
 
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
+import com.google.code.ebmlviewer.elements.ElementDescriptors;
 
 import static oe.assertions.Assertions.assertThat;
 import static oe.assertions.Predicates.contains;
 import static oe.assertions.Predicates.isEqualTo;
 import static oe.assertions.Predicates.isFalse;
+import static oe.assertions.Predicates.isNotSameAs;
+import static oe.assertions.Predicates.isSameAs;
 import static oe.assertions.Predicates.isTrue;
 import static oe.assertions.Predicates.startsWith;
 
@@ -142,6 +145,60 @@ public class VariableLengthIntegerTest {
     }
 
 
+    @Test
+    public void smallValuesAreCanonical() {
+        for ( int i = 1; i <= 8; i++ ) {
+            VariableLengthInteger plain = VariableLengthInteger.fromPlain( 42L, i );
+            assertThat( VariableLengthInteger.fromPlain( 42L, i ), isSameAs( plain ) );
+            assertThat( VariableLengthInteger.fromEncoded( plain.getEncodedValue() ), isSameAs( plain ) );
+            assertThat( new EbmlDecoder().decodeVariableLengthInteger( ByteBuffer.wrap( encode( plain ) ) ), isSameAs( plain ) );
+        }
+        assertThat( VariableLengthInteger.fromEncoded( 0xffL ), isSameAs( VariableLengthInteger.fromEncoded( 0xffL, 1 ) ) );
+        assertThat( VariableLengthInteger.fromPlain( 42L, 1 ), isNotSameAs( VariableLengthInteger.fromPlain( 42L, 2 ) ) );
+    }
+
+    @Test
+    public void descriptorIdentifiersAreCanonical() {
+        VariableLengthInteger segment = VariableLengthInteger.fromEncoded( 0x18538067L );
+        for ( VariableLengthInteger identifier : ElementDescriptors.getDefaultDescriptors().keySet() ) {
+            assertThat( VariableLengthInteger.fromEncoded( identifier.getEncodedValue() ), isSameAs( identifier ) );
+            assertThat( new EbmlDecoder().decodeVariableLengthInteger( ByteBuffer.wrap( encode( identifier ) ) ), isSameAs( identifier ) );
+        }
+        VariableLengthInteger canonical = VariableLengthInteger.fromEncoded( 0x18538067L );
+        assertThat( canonical, isEqualTo( segment ) );
+        assertThat( VariableLengthInteger.intern( segment ), isSameAs( canonical ) );
+    }
+
+    @Test
+    public void intern() {
+        // the interned identifier would otherwise remain canonical for the other tests
+        VariableLengthInteger.IdentifierTable table = VariableLengthInteger.getIdentifierTable();
+        try {
+            VariableLengthInteger identifier = VariableLengthInteger.fromEncoded( 0x3bcdefL );
+            assertThat( VariableLengthInteger.fromEncoded( 0x3bcdefL ), isNotSameAs( identifier ) );
+            assertThat( VariableLengthInteger.intern( identifier ), isSameAs( identifier ) );
+            assertThat( VariableLengthInteger.intern( VariableLengthInteger.fromEncoded( 0x3bcdefL ) ), isSameAs( identifier ) );
+            assertThat( VariableLengthInteger.fromEncoded( 0x3bcdefL ), isSameAs( identifier ) );
+            assertThat( VariableLengthInteger.fromPlain( 0x1bcdefL, 3 ), isSameAs( identifier ) );
+            assertThat( VariableLengthInteger.fromPlain( 0x1bcdefL, 4 ), isNotSameAs( identifier ) );
+        } finally {
+            VariableLengthInteger.setIdentifierTable( table );
+        }
+        assertThat( VariableLengthInteger.fromEncoded( 0x3bcdefL ), isNotSameAs( VariableLengthInteger.fromEncoded( 0x3bcdefL ) ) );
+    }
+
+    @Test( expectedExceptions = IllegalArgumentException.class )
+    public void internLongIdentifier() {
+        VariableLengthInteger.intern( VariableLengthInteger.fromPlain( 0x12345678L, 5 ) );
+    }
+
+    private static byte[] encode( VariableLengthInteger value ) {
+        ByteBuffer buffer = ByteBuffer.allocate( value.getEncodedLength() );
+        new EbmlEncoder().encodeVariableLengthInteger( buffer, value );
+        return buffer.array();
+    }
+
+
     @DataProvider( name = "data" )
     public Object[][] getData() {
         return new Object[][] {
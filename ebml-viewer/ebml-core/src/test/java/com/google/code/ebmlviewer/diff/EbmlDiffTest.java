@@ -0,0 +1,139 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.diff;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+import com.google.code.ebmlviewer.io.EbmlFile;
+import com.google.code.ebmlviewer.io.EbmlFileEntry;
+
+import static com.google.code.ebmlviewer.EbmlTestData.bytes;
+import static com.google.code.ebmlviewer.EbmlTestData.concat;
+import static com.google.code.ebmlviewer.EbmlTestData.element;
+import static com.google.code.ebmlviewer.EbmlTestData.file;
+import static oe.assertions.Assertions.assertThat;
+import static oe.assertions.Predicates.isEqualTo;
+import static oe.assertions.Predicates.isTrue;
+
+public class EbmlDiffTest {
+
+    private static List<String> diff( byte[] leftData, byte[] rightData, boolean expectedDifferent ) throws IOException {
+        final List<String> events = new ArrayList<String>();
+        File leftFile = file( "diff", leftData );
+        File rightFile = file( "diff", rightData );
+        try {
+            EbmlFile left = new EbmlFile( leftFile );
+            EbmlFile right = new EbmlFile( rightFile );
+            try {
+                boolean different = new EbmlDiff().diff( left, right, new DiffListener() {
+                    @Override
+                    public void added( String path, EbmlFileEntry right ) {
+                        events.add( "+ " + path );
+                    }
+
+                    @Override
+                    public void removed( String path, EbmlFileEntry left ) {
+                        events.add( "- " + path );
+                    }
+
+                    @Override
+                    public void moved( String path, EbmlFileEntry left, EbmlFileEntry right ) {
+                        events.add( "> " + path );
+                    }
+
+                    @Override
+                    public void resized( String path, EbmlFileEntry left, EbmlFileEntry right ) {
+                        events.add( "* " + path );
+                    }
+
+                    @Override
+                    public void changed( String path, EbmlFileEntry left, EbmlFileEntry right, Object leftValue, Object rightValue ) {
+                        events.add( "~ " + path + " " + leftValue + " " + rightValue );
+                    }
+                } );
+                assertThat( different, isEqualTo( expectedDifferent ) );
+            } finally {
+                left.close();
+                right.close();
+            }
+        } finally {
+            leftFile.delete();
+            rightFile.delete();
+        }
+        return events;
+    }
+
+    private static byte[] createFile( String docType, int timecodeScale, boolean voidFirst, boolean extraBlock ) {
+        byte[] header = element( 0x1A45DFA3, element( 0x4282, docType.getBytes() ) );
+        byte[] voidElement = element( 0xEC, bytes( 0, 0, 0, 0 ) );
+        byte[] info = element( 0x1549A966, element( 0x2AD7B1, bytes( timecodeScale >> 16, timecodeScale >> 8, timecodeScale ) ) );
+        byte[] cluster1 = element( 0x1F43B675, element( 0xE7, bytes( 0 ) ), element( 0xA3, bytes( 0x81, 0, 0, 0x80, 1, 2, 3 ) ) );
+        byte[] cluster2 = extraBlock
+                ? element( 0x1F43B675, element( 0xE7, bytes( 100 ) ), element( 0xA3, bytes( 0x81, 0, 0, 0x80, 4, 5, 6 ) ), element( 0xA3, bytes( 0x81, 0, 1, 0, 7 ) ) )
+                : element( 0x1F43B675, element( 0xE7, bytes( 100 ) ), element( 0xA3, bytes( 0x81, 0, 0, 0x80, 4, 5, 6 ) ) );
+        byte[] segment = voidFirst
+                ? element( 0x18538067, voidElement, info, cluster1, cluster2 )
+                : element( 0x18538067, info, cluster1, cluster2, voidElement );
+        return concat( header, segment );
+    }
+
+    @Test
+    public void identical() throws IOException {
+        byte[] data = createFile( "webm", 1000000, true, false );
+        assertThat( diff( data, data.clone(), false ).isEmpty(), isTrue() );
+    }
+
+    @Test
+    public void different() throws IOException {
+        List<String> events = diff( createFile( "webm", 1000000, true, false ), createFile( "mkvx", 500000, false, true ), true );
+        assertThat( events, isEqualTo( Arrays.asList(
+                "~ EBML[0]/DocType[0] webm mkvx",
+                "* Segment[0]",
+                "> Segment[0]/Void[0]",
+                "~ Segment[0]/Info[0]/TimecodeScale[0] 1000000 500000",
+                "* Segment[0]/Cluster[1]",
+                "+ Segment[0]/Cluster[1]/SimpleBlock[1]" ) ) );
+    }
+
+    @Test
+    public void removed() throws IOException {
+        List<String> events = diff( createFile( "webm", 1000000, true, true ), createFile( "webm", 1000000, true, false ), true );
+        assertThat( events, isEqualTo( Arrays.asList(
+                "* Segment[0]",
+                "* Segment[0]/Cluster[1]",
+                "- Segment[0]/Cluster[1]/SimpleBlock[1]" ) ) );
+    }
+
+}
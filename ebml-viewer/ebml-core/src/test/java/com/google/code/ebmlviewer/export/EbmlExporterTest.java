@@ -0,0 +1,95 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.export;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.testng.annotations.Test;
+import com.google.code.ebmlviewer.stream.EbmlStreamReader;
+
+import static com.google.code.ebmlviewer.EbmlTestData.bytes;
+import static com.google.code.ebmlviewer.EbmlTestData.concat;
+import static com.google.code.ebmlviewer.EbmlTestData.element;
+import static com.google.code.ebmlviewer.EbmlTestData.string;
+import static com.google.code.ebmlviewer.elements.ElementDescriptors.getDefaultDescriptors;
+import static oe.assertions.Assertions.assertThat;
+import static oe.assertions.Predicates.contains;
+import static oe.assertions.Predicates.isFalse;
+import static oe.assertions.Predicates.isTrue;
+
+public class EbmlExporterTest {
+
+    private static EbmlStreamReader createReader() {
+        byte[] data = concat(
+                element( 0x1a45dfa3, element( 0x4282, string( "webm" ) ), element( 0x4286, bytes( 0x01 ) ) ),
+                element( 0xec, bytes( 0x01, 0x23, 0x45, 0x67, 0x89, 0xab ) ) );
+        return new EbmlStreamReader( new ByteArrayInputStream( data ) );
+    }
+
+
+    @Test
+    public void json() throws IOException {
+        StringWriter output = new StringWriter();
+        EbmlExporter exporter = new JsonExporter( output, getDefaultDescriptors() );
+        exporter.setMaximumBinarySize( 4 );
+        exporter.export( createReader() );
+        String json = output.toString();
+        assertThat( json, contains( "{\"name\": \"EBML\", \"id\": \"0x1A45DFA3\", \"type\": \"master\", \"position\": 0, \"dataPosition\": 5, \"size\": 11, \"children\": [" ) );
+        assertThat( json, contains( "{\"name\": \"DocType\", \"id\": \"0x4282\", \"type\": \"string\", \"position\": 5, \"dataPosition\": 8, \"size\": 4, \"value\": \"webm\"}" ) );
+        assertThat( json, contains( "\"name\": \"EBMLVersion\"" ), contains( "\"value\": 1}" ) );
+        assertThat( json, contains( "\"position\": 16, \"dataPosition\": 18, \"size\": 6, \"value\": \"01234567\", \"truncated\": true}" ) );
+    }
+
+    @Test
+    public void jsonWithOffsets() throws IOException {
+        StringWriter output = new StringWriter();
+        EbmlExporter exporter = new JsonExporter( output, getDefaultDescriptors() );
+        exporter.setBinaryMode( BinaryMode.OFFSETS );
+        exporter.export( createReader() );
+        String json = output.toString();
+        assertThat( json, contains( "\"position\": 16, \"dataPosition\": 18, \"size\": 6}" ) );
+        assertThat( json.contains( "0123" ), isFalse() );
+    }
+
+    @Test
+    public void xml() throws IOException {
+        StringWriter output = new StringWriter();
+        EbmlExporter exporter = new XmlExporter( output, getDefaultDescriptors() );
+        exporter.export( createReader() );
+        String xml = output.toString();
+        assertThat( xml, contains( "<element name=\"EBML\" id=\"0x1A45DFA3\" type=\"master\" position=\"0\" dataPosition=\"5\" size=\"11\">" ) );
+        assertThat( xml, contains( "<element name=\"DocType\" id=\"0x4282\" type=\"string\" position=\"5\" dataPosition=\"8\" size=\"4\">webm</element>" ) );
+        assertThat( xml, contains( ">0123456789ab</element>" ) );
+        assertThat( xml.trim().endsWith( "</ebml>" ), isTrue() );
+    }
+
+}
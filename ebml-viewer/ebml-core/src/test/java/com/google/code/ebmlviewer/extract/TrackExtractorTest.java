@@ -0,0 +1,215 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.extract;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+import com.google.code.ebmlviewer.core.VariableLengthInteger;
+import com.google.code.ebmlviewer.stream.EbmlStreamReader;
+
+import static com.google.code.ebmlviewer.EbmlTestData.bytes;
+import static com.google.code.ebmlviewer.EbmlTestData.concat;
+import static com.google.code.ebmlviewer.EbmlTestData.element;
+import static oe.assertions.Assertions.assertThat;
+import static oe.assertions.Predicates.isEqualTo;
+
+public class TrackExtractorTest {
+
+    private static byte[] simpleBlock( int track, int timecode, boolean keyframe ) {
+        return element( 0xA3, bytes( 0x80 | track, 0x00, timecode, keyframe ? 0x80 : 0x00, 0x11, 0x22 ) );
+    }
+
+    private static byte[] createFile() {
+        return concat(
+                element( 0x1A45DFA3, element( 0x4282, bytes( 'w', 'e', 'b', 'm' ) ) ),
+                element( 0x18538067,
+                        element( 0x114D9B74, element( 0x4DBB, element( 0x53AB, bytes( 0x16, 0x54, 0xae, 0x6b ) ) ) ),
+                        element( 0x1654AE6B,
+                                element( 0xAE, element( 0xD7, bytes( 0x01 ) ) ),
+                                element( 0xAE, element( 0xD7, bytes( 0x02 ) ) ) ),
+                        element( 0x1F43B675,
+                                element( 0xE7, bytes( 0x00 ) ),
+                                simpleBlock( 1, 0, true ),
+                                simpleBlock( 2, 0, true ),
+                                simpleBlock( 1, 10, false ),
+                                element( 0xA0, element( 0xA1, bytes( 0x82, 0x00, 0x14, 0x00, 0x33 ) ) ) ),
+                        element( 0x1F43B675,
+                                element( 0xE7, bytes( 0x64 ) ),
+                                element( 0xBF, bytes( 0x00, 0x00, 0x00, 0x00 ) ),
+                                simpleBlock( 2, 0, false ),
+                                simpleBlock( 1, 0, false ),
+                                simpleBlock( 1, 10, true ),
+                                simpleBlock( 1, 20, false ) ),
+                        element( 0x1C53BB6B, element( 0xBB, element( 0xB3, bytes( 0x00 ) ) ) ) ) );
+    }
+
+    /** Lists the identifiers of the segment children, and the track numbers and timestamps of the blocks. */
+    private static List<String> describe( File file ) throws IOException {
+        List<String> result = new ArrayList<String>();
+        EbmlStreamReader reader = new EbmlStreamReader( new FileInputStream( file ) );
+        try {
+            while ( reader.next() ) {
+                if ( reader.getIdentifier().getEncodedValue() != 0x18538067 ) {
+                    continue;
+                }
+                reader.enterContainer();
+                while ( reader.next() ) {
+                    long identifier = reader.getIdentifier().getEncodedValue();
+                    if ( identifier == 0x1F43B675 || identifier == 0x1654AE6B ) {
+                        long timecode = 0L;
+                        reader.enterContainer();
+                        while ( reader.next() ) {
+                            long child = reader.getIdentifier().getEncodedValue();
+                            if ( child == 0xE7 ) {
+                                timecode = reader.readUnsignedInteger();
+                                result.add( "timecode" );
+                            } else if ( child == 0xA3 ) {
+                                ByteBuffer header = ByteBuffer.allocate( 3 );
+                                reader.readBinary( header );
+                                result.add( String.format( "block %s@%s", header.get( 0 ) & 0x7f, timecode + header.get( 2 ) ) );
+                            } else if ( child == 0xA0 ) {
+                                result.add( "group" );
+                            } else if ( child == 0xAE ) {
+                                result.add( "track" );
+                            } else {
+                                result.add( VariableLengthInteger.fromEncoded( child ).toString() );
+                            }
+                        }
+                        reader.leaveContainer();
+                    } else {
+                        result.add( reader.getIdentifier().toString() );
+                    }
+                }
+                reader.leaveContainer();
+            }
+        } finally {
+            reader.close();
+        }
+        return result;
+    }
+
+    private static List<String> extract( byte[] data, List<Long> tracks, long startTimecode, long endTimecode ) throws IOException {
+        File source = File.createTempFile( "source", ".mkv" );
+        File target = File.createTempFile( "target", ".mkv" );
+        try {
+            FileOutputStream output = new FileOutputStream( source );
+            try {
+                output.write( data );
+            } finally {
+                output.close();
+            }
+            FileInputStream input = new FileInputStream( source );
+            try {
+                FileChannel channel = input.getChannel();
+                TrackExtractor extractor = new TrackExtractor( channel );
+                extractor.setTracks( tracks );
+                extractor.setTimeRange( startTimecode, endTimecode );
+                FileOutputStream targetStream = new FileOutputStream( target );
+                try {
+                    long written = extractor.extract( targetStream.getChannel() );
+                    assertThat( written, isEqualTo( targetStream.getChannel().size() ) );
+                } finally {
+                    targetStream.close();
+                }
+            } finally {
+                input.close();
+            }
+            return describe( target );
+        } finally {
+            source.delete();
+            target.delete();
+        }
+    }
+
+    @Test
+    public void allTracks() throws IOException {
+        List<String> result = extract( createFile(), null, Long.MIN_VALUE, Long.MAX_VALUE );
+        assertThat( result, isEqualTo( Arrays.asList(
+                "track", "track",
+                "timecode", "block 1@0", "block 2@0", "block 1@10", "group",
+                "timecode", "block 2@100", "block 1@100", "block 1@110", "block 1@120" ) ) );
+    }
+
+    @Test
+    public void singleTrack() throws IOException {
+        List<String> result = extract( createFile(), Arrays.asList( 1L ), Long.MIN_VALUE, Long.MAX_VALUE );
+        assertThat( result, isEqualTo( Arrays.asList(
+                "track",
+                "timecode", "block 1@0", "block 1@10",
+                "timecode", "block 1@100", "block 1@110", "block 1@120" ) ) );
+    }
+
+    @Test
+    public void timeRange() throws IOException {
+        List<String> result = extract( createFile(), null, 5L, 115L );
+        assertThat( result, isEqualTo( Arrays.asList(
+                "track", "track",
+                "timecode", "group",
+                "timecode", "block 2@100", "block 1@110" ) ) );
+    }
+
+    @Test
+    public void channels() throws IOException {
+        byte[] data = createFile();
+        File source = File.createTempFile( "source", ".mkv" );
+        try {
+            FileOutputStream output = new FileOutputStream( source );
+            try {
+                output.write( data );
+            } finally {
+                output.close();
+            }
+            FileInputStream input = new FileInputStream( source );
+            try {
+                ByteArrayOutputStream target = new ByteArrayOutputStream();
+                long written = new TrackExtractor( input.getChannel() ).extract( Channels.newChannel( target ) );
+                assertThat( written, isEqualTo( ( long ) target.size() ) );
+                // the SeekHead, the Cues and the CRC-32 are dropped, and the segment size fits in one byte
+                assertThat( written, isEqualTo( ( long ) data.length - 15 - 10 - 6 - 1 ) );
+            } finally {
+                input.close();
+            }
+        } finally {
+            source.delete();
+        }
+    }
+
+}
@@ -0,0 +1,156 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.fingerprint;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.testng.annotations.Test;
+
+import static com.google.code.ebmlviewer.EbmlTestData.bytes;
+import static com.google.code.ebmlviewer.EbmlTestData.element;
+import static com.google.code.ebmlviewer.EbmlTestData.file;
+import static com.google.code.ebmlviewer.EbmlTestData.string;
+import static oe.assertions.Assertions.assertThat;
+import static oe.assertions.Predicates.isEqualTo;
+import static oe.assertions.Predicates.isFalse;
+import static oe.assertions.Predicates.isTrue;
+
+public class PayloadFingerprinterTest {
+
+    private static byte[] frame( int value ) {
+        return bytes( value, value + 1, value + 2, value + 3 );
+    }
+
+    private static byte[] simpleBlock( int track, int timecode, byte[] frame ) {
+        return element( 0xA3, bytes( 0x80 | track, 0x00, timecode, 0x80 ), frame );
+    }
+
+    /** Creates a block with two frames of the same size using the Xiph lacing. */
+    private static byte[] lacedBlock( int track, int timecode, byte[] first, byte[] second ) {
+        return element( 0xA3, bytes( 0x80 | track, 0x00, timecode, 0x82, 0x01, first.length ), first, second );
+    }
+
+    private static File write( byte[]... segmentChildren ) throws IOException {
+        return file( "fingerprint",
+                element( 0x1A45DFA3, element( 0x4282, string( "matroska" ) ) ),
+                element( 0x18538067, segmentChildren ) );
+    }
+
+    private static File original() throws IOException {
+        return write(
+                element( 0x1F43B675, element( 0xE7, bytes( 0x00 ) ),
+                        simpleBlock( 1, 0, frame( 10 ) ), simpleBlock( 2, 0, frame( 50 ) ), simpleBlock( 1, 1, frame( 20 ) ) ),
+                element( 0x1F43B675, element( 0xE7, bytes( 0x10 ) ),
+                        simpleBlock( 1, 0, frame( 30 ) ), simpleBlock( 2, 0, frame( 60 ) ), simpleBlock( 1, 1, frame( 40 ) ) ) );
+    }
+
+    /** Creates a re-mux of the original file with different track numbers, clustering, lacing and block groups. */
+    private static File remux() throws IOException {
+        return write(
+                element( 0x1654AE6B, element( 0xAE, element( 0xD7, bytes( 0x05 ) ) ) ),
+                element( 0x1F43B675, element( 0xE7, bytes( 0x00 ) ),
+                        element( 0xA0, element( 0xA1, bytes( 0x83, 0x00, 0x00, 0x00 ), frame( 10 ) ) ),
+                        lacedBlock( 4, 0, frame( 50 ), frame( 60 ) ),
+                        simpleBlock( 3, 1, frame( 20 ) ),
+                        simpleBlock( 3, 2, frame( 30 ) ),
+                        simpleBlock( 3, 3, frame( 40 ) ),
+                        simpleBlock( 3, 4, frame( 70 ) ) ) );
+    }
+
+
+    @Test
+    public void hash() {
+        assertThat( PayloadHash.hash( ByteBuffer.allocate( 0 ), 0L ), isEqualTo( 0xEF46DB3751D8E999L ) );
+        assertThat( PayloadHash.hash( ByteBuffer.wrap( "abc".getBytes() ), 0L ), isEqualTo( 0x44BC2CF5AD770999L ) );
+        assertThat( PayloadHash.hash( ByteBuffer.wrap( "Nobody inspects the spammish repetition".getBytes() ), 0L ), isEqualTo( 0xFBCEA83C8A378BF1L ) );
+    }
+
+    @Test
+    public void fingerprint() throws IOException {
+        FileFingerprint fingerprint = new PayloadFingerprinter().fingerprint( original() );
+        assertThat( fingerprint.getClusters().size(), isEqualTo( 2 ) );
+        assertThat( fingerprint.getClusters().get( 0 ).getFrameCount(), isEqualTo( 3 ) );
+        assertThat( fingerprint.getTracks().size(), isEqualTo( 2 ) );
+        long[] frames = fingerprint.getTrackFingerprints( 1L );
+        assertThat( frames.length, isEqualTo( 4 ) );
+        assertThat( frames[ 0 ], isEqualTo( PayloadHash.hash( ByteBuffer.wrap( frame( 10 ) ), 0L ) ) );
+        assertThat( fingerprint.getClusters().get( 0 ).getFingerprint() == fingerprint.getClusters().get( 1 ).getFingerprint(), isFalse() );
+    }
+
+    @Test
+    public void remuxedFrames() throws IOException {
+        FileFingerprint original = new PayloadFingerprinter().fingerprint( original() );
+        FileFingerprint remux = new PayloadFingerprinter().fingerprint( remux() );
+        assertThat( Arrays.equals( remux.getTrackFingerprints( 4L ), original.getTrackFingerprints( 2L ) ), isTrue() );
+        long[] video = remux.getTrackFingerprints( 3L );
+        assertThat( Arrays.equals( Arrays.copyOf( video, 4 ), original.getTrackFingerprints( 1L ) ), isTrue() );
+        assertThat( remux.getClusters().get( 0 ).getTrackNumber( 0 ), isEqualTo( 3L ) );
+    }
+
+    @Test
+    public void executor() throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool( 2 );
+        try {
+            FileFingerprint sequential = new PayloadFingerprinter().fingerprint( original() );
+            FileFingerprint parallel = new PayloadFingerprinter( executor ).fingerprint( original() );
+            for ( int i = 0; i < 2; i++ ) {
+                assertThat( parallel.getClusters().get( i ).getFingerprint(), isEqualTo( sequential.getClusters().get( i ).getFingerprint() ) );
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void sharedRuns() throws IOException {
+        FingerprintIndex index = new FingerprintIndex();
+        index.add( "original", new PayloadFingerprinter().fingerprint( original() ) );
+        assertThat( index.size(), isEqualTo( 6 ) );
+        List<SharedRun> runs = index.findSharedRuns( new PayloadFingerprinter().fingerprint( remux() ), 2 );
+        assertThat( runs.size(), isEqualTo( 2 ) );
+        SharedRun video = runs.get( 0 );
+        assertThat( video.getName(), isEqualTo( "original" ) );
+        assertThat( video.getTrackNumber(), isEqualTo( 3L ) );
+        assertThat( video.getOtherTrackNumber(), isEqualTo( 1L ) );
+        assertThat( video.getOffset(), isEqualTo( 0 ) );
+        assertThat( video.getOtherOffset(), isEqualTo( 0 ) );
+        assertThat( video.getLength(), isEqualTo( 4 ) );
+        SharedRun audio = runs.get( 1 );
+        assertThat( audio.getTrackNumber(), isEqualTo( 4L ) );
+        assertThat( audio.getLength(), isEqualTo( 2 ) );
+    }
+
+}
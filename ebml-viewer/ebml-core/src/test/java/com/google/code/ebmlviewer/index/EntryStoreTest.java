@@ -0,0 +1,122 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.index;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.testng.annotations.Test;
+import com.google.code.ebmlviewer.core.VariableLengthInteger;
+import com.google.code.ebmlviewer.io.EbmlFile;
+
+import static com.google.code.ebmlviewer.EbmlTestData.bytes;
+import static com.google.code.ebmlviewer.EbmlTestData.element;
+import static com.google.code.ebmlviewer.EbmlTestData.file;
+import static com.google.code.ebmlviewer.EbmlTestData.string;
+import static oe.assertions.Assertions.assertThat;
+import static oe.assertions.Predicates.isEqualTo;
+import static oe.assertions.Predicates.isNull;
+
+public class EntryStoreTest {
+
+    private static File createFile() throws IOException {
+        return file( "store",
+                element( 0x1A45DFA3, element( 0x4282, string( "webm" ) ) ),
+                element( 0x18538067,
+                        element( 0x1549A966, element( 0x2AD7B1, bytes( 0x0f, 0x42, 0x40 ) ) ),
+                        element( 0x1F43B675, element( 0xE7, bytes( 0x00 ) ), element( 0xA3, new byte[ 8 ] ) ),
+                        element( 0x1F43B675, element( 0xE7, bytes( 0x10 ) ) ) ) );
+    }
+
+    private static void verify( EntryStore store ) throws IOException {
+        EbmlFile file = new EbmlFile( createFile() );
+        long root;
+        try {
+            root = store.add( file );
+        } finally {
+            file.close();
+        }
+        assertThat( store.size() - root, isEqualTo( 11L ) );
+        assertThat( store.getIdentifier( root ), isNull() );
+        long header = store.getFirstChild( root );
+        assertThat( store.getPosition( header ), isEqualTo( 0L ) );
+        assertThat( store.getDataPosition( header ), isEqualTo( 5L ) );
+        assertThat( store.getPlainSize( header ), isEqualTo( 7L ) );
+        long segment = store.getNextSibling( header );
+        assertThat( store.getIdentifier( segment ), isEqualTo( VariableLengthInteger.fromEncoded( 0x18538067 ) ) );
+        assertThat( store.getParent( segment ), isEqualTo( root ) );
+        assertThat( store.getNextSibling( segment ), isEqualTo( EntryStore.NONE ) );
+        long cluster = store.findChild( segment, 0x1F43B675 );
+        long block = store.findChild( cluster, 0xA3 );
+        assertThat( store.getPosition( block ), isEqualTo( 12L + 5L + 12L + 5L + 3L ) );
+        assertThat( store.getSize( block ), isEqualTo( VariableLengthInteger.fromPlain( 8L, 1 ) ) );
+        assertThat( store.getFirstChild( block ), isEqualTo( EntryStore.NONE ) );
+        long secondCluster = store.getNextSibling( cluster );
+        assertThat( store.getEncodedIdentifier( store.getFirstChild( secondCluster ) ), isEqualTo( 0xE7L ) );
+        assertThat( store.findChild( secondCluster, 0xA3 ), isEqualTo( EntryStore.NONE ) );
+    }
+
+
+    @Test
+    public void direct() throws IOException {
+        EntryStore store = EntryStore.allocateDirect( 4 );
+        try {
+            verify( store );
+            verify( store );
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void mapped() throws IOException {
+        File backing = File.createTempFile( "store", ".dat" );
+        backing.deleteOnExit();
+        EntryStore store = EntryStore.map( backing, 8 );
+        try {
+            verify( store );
+            assertThat( backing.length(), isEqualTo( 2L * 8L * 56L ) );
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test( expectedExceptions = IndexOutOfBoundsException.class )
+    public void outOfRange() throws IOException {
+        EntryStore store = EntryStore.allocateDirect( EntryStore.DEFAULT_CHUNK_RECORDS );
+        try {
+            store.addRoot();
+            store.getPosition( 1L );
+        } finally {
+            store.close();
+        }
+    }
+
+}
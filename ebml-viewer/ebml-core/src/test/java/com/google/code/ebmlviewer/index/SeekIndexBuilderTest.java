@@ -0,0 +1,179 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.index;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.testng.annotations.Test;
+import com.google.code.ebmlviewer.stream.EbmlStreamReader;
+
+import static com.google.code.ebmlviewer.EbmlTestData.bytes;
+import static com.google.code.ebmlviewer.EbmlTestData.element;
+import static com.google.code.ebmlviewer.EbmlTestData.file;
+import static oe.assertions.Assertions.assertThat;
+import static oe.assertions.Predicates.isEqualTo;
+import static oe.assertions.Predicates.isNull;
+import static oe.assertions.Predicates.isTrue;
+
+public class SeekIndexBuilderTest {
+
+    /** Segment data starts after the 4-byte identifier and the 1-byte size. */
+    private static final long SEGMENT_DATA_POSITION = 5L;
+
+    private static byte[] createFile() {
+        byte[] info = element( 0x1549A966, element( 0x2AD7B1, bytes( 0x0f, 0x42, 0x40 ) ) );
+        byte[] cluster1 = element( 0x1F43B675,
+                element( 0xE7, bytes( 0x03, 0xe8 ) ),
+                element( 0xA3, bytes( 0x81, 0x00, 0x00, 0x80, 0x11 ) ),
+                element( 0xA3, bytes( 0x81, 0x00, 0x0a, 0x00, 0x11 ) ),
+                element( 0xA0, element( 0xA1, bytes( 0x82, 0x00, 0x05, 0x00, 0x11 ) ) ),
+                element( 0xA0, element( 0xA1, bytes( 0x82, 0x00, 0x06, 0x00, 0x11 ) ), element( 0xFB, bytes( 0xff ) ) ) );
+        // the timecode of the second cluster follows its first block
+        byte[] cluster2 = element( 0x1F43B675,
+                element( 0xA3, bytes( 0x81, 0x00, 0x00, 0x80, 0x11 ) ),
+                element( 0xE7, bytes( 0x07, 0xd0 ) ) );
+        long cluster2Position = info.length + cluster1.length;
+        byte[] cues = element( 0x1C53BB6B,
+                element( 0xBB,
+                        element( 0xB3, bytes( 0x07, 0xd0 ) ),
+                        element( 0xB7, element( 0xF7, bytes( 0x01 ) ), element( 0xF1, bytes( ( int ) cluster2Position ) ) ) ),
+                element( 0xBB,
+                        element( 0xB3, bytes( 0x0b, 0xb8 ) ),
+                        element( 0xB7, element( 0xF7, bytes( 0x01 ) ), element( 0xF1, bytes( ( int ) cluster2Position ) ) ) ) );
+        return element( 0x18538067, info, cluster1, cluster2, cues );
+    }
+
+    private static void verify( SeekIndex index, byte[] file ) {
+        long cluster1Position = SEGMENT_DATA_POSITION + 12;
+        long cluster2Position = cluster1Position + 5 + 4 + 7 + 7 + 9 + 12;
+        assertThat( ( int ) file[ ( int ) cluster2Position ] & 0xff, isEqualTo( 0x1F ) );
+
+        assertThat( index.getTimecodeScale(), isEqualTo( 1000000L ) );
+        assertThat( index.getTracks().size(), isEqualTo( 2 ) );
+
+        TrackIndex track1 = index.getTrack( 1L );
+        assertThat( track1.size(), isEqualTo( 3 ) );
+        assertThat( track1.getTimestamp( 0 ), isEqualTo( 1000L ) );
+        assertThat( track1.getClusterPosition( 0 ), isEqualTo( cluster1Position ) );
+        assertThat( track1.getBlockPosition( 0 ), isEqualTo( cluster1Position + 5 + 4 ) );
+        assertThat( track1.getTimestamp( 1 ), isEqualTo( 2000L ) );
+        assertThat( track1.getClusterPosition( 1 ), isEqualTo( cluster2Position ) );
+        assertThat( track1.getBlockPosition( 1 ), isEqualTo( cluster2Position + 5 ) );
+        assertThat( track1.getTimestamp( 2 ), isEqualTo( 3000L ) );
+        assertThat( track1.getBlockPosition( 2 ), isEqualTo( -1L ) );
+
+        TrackIndex track2 = index.getTrack( 2L );
+        assertThat( track2.size(), isEqualTo( 1 ) );
+        assertThat( track2.getTimestamp( 0 ), isEqualTo( 1005L ) );
+        assertThat( index.getTrack( 3L ), isNull() );
+
+        assertThat( track1.find( 999L ), isEqualTo( -1 ) );
+        assertThat( track1.find( 1000L ), isEqualTo( 0 ) );
+        assertThat( track1.find( 1999L ), isEqualTo( 0 ) );
+        assertThat( track1.find( 2500L ), isEqualTo( 1 ) );
+        assertThat( track1.find( Long.MAX_VALUE ), isEqualTo( 2 ) );
+        assertThat( index.seek( 1L, 2500000000L ), isEqualTo( cluster2Position + 5 ) );
+        assertThat( index.seek( 1L, 3500000000L ), isEqualTo( cluster2Position ) );
+        assertThat( index.seek( 2L, 1000000000L ), isEqualTo( -1L ) );
+    }
+
+    @Test
+    public void scanStream() throws IOException {
+        byte[] file = createFile();
+        SeekIndexBuilder builder = new SeekIndexBuilder();
+        EbmlStreamReader reader = new EbmlStreamReader( new ByteArrayInputStream( file ) );
+        try {
+            builder.scan( reader );
+        } finally {
+            reader.close();
+        }
+        verify( builder.getIndex(), file );
+    }
+
+    @Test
+    public void scanFile() throws IOException {
+        byte[] data = createFile();
+        SeekIndexBuilder builder = new SeekIndexBuilder();
+        builder.scan( file( "index", data ) );
+        verify( builder.getIndex(), data );
+    }
+
+    @Test
+    public void persistence() throws IOException {
+        byte[] file = createFile();
+        SeekIndexBuilder builder = new SeekIndexBuilder();
+        builder.scan( new EbmlStreamReader( new ByteArrayInputStream( file ) ) );
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        builder.getIndex().writeTo( new DataOutputStream( output ) );
+        SeekIndex index = SeekIndex.readFrom( new DataInputStream( new ByteArrayInputStream( output.toByteArray() ) ) );
+        verify( index, file );
+    }
+
+    @Test
+    public void outOfOrderAdd() {
+        TrackIndex index = new TrackIndex( 1L );
+        for ( int i = 100; i > 0; i-- ) {
+            index.add( i * 10L, i, -1L );
+        }
+        index.add( 500L, 50L, 1234L );
+        assertThat( index.size(), isEqualTo( 100 ) );
+        for ( int i = 0; i < 100; i++ ) {
+            assertThat( index.getTimestamp( i ), isEqualTo( ( i + 1 ) * 10L ) );
+        }
+        assertThat( index.getBlockPosition( index.find( 505L ) ), isEqualTo( 1234L ) );
+    }
+
+    @Test
+    public void merge() {
+        TrackIndex index = new TrackIndex( 1L );
+        TrackIndex other = new TrackIndex( 1L );
+        for ( int i = 0; i < 100; i++ ) {
+            index.add( i * 20L, i * 2L, -1L );
+            other.add( i * 10L, i, i * 100L );
+        }
+        other.add( 0L, 1000L, -1L );
+        index.merge( other );
+        assertThat( index.size(), isEqualTo( 151 ) );
+        for ( int i = 1; i < index.size(); i++ ) {
+            assertThat( index.getTimestamp( i - 1 ) <= index.getTimestamp( i ), isTrue() );
+        }
+        assertThat( index.getBlockPosition( index.find( 40L ) ), isEqualTo( 400L ) );
+        assertThat( index.getClusterPosition( 1 ), isEqualTo( 1000L ) );
+
+        index.merge( index );
+        assertThat( index.size(), isEqualTo( 151 ) );
+    }
+
+}
@@ -0,0 +1,129 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.Channels;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.testng.annotations.Test;
+import com.google.code.ebmlviewer.core.VariableLengthInteger;
+import com.google.code.ebmlviewer.stream.EbmlStreamReader;
+
+import static com.google.code.ebmlviewer.EbmlTestData.bytes;
+import static com.google.code.ebmlviewer.EbmlTestData.element;
+import static com.google.code.ebmlviewer.EbmlTestData.file;
+import static oe.assertions.Assertions.assertThat;
+import static oe.assertions.Predicates.isEqualTo;
+import static oe.assertions.Predicates.isTrue;
+
+public class AtomicReaderMetricsTest {
+
+    /** A segment with an info element and a cluster with a timecode and a 100-byte block. */
+    private static final byte[] DATA = element( 0x18538067,
+            element( 0x1549a966, element( 0xec ) ),
+            element( 0x1f43b675, element( 0xe7, bytes( 0x00 ) ), element( 0xa3, new byte[ 100 ] ) ) );
+
+    private static ReaderOptions options( ReaderMetrics metrics ) {
+        ReaderOptions options = new ReaderOptions();
+        options.setBufferSize( 64 );
+        options.setMetrics( metrics );
+        return options;
+    }
+
+
+    @Test
+    public void streamReader() throws IOException {
+        AtomicReaderMetrics metrics = new AtomicReaderMetrics();
+        EbmlStreamReader reader = new EbmlStreamReader( Channels.newChannel( new ByteArrayInputStream( DATA ) ), DATA.length, options( metrics ) );
+        try {
+            assertThat( reader.next(), isTrue() );
+            reader.enterContainer();
+            while ( reader.next() ) {
+                reader.enterContainer();
+                while ( reader.next() ) {
+                }
+                reader.leaveContainer();
+            }
+            reader.leaveContainer();
+        } finally {
+            reader.close();
+        }
+        assertThat( metrics.getBytesRead(), isEqualTo( ( long ) DATA.length ) );
+        assertThat( metrics.getReadCalls() > 1L, isTrue() );
+        assertThat( metrics.getBufferRefills() > 0L, isTrue() );
+        assertThat( metrics.getBytesSkipped(), isEqualTo( 1L + 100L ) );
+        assertThat( metrics.getElementsParsed(), isEqualTo( 6L ) );
+        assertThat( metrics.getElementCount( VariableLengthInteger.fromEncoded( 0x1f43b675 ) ), isEqualTo( 1L ) );
+        assertThat( metrics.getDecodeTimeNanos() > 0L, isTrue() );
+    }
+
+    @Test
+    public void fileReader() throws IOException {
+        File file = file( "metrics", DATA );
+        AtomicReaderMetrics metrics = new AtomicReaderMetrics();
+        EbmlFile ebmlFile = new EbmlFile( file, options( metrics ) );
+        try {
+            for ( EbmlFileEntry entry : ebmlFile.getEntries().get( 0 ).getEntries() ) {
+                entry.getEntries();
+            }
+        } finally {
+            ebmlFile.close();
+        }
+        assertThat( metrics.getElementsParsed(), isEqualTo( 6L ) );
+        assertThat( metrics.getElementCount( VariableLengthInteger.fromEncoded( 0xa3 ) ), isEqualTo( 1L ) );
+        assertThat( metrics.getBytesRead() > 0L, isTrue() );
+        assertThat( metrics.getIoTimeNanos() > 0L, isTrue() );
+        assertThat( metrics.getElementCounts().get( "0xE7" ), isEqualTo( 1L ) );
+
+        metrics.reset();
+        assertThat( metrics.getElementsParsed(), isEqualTo( 0L ) );
+        assertThat( metrics.getElementCounts().isEmpty(), isTrue() );
+    }
+
+    @Test
+    public void jmx() throws JMException {
+        AtomicReaderMetrics metrics = new AtomicReaderMetrics();
+        metrics.bytesSkipped( 42L );
+        ObjectName name = metrics.register( "test" );
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            assertThat( server.getAttribute( name, "BytesSkipped" ), isEqualTo( ( Object ) 42L ) );
+        } finally {
+            server.unregisterMBean( name );
+        }
+    }
+
+}
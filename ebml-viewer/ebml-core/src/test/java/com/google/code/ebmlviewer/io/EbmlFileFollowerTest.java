@@ -0,0 +1,190 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import static com.google.code.ebmlviewer.EbmlTestData.bytes;
+import static com.google.code.ebmlviewer.EbmlTestData.element;
+import static oe.assertions.Assertions.assertThat;
+import static oe.assertions.Predicates.isEqualTo;
+
+public class EbmlFileFollowerTest {
+
+    private static final byte[] UNKNOWN_SIZE_SEGMENT = bytes( 0x18, 0x53, 0x80, 0x67, 0x01, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff );
+
+    private static File createFile() throws IOException {
+        File file = File.createTempFile( "follower", ".mkv" );
+        file.deleteOnExit();
+        return file;
+    }
+
+    private static void append( File file, byte[] data, int offset, int length ) throws IOException {
+        FileOutputStream output = new FileOutputStream( file, true );
+        try {
+            output.write( data, offset, length );
+        } finally {
+            output.close();
+        }
+    }
+
+    private static void append( File file, byte[]... data ) throws IOException {
+        for ( byte[] d : data ) {
+            append( file, d, 0, d.length );
+        }
+    }
+
+
+    private static final class RecordingListener implements EbmlFileListener {
+
+        private final List<String> events = new ArrayList<String>();
+
+        @Override
+        public void entryAdded( EbmlFileEntry parent, EbmlFileEntry entry ) {
+            String name = Long.toHexString( entry.getIdentifier().getEncodedValue() );
+            events.add( parent == null ? name : Long.toHexString( parent.getIdentifier().getEncodedValue() ) + "/" + name );
+        }
+
+    }
+
+
+    @Test
+    public void testUnknownSizeSegment() throws IOException {
+        File file = createFile();
+        append( file, element( 0x1a45dfa3, element( 0x4286, bytes( 1 ) ) ), UNKNOWN_SIZE_SEGMENT,
+                element( 0x1549a966, element( 0x2ad7b1, bytes( 0x0f, 0x42, 0x40 ) ) ) );
+        EbmlFile ebmlFile = new EbmlFile( file );
+        try {
+            EbmlFileFollower follower = ebmlFile.follow();
+            RecordingListener listener = new RecordingListener();
+            follower.addListener( listener );
+
+            assertThat( follower.poll(), isEqualTo( 3 ) );
+            assertThat( listener.events, isEqualTo( Arrays.asList( "1a45dfa3", "18538067", "18538067/1549a966" ) ) );
+            assertThat( follower.poll(), isEqualTo( 0 ) );
+
+            byte[] cluster = element( 0x1f43b675, element( 0xe7, bytes( 0 ) ), element( 0xa3, bytes( 0x81, 0x00, 0x00, 0x80, 1, 2 ) ) );
+            append( file, cluster, 0, 6 );
+            assertThat( follower.poll(), isEqualTo( 0 ) );
+            append( file, cluster, 6, cluster.length - 6 );
+            assertThat( follower.poll(), isEqualTo( 1 ) );
+            assertThat( listener.events.get( 3 ), isEqualTo( "18538067/1f43b675" ) );
+
+            List<EbmlFileEntry> entries = ebmlFile.getEntries();
+            assertThat( entries.size(), isEqualTo( 2 ) );
+            List<EbmlFileEntry> children = entries.get( 1 ).getEntries();
+            assertThat( children.size(), isEqualTo( 2 ) );
+            assertThat( children.get( 1 ).getEntries().size(), isEqualTo( 2 ) );
+        } finally {
+            ebmlFile.close();
+        }
+    }
+
+    @Test
+    public void testKnownSizeSegment() throws IOException {
+        byte[] info = element( 0x1549a966, element( 0x2ad7b1, bytes( 0x0f, 0x42, 0x40 ) ) );
+        byte[] cluster = element( 0x1f43b675, element( 0xe7, bytes( 0 ) ) );
+        byte[] segment = element( 0x18538067, info, cluster );
+        File file = createFile();
+        append( file, segment, 0, segment.length - cluster.length );
+        EbmlFile ebmlFile = new EbmlFile( file );
+        try {
+            EbmlFileFollower follower = ebmlFile.follow();
+            RecordingListener listener = new RecordingListener();
+            follower.addListener( listener );
+            assertThat( follower.poll(), isEqualTo( 2 ) );
+
+            append( file, cluster );
+            append( file, element( 0xec, bytes( 0, 0 ) ) );
+            assertThat( follower.poll(), isEqualTo( 2 ) );
+            assertThat( listener.events, isEqualTo( Arrays.asList( "18538067", "18538067/1549a966", "18538067/1f43b675", "ec" ) ) );
+        } finally {
+            ebmlFile.close();
+        }
+    }
+
+    @Test
+    public void testFollowAfterSnapshot() throws IOException {
+        File file = createFile();
+        append( file, element( 0x1a45dfa3, element( 0x4286, bytes( 1 ) ) ) );
+        EbmlFile ebmlFile = new EbmlFile( file );
+        try {
+            assertThat( ebmlFile.getEntries().size(), isEqualTo( 1 ) );
+            EbmlFileFollower follower = ebmlFile.follow();
+            assertThat( follower.poll(), isEqualTo( 0 ) );
+            append( file, element( 0xec, bytes( 0, 0 ) ) );
+            assertThat( follower.poll(), isEqualTo( 1 ) );
+            assertThat( ebmlFile.getEntries().size(), isEqualTo( 2 ) );
+        } finally {
+            ebmlFile.close();
+        }
+    }
+
+    @Test
+    public void testFollowAfterUnknownSizeSnapshot() throws IOException {
+        File file = createFile();
+        append( file, UNKNOWN_SIZE_SEGMENT, element( 0x1549a966, element( 0x2ad7b1, bytes( 0x0f, 0x42, 0x40 ) ) ) );
+        EbmlFile ebmlFile = new EbmlFile( file );
+        try {
+            assertThat( ebmlFile.follow().poll(), isEqualTo( 2 ) );
+            // the snapshot ends with the open segment
+            EbmlFileFollower follower = ebmlFile.follow();
+            RecordingListener listener = new RecordingListener();
+            follower.addListener( listener );
+            assertThat( follower.poll(), isEqualTo( 0 ) );
+            append( file, element( 0x1f43b675, element( 0xe7, bytes( 0 ) ) ) );
+            assertThat( follower.poll(), isEqualTo( 1 ) );
+            assertThat( listener.events, isEqualTo( Arrays.asList( "18538067/1f43b675" ) ) );
+            assertThat( ebmlFile.getEntries().get( 0 ).getEntries().size(), isEqualTo( 2 ) );
+        } finally {
+            ebmlFile.close();
+        }
+    }
+
+    @Test( expectedExceptions = EbmlIoException.class )
+    public void testUnknownSizeChild() throws IOException {
+        File file = createFile();
+        append( file, UNKNOWN_SIZE_SEGMENT, bytes( 0x1f, 0x43, 0xb6, 0x75, 0xff ), element( 0xe7, bytes( 0 ) ) );
+        EbmlFile ebmlFile = new EbmlFile( file );
+        try {
+            ebmlFile.follow().poll();
+        } finally {
+            ebmlFile.close();
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import static com.google.code.ebmlviewer.EbmlTestData.element;
+import static com.google.code.ebmlviewer.EbmlTestData.file;
+import static oe.assertions.Assertions.assertThat;
+import static oe.assertions.Predicates.isEqualTo;
+import static oe.assertions.Predicates.isFalse;
+import static oe.assertions.Predicates.isTrue;
+
+public class EbmlFileTest {
+
+    /** Creates a file with the specified number of top-level void elements with 8 bytes of data each. */
+    private static File createFile( int count ) throws IOException {
+        byte[][] elements = new byte[ count ][];
+        for ( int i = 0; i < count; i++ ) {
+            elements[ i ] = element( 0xec, new byte[ 8 ] );
+        }
+        return file( "progress", elements );
+    }
+
+
+    @Test
+    public void progress() throws IOException {
+        final List<Long> progress = new ArrayList<Long>();
+        final List<EbmlFileEntry> streamed = new ArrayList<EbmlFileEntry>();
+        EbmlFile ebmlFile = new EbmlFile( createFile( 100 ) );
+        try {
+            List<EbmlFileEntry> entries = ebmlFile.getEntries( new ReadProgressListener() {
+                @Override
+                public void progressed( EbmlFileEntry entry, long bytesScanned, long bytesTotal ) {
+                    assertThat( bytesTotal, isEqualTo( 1000L ) );
+                    assertThat( entry.getEntryPosition() + 10L, isEqualTo( bytesScanned ) );
+                    progress.add( bytesScanned );
+                    streamed.add( entry );
+                }
+            } );
+            assertThat( entries.size(), isEqualTo( 100 ) );
+            assertThat( streamed, isEqualTo( entries ) );
+            assertThat( ebmlFile.getEntriesWillBlock(), isFalse() );
+        } finally {
+            ebmlFile.close();
+        }
+        assertThat( progress.size(), isEqualTo( 100 ) );
+        assertThat( progress.get( 0 ), isEqualTo( 10L ) );
+        assertThat( progress.get( 99 ), isEqualTo( 1000L ) );
+    }
+
+    @Test
+    public void cancel() throws IOException {
+        EbmlFile ebmlFile = new EbmlFile( createFile( 100 ) );
+        try {
+            try {
+                ebmlFile.getEntries( new ReadProgressListener() {
+                    @Override
+                    public void progressed( EbmlFileEntry entry, long bytesScanned, long bytesTotal ) throws IOException {
+                        if ( bytesScanned >= 500L ) {
+                            throw new InterruptedIOException();
+                        }
+                    }
+                } );
+                throw new AssertionError( "InterruptedIOException expected" );
+            } catch ( InterruptedIOException expected ) {
+                assertThat( ebmlFile.getEntriesWillBlock(), isTrue() );
+            }
+            assertThat( ebmlFile.getEntries().size(), isEqualTo( 100 ) );
+        } finally {
+            ebmlFile.close();
+        }
+    }
+
+}
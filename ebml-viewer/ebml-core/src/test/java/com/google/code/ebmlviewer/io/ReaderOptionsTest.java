@@ -0,0 +1,225 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.io;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import com.google.code.ebmlviewer.stream.EbmlStreamReader;
+
+import static com.google.code.ebmlviewer.EbmlTestData.element;
+import static com.google.code.ebmlviewer.EbmlTestData.file;
+import static oe.assertions.Assertions.assertThat;
+import static oe.assertions.Predicates.isEqualTo;
+import static oe.assertions.Predicates.isFalse;
+import static oe.assertions.Predicates.isNotSameAs;
+import static oe.assertions.Predicates.isSameAs;
+import static oe.assertions.Predicates.isTrue;
+
+public class ReaderOptionsTest {
+
+    private static byte[] filled( int size, int value ) {
+        byte[] result = new byte[ size ];
+        Arrays.fill( result, ( byte ) value );
+        return result;
+    }
+
+    /** Returns a segment with many small and several large children. */
+    private static File createFile() throws IOException {
+        byte[][] children = new byte[ 500 ][];
+        for ( int i = 0; i < children.length; i++ ) {
+            children[ i ] = element( 0xa3, filled( i % 7 == 0 ? 20000 : 10, i ) );
+        }
+        return file( "options", element( 0x18538067, children ), element( 0xec, new byte[ 3 ] ) );
+    }
+
+    /** Creates a file with a segment of ten clusters, each with ten 100-byte blocks. */
+    private static File createClustersFile() throws IOException {
+        byte[][] clusters = new byte[ 10 ][];
+        for ( int i = 0; i < clusters.length; i++ ) {
+            byte[][] blocks = new byte[ 10 ][];
+            for ( int j = 0; j < blocks.length; j++ ) {
+                blocks[ j ] = element( 0xa3, filled( 100, j ) );
+            }
+            clusters[ i ] = element( 0x1f43b675, blocks );
+        }
+        return file( "readahead", element( 0x18538067, clusters ) );
+    }
+
+    private static long dataPosition( EbmlFileEntry entry ) {
+        return entry.getEntryPosition() + entry.getIdentifier().getEncodedLength() + entry.getSize().getEncodedLength();
+    }
+
+    private static ReaderOptions options( int bufferSize, int maximumBufferSize, boolean directBuffers ) {
+        ReaderOptions options = new ReaderOptions();
+        options.setBufferSize( bufferSize );
+        options.setMaximumBufferSize( maximumBufferSize );
+        options.setDirectBuffers( directBuffers );
+        options.setBufferPool( new BufferPool( 2 ) );
+        return options;
+    }
+
+
+    @Test
+    public void bufferPoolReusesBuffers() {
+        BufferPool pool = new BufferPool( 1 );
+        ByteBuffer heap = pool.acquire( 1000, false );
+        assertThat( heap.capacity(), isEqualTo( 1024 ) );
+        assertThat( heap.isDirect(), isFalse() );
+        heap.position( 10 );
+        pool.release( heap );
+        ByteBuffer reused = pool.acquire( 1024, false );
+        assertThat( reused, isSameAs( heap ) );
+        assertThat( reused.position(), isEqualTo( 0 ) );
+        assertThat( reused.remaining(), isEqualTo( 1024 ) );
+        ByteBuffer direct = pool.acquire( 1024, true );
+        assertThat( direct.isDirect(), isTrue() );
+        assertThat( direct, isNotSameAs( heap ) );
+    }
+
+    @Test
+    public void bufferPoolIsBounded() {
+        BufferPool pool = new BufferPool( 1 );
+        ByteBuffer first = pool.acquire( 64, false );
+        ByteBuffer second = pool.acquire( 64, false );
+        pool.release( first );
+        pool.release( second );
+        assertThat( pool.acquire( 64, false ), isSameAs( first ) );
+        assertThat( pool.acquire( 64, false ), isNotSameAs( second ) );
+    }
+
+    @Test( expectedExceptions = IllegalArgumentException.class )
+    public void maximumBufferSizeLessThanBufferSizeFails() {
+        ReaderOptions options = new ReaderOptions();
+        options.setMaximumBufferSize( options.getBufferSize() - 1 );
+    }
+
+
+    @Test
+    public void readAheadFollowsSiblingScans() throws IOException {
+        File file = createClustersFile();
+        RandomAccessFile randomAccessFile = new RandomAccessFile( file, "r" );
+        try {
+            EbmlFileReader reader = new EbmlFileReader( randomAccessFile.getChannel(), options( 64, 1024, false ) );
+            EbmlFileEntry segment = reader.readEntries( 0L, file.length() ).get( 0 );
+            List<EbmlFileEntry> clusters = reader.readEntries( dataPosition( segment ), segment.getSize().getPlainValue() );
+            assertThat( clusters.size(), isEqualTo( 10 ) );
+            int[] expected = { 64, 128, 256, 512, 1024, 1024 };
+            for ( int i = 0; i < expected.length; i++ ) {
+                // the scan of each cluster starts right after the header of the cluster that follows the previous scan
+                EbmlFileEntry cluster = clusters.get( i );
+                assertThat( reader.readEntries( dataPosition( cluster ), cluster.getSize().getPlainValue() ).size(), isEqualTo( 10 ) );
+                assertThat( reader.getReadAhead(), isEqualTo( expected[ i ] ) );
+            }
+            EbmlFileEntry first = clusters.get( 0 );
+            reader.readEntries( dataPosition( first ), first.getSize().getPlainValue() );
+            assertThat( reader.getReadAhead(), isEqualTo( 512 ) );
+            reader.readEntries( dataPosition( first ), first.getSize().getPlainValue() );
+            assertThat( reader.getReadAhead(), isEqualTo( 256 ) );
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+
+    @DataProvider( name = "options" )
+    public Object[][] getOptions() {
+        return new Object[][] {
+                { options( 64, 64, false ) },
+                { options( 64, 1 << 20, true ) },
+                { options( 8 * 1024, 1 << 20, false ) },
+                { options( 1 << 16, 1 << 16, true ) },
+        };
+    }
+
+    @Test( dataProvider = "options" )
+    public void fileEntries( ReaderOptions options ) throws IOException {
+        File file = createFile();
+        EbmlFile expected = new EbmlFile( file );
+        EbmlFile actual = new EbmlFile( file, options );
+        try {
+            List<EbmlFileEntry> expectedEntries = expected.getEntries();
+            List<EbmlFileEntry> actualEntries = actual.getEntries();
+            assertThat( actualEntries.size(), isEqualTo( expectedEntries.size() ) );
+            List<EbmlFileEntry> expectedChildren = expectedEntries.get( 0 ).getEntries();
+            List<EbmlFileEntry> actualChildren = actualEntries.get( 0 ).getEntries();
+            assertThat( actualChildren.size(), isEqualTo( expectedChildren.size() ) );
+            for ( int i = 0; i < expectedChildren.size(); i++ ) {
+                assertThat( actualChildren.get( i ).getEntryPosition(), isEqualTo( expectedChildren.get( i ).getEntryPosition() ) );
+                assertThat( actualChildren.get( i ).getSize(), isEqualTo( expectedChildren.get( i ).getSize() ) );
+            }
+        } finally {
+            actual.close();
+            expected.close();
+        }
+    }
+
+    @Test( dataProvider = "options" )
+    public void streamElements( ReaderOptions options ) throws IOException {
+        File file = createFile();
+        RandomAccessFile channelFile = new RandomAccessFile( file, "r" );
+        EbmlStreamReader channelReader = new EbmlStreamReader( channelFile.getChannel(), file.length(), options );
+        EbmlStreamReader streamReader = new EbmlStreamReader( Channels.newChannel( new BufferedInputStream( new FileInputStream( file ) ) ), file.length(), options );
+        try {
+            for ( EbmlStreamReader reader : Arrays.asList( channelReader, streamReader ) ) {
+                assertThat( reader.next(), isTrue() );
+                reader.enterContainer();
+                int count = 0;
+                while ( reader.next() ) {
+                    if ( count % 14 == 0 ) {
+                        // an element larger than the initial buffer
+                        ByteBuffer data = ByteBuffer.allocate( 20000 );
+                        assertThat( reader.readBinary( data ), isEqualTo( 20000 ) );
+                        assertThat( data.get( 19999 ), isEqualTo( ( byte ) count ) );
+                    }
+                    count++;
+                }
+                assertThat( count, isEqualTo( 500 ) );
+                reader.leaveContainer();
+                assertThat( reader.next(), isTrue() );
+                assertThat( reader.getElementPosition(), isEqualTo( file.length() - 5 ) );
+                assertThat( reader.next(), isFalse() );
+            }
+        } finally {
+            channelReader.close();
+            streamReader.close();
+        }
+    }
+
+}
@@ -0,0 +1,200 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.probe;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+import com.google.code.ebmlviewer.core.EbmlFormatException;
+
+import static com.google.code.ebmlviewer.EbmlTestData.bytes;
+import static com.google.code.ebmlviewer.EbmlTestData.concat;
+import static com.google.code.ebmlviewer.EbmlTestData.element;
+import static com.google.code.ebmlviewer.EbmlTestData.file;
+import static com.google.code.ebmlviewer.EbmlTestData.string;
+import static oe.assertions.Assertions.assertThat;
+import static oe.assertions.Predicates.isEqualTo;
+import static oe.assertions.Predicates.isFalse;
+import static oe.assertions.Predicates.isTrue;
+
+public class BatchProberTest {
+
+    /** Creates a file with the EBML header, a void element of the specified size, info, tracks and a cluster. */
+    private static File createFile( int padding ) throws IOException {
+        return createFile( padding, 0 );
+    }
+
+    /**
+     * Creates a file with the EBML header, a void element of the specified size, info, tracks and a cluster with a block
+     * of the specified size.
+     */
+    private static File createFile( int padding, int blockSize ) throws IOException {
+        byte[] data = element( 0x1A45DFA3,
+                element( 0x4282, string( "webm" ) ),
+                element( 0x4287, bytes( 0x02 ) ) );
+        data = concat( data, element( 0x18538067,
+                element( 0xEC, new byte[ padding ] ),
+                element( 0x1549A966,
+                        element( 0x2AD7B1, bytes( 0x0f, 0x42, 0x40 ) ),
+                        element( 0x4489, bytes( 0x40, 0x8f, 0x40, 0x00, 0x00, 0x00, 0x00, 0x00 ) ),
+                        element( 0x4D80, string( "test" ) ) ),
+                element( 0x1654AE6B,
+                        element( 0xAE, element( 0xD7, bytes( 0x01 ) ), element( 0x83, bytes( 0x01 ) ), element( 0x86, string( "V_VP8" ) ) ),
+                        element( 0xAE, element( 0xD7, bytes( 0x02 ) ), element( 0x83, bytes( 0x02 ) ), element( 0x22B59C, string( "ger" ) ) ) ),
+                element( 0x1F43B675, element( 0xE7, bytes( 0x00 ) ), element( 0xA3, new byte[ blockSize ] ) ) ) );
+        return file( "probe", data );
+    }
+
+    /**
+     * Creates a file with the EBML header and a segment with the seek head, a large cluster, info and tracks, in that
+     * order.
+     */
+    private static File createSeekFile() throws IOException {
+        byte[] header = element( 0x1A45DFA3, element( 0x4282, string( "matroska" ) ) );
+        byte[] cluster = element( 0x1F43B675, element( 0xE7, bytes( 0x00 ) ), element( 0xA3, new byte[ 100000 ] ) );
+        byte[] info = element( 0x1549A966,
+                element( 0x2AD7B1, bytes( 0x0f, 0x42, 0x40 ) ),
+                element( 0x4489, bytes( 0x40, 0x8f, 0x40, 0x00, 0x00, 0x00, 0x00, 0x00 ) ) );
+        byte[] tracks = element( 0x1654AE6B, element( 0xAE, element( 0xD7, bytes( 0x01 ) ), element( 0x86, string( "A_OPUS" ) ) ) );
+        int seekHeadSize = seekHead( 0, 0 ).length;
+        int infoPosition = seekHeadSize + cluster.length;
+        int tracksPosition = infoPosition + info.length;
+        return file( "probe", concat( header, element( 0x18538067, seekHead( infoPosition, tracksPosition ), cluster, info, tracks ) ) );
+    }
+
+    private static byte[] seekHead( int infoPosition, int tracksPosition ) {
+        return element( 0x114D9B74,
+                element( 0x4DBB, element( 0x53AB, bytes( 0x15, 0x49, 0xA9, 0x66 ) ), element( 0x53AC, int32( infoPosition ) ) ),
+                element( 0x4DBB, element( 0x53AB, bytes( 0x16, 0x54, 0xAE, 0x6B ) ), element( 0x53AC, int32( tracksPosition ) ) ) );
+    }
+
+    private static byte[] int32( int value ) {
+        return bytes( value >>> 24, value >>> 16, value >>> 8, value );
+    }
+
+
+    @Test
+    public void probe() throws IOException {
+        ProbeResult result = new HeaderProbe().probe( createFile( 16 ) );
+        assertThat( result.isComplete(), isTrue() );
+        assertThat( result.getDocType(), isEqualTo( "webm" ) );
+        assertThat( result.getDocTypeVersion(), isEqualTo( 2L ) );
+        assertThat( result.getTimecodeScale(), isEqualTo( 1000000L ) );
+        assertThat( result.getDuration(), isEqualTo( 1000.0 ) );
+        assertThat( result.getMuxingApp(), isEqualTo( "test" ) );
+        assertThat( result.getTracks().size(), isEqualTo( 2 ) );
+        assertThat( result.getTracks().get( 0 ).getCodecId(), isEqualTo( "V_VP8" ) );
+        assertThat( result.getTracks().get( 0 ).getLanguage(), isEqualTo( "eng" ) );
+        assertThat( result.getTracks().get( 1 ).getNumber(), isEqualTo( 2L ) );
+        assertThat( result.getTracks().get( 1 ).getLanguage(), isEqualTo( "ger" ) );
+    }
+
+    @Test
+    public void limit() throws IOException {
+        ProbeResult result = new HeaderProbe( 64 ).probe( createFile( 256 ) );
+        assertThat( result.isComplete(), isFalse() );
+        assertThat( result.getDocType(), isEqualTo( "webm" ) );
+        assertThat( result.getTracks().isEmpty(), isTrue() );
+    }
+
+    @Test
+    public void largeSegment() throws IOException {
+        ProbeResult result = new HeaderProbe( 1024 ).probe( createFile( 16, 100000 ) );
+        assertThat( result.isComplete(), isTrue() );
+        assertThat( result.getDocType(), isEqualTo( "webm" ) );
+        assertThat( result.getDuration(), isEqualTo( 1000.0 ) );
+        assertThat( result.getTracks().size(), isEqualTo( 2 ) );
+        assertThat( result.getTracks().get( 1 ).getLanguage(), isEqualTo( "ger" ) );
+    }
+
+    @Test
+    public void seek() throws IOException {
+        ProbeResult result = new HeaderProbe().probe( createSeekFile() );
+        assertThat( result.isComplete(), isTrue() );
+        assertThat( result.getDocType(), isEqualTo( "matroska" ) );
+        assertThat( result.getDuration(), isEqualTo( 1000.0 ) );
+        assertThat( result.getTracks().size(), isEqualTo( 1 ) );
+        assertThat( result.getTracks().get( 0 ).getCodecId(), isEqualTo( "A_OPUS" ) );
+        assertThat( result.getReads(), isEqualTo( 2 ) );
+        assertThat( result.getBytesRead() < 2L * HeaderProbe.DEFAULT_LIMIT, isTrue() );
+    }
+
+    @Test
+    public void budget() throws IOException {
+        ProbeResult result = new HeaderProbe( 1024, 1024L ).probe( createSeekFile() );
+        assertThat( result.isComplete(), isFalse() );
+        assertThat( result.getDocType(), isEqualTo( "matroska" ) );
+        assertThat( result.getReads(), isEqualTo( 1 ) );
+        assertThat( result.getBytesRead(), isEqualTo( 1024L ) );
+    }
+
+    @Test( expectedExceptions = EbmlFormatException.class )
+    public void notEbml() throws IOException {
+        new HeaderProbe().probe( file( "probe", string( "RIFF....WAVEfmt " ) ) );
+    }
+
+    @Test
+    public void batch() throws IOException {
+        Set<File> files = new HashSet<File>();
+        for ( int i = 0; i < 20; i++ ) {
+            files.add( createFile( i * 100 ) );
+        }
+        File broken = file( "probe", string( "not an ebml file" ) );
+        List<File> input = new ArrayList<File>( files );
+        input.add( broken );
+        input.add( new File( broken.getPath() + ".missing" ) );
+        BatchProber prober = new BatchProber( new HeaderProbe( 1024 ), 4 );
+        prober.setTimeout( 10L, TimeUnit.SECONDS );
+        int failed = 0;
+        ProbeResults results = prober.probe( input );
+        try {
+            while ( results.hasNext() ) {
+                ProbeResult result = results.next();
+                if ( result.getError() == null ) {
+                    assertThat( files.remove( result.getFile() ), isTrue() );
+                    assertThat( result.getDocType(), isEqualTo( "webm" ) );
+                } else {
+                    failed++;
+                }
+            }
+        } finally {
+            results.close();
+        }
+        assertThat( files.isEmpty(), isTrue() );
+        assertThat( failed, isEqualTo( 2 ) );
+    }
+
+}
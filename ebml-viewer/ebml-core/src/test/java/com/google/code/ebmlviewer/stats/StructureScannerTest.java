@@ -0,0 +1,143 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.stats;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+
+import org.testng.annotations.Test;
+import com.google.code.ebmlviewer.core.EbmlEncoder;
+import com.google.code.ebmlviewer.core.VariableLengthInteger;
+import com.google.code.ebmlviewer.stream.EbmlStreamReader;
+
+import static com.google.code.ebmlviewer.elements.ElementDescriptors.getDefaultDescriptors;
+import static oe.assertions.Assertions.assertThat;
+import static oe.assertions.Predicates.isEqualTo;
+import static oe.assertions.Predicates.isNull;
+
+public class StructureScannerTest {
+
+    private static final VariableLengthInteger EBML = VariableLengthInteger.fromEncoded( 0x1a45dfa3L );
+
+    private static final VariableLengthInteger DOC_TYPE = VariableLengthInteger.fromEncoded( 0x4282L );
+
+    private static final VariableLengthInteger VOID = VariableLengthInteger.fromEncoded( 0xecL );
+
+
+    private static ByteBuffer createData() throws CharacterCodingException {
+        EbmlEncoder encoder = new EbmlEncoder();
+        ByteBuffer buffer = ByteBuffer.allocate( 128 );
+        encoder.encodeVariableLengthInteger( buffer, EBML );
+        encoder.encodeVariableLengthInteger( buffer, VariableLengthInteger.fromPlain( 7 ) );
+        encoder.encodeVariableLengthInteger( buffer, DOC_TYPE );
+        encoder.encodeVariableLengthInteger( buffer, VariableLengthInteger.fromPlain( 4 ) );
+        encoder.encodeAsciiString( buffer, "webm", 4 );
+        encoder.encodeVariableLengthInteger( buffer, VOID );
+        encoder.encodeVariableLengthInteger( buffer, VariableLengthInteger.fromPlain( 3 ) );
+        buffer.put( new byte[ 3 ] );
+        encoder.encodeVariableLengthInteger( buffer, VOID );
+        encoder.encodeVariableLengthInteger( buffer, VariableLengthInteger.fromPlain( 0 ) );
+        buffer.flip();
+        return buffer;
+    }
+
+    private static StructureStatistics scan( ByteBuffer data ) throws IOException {
+        StructureStatistics statistics = new StructureStatistics( getDefaultDescriptors() );
+        EbmlStreamReader reader = new EbmlStreamReader( new ByteArrayInputStream( data.array(), data.arrayOffset(), data.remaining() ) );
+        try {
+            new StructureScanner().scan( reader, statistics );
+        } finally {
+            reader.close();
+        }
+        return statistics;
+    }
+
+
+    @Test
+    public void scan() throws IOException {
+        StructureStatistics statistics = scan( createData() );
+
+        assertThat( statistics.getElements().size(), isEqualTo( 3 ) );
+        assertThat( statistics.getMaximumDepth(), isEqualTo( 1 ) );
+
+        ElementStatistics ebml = statistics.getElement( EBML );
+        assertThat( ebml.getName(), isEqualTo( "EBML" ) );
+        assertThat( ebml.getCount(), isEqualTo( 1L ) );
+        assertThat( ebml.getTotalHeaderSize(), isEqualTo( 5L ) );
+        assertThat( ebml.getTotalDataSize(), isEqualTo( 7L ) );
+        assertThat( ebml.getMaximumDepth(), isEqualTo( 0 ) );
+
+        ElementStatistics docType = statistics.getElement( DOC_TYPE );
+        assertThat( docType.getName(), isEqualTo( "DocType" ) );
+        assertThat( docType.getCount(), isEqualTo( 1L ) );
+        assertThat( docType.getMaximumDepth(), isEqualTo( 1 ) );
+
+        ElementStatistics voids = statistics.getElement( VOID );
+        assertThat( voids.getName(), isEqualTo( "Void" ) );
+        assertThat( voids.getCount(), isEqualTo( 2L ) );
+        assertThat( voids.getTotalDataSize(), isEqualTo( 3L ) );
+        assertThat( voids.getMinimumDataSize(), isEqualTo( 0L ) );
+        assertThat( voids.getMaximumDataSize(), isEqualTo( 3L ) );
+        assertThat( voids.getHistogramCount( 0 ), isEqualTo( 1L ) );
+        assertThat( voids.getHistogramCount( 2 ), isEqualTo( 1L ) );
+    }
+
+    @Test
+    public void mergeIsAssociative() throws IOException {
+        StructureStatistics a = scan( createData() );
+        StructureStatistics b = scan( createData() );
+        StructureStatistics c = scan( createData() );
+
+        StructureStatistics left = new StructureStatistics( getDefaultDescriptors() );
+        left.merge( a );
+        left.merge( b );
+        left.merge( c );
+
+        StructureStatistics bc = new StructureStatistics( getDefaultDescriptors() );
+        bc.merge( b );
+        bc.merge( c );
+        StructureStatistics right = new StructureStatistics( getDefaultDescriptors() );
+        right.merge( a );
+        right.merge( bc );
+
+        for ( ElementStatistics element : left.getElements() ) {
+            ElementStatistics other = right.getElement( element.getIdentifier() );
+            assertThat( other.getCount(), isEqualTo( element.getCount() ) );
+            assertThat( other.getTotalHeaderSize(), isEqualTo( element.getTotalHeaderSize() ) );
+            assertThat( other.getTotalDataSize(), isEqualTo( element.getTotalDataSize() ) );
+            assertThat( other.getMaximumDepth(), isEqualTo( element.getMaximumDepth() ) );
+        }
+        assertThat( left.getElement( VOID ).getCount(), isEqualTo( 6L ) );
+        assertThat( left.getElement( VariableLengthInteger.fromEncoded( 0x4286L ) ), isNull() );
+    }
+
+}
@@ -30,13 +30,23 @@
 package com.google.code.ebmlviewer.stream;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
 
 import org.testng.annotations.Test;
+import com.google.code.ebmlviewer.core.DoubleColumn;
 import com.google.code.ebmlviewer.core.EbmlEncoder;
+import com.google.code.ebmlviewer.core.LongColumn;
 import com.google.code.ebmlviewer.core.VariableLengthInteger;
+import com.google.code.ebmlviewer.io.BufferPool;
+import com.google.code.ebmlviewer.io.ReaderOptions;
 
+import static com.google.code.ebmlviewer.EbmlTestData.element;
+import static com.google.code.ebmlviewer.EbmlTestData.file;
 import static oe.assertions.Assertions.assertThat;
 import static oe.assertions.Predicates.isEqualTo;
 import static oe.assertions.Predicates.isFalse;
@@ -207,4 +217,234 @@ public class EbmlStreamReaderTest {
         }
     }
 
+    @Test
+    public void binary() throws IOException {
+        VariableLengthInteger identifier = VariableLengthInteger.fromEncoded( 0xec );
+        VariableLengthInteger size = VariableLengthInteger.fromPlain( 5 );
+
+        ByteBuffer buffer = ByteBuffer.allocate( 128 );
+
+        EbmlEncoder encoder = new EbmlEncoder();
+        encoder.encodeVariableLengthInteger( buffer, identifier );
+        encoder.encodeVariableLengthInteger( buffer, size );
+        buffer.put( new byte[] { 1, 2, 3, 4, 5 } );
+        encoder.encodeVariableLengthInteger( buffer, identifier );
+        encoder.encodeVariableLengthInteger( buffer, VariableLengthInteger.fromPlain( 0 ) );
+        buffer.flip();
+
+        ByteArrayInputStream inputStream = new ByteArrayInputStream( buffer.array(), buffer.arrayOffset(), buffer.remaining() );
+        EbmlStreamReader reader = new EbmlStreamReader( inputStream );
+        try {
+            assertThat( reader.next(), isTrue() );
+            assertThat( reader.getElementPosition(), isEqualTo( 0L ) );
+            assertThat( reader.getDataPosition(), isEqualTo( 2L ) );
+            ByteBuffer data = ByteBuffer.allocate( 3 );
+            assertThat( reader.readBinary( data ), isEqualTo( 3 ) );
+            assertThat( data.array(), isEqualTo( new byte[] { 1, 2, 3 } ) );
+            assertThat( reader.next(), isTrue() );
+            assertThat( reader.getElementPosition(), isEqualTo( 7L ) );
+            assertThat( reader.getDataPosition(), isEqualTo( 9L ) );
+            assertThat( reader.readBinary( data ), isEqualTo( -1 ) );
+            assertThat( reader.next(), isFalse() );
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void unsignedIntegers() throws IOException {
+        VariableLengthInteger cues = VariableLengthInteger.fromEncoded( 0x1c53bb6b );
+        VariableLengthInteger cueTime = VariableLengthInteger.fromEncoded( 0xb3 );
+        VariableLengthInteger cueClusterPosition = VariableLengthInteger.fromEncoded( 0xf1 );
+        VariableLengthInteger voidElement = VariableLengthInteger.fromEncoded( 0xec );
+        int count = 3000;
+
+        ByteBuffer data = ByteBuffer.allocate( 64 * 1024 );
+        EbmlEncoder encoder = new EbmlEncoder();
+        for ( int i = 0; i < count; i++ ) {
+            encoder.encodeVariableLengthInteger( data, cueTime );
+            encoder.encodeVariableLengthInteger( data, VariableLengthInteger.fromPlain( 3 ) );
+            encoder.encodeUnsignedInteger( data, i * 3L, 3 );
+            encoder.encodeVariableLengthInteger( data, cueClusterPosition );
+            encoder.encodeVariableLengthInteger( data, VariableLengthInteger.fromPlain( 4 ) );
+            encoder.encodeUnsignedInteger( data, 0xf0000000L + i, 4 );
+            if ( i == count / 2 ) {
+                // an element larger than the input buffer
+                encoder.encodeVariableLengthInteger( data, voidElement );
+                encoder.encodeVariableLengthInteger( data, VariableLengthInteger.fromPlain( 20000 ) );
+                data.position( data.position() + 20000 );
+            }
+        }
+        data.flip();
+
+        ByteBuffer buffer = ByteBuffer.allocate( data.remaining() + 32 );
+        encoder.encodeVariableLengthInteger( buffer, cues );
+        encoder.encodeVariableLengthInteger( buffer, VariableLengthInteger.fromPlain( data.remaining() ) );
+        buffer.put( data );
+        encoder.encodeVariableLengthInteger( buffer, voidElement );
+        encoder.encodeVariableLengthInteger( buffer, VariableLengthInteger.fromPlain( 0 ) );
+        buffer.flip();
+
+        ByteArrayInputStream inputStream = new ByteArrayInputStream( buffer.array(), buffer.arrayOffset(), buffer.remaining() );
+        EbmlStreamReader reader = new EbmlStreamReader( inputStream );
+        try {
+            assertThat( reader.next(), isTrue() );
+            reader.enterContainer();
+            LongColumn column = new LongColumn();
+            assertThat( reader.readUnsignedIntegers( cueClusterPosition, column ), isEqualTo( count ) );
+            assertThat( column.size(), isEqualTo( count ) );
+            for ( int i = 0; i < count; i++ ) {
+                assertThat( column.get( i ), isEqualTo( 0xf0000000L + i ) );
+            }
+            assertThat( reader.next(), isFalse() );
+            reader.leaveContainer();
+            assertThat( reader.next(), isTrue() );
+            assertThat( reader.getIdentifier(), isEqualTo( voidElement ) );
+            assertThat( reader.next(), isFalse() );
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void unsignedIntegersAfterLargeElement() throws IOException {
+        VariableLengthInteger cues = VariableLengthInteger.fromEncoded( 0x1c53bb6b );
+        VariableLengthInteger cueTime = VariableLengthInteger.fromEncoded( 0xb3 );
+        VariableLengthInteger voidElement = VariableLengthInteger.fromEncoded( 0xec );
+        int count = 100;
+
+        ByteBuffer data = ByteBuffer.allocate( 4 * 1024 );
+        EbmlEncoder encoder = new EbmlEncoder();
+        // the first child is larger than the input buffer
+        encoder.encodeVariableLengthInteger( data, voidElement );
+        encoder.encodeVariableLengthInteger( data, VariableLengthInteger.fromPlain( 1000 ) );
+        data.position( data.position() + 1000 );
+        for ( int i = 0; i < count; i++ ) {
+            encoder.encodeVariableLengthInteger( data, cueTime );
+            encoder.encodeVariableLengthInteger( data, VariableLengthInteger.fromPlain( 2 ) );
+            encoder.encodeUnsignedInteger( data, i, 2 );
+        }
+        data.flip();
+
+        ByteBuffer buffer = ByteBuffer.allocate( data.remaining() + 16 );
+        encoder.encodeVariableLengthInteger( buffer, cues );
+        encoder.encodeVariableLengthInteger( buffer, VariableLengthInteger.fromPlain( data.remaining() ) );
+        buffer.put( data );
+        buffer.flip();
+
+        ReaderOptions options = new ReaderOptions();
+        options.setBufferSize( ReaderOptions.MINIMUM_BUFFER_SIZE );
+        options.setMaximumBufferSize( ReaderOptions.MINIMUM_BUFFER_SIZE );
+        ByteArrayInputStream inputStream = new ByteArrayInputStream( buffer.array(), buffer.arrayOffset(), buffer.remaining() );
+        EbmlStreamReader reader = new EbmlStreamReader( Channels.newChannel( inputStream ), buffer.remaining(), options );
+        try {
+            assertThat( reader.next(), isTrue() );
+            reader.enterContainer();
+            LongColumn column = new LongColumn();
+            assertThat( reader.readUnsignedIntegers( cueTime, column ), isEqualTo( count ) );
+            for ( int i = 0; i < count; i++ ) {
+                assertThat( column.get( i ), isEqualTo( ( long ) i ) );
+            }
+            reader.leaveContainer();
+            assertThat( reader.next(), isFalse() );
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void signedIntegersAndFloatingPoints() throws IOException {
+        VariableLengthInteger blockGroup = VariableLengthInteger.fromEncoded( 0xa0 );
+        VariableLengthInteger referenceBlock = VariableLengthInteger.fromEncoded( 0xfb );
+        VariableLengthInteger duration = VariableLengthInteger.fromEncoded( 0x4489 );
+
+        ByteBuffer data = ByteBuffer.allocate( 128 );
+        EbmlEncoder encoder = new EbmlEncoder();
+        encoder.encodeVariableLengthInteger( data, referenceBlock );
+        encoder.encodeVariableLengthInteger( data, VariableLengthInteger.fromPlain( 2 ) );
+        encoder.encodeSignedInteger( data, -300L, 2 );
+        encoder.encodeVariableLengthInteger( data, duration );
+        encoder.encodeVariableLengthInteger( data, VariableLengthInteger.fromPlain( 4 ) );
+        encoder.encodeFloatingPoint( data, 1.5, 4 );
+        encoder.encodeVariableLengthInteger( data, referenceBlock );
+        encoder.encodeVariableLengthInteger( data, VariableLengthInteger.fromPlain( 0 ) );
+        encoder.encodeVariableLengthInteger( data, duration );
+        encoder.encodeVariableLengthInteger( data, VariableLengthInteger.fromPlain( 8 ) );
+        encoder.encodeFloatingPoint( data, Math.PI, 8 );
+        data.flip();
+
+        ByteBuffer buffer = ByteBuffer.allocate( 256 );
+        encoder.encodeVariableLengthInteger( buffer, blockGroup );
+        encoder.encodeVariableLengthInteger( buffer, VariableLengthInteger.fromPlain( data.remaining() ) );
+        buffer.put( data );
+        encoder.encodeVariableLengthInteger( buffer, blockGroup );
+        encoder.encodeVariableLengthInteger( buffer, VariableLengthInteger.fromPlain( data.limit() ) );
+        data.rewind();
+        buffer.put( data );
+        buffer.flip();
+
+        ByteArrayInputStream inputStream = new ByteArrayInputStream( buffer.array(), buffer.arrayOffset(), buffer.remaining() );
+        EbmlStreamReader reader = new EbmlStreamReader( inputStream );
+        try {
+            assertThat( reader.next(), isTrue() );
+            reader.enterContainer();
+            LongColumn references = new LongColumn();
+            assertThat( reader.readSignedIntegers( referenceBlock, references ), isEqualTo( 2 ) );
+            assertThat( references.get( 0 ), isEqualTo( -300L ) );
+            assertThat( references.get( 1 ), isEqualTo( 0L ) );
+            reader.leaveContainer();
+            assertThat( reader.next(), isTrue() );
+            reader.enterContainer();
+            DoubleColumn durations = new DoubleColumn();
+            assertThat( reader.readFloatingPoints( duration, durations ), isEqualTo( 2 ) );
+            assertThat( durations.get( 0 ), isEqualTo( 1.5 ) );
+            assertThat( durations.get( 1 ), isEqualTo( Math.PI ) );
+            reader.leaveContainer();
+            assertThat( reader.next(), isFalse() );
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void readAheadFollowsAccessPattern() throws IOException {
+        byte[][] children = new byte[ 110 ][];
+        for ( int i = 0; i < 100; i++ ) {
+            children[ i ] = element( 0xa3, new byte[ 10 ] );
+        }
+        for ( int i = 100; i < children.length; i++ ) {
+            children[ i ] = element( 0xec, new byte[ 5000 ] );
+        }
+        byte[] data = element( 0x18538067, children );
+        File file = file( "readahead", data );
+        ReaderOptions options = new ReaderOptions();
+        options.setBufferSize( 64 );
+        options.setMaximumBufferSize( 1024 );
+        options.setBufferPool( new BufferPool( 2 ) );
+        RandomAccessFile channelFile = new RandomAccessFile( file, "r" );
+        EbmlStreamReader channelReader = new EbmlStreamReader( channelFile.getChannel(), file.length(), options );
+        EbmlStreamReader streamReader = new EbmlStreamReader( Channels.newChannel( new ByteArrayInputStream( data ) ), data.length, options );
+        try {
+            for ( EbmlStreamReader reader : Arrays.asList( channelReader, streamReader ) ) {
+                assertThat( reader.next(), isTrue() );
+                reader.enterContainer();
+                for ( int i = 0; i < 100; i++ ) {
+                    assertThat( reader.next(), isTrue() );
+                }
+                // the small elements are read sequentially
+                assertThat( reader.getReadAhead(), isEqualTo( 1024 ) );
+                for ( int i = 100; i < children.length; i++ ) {
+                    assertThat( reader.next(), isTrue() );
+                }
+                assertThat( reader.next(), isFalse() );
+            }
+            // the file channel is repositioned over the large elements, the stream is read through
+            assertThat( channelReader.getReadAhead(), isEqualTo( 64 ) );
+            assertThat( streamReader.getReadAhead(), isEqualTo( 1024 ) );
+        } finally {
+            channelReader.close();
+            streamReader.close();
+        }
+    }
+
 }
@@ -0,0 +1,158 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.validation;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+import com.google.code.ebmlviewer.core.VariableLengthInteger;
+import com.google.code.ebmlviewer.stream.EbmlStreamReader;
+
+import static com.google.code.ebmlviewer.EbmlTestData.bytes;
+import static com.google.code.ebmlviewer.EbmlTestData.concat;
+import static com.google.code.ebmlviewer.EbmlTestData.element;
+import static com.google.code.ebmlviewer.EbmlTestData.string;
+import static oe.assertions.Assertions.assertThat;
+import static oe.assertions.Predicates.isEqualTo;
+import static oe.assertions.Predicates.isTrue;
+
+public class SchemaValidatorTest {
+
+    private static final SchemaValidator VALIDATOR = new SchemaValidator();
+
+
+    private static byte[] header() {
+        return element( 0x1A45DFA3, element( 0x4282, string( "matroska" ) ), element( 0x4287, bytes( 0x02 ) ) );
+    }
+
+    private static byte[] segment( byte[]... trackEntryChildren ) {
+        return element( 0x18538067,
+                element( 0x1549A966, element( 0x4D80, string( "test" ) ), element( 0x5741, string( "test" ) ) ),
+                element( 0x1654AE6B, element( 0xAE, trackEntryChildren ) ),
+                element( 0x1F43B675, element( 0xE7, bytes( 0x00 ) ), element( 0xEC, bytes( 0x00 ) ) ) );
+    }
+
+    private static List<Violation> validate( byte[] data ) throws IOException {
+        return VALIDATOR.validate( new EbmlStreamReader( new ByteArrayInputStream( data ) ) );
+    }
+
+    private static List<ViolationType> types( List<Violation> violations ) {
+        List<ViolationType> result = new ArrayList<ViolationType>();
+        for ( Violation violation : violations ) {
+            result.add( violation.getType() );
+        }
+        return result;
+    }
+
+    private static byte[] trackNumber( int value ) {
+        return element( 0xD7, bytes( value ) );
+    }
+
+    private static byte[] trackUid() {
+        return element( 0x73C5, bytes( 0x12, 0x34 ) );
+    }
+
+    private static byte[] trackType( int value ) {
+        return element( 0x83, bytes( value ) );
+    }
+
+    private static byte[] codecId() {
+        return element( 0x86, string( "V_VP8" ) );
+    }
+
+
+    @Test
+    public void valid() throws IOException {
+        byte[] data = concat( header(), segment( trackNumber( 1 ), trackUid(), trackType( 1 ), codecId() ) );
+        assertThat( validate( data ).isEmpty(), isTrue() );
+    }
+
+    @Test
+    public void missingElement() throws IOException {
+        byte[] data = concat( header(), segment( trackNumber( 1 ), trackUid(), trackType( 1 ) ) );
+        List<Violation> violations = validate( data );
+        assertThat( types( violations ), isEqualTo( Arrays.asList( ViolationType.MISSING_ELEMENT ) ) );
+        assertThat( violations.get( 0 ).getIdentifier(), isEqualTo( VariableLengthInteger.fromEncoded( 0x86 ) ) );
+        assertThat( violations.get( 0 ).getPosition(), isEqualTo( ( long ) header().length + 5 + 19 + 5 ) );
+    }
+
+    @Test
+    public void missingTopLevelElement() throws IOException {
+        List<Violation> violations = validate( header() );
+        assertThat( types( violations ), isEqualTo( Arrays.asList( ViolationType.MISSING_ELEMENT ) ) );
+        assertThat( violations.get( 0 ).getPosition(), isEqualTo( -1L ) );
+    }
+
+    @Test
+    public void duplicateElement() throws IOException {
+        byte[] data = concat( header(), segment( trackNumber( 1 ), trackNumber( 2 ), trackUid(), trackType( 1 ), codecId() ) );
+        List<Violation> violations = validate( data );
+        assertThat( types( violations ), isEqualTo( Arrays.asList( ViolationType.DUPLICATE_ELEMENT ) ) );
+        assertThat( violations.get( 0 ).getPosition(), isEqualTo( ( long ) header().length + 5 + 19 + 5 + 2 + 3 ) );
+    }
+
+    @Test
+    public void valueOutOfRange() throws IOException {
+        byte[] data = concat( header(), segment( trackNumber( 0 ), trackUid(), trackType( 0 ), codecId(), element( 0x88, bytes( 0x02 ) ) ) );
+        assertThat( types( validate( data ) ), isEqualTo( Arrays.asList(
+                ViolationType.VALUE_OUT_OF_RANGE, ViolationType.VALUE_OUT_OF_RANGE, ViolationType.VALUE_OUT_OF_RANGE ) ) );
+    }
+
+    @Test
+    public void unexpectedElement() throws IOException {
+        byte[] data = concat( header(), segment( trackNumber( 1 ), trackUid(), trackType( 1 ), codecId(), element( 0xE7, bytes( 0x00 ) ) ) );
+        assertThat( types( validate( data ) ), isEqualTo( Arrays.asList( ViolationType.UNEXPECTED_ELEMENT ) ) );
+    }
+
+    @Test
+    public void unknownElement() throws IOException {
+        byte[] data = concat( header(), segment( trackNumber( 1 ), trackUid(), trackType( 1 ), codecId(), element( 0x4FFF, bytes( 0x00 ) ) ) );
+        assertThat( types( validate( data ) ), isEqualTo( Arrays.asList( ViolationType.UNKNOWN_ELEMENT ) ) );
+    }
+
+    @Test
+    public void invalidSize() throws IOException {
+        byte[] data = concat( header(), segment( trackNumber( 1 ), trackUid(), trackType( 1 ), codecId(), element( 0x23E383, new byte[ 9 ] ) ) );
+        assertThat( types( validate( data ) ), isEqualTo( Arrays.asList( ViolationType.INVALID_SIZE ) ) );
+    }
+
+    @Test
+    public void maximumViolations() throws IOException {
+        SchemaValidator validator = new SchemaValidator();
+        validator.setMaximumViolations( 2 );
+        byte[] data = concat( header(), segment( trackNumber( 0 ), trackNumber( 0 ), trackType( 0 ) ) );
+        assertThat( validator.validate( new EbmlStreamReader( new ByteArrayInputStream( data ) ) ).size(), isEqualTo( 2 ) );
+    }
+
+}
@@ -0,0 +1,211 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.generator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import com.google.code.ebmlviewer.elements.ElementDescriptor;
+import com.google.code.ebmlviewer.elements.ElementType;
+
+/**
+ * Represents an element in the hierarchy restored from the flat element specification.
+ * <p/>
+ * The "source" Matroska specification lists the elements in the document order and specifies only the level of every
+ * element, so the parent of an element is the closest preceding master element with the level one less than the level
+ * of the element. Global master elements start their own hierarchy, global non-master elements are allowed everywhere
+ * and are not included in the hierarchy.
+ */
+final class ElementNode {
+
+    private final ElementDescriptor descriptor;
+
+    private final List<String> words;
+
+    private final List<ElementNode> children = new ArrayList<ElementNode>();
+
+
+    private ElementNode( ElementDescriptor descriptor ) {
+        this.descriptor = descriptor;
+        words = splitWords( descriptor.getName() );
+    }
+
+
+    public ElementDescriptor getDescriptor() {
+        return descriptor;
+    }
+
+    public boolean isMaster() {
+        return descriptor.getType() == ElementType.MASTER;
+    }
+
+    public List<ElementNode> getChildren() {
+        return Collections.unmodifiableList( children );
+    }
+
+
+    /**
+     * Returns the name of the element as a Java constant name, for example {@code EBML_VERSION} for the
+     * {@code EBMLVersion} element.
+     *
+     * @return the constant name
+     */
+    public String getConstantName() {
+        return toConstantName( descriptor.getName() );
+    }
+
+    /**
+     * Converts the specified element name to a Java constant name.
+     *
+     * @param name the element name
+     *
+     * @return the constant name
+     */
+    static String toConstantName( String name ) {
+        StringBuilder builder = new StringBuilder();
+        for ( String word : splitWords( name ) ) {
+            if ( builder.length() > 0 ) {
+                builder.append( '_' );
+            }
+            builder.append( word.toUpperCase( Locale.ENGLISH ) );
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Returns the name of the element as a Java type name, for example {@code EbmlVersion} for the {@code EBMLVersion}
+     * element.
+     *
+     * @return the type name
+     */
+    public String getTypeName() {
+        StringBuilder builder = new StringBuilder();
+        for ( String word : words ) {
+            builder.append( Character.toUpperCase( word.charAt( 0 ) ) );
+            builder.append( word.substring( 1 ).toLowerCase( Locale.ENGLISH ) );
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Returns the name of the element as a Java field name, for example {@code ebmlVersion} for the {@code EBMLVersion}
+     * element.
+     *
+     * @return the field name
+     */
+    public String getFieldName() {
+        String typeName = getTypeName();
+        return Character.toLowerCase( typeName.charAt( 0 ) ) + typeName.substring( 1 );
+    }
+
+
+    /**
+     * Restores the element hierarchy from the specified element descriptors.
+     *
+     * @param descriptors the element descriptors in the specification order
+     *
+     * @return the list of the top level elements
+     */
+    public static List<ElementNode> build( Collection<ElementDescriptor> descriptors ) {
+        List<ElementNode> roots = new ArrayList<ElementNode>();
+        List<ElementNode> path = new ArrayList<ElementNode>();
+        for ( ElementDescriptor descriptor : descriptors ) {
+            int level = descriptor.getLevel();
+            ElementNode node = new ElementNode( descriptor );
+            if ( level < 0 ) {
+                if ( node.isMaster() ) {
+                    roots.add( node );
+                    path.clear();
+                    path.add( node );
+                }
+                continue;
+            }
+            while ( path.size() > level ) {
+                path.remove( path.size() - 1 );
+            }
+            if ( level == 0 ) {
+                roots.add( node );
+            } else if ( path.size() == level ) {
+                path.get( level - 1 ).children.add( node );
+            } else {
+                // the parent is missing from the specification
+                continue;
+            }
+            if ( node.isMaster() ) {
+                if ( descriptor.isRecursive() ) {
+                    node.children.add( node );
+                }
+                path.add( node );
+            }
+        }
+        return roots;
+    }
+
+    /**
+     * Splits the specified element name into words. A word boundary is any character that is neither a letter nor a
+     * digit, a lower case letter or a digit followed by an upper case letter, and an upper case letter followed by an
+     * upper case letter and a lower case letter.
+     *
+     * @param name the element name
+     *
+     * @return the list of words
+     */
+    static List<String> splitWords( String name ) {
+        List<String> words = new ArrayList<String>();
+        StringBuilder word = new StringBuilder();
+        for ( int i = 0; i < name.length(); i++ ) {
+            char c = name.charAt( i );
+            if ( !Character.isLetterOrDigit( c ) ) {
+                if ( word.length() > 0 ) {
+                    words.add( word.toString() );
+                    word.setLength( 0 );
+                }
+                continue;
+            }
+            if ( word.length() > 0 && Character.isUpperCase( c ) ) {
+                char previous = word.charAt( word.length() - 1 );
+                boolean nextIsLower = i + 1 < name.length() && Character.isLowerCase( name.charAt( i + 1 ) );
+                if ( !Character.isUpperCase( previous ) || nextIsLower ) {
+                    words.add( word.toString() );
+                    word.setLength( 0 );
+                }
+            }
+            word.append( c );
+        }
+        if ( word.length() > 0 ) {
+            words.add( word.toString() );
+        }
+        return words;
+    }
+
+}
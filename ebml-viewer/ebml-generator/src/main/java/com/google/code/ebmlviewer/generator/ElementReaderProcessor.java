@@ -0,0 +1,481 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.generator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import javax.xml.stream.XMLStreamException;
+
+import com.google.code.ebmlviewer.elements.ElementDescriptor;
+import com.google.code.ebmlviewer.elements.ElementDescriptors;
+import com.google.code.ebmlviewer.elements.ElementType;
+
+/**
+ * Generates the element identifier constants and the typed element readers for the packages annotated with
+ * {@link GenerateElementReaders}.
+ * <p/>
+ * A reader class is generated for every master element. The generated reader decodes the children of the element in a
+ * single pass over an {@code EbmlStreamReader}, dispatching on the {@code int} value of the child identifier with a
+ * {@code switch} statement instead of looking up the element descriptor for every child. Every known child is decoded
+ * by the protected {@code readXxx} method which can be overridden to process the child in some other way, for example
+ * to avoid collecting the large binary elements in memory.
+ */
+@SupportedAnnotationTypes( "com.google.code.ebmlviewer.generator.GenerateElementReaders" )
+public class ElementReaderProcessor extends AbstractProcessor {
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process( Set<? extends TypeElement> annotations, RoundEnvironment roundEnv ) {
+        for ( Element element : roundEnv.getElementsAnnotatedWith( GenerateElementReaders.class ) ) {
+            if ( element instanceof PackageElement ) {
+                try {
+                    generate( ( PackageElement ) element, element.getAnnotation( GenerateElementReaders.class ) );
+                } catch ( IOException e ) {
+                    processingEnv.getMessager().printMessage( Diagnostic.Kind.ERROR, "failed to generate element readers: " + e, element );
+                } catch ( XMLStreamException e ) {
+                    processingEnv.getMessager().printMessage( Diagnostic.Kind.ERROR, "failed to read element specification: " + e, element );
+                }
+            }
+        }
+        return true;
+    }
+
+
+    private void generate( PackageElement element, GenerateElementReaders annotation ) throws IOException, XMLStreamException {
+        Collection<ElementDescriptor> descriptors = readDescriptors( annotation.specification() ).values();
+        String packageName = element.getQualifiedName().toString();
+        String constantsName = annotation.constants();
+
+        Map<String, ElementNode> masters = new LinkedHashMap<String, ElementNode>();
+        for ( ElementNode root : ElementNode.build( descriptors ) ) {
+            collectMasters( root, masters );
+        }
+        Set<String> names = new HashSet<String>();
+        names.add( constantsName );
+        for ( ElementNode master : masters.values() ) {
+            String readerName = master.getTypeName() + "Reader";
+            if ( !SourceVersion.isIdentifier( readerName ) || !names.add( readerName ) ) {
+                processingEnv.getMessager().printMessage( Diagnostic.Kind.ERROR, "invalid or duplicate reader name: " + readerName, element );
+                return;
+            }
+        }
+
+        writeConstants( element, packageName, constantsName, descriptors );
+        for ( ElementNode master : masters.values() ) {
+            writeReader( element, packageName, constantsName, master );
+        }
+    }
+
+    private Map<?, ElementDescriptor> readDescriptors( String specification ) throws IOException, XMLStreamException {
+        if ( specification.length() == 0 ) {
+            return ElementDescriptors.getDefaultDescriptors();
+        }
+        FileObject resource = processingEnv.getFiler().getResource( StandardLocation.CLASS_PATH, "", specification );
+        InputStream stream = resource.openInputStream();
+        try {
+            return ElementDescriptors.readDescriptors( stream );
+        } finally {
+            try {
+                stream.close();
+            } catch ( IOException e ) {
+                Logger.getLogger( getClass().getName() ).log( Level.WARNING, "exception thrown while closing an I/O resource", e );
+            }
+        }
+    }
+
+    private static void collectMasters( ElementNode node, Map<String, ElementNode> masters ) {
+        if ( node.isMaster() && !masters.containsKey( node.getDescriptor().getName() ) ) {
+            masters.put( node.getDescriptor().getName(), node );
+            for ( ElementNode child : node.getChildren() ) {
+                collectMasters( child, masters );
+            }
+        }
+    }
+
+
+    private void writeConstants( PackageElement element, String packageName, String className, Collection<ElementDescriptor> descriptors ) throws IOException {
+        PrintWriter out = new PrintWriter( processingEnv.getFiler().createSourceFile( packageName + '.' + className, element ).openWriter() );
+        try {
+            writePackage( out, packageName );
+            out.println( "/**" );
+            out.println( " * Defines the identifiers of the elements as {@code int} constants suitable for {@code switch} statements." );
+            out.println( " * <p/>" );
+            out.println( " * Generated from the element specification, do not edit." );
+            out.println( " */" );
+            out.printf( "public final class %s {%n", className );
+            out.println();
+            for ( ElementDescriptor descriptor : descriptors ) {
+                if ( descriptor.getIdentifier().getEncodedLength() > 4 ) {
+                    continue;
+                }
+                out.printf( "    /** The {@code %s} element identifier. */%n", descriptor.getName() );
+                out.printf( "    public static final int %s = 0x%X;%n", ElementNode.toConstantName( descriptor.getName() ), descriptor.getIdentifier().getEncodedValue() );
+                out.println();
+            }
+            out.println();
+            out.printf( "    private %s() {%n", className );
+            out.println( "    }" );
+            out.println();
+            out.println( "}" );
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeReader( PackageElement element, String packageName, String constantsName, ElementNode master ) throws IOException {
+        String className = master.getTypeName() + "Reader";
+        List<ElementNode> children = master.getChildren();
+        PrintWriter out = new PrintWriter( processingEnv.getFiler().createSourceFile( packageName + '.' + className, element ).openWriter() );
+        try {
+            boolean binary = false;
+            boolean multiple = false;
+            for ( ElementNode child : children ) {
+                binary |= child.getDescriptor().getType() == ElementType.BINARY;
+                multiple |= child.getDescriptor().isMultiple();
+            }
+            writePackage( out, packageName );
+            out.println( "import java.io.IOException;" );
+            if ( binary ) {
+                out.println( "import java.nio.ByteBuffer;" );
+            }
+            if ( multiple ) {
+                out.println( "import java.util.ArrayList;" );
+                out.println( "import java.util.Collections;" );
+                out.println( "import java.util.List;" );
+            }
+            out.println();
+            out.println( "import com.google.code.ebmlviewer.core.VariableLengthInteger;" );
+            if ( binary ) {
+                out.println( "import com.google.code.ebmlviewer.io.EbmlIoException;" );
+            }
+            out.println( "import com.google.code.ebmlviewer.stream.EbmlStreamReader;" );
+            out.println();
+            out.println( "/**" );
+            out.printf( " * Reads the children of the {@code %s} element.%n", master.getDescriptor().getName() );
+            out.println( " * <p/>" );
+            out.println( " * Generated from the element specification, do not edit." );
+            out.println( " */" );
+            out.printf( "public class %s {%n", className );
+            out.println();
+
+            for ( ElementNode child : children ) {
+                String field = child.getFieldName();
+                if ( child.getDescriptor().isMultiple() ) {
+                    String type = boxedType( child );
+                    out.printf( "    private final List<%s> %s = new ArrayList<%s>();%n", type, field, type );
+                } else if ( child.isMaster() ) {
+                    out.printf( "    private %s %s;%n", javaType( child ), field );
+                } else {
+                    String defaultValue = defaultValue( child );
+                    if ( defaultValue == null ) {
+                        out.printf( "    private %s %s;%n", javaType( child ), field );
+                    } else {
+                        out.printf( "    private %s %s = %s;%n", javaType( child ), field, defaultValue );
+                    }
+                    out.printf( "    private boolean %sPresent;%n", field );
+                }
+                out.println();
+            }
+            out.println();
+
+            out.println( "    /**" );
+            out.println( "     * Reads the children of the current element of the specified reader. The values of the children are added to" );
+            out.println( "     * the values already collected by this object." );
+            out.println( "     *" );
+            out.println( "     * @param reader the reader positioned at the element" );
+            out.println( "     *" );
+            out.println( "     * @throws IllegalArgumentException if {@code reader} is {@code null}" );
+            out.println( "     * @throws IOException if an I/O error has occurred" );
+            out.println( "     */" );
+            out.println( "    public void read( EbmlStreamReader reader ) throws IOException {" );
+            out.println( "        if ( reader == null ) {" );
+            out.println( "            throw new IllegalArgumentException( \"reader is null\" );" );
+            out.println( "        }" );
+            out.println( "        reader.enterContainer();" );
+            out.println( "        while ( reader.next() ) {" );
+            out.println( "            VariableLengthInteger identifier = reader.getIdentifier();" );
+            out.println( "            switch ( identifier.getEncodedLength() <= 4 ? ( int ) identifier.getEncodedValue() : 0 ) {" );
+            for ( ElementNode child : children ) {
+                out.printf( "                case %s.%s:%n", constantsName, child.getConstantName() );
+                out.printf( "                    read%s( reader );%n", child.getTypeName() );
+                out.println( "                    break;" );
+            }
+            out.println( "                default:" );
+            out.println( "                    readUnknownElement( reader );" );
+            out.println( "                    break;" );
+            out.println( "            }" );
+            out.println( "        }" );
+            out.println( "        reader.leaveContainer();" );
+            out.println( "    }" );
+            out.println();
+
+            out.println( "    /**" );
+            out.println( "     * Reads an element which is not a known child of this element. The default implementation skips the element." );
+            out.println( "     *" );
+            out.println( "     * @param reader the reader positioned at the element" );
+            out.println( "     *" );
+            out.println( "     * @throws IOException if an I/O error has occurred" );
+            out.println( "     */" );
+            out.println( "    protected void readUnknownElement( EbmlStreamReader reader ) throws IOException {" );
+            out.println( "    }" );
+            out.println();
+
+            for ( ElementNode child : children ) {
+                writeChildMethods( out, child );
+            }
+
+            if ( binary ) {
+                writeReadBytes( out );
+            }
+            out.println( "}" );
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void writeReadBytes( PrintWriter out ) {
+        out.println( "    private static byte[] readBytes( EbmlStreamReader reader ) throws IOException {" );
+        out.println( "        long size = reader.getSize().getPlainValue();" );
+        out.println( "        if ( size > Integer.MAX_VALUE ) {" );
+        out.println( "            throw new EbmlIoException( reader.getElementPosition(), \"element data is too large to be decoded\" );" );
+        out.println( "        }" );
+        out.println( "        ByteBuffer buffer = ByteBuffer.allocate( ( int ) size );" );
+        out.println( "        reader.readBinary( buffer );" );
+        out.println( "        return buffer.array();" );
+        out.println( "    }" );
+        out.println();
+    }
+
+    private static void writeChildMethods( PrintWriter out, ElementNode child ) {
+        String name = child.getDescriptor().getName();
+        String typeName = child.getTypeName();
+        String field = child.getFieldName();
+        boolean multiple = child.getDescriptor().isMultiple();
+
+        out.println( "    /**" );
+        out.printf( "     * Reads the {@code %s} element.%n", name );
+        out.println( "     *" );
+        out.println( "     * @param reader the reader positioned at the element" );
+        out.println( "     *" );
+        out.println( "     * @throws IOException if an I/O error has occurred" );
+        out.println( "     */" );
+        out.printf( "    protected void read%s( EbmlStreamReader reader ) throws IOException {%n", typeName );
+        String value;
+        if ( child.isMaster() ) {
+            out.printf( "        %s child = new %s();%n", javaType( child ), javaType( child ) );
+            out.println( "        child.read( reader );" );
+            value = "child";
+        } else {
+            value = readExpression( child );
+        }
+        if ( multiple ) {
+            out.printf( "        %s.add( %s );%n", field, value );
+        } else {
+            out.printf( "        %s = %s;%n", field, value );
+            if ( !child.isMaster() ) {
+                out.printf( "        %sPresent = true;%n", field );
+            }
+        }
+        out.println( "    }" );
+        out.println();
+
+        if ( multiple ) {
+            out.println( "    /**" );
+            out.printf( "     * Returns the values of the {@code %s} elements in the order of appearance.%n", name );
+            out.println( "     *" );
+            out.println( "     * @return the unmodifiable list of values" );
+            out.println( "     */" );
+            out.printf( "    public List<%s> get%sList() {%n", boxedType( child ), typeName );
+            out.printf( "        return Collections.unmodifiableList( %s );%n", field );
+            out.println( "    }" );
+            out.println();
+        } else if ( child.isMaster() ) {
+            out.println( "    /**" );
+            out.printf( "     * Returns the reader of the {@code %s} element.%n", name );
+            out.println( "     *" );
+            out.println( "     * @return the element reader, or {@code null} if the element is not present" );
+            out.println( "     */" );
+            out.printf( "    public %s get%s() {%n", javaType( child ), typeName );
+            out.printf( "        return %s;%n", field );
+            out.println( "    }" );
+            out.println();
+        } else {
+            out.println( "    /**" );
+            out.printf( "     * Returns the value of the {@code %s} element.%n", name );
+            out.println( "     *" );
+            out.println( "     * @return the element value, or the default value if the element is not present" );
+            out.println( "     */" );
+            out.printf( "    public %s get%s() {%n", javaType( child ), typeName );
+            out.printf( "        return %s;%n", field );
+            out.println( "    }" );
+            out.println();
+            out.println( "    /**" );
+            out.printf( "     * Determines whether the {@code %s} element is present.%n", name );
+            out.println( "     *" );
+            out.println( "     * @return {@code true} if the element is present; {@code false} otherwise" );
+            out.println( "     */" );
+            out.printf( "    public boolean has%s() {%n", typeName );
+            out.printf( "        return %sPresent;%n", field );
+            out.println( "    }" );
+            out.println();
+        }
+    }
+
+    private static void writePackage( PrintWriter out, String packageName ) {
+        if ( packageName.length() > 0 ) {
+            out.printf( "package %s;%n", packageName );
+            out.println();
+        }
+    }
+
+
+    private static String javaType( ElementNode node ) {
+        switch ( node.getDescriptor().getType() ) {
+            case SIGNED_INTEGER:
+            case UNSIGNED_INTEGER:
+            case DATE:
+                return "long";
+            case FLOATING_POINT:
+                return "double";
+            case ASCII_STRING:
+            case UNICODE_STRING:
+                return "String";
+            case MASTER:
+                return node.getTypeName() + "Reader";
+            default:
+                return "byte[]";
+        }
+    }
+
+    private static String boxedType( ElementNode node ) {
+        String type = javaType( node );
+        if ( "long".equals( type ) ) {
+            return "Long";
+        } else if ( "double".equals( type ) ) {
+            return "Double";
+        } else {
+            return type;
+        }
+    }
+
+    private static String readExpression( ElementNode node ) {
+        switch ( node.getDescriptor().getType() ) {
+            case SIGNED_INTEGER:
+                return "reader.readSignedInteger()";
+            case UNSIGNED_INTEGER:
+                return "reader.readUnsignedInteger()";
+            case DATE:
+                return "reader.readDate()";
+            case FLOATING_POINT:
+                return "reader.readFloatingPoint()";
+            case ASCII_STRING:
+                return "reader.readAsciiString()";
+            case UNICODE_STRING:
+                return "reader.readUnicodeString()";
+            default:
+                return "readBytes( reader )";
+        }
+    }
+
+    /**
+     * Returns the default value of the specified element as a Java literal. Some default values in the specification
+     * refer to other elements (for example, the default {@code DisplayWidth} is {@code PixelWidth}), such values are
+     * ignored.
+     *
+     * @param node the element
+     *
+     * @return the Java literal, or {@code null} if the element has no usable default value
+     */
+    private static String defaultValue( ElementNode node ) {
+        String value = node.getDescriptor().getDefaultValue();
+        if ( value == null ) {
+            return null;
+        }
+        ElementType type = node.getDescriptor().getType();
+        try {
+            switch ( type ) {
+                case SIGNED_INTEGER:
+                case UNSIGNED_INTEGER:
+                    return Long.decode( value.trim() ) + "L";
+                case FLOATING_POINT:
+                    double d = Double.parseDouble( value.trim() );
+                    return Double.isNaN( d ) || Double.isInfinite( d ) ? null : Double.toString( d );
+                case ASCII_STRING:
+                case UNICODE_STRING:
+                    return stringLiteral( value );
+                default:
+                    return null;
+            }
+        } catch ( NumberFormatException e ) {
+            return null;
+        }
+    }
+
+    private static String stringLiteral( String value ) {
+        StringBuilder builder = new StringBuilder( value.length() + 2 );
+        builder.append( '"' );
+        for ( int i = 0; i < value.length(); i++ ) {
+            char c = value.charAt( i );
+            if ( c == '"' || c == '\\' ) {
+                builder.append( '\\' ).append( c );
+            } else if ( c < 0x20 || c > 0x7e ) {
+                builder.append( String.format( "\\u%04x", ( int ) c ) );
+            } else {
+                builder.append( c );
+            }
+        }
+        builder.append( '"' );
+        return builder.toString();
+    }
+
+}
@@ -0,0 +1,78 @@
+/*-
+ * Copyright (c) 2008-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the distribution.
+ *  * Neither the names of the copyright holders nor the names of their
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ */
+
+package com.google.code.ebmlviewer.matroska;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import org.testng.annotations.Test;
+import com.google.code.ebmlviewer.stream.EbmlStreamReader;
+
+import static oe.assertions.Assertions.assertThat;
+import static oe.assertions.Predicates.isEqualTo;
+import static oe.assertions.Predicates.isFalse;
+import static oe.assertions.Predicates.isNotNull;
+import static oe.assertions.Predicates.isTrue;
+
+public class TrackEntryReaderTest {
+
+    @Test
+    public void read() throws IOException {
+        byte[] data = {
+                ( byte ) 0xae, ( byte ) 0x98,
+                ( byte ) 0xd7, ( byte ) 0x81, 0x01,
+                ( byte ) 0x86, ( byte ) 0x85, 'V', '_', 'V', 'P', '8',
+                ( byte ) 0xec, ( byte ) 0x82, 0x00, 0x00,
+                ( byte ) 0xe0, ( byte ) 0x83, ( byte ) 0xb0, ( byte ) 0x81, 0x40,
+                0x63, ( byte ) 0xa2, ( byte ) 0x82, 0x01, 0x02,
+        };
+
+        EbmlStreamReader reader = new EbmlStreamReader( new ByteArrayInputStream( data ) );
+        try {
+            assertThat( reader.next(), isTrue() );
+            assertThat( ( int ) reader.getIdentifier().getEncodedValue(), isEqualTo( MatroskaElements.TRACK_ENTRY ) );
+            TrackEntryReader trackEntry = new TrackEntryReader();
+            trackEntry.read( reader );
+            assertThat( reader.next(), isFalse() );
+
+            assertThat( trackEntry.hasTrackNumber(), isTrue() );
+            assertThat( trackEntry.getTrackNumber(), isEqualTo( 1L ) );
+            assertThat( trackEntry.getCodecId(), isEqualTo( "V_VP8" ) );
+            assertThat( trackEntry.getCodecPrivate().length, isEqualTo( 2 ) );
+            assertThat( trackEntry.hasLanguage(), isFalse() );
+            assertThat( trackEntry.getLanguage(), isEqualTo( "eng" ) );
+            assertThat( trackEntry.getVideo(), isNotNull() );
+            assertThat( trackEntry.getVideo().getPixelWidth(), isEqualTo( 64L ) );
+        } finally {
+            reader.close();
+        }
+    }
+
+}
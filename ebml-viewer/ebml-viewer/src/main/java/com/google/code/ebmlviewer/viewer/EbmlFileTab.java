@@ -33,19 +33,32 @@ import java.awt.Color;
 import java.awt.font.TextAttribute;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
 import java.text.AttributedCharacterIterator;
+import java.text.AttributedString;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.swing.Icon;
 import javax.swing.ImageIcon;
 import javax.swing.JScrollPane;
+import javax.swing.JTree;
+import javax.swing.SwingUtilities;
 import javax.swing.SwingWorker;
 import javax.swing.event.TreeExpansionEvent;
 
@@ -55,6 +68,7 @@ import com.google.code.ebmlviewer.elements.ElementDescriptor;
 import com.google.code.ebmlviewer.elements.ElementType;
 import com.google.code.ebmlviewer.io.EbmlFile;
 import com.google.code.ebmlviewer.io.EbmlFileEntry;
+import com.google.code.ebmlviewer.io.ReadProgressListener;
 import com.google.code.ebmlviewer.viewer.compontents.tabs.Tab;
 import com.google.code.ebmlviewer.viewer.compontents.tree.DynamicTree;
 import com.google.code.ebmlviewer.viewer.compontents.tree.DynamicTreeModel;
@@ -87,6 +101,9 @@ public class EbmlFileTab extends Tab {
 
     private static final Icon exceptionIcon = new ImageIcon( EbmlFileTab.class.getResource( "exception.png" ) );
 
+    /** The number of newer requests after which a pending value request is renewed when its node is rendered again. */
+    private static final long VALUE_REQUEST_RENEWAL = 256L;
+
 
     // attribute maps for node text are shared between all tabs and all nodes
     private static final Map<AttributedCharacterIterator.Attribute, Object> utilAttributes = new HashMap<AttributedCharacterIterator.Attribute, Object>();
@@ -130,6 +147,16 @@ public class EbmlFileTab extends Tab {
 
     private final Map<VariableLengthInteger, ElementDescriptor> descriptors;
 
+    /** The background loaders that are still running, accessed only on the EDT. */
+    private final Set<SwingWorker<?, ?>> loaders = new HashSet<SwingWorker<?, ?>>();
+
+
+    /** Decodes the values of the entry nodes in the background, the most recently requested values first. */
+    private final ThreadPoolExecutor valueDecoder;
+
+    /** The number of the value requests, accessed only on the EDT. */
+    private long valueRequests;
+
 
     public EbmlFileTab( EbmlFile ebmlFile, File file, Icon icon ) {
         if ( ebmlFile == null ) {
@@ -147,12 +174,30 @@ public class EbmlFileTab extends Tab {
 
         descriptors = getDefaultDescriptors();
 
+        valueDecoder = new ThreadPoolExecutor( 1, 1, 1L, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(), new ValueDecoderFactory() );
+        valueDecoder.allowCoreThreadTimeOut( true );
+
         FileTreeNode root = new FileTreeNode( ebmlFile );
         root.setText( file.getAbsolutePath() );
         root.setIcon( icon );
+        // the top-level entries are read in the background and appear in the tree as they are read
         root.willExpand( null );
         DynamicTree tree = new DynamicTree( new DynamicTreeModel( root ) );
-        tree.setCellRenderer( new DynamicTreeNodeRenderer() );
+        DynamicTreeNodeRenderer renderer = new DynamicTreeNodeRenderer() {
+            @Override
+            protected void configureDynamicTreeNodeRenderer( JTree tree, DynamicTreeNode dynamicTreeNode, boolean selected, boolean expanded, boolean leaf, int row, boolean focused ) {
+                // the large model renders only the visible rows, so the values of the other nodes are never decoded
+                if ( dynamicTreeNode instanceof EntryTreeNode ) {
+                    ( ( EntryTreeNode ) dynamicTreeNode ).requestValue();
+                }
+            }
+        };
+        tree.setCellRenderer( renderer );
+        // the large model asks only for the visible children, so the children of the huge master nodes are created
+        // lazily while scrolling; it requires the fixed row height
+        tree.setRowHeight( renderer.getTreeCellRendererComponent( tree, root, false, true, false, 0, false ).getPreferredSize().height );
+        tree.setLargeModel( true );
 
         setContentPane( new JScrollPane( tree ) );
     }
@@ -165,6 +210,10 @@ public class EbmlFileTab extends Tab {
 
     @Override
     public void dispose() {
+        for ( SwingWorker<?, ?> loader : new ArrayList<SwingWorker<?, ?>>( loaders ) ) {
+            loader.cancel( false );
+        }
+        valueDecoder.shutdownNow();
         try {
             ebmlFile.close();
         } catch ( IOException e ) {
@@ -176,56 +225,160 @@ public class EbmlFileTab extends Tab {
 
     private abstract class MasterTreeNode extends DynamicTreeNode {
 
+        /** The entries of the lazy children. */
+        private final List<EbmlFileEntry> childEntries = new ArrayList<EbmlFileEntry>();
+
+        /** The node of the error that stopped the loading, the lazy child after the entries, or {@code null}. */
+        private DynamicTreeNode errorNode;
+
+        /** The loader that reads the entries in the background, or {@code null} if the entries are not being loaded. */
+        private BackgroundEntryLoader loader;
+
         protected abstract boolean getEntriesWillBlock();
 
         protected abstract List<EbmlFileEntry> getEntries() throws IOException;
 
+        protected abstract List<EbmlFileEntry> getEntries( ReadProgressListener listener ) throws IOException;
+
         @Override
         public void willExpand( TreeExpansionEvent event ) {
-            if ( getChildCount() != 0 ) {
+            if ( getChildCount() != 0 || loader != null ) {
                 return;
             }
-            if ( event != null && getEntriesWillBlock() ) {
-                DynamicTreeNode node = new DynamicTreeNode( null, typeIcons.get( null ) );
-                AttributedStringBuilder builder = new AttributedStringBuilder();
-                builder.append( resources.getString( "masterTreeNode.loading" ), utilAttributes );
-                node.setAttributedText( builder.build() );
-                appendChild( node );
-                new BackgroundEntryLoader().execute();
+            if ( getEntriesWillBlock() ) {
+                // the loader appends the children as they are read, the progress is shown in the text of this node
+                setChildEntries( Collections.<EbmlFileEntry>emptyList() );
+                loader = new BackgroundEntryLoader();
+                loaders.add( loader );
+                loader.execute();
             } else {
                 try {
-                    List<EbmlFileEntry> entries = getEntries();
-                    for ( EbmlFileEntry child : entries ) {
-                        appendChildSilently( new EntryTreeNode( child, descriptors.get( child.getIdentifier() ) ) );
-                    }
+                    setChildEntries( getEntries() );
                 } catch ( Exception e ) {
                     appendChildSilently( new DynamicTreeNode( e.getLocalizedMessage(), exceptionIcon ) );
                 }
             }
         }
 
-        private class BackgroundEntryLoader extends SwingWorker<List<EbmlFileEntry>, Object> {
+        /** Replaces the children of this node with the lazy children for the specified entries. */
+        private void setChildEntries( List<EbmlFileEntry> entries ) {
+            childEntries.clear();
+            childEntries.addAll( entries );
+            errorNode = null;
+            setLazyChildren( childEntries.size() );
+        }
+
+        /** Appends the lazy children for the specified entries to the children of this node. */
+        private void appendChildEntries( List<EbmlFileEntry> entries ) {
+            childEntries.addAll( entries );
+            appendLazyChildren( entries.size() );
+        }
+
+        /** Appends the lazy child for the specified error after the children for the entries. */
+        private void appendErrorNode( DynamicTreeNode node ) {
+            errorNode = node;
+            appendLazyChildren( 1 );
+        }
+
+        @Override
+        protected DynamicTreeNode createChild( int index ) {
+            if ( index == childEntries.size() ) {
+                return errorNode;
+            }
+            EbmlFileEntry child = childEntries.get( index );
+            return new EntryTreeNode( child, descriptors.get( child.getIdentifier() ) );
+        }
+
+        /**
+         * Reads the entries in the background and appends the children as the entries are read, showing the number of
+         * scanned bytes in the text of the node. The loader is cancelled when the tab is disposed.
+         */
+        private class BackgroundEntryLoader extends SwingWorker<List<EbmlFileEntry>, EbmlFileEntry> implements ReadProgressListener {
+
+            /** The text of the node without the progress. */
+            private final String text;
+
+            /** The attributed text of the node without the progress, or {@code null} if the node has a plain text. */
+            private final AttributedString attributedText;
+
+            /** The entries read so far, accessed by the background thread and by done() after it is finished. */
+            private final List<EbmlFileEntry> readEntries = new ArrayList<EbmlFileEntry>();
+
+            private volatile long bytesScanned;
+
+            private volatile long bytesTotal;
+
+
+            private BackgroundEntryLoader() {
+                text = getText();
+                attributedText = getAttributedText();
+                showProgress();
+            }
+
 
             @Override
             protected List<EbmlFileEntry> doInBackground() throws Exception {
-                return getEntries();
+                return getEntries( this );
+            }
+
+            @Override
+            public void progressed( EbmlFileEntry entry, long bytesScanned, long bytesTotal ) throws IOException {
+                // the loader is cancelled without the interruption, which would close the channel of the file
+                if ( isCancelled() ) {
+                    throw new InterruptedIOException( "loading was cancelled" );
+                }
+                this.bytesScanned = bytesScanned;
+                this.bytesTotal = bytesTotal;
+                readEntries.add( entry );
+                // the published entries are coalesced into chunks, so the EDT appends many children at once
+                publish( entry );
+            }
+
+            @Override
+            protected void process( List<EbmlFileEntry> chunks ) {
+                // the chunks published at the end of the loading can be processed after done()
+                if ( isCancelled() || loader != this ) {
+                    return;
+                }
+                appendChildEntries( chunks );
+                showProgress();
+            }
+
+            private void showProgress() {
+                AttributedStringBuilder builder = new AttributedStringBuilder();
+                if ( attributedText != null ) {
+                    builder.append( attributedText ).append( ' ' );
+                } else if ( text != null ) {
+                    builder.append( text ).append( ' ' );
+                }
+                builder.append( resources.getString( "masterTreeNode.loading" ), utilAttributes );
+                if ( bytesTotal > 0L ) {
+                    builder.append( String.format( " %,d / %,d", bytesScanned, bytesTotal ), sizeAttributes );
+                }
+                setAttributedText( builder.build() );
             }
 
             @Override
             protected void done() {
-                removeChild( 0 );
+                loaders.remove( this );
+                loader = null;
                 if ( isCancelled() ) {
                     return;
                 }
+                if ( attributedText != null ) {
+                    setAttributedText( attributedText );
+                } else {
+                    setText( text );
+                }
+                // appends the entries that were not processed yet, including those read before an error
+                appendChildEntries( readEntries.subList( childEntries.size(), readEntries.size() ) );
                 try {
-                    List<EbmlFileEntry> entries = get();
-                    for ( EbmlFileEntry child : entries ) {
-                        appendChild( new EntryTreeNode( child, descriptors.get( child.getIdentifier() ) ) );
-                    }
+                    get();
                 } catch ( InterruptedException e ) {
                     throw new AssertionError( e );
                 } catch ( ExecutionException e ) {
-                    appendChild( new DynamicTreeNode( e.getCause().getLocalizedMessage(), exceptionIcon ) );
+                    // appendChild() would create all lazy children at once
+                    appendErrorNode( new DynamicTreeNode( e.getCause().getLocalizedMessage(), exceptionIcon ) );
                 }
             }
 
@@ -253,6 +406,17 @@ public class EbmlFileTab extends Tab {
             return file.getEntries();
         }
 
+        @Override
+        protected List<EbmlFileEntry> getEntries( ReadProgressListener listener ) throws IOException {
+            return file.getEntries( listener );
+        }
+
+        @Override
+        public boolean isLeaf() {
+            // the file node stays expandable while its children are being read
+            return false;
+        }
+
     }
 
     private class EntryTreeNode extends MasterTreeNode {
@@ -261,6 +425,12 @@ public class EbmlFileTab extends Tab {
 
         private final ElementDescriptor descriptor;
 
+        /** Whether a decoder has started decoding the value, set by the first decoder that runs. */
+        private final AtomicBoolean valueDecoding = new AtomicBoolean();
+
+        /** The sequence number of the last value request, or {@code -1} if none, accessed only on the EDT. */
+        private long valueRequest = -1L;
+
 
         EntryTreeNode( EbmlFileEntry entry, ElementDescriptor descriptor ) {
             if ( entry == null ) {
@@ -295,60 +465,88 @@ public class EbmlFileTab extends Tab {
                     .append( " (", utilAttributes ).append( String.valueOf( entry.getSize().getEncodedLength() ), utilAttributes ).append( ')', utilAttributes )
                     .append( ']', utilAttributes );
 
-            // data
-            if ( descriptor != null && descriptor.getType() != ElementType.BINARY && descriptor.getType() != ElementType.MASTER ) {
-                try {
-                    EbmlDecoder decoder = new EbmlDecoder();
-                    ByteBuffer data = ByteBuffer.allocate( Math.min( 8 * 1024, ( int ) entry.getSize().getPlainValue() ) );
-                    entry.read( data );
-                    data.flip();
-                    String valueText;
-                    switch ( descriptor.getType() ) {
-                        case SIGNED_INTEGER:
-                            long signedInteger = decoder.decodeSignedInteger( data, ( int ) entry.getSize().getPlainValue() );
-                            valueText = String.format( "%,d (%<#x)", signedInteger );
-                            break;
-                        case UNSIGNED_INTEGER:
-                            long unsignedInteger = decoder.decodeUnsignedInteger( data, ( int ) entry.getSize().getPlainValue() );
-                            valueText = String.format( "%,d (%<#x)", unsignedInteger );
-                            break;
-                        case FLOATING_POINT:
-                            double floatingPoint = decoder.decodeFloatingPoint( data, ( int ) entry.getSize().getPlainValue() );
-                            valueText = String.format( "%,.10g (%<s)", floatingPoint );
-                            break;
-                        case ASCII_STRING:
-                            String asciiString = decoder.decodeAsciiString( data, ( int ) entry.getSize().getPlainValue() );
-                            valueText = String.format( "%s", asciiString );
-                            break;
-                        case UNICODE_STRING:
-                            String unicodeString = decoder.decodeUnicodeString( data, ( int ) entry.getSize().getPlainValue() );
-                            valueText = String.format( "%s", unicodeString );
-                            break;
-                        case DATE:
-                            long date = decoder.decodeDate( data, ( int ) entry.getSize().getPlainValue() );
-                            valueText = String.format( "%tF %<tT.%<tL", date );
-                            break;
-//                    case BINARY:
-//                        break;
-//                    case MASTER:
-//                        break;
-                        default:
-                            valueText = null;
-                    }
-                    if ( valueText != null ) {
-                        builder.append( " = ", utilAttributes )
-                                .append( valueText, valueAttributes );
-                    }
-                } catch ( Exception e ) {
-                    // IllegalEncodedLengthException
-                    // BufferUnderflowException
-                    // CharacterCodingException
-                    builder.append( " = ", utilAttributes ).append( e.getLocalizedMessage(), errorAttributes );
-                }
+            // the value is decoded in the background when the node is first rendered
+            setAttributedText( builder.build() );
+            setIcon( descriptor == null ? typeIcons.get( null ) : typeIcons.get( descriptor.getType() ) );
+        }
+
+
+        /** Checks whether this node displays the value of the entry. */
+        private boolean hasValue() {
+            return descriptor != null && descriptor.getType() != ElementType.BINARY && descriptor.getType() != ElementType.MASTER;
+        }
+
+        /**
+         * Requests the value of the entry to be decoded in the background, unless it is already decoded or requested.
+         * Called on the EDT whenever the node is rendered.
+         */
+        private void requestValue() {
+            if ( !hasValue() || valueDecoding.get() ) {
+                return;
+            }
+            // the request is renewed if the node is rendered again after many newer requests, so the pending values of
+            // the visible nodes stay ahead of the nodes that were scrolled out of view
+            if ( valueRequest < 0L || valueRequests - valueRequest > VALUE_REQUEST_RENEWAL ) {
+                valueRequest = ++valueRequests;
+                valueDecoder.execute( new ValueDecoder( this, valueRequest ) );
+            }
+        }
+
+        /**
+         * Reads and formats the value of the entry, called in the background.
+         *
+         * @return the value text, or {@code null} if the value is not displayed for the entry type
+         *
+         * @throws IOException if an I/O error has occurred or the value is not a valid string
+         */
+        private String decodeValue() throws IOException {
+            EbmlDecoder decoder = new EbmlDecoder();
+            ByteBuffer data = ByteBuffer.allocate( Math.min( 8 * 1024, ( int ) entry.getSize().getPlainValue() ) );
+            entry.read( data );
+            data.flip();
+            String valueText;
+            switch ( descriptor.getType() ) {
+                case SIGNED_INTEGER:
+                    long signedInteger = decoder.decodeSignedInteger( data, ( int ) entry.getSize().getPlainValue() );
+                    valueText = String.format( "%,d (%<#x)", signedInteger );
+                    break;
+                case UNSIGNED_INTEGER:
+                    long unsignedInteger = decoder.decodeUnsignedInteger( data, ( int ) entry.getSize().getPlainValue() );
+                    valueText = String.format( "%,d (%<#x)", unsignedInteger );
+                    break;
+                case FLOATING_POINT:
+                    double floatingPoint = decoder.decodeFloatingPoint( data, ( int ) entry.getSize().getPlainValue() );
+                    valueText = String.format( "%,.10g (%<s)", floatingPoint );
+                    break;
+                case ASCII_STRING:
+                    String asciiString = decoder.decodeAsciiString( data, ( int ) entry.getSize().getPlainValue() );
+                    valueText = String.format( "%s", asciiString );
+                    break;
+                case UNICODE_STRING:
+                    String unicodeString = decoder.decodeUnicodeString( data, ( int ) entry.getSize().getPlainValue() );
+                    valueText = String.format( "%s", unicodeString );
+                    break;
+                case DATE:
+                    long date = decoder.decodeDate( data, ( int ) entry.getSize().getPlainValue() );
+                    valueText = String.format( "%tF %<tT.%<tL", date );
+                    break;
+//                case BINARY:
+//                    break;
+//                case MASTER:
+//                    break;
+                default:
+                    valueText = null;
             }
+            return valueText;
+        }
 
+        /** Appends the decoded value or the decoding error to the text of this node, called on the EDT. */
+        private void setValue( String valueText, Map<AttributedCharacterIterator.Attribute, Object> attributes ) {
+            AttributedStringBuilder builder = new AttributedStringBuilder();
+            builder.append( getAttributedText() )
+                    .append( " = ", utilAttributes )
+                    .append( valueText, attributes );
             setAttributedText( builder.build() );
-            setIcon( descriptor == null ? typeIcons.get( null ) : typeIcons.get( descriptor.getType() ) );
         }
 
 
@@ -362,6 +560,11 @@ public class EbmlFileTab extends Tab {
             return entry.getEntries();
         }
 
+        @Override
+        protected List<EbmlFileEntry> getEntries( ReadProgressListener listener ) throws IOException {
+            return entry.getEntries( listener );
+        }
+
         @Override
         public void willExpand( TreeExpansionEvent event ) {
             if ( descriptor == null || descriptor.getType() != ElementType.MASTER ) {
@@ -377,4 +580,72 @@ public class EbmlFileTab extends Tab {
 
     }
 
+
+    /**
+     * Decodes the value of an entry node and appends it to the node text on the EDT. The decoders of the most recent
+     * requests run first, as they are likely to be for the currently visible nodes.
+     */
+    private static final class ValueDecoder implements Runnable, Comparable<ValueDecoder> {
+
+        private final EntryTreeNode node;
+
+        private final long sequence;
+
+
+        private ValueDecoder( EntryTreeNode node, long sequence ) {
+            this.node = node;
+            this.sequence = sequence;
+        }
+
+
+        @Override
+        public void run() {
+            // a renewed request leaves the earlier decoder in the queue, the first one to run decodes the value
+            if ( !node.valueDecoding.compareAndSet( false, true ) ) {
+                return;
+            }
+            String valueText;
+            Map<AttributedCharacterIterator.Attribute, Object> attributes;
+            try {
+                valueText = node.decodeValue();
+                attributes = valueAttributes;
+            } catch ( Exception e ) {
+                // IllegalEncodedLengthException
+                // BufferUnderflowException
+                // CharacterCodingException
+                valueText = e.getLocalizedMessage();
+                attributes = errorAttributes;
+            }
+            if ( valueText == null ) {
+                return;
+            }
+            final String text = valueText;
+            final Map<AttributedCharacterIterator.Attribute, Object> textAttributes = attributes;
+            // the node change event repaints only the row of the node
+            SwingUtilities.invokeLater( new Runnable() {
+                @Override
+                public void run() {
+                    node.setValue( text, textAttributes );
+                }
+            } );
+        }
+
+        @Override
+        public int compareTo( ValueDecoder other ) {
+            return sequence > other.sequence ? -1 : sequence < other.sequence ? 1 : 0;
+        }
+
+    }
+
+    private static final class ValueDecoderFactory implements ThreadFactory {
+
+        @Override
+        public Thread newThread( Runnable runnable ) {
+            Thread thread = new Thread( runnable, "ebml-value-decoder" );
+            thread.setDaemon( true );
+            return thread;
+        }
+
+    }
+
 }
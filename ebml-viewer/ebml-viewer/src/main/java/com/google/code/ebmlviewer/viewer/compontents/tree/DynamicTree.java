@@ -144,8 +144,7 @@ public class DynamicTree extends JTree {
             if ( removedChild == null ) {
                 return;
             }
-            Object[] children = event.getChildren();
-            if ( children == null || children.length != 1 || children[ 0 ] != removedChild ) {
+            if ( !containsRemovedChild( event.getChildren() ) ) {
                 removedChild = null;
                 return;
             }
@@ -162,11 +161,23 @@ public class DynamicTree extends JTree {
             removedChild = null;
         }
 
+        private boolean containsRemovedChild( Object[] children ) {
+            if ( children != null ) {
+                for ( Object child : children ) {
+                    if ( child == removedChild ) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
         @Override
         public void treeNodesRemoved( TreeModelEvent event ) {
             Object[] children = event.getChildren();
             if ( children == null || children.length != 1 ) {
                 removedChild = null;
+                super.treeNodesRemoved( event );
                 return;
             }
             removedChild = children[ 0 ];
@@ -64,18 +64,23 @@ public class DynamicTreeModel implements TreeModel {
         root.addDynamicTreeNodeListener( new DynamicTreeNodeListener() {
             @Override
             public void nodeInserted( DynamicTreeNodeEvent event ) {
-                fireNodeInserted( event.getSource(), event.getIndex(), event.getNode() );
+                fireNodeInserted( event.getSource(), event.getIndices(), event.getNodes() );
             }
 
             @Override
             public void nodeRemoved( DynamicTreeNodeEvent event ) {
-                fireNodeRemoved( event.getSource(), event.getIndex(), event.getNode() );
+                fireNodeRemoved( event.getSource(), event.getIndices(), event.getNodes() );
             }
 
             @Override
             public void nodeChanged( DynamicTreeNodeEvent event ) {
                 fireNodeChanged( event.getSource() );
             }
+
+            @Override
+            public void nodeStructureChanged( DynamicTreeNodeEvent event ) {
+                fireNodeStructureChanged( event.getSource() );
+            }
         } );
     }
 
@@ -154,26 +159,26 @@ public class DynamicTreeModel implements TreeModel {
         listenerList.removeListener( TreeModelListener.class, listener );
     }
 
-    private void fireNodeInserted( DynamicTreeNode parent, int index, DynamicTreeNode node ) {
+    private void fireNodeInserted( DynamicTreeNode parent, int[] indices, DynamicTreeNode[] nodes ) {
         TreeModelEvent event = null;
         Object[] listeners = listenerList.getListeners();
         for ( int i = listeners.length - 2; i >= 0; i -= 2 ) {
             if ( listeners[ i ] == TreeModelListener.class ) {
                 if ( event == null ) {
-                    event = new TreeModelEvent( this, parent.getPath(), new int[] { index }, new Object[] { node } );
+                    event = new TreeModelEvent( this, parent.getPath(), indices, nodes );
                 }
                 ( ( TreeModelListener ) listeners[ i + 1 ] ).treeNodesInserted( event );
             }
         }
     }
 
-    private void fireNodeRemoved( DynamicTreeNode parent, int index, DynamicTreeNode node ) {
+    private void fireNodeRemoved( DynamicTreeNode parent, int[] indices, DynamicTreeNode[] nodes ) {
         TreeModelEvent event = null;
         Object[] listeners = listenerList.getListeners();
         for ( int i = listeners.length - 2; i >= 0; i -= 2 ) {
             if ( listeners[ i ] == TreeModelListener.class ) {
                 if ( event == null ) {
-                    event = new TreeModelEvent( this, parent.getPath(), new int[] { index }, new Object[] { node } );
+                    event = new TreeModelEvent( this, parent.getPath(), indices, nodes );
                 }
                 ( ( TreeModelListener ) listeners[ i + 1 ] ).treeNodesRemoved( event );
             }
@@ -198,4 +203,17 @@ public class DynamicTreeModel implements TreeModel {
         }
     }
 
+    private void fireNodeStructureChanged( DynamicTreeNode node ) {
+        TreeModelEvent event = null;
+        Object[] listeners = listenerList.getListeners();
+        for ( int i = listeners.length - 2; i >= 0; i -= 2 ) {
+            if ( listeners[ i ] == TreeModelListener.class ) {
+                if ( event == null ) {
+                    event = new TreeModelEvent( this, node.getPath() );
+                }
+                ( ( TreeModelListener ) listeners[ i + 1 ] ).treeStructureChanged( event );
+            }
+        }
+    }
+
 }
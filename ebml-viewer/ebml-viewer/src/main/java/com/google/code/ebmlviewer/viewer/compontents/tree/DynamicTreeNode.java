@@ -34,10 +34,14 @@ import java.beans.PropertyChangeListener;
 import java.text.AttributedString;
 import java.text.CharacterIterator;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 import javax.swing.Icon;
 import javax.swing.event.TreeExpansionEvent;
@@ -45,9 +49,21 @@ import javax.swing.tree.ExpandVetoException;
 
 import com.google.code.ebmlviewer.viewer.util.EventListenerList;
 
-/** Represents a tree node. */
+/**
+ * Represents a tree node.
+ * <p/>
+ * The children of a node are either created up front and added with the {@code appendChild} and {@code insertChild}
+ * methods, or created on demand by the {@link #createChild(int)} method after {@link #setLazyChildren(int)} is called.
+ * The lazy children are created only when accessed by the {@link #getChild(int)} method, so a node with a huge number
+ * of children can be expanded in constant time if the tree uses the {@link javax.swing.JTree#setLargeModel(boolean)
+ * large model} that asks only for the visible children.
+ */
 public class DynamicTreeNode implements Iterable<DynamicTreeNode> {
 
+    /** The number of lazy children in a page, a power of two. */
+    private static final int PAGE_SIZE = 256;
+
+
     protected final EventListenerList listenerList = new EventListenerList();
 
     private String text;
@@ -60,6 +76,22 @@ public class DynamicTreeNode implements Iterable<DynamicTreeNode> {
 
     private List<DynamicTreeNode> children;
 
+    /** The index of this node in the children list of its parent, valid only if the parent says so. */
+    private int childIndex;
+
+    /**
+     * The number of the leading children with the valid {@link #childIndex}. The indices are invalidated by the
+     * insertion and the removal of the children and renumbered in a batch by the next {@link
+     * #getChildIndex(DynamicTreeNode)}.
+     */
+    private int validChildIndexes;
+
+    /** The number of lazy children, or {@code -1} if the children are not lazy. */
+    private int lazyChildCount = -1;
+
+    /** The pages of the created lazy children, a page is allocated when its first child is created. */
+    private DynamicTreeNode[][] lazyChildPages;
+
     private boolean connected;
 
     private boolean editable;
@@ -240,6 +272,13 @@ public class DynamicTreeNode implements Iterable<DynamicTreeNode> {
 
 
     private List<DynamicTreeNode> children( boolean modificationPossible ) {
+        if ( lazyChildCount >= 0 ) {
+            if ( modificationPossible ) {
+                createLazyChildren();
+            } else {
+                return createdLazyChildren();
+            }
+        }
         if ( children == null ) {
             if ( modificationPossible ) {
                 children = new ArrayList<DynamicTreeNode>();
@@ -257,7 +296,7 @@ public class DynamicTreeNode implements Iterable<DynamicTreeNode> {
      * @return the number of child nodes
      */
     public int getChildCount() {
-        return children( false ).size();
+        return lazyChildCount >= 0 ? lazyChildCount : children( false ).size();
     }
 
     /**
@@ -271,6 +310,9 @@ public class DynamicTreeNode implements Iterable<DynamicTreeNode> {
      * getChildCount()</code>)
      */
     public DynamicTreeNode getChild( int index ) {
+        if ( lazyChildCount >= 0 ) {
+            return getLazyChild( index );
+        }
         return children( false ).get( index );
     }
 
@@ -287,12 +329,170 @@ public class DynamicTreeNode implements Iterable<DynamicTreeNode> {
         if ( node == null ) {
             throw new IllegalArgumentException( "node is null" );
         }
+        if ( node.parent != this ) {
+            return -1;
+        }
+        if ( lazyChildCount >= 0 ) {
+            return getLazyChildIndex( node );
+        }
         List<DynamicTreeNode> children = children( false );
-        int index = children.size() - 1;
-        while ( index >= 0 && children.get( index ) != node ) {
-            index--;
+        if ( node.childIndex >= validChildIndexes ) {
+            for ( int i = validChildIndexes; i < children.size(); i++ ) {
+                children.get( i ).childIndex = i;
+            }
+            validChildIndexes = children.size();
+        }
+        int index = node.childIndex;
+        return index < children.size() && children.get( index ) == node ? index : -1;
+    }
+
+    /** Invalidates the indices of the children starting from the specified index. */
+    private void invalidateChildIndexes( int index ) {
+        validChildIndexes = Math.min( validChildIndexes, index );
+    }
+
+
+    /**
+     * Replaces the children of this node with the specified number of lazy children, which are created by the {@link
+     * #createChild(int)} method when first accessed.
+     * <p/>
+     * The operation takes constant time regardless of the number of children and fires a single structure change
+     * event. The lazy children behave like the usual children, but any modification of the children list creates all
+     * the remaining lazy children, so the nodes with a huge number of children should not be modified.
+     *
+     * @param count the number of children
+     *
+     * @throws IllegalArgumentException if {@code count} is negative
+     */
+    protected void setLazyChildren( int count ) {
+        if ( count < 0 ) {
+            throw new IllegalArgumentException( "count is negative" );
+        }
+        for ( DynamicTreeNode child : children( false ) ) {
+            child.setParent( null );
+            if ( connected ) {
+                child.disconnect();
+            }
+        }
+        children = null;
+        validChildIndexes = 0;
+        lazyChildCount = count;
+        lazyChildPages = new DynamicTreeNode[ ( count + PAGE_SIZE - 1 ) / PAGE_SIZE ][];
+        fireNodeStructureChanged();
+    }
+
+    /**
+     * Appends the specified number of lazy children to the end of the children list of this node, which already uses
+     * the lazy children.
+     * <p/>
+     * The operation fires a single insertion event without creating the new children, so a node can be populated
+     * progressively while its children are being read.
+     *
+     * @param count the number of children to be appended
+     *
+     * @throws IllegalArgumentException if {@code count} is negative
+     * @throws IllegalStateException if the children of this node are not lazy
+     * @see #setLazyChildren(int)
+     */
+    protected void appendLazyChildren( int count ) {
+        if ( count < 0 ) {
+            throw new IllegalArgumentException( "count is negative" );
+        }
+        if ( lazyChildCount < 0 ) {
+            throw new IllegalStateException( "the children are not lazy" );
+        }
+        if ( count == 0 ) {
+            return;
+        }
+        int index = lazyChildCount;
+        lazyChildCount += count;
+        int pages = ( lazyChildCount + PAGE_SIZE - 1 ) / PAGE_SIZE;
+        if ( pages > lazyChildPages.length ) {
+            lazyChildPages = Arrays.copyOf( lazyChildPages, Math.max( pages, lazyChildPages.length * 2 ) );
+        }
+        int[] indices = new int[ count ];
+        for ( int i = 0; i < count; i++ ) {
+            indices[ i ] = index + i;
+        }
+        fireNodeInserted( indices, null );
+    }
+
+    /**
+     * Creates the lazy child node with the specified index.
+     * <p/>
+     * The default implementation throws {@code UnsupportedOperationException}, the nodes that use the lazy children
+     * must override it.
+     *
+     * @param index the index of the child node
+     *
+     * @return the new child node without a parent
+     *
+     * @see #setLazyChildren(int)
+     */
+    protected DynamicTreeNode createChild( int index ) {
+        throw new UnsupportedOperationException();
+    }
+
+    private DynamicTreeNode getLazyChild( int index ) {
+        if ( index < 0 || index >= lazyChildCount ) {
+            throw new IndexOutOfBoundsException( String.format( "index %s is out of [%s, %s) range", index, 0, lazyChildCount ) );
+        }
+        DynamicTreeNode[] page = lazyChildPages[ index / PAGE_SIZE ];
+        if ( page == null ) {
+            page = new DynamicTreeNode[ PAGE_SIZE ];
+            lazyChildPages[ index / PAGE_SIZE ] = page;
+        }
+        DynamicTreeNode node = page[ index % PAGE_SIZE ];
+        if ( node == null ) {
+            node = createChild( index );
+            if ( node == null || node.getParent() != null ) {
+                throw new IllegalStateException( "createChild must return a new node without a parent" );
+            }
+            page[ index % PAGE_SIZE ] = node;
+            node.childIndex = index;
+            node.setParent( this );
+            if ( connected ) {
+                node.connect();
+            }
+        }
+        return node;
+    }
+
+    private int getLazyChildIndex( DynamicTreeNode node ) {
+        // the lazy children never move, their indices are assigned on creation
+        int index = node.childIndex;
+        if ( index < 0 || index >= lazyChildCount ) {
+            return -1;
+        }
+        DynamicTreeNode[] page = lazyChildPages[ index / PAGE_SIZE ];
+        return page != null && page[ index % PAGE_SIZE ] == node ? index : -1;
+    }
+
+    /** Returns the lazy children that are already created. */
+    private List<DynamicTreeNode> createdLazyChildren() {
+        List<DynamicTreeNode> created = new ArrayList<DynamicTreeNode>();
+        for ( DynamicTreeNode[] page : lazyChildPages ) {
+            if ( page != null ) {
+                for ( DynamicTreeNode node : page ) {
+                    if ( node != null ) {
+                        created.add( node );
+                    }
+                }
+            }
+        }
+        return created;
+    }
+
+    /** Creates all the remaining lazy children and converts them into the usual children. */
+    private void createLazyChildren() {
+        List<DynamicTreeNode> created = new ArrayList<DynamicTreeNode>( lazyChildCount );
+        for ( int i = 0; i < lazyChildCount; i++ ) {
+            created.add( getLazyChild( i ) );
         }
-        return index;
+        children = created;
+        validChildIndexes = created.size();
+        lazyChildCount = -1;
+        lazyChildPages = null;
     }
 
     /**
@@ -305,7 +505,7 @@ public class DynamicTreeNode implements Iterable<DynamicTreeNode> {
      * @throws IllegalArgumentException if {@code node} is {@code null} or is an ancestor of this node
      */
     public void appendChild( DynamicTreeNode node ) {
-        insertChild( node, children( false ).size() );
+        insertChild( node, getChildCount() );
     }
 
     /**
@@ -346,6 +546,8 @@ public class DynamicTreeNode implements Iterable<DynamicTreeNode> {
             node.removeFromParent();
         }
         children( true ).add( index, node );
+        node.childIndex = index;
+        invalidateChildIndexes( index );
         node.setParent( this );
         fireNodeInserted( index, node );
         if ( connected ) {
@@ -374,7 +576,9 @@ public class DynamicTreeNode implements Iterable<DynamicTreeNode> {
         if ( connected ) {
             node.connect();
         }
-        children( true ).add( node );
+        List<DynamicTreeNode> children = children( true );
+        node.childIndex = children.size();
+        children.add( node );
         node.setParent( this );
     }
 
@@ -404,10 +608,121 @@ public class DynamicTreeNode implements Iterable<DynamicTreeNode> {
             throw new IndexOutOfBoundsException( String.format( "index %s is out of [%s, %s] range", index, 0, getChildCount() ) );
         }
         children( true ).add( index, node );
+        node.childIndex = index;
+        invalidateChildIndexes( index );
         node.setParent( this );
     }
 
 
+    /**
+     * Inserts the specified nodes at the specified position in the children list of this node.
+     * <p/>
+     * The nodes that already have a parent node are removed from their current parent node. Unlike the repeated {@link
+     * #insertChild(DynamicTreeNode, int)}, this method fires a single event for all the nodes, so the tree is laid out
+     * only once.
+     *
+     * @param nodes the child nodes to be inserted
+     * @param index the index at which the first node is to be inserted
+     *
+     * @throws IllegalArgumentException if {@code nodes} is {@code null}, or contains {@code null}, a duplicate node, a
+     * child of this node or an ancestor of this node
+     * @throws IndexOutOfBoundsException if {@code index} is out of range (<code>index < 0 || index >
+     * getChildCount()</code>)
+     */
+    public void insertChildren( List<? extends DynamicTreeNode> nodes, int index ) {
+        if ( nodes == null ) {
+            throw new IllegalArgumentException( "nodes is null" );
+        }
+        if ( index < 0 || index > getChildCount() ) {
+            throw new IndexOutOfBoundsException( String.format( "index %s is out of [%s, %s] range", index, 0, getChildCount() ) );
+        }
+        Set<DynamicTreeNode> unique = Collections.newSetFromMap( new IdentityHashMap<DynamicTreeNode, Boolean>() );
+        for ( DynamicTreeNode node : nodes ) {
+            if ( node == null ) {
+                throw new IllegalArgumentException( "nodes contains null" );
+            }
+            if ( !unique.add( node ) ) {
+                throw new IllegalArgumentException( "nodes contains duplicate node" );
+            }
+            if ( node.getParent() == this ) {
+                throw new IllegalArgumentException( "node is already a child of this node" );
+            }
+            if ( isDescendantOf( node ) ) {
+                throw new IllegalArgumentException( "node is ancestor of this node" );
+            }
+        }
+        if ( nodes.isEmpty() ) {
+            return;
+        }
+        for ( DynamicTreeNode node : nodes ) {
+            node.removeFromParent();
+        }
+        children( true ).addAll( index, nodes );
+        invalidateChildIndexes( index );
+        int[] indices = new int[ nodes.size() ];
+        DynamicTreeNode[] inserted = nodes.toArray( new DynamicTreeNode[ nodes.size() ] );
+        for ( int i = 0; i < inserted.length; i++ ) {
+            indices[ i ] = index + i;
+            inserted[ i ].childIndex = index + i;
+            inserted[ i ].setParent( this );
+        }
+        fireNodeInserted( indices, inserted );
+        if ( connected ) {
+            for ( DynamicTreeNode node : inserted ) {
+                node.connect();
+            }
+        }
+    }
+
+    /**
+     * Appends the specified nodes to the end of the children list of this node, firing a single event.
+     *
+     * @param nodes the child nodes to be appended
+     *
+     * @throws IllegalArgumentException if {@code nodes} is {@code null}, or contains {@code null}, a duplicate node, a
+     * child of this node or an ancestor of this node
+     * @see #insertChildren(List, int)
+     */
+    public void appendChildren( List<? extends DynamicTreeNode> nodes ) {
+        insertChildren( nodes, getChildCount() );
+    }
+
+    /**
+     * Removes the child nodes in the specified range, firing a single event.
+     *
+     * @param fromIndex the index of the first child node to be removed, inclusive
+     * @param toIndex the index of the last child node to be removed, exclusive
+     *
+     * @return the removed child nodes
+     *
+     * @throws IndexOutOfBoundsException if the range is out of bounds (<code>fromIndex < 0 || toIndex >
+     * getChildCount() || fromIndex > toIndex</code>)
+     */
+    public List<DynamicTreeNode> removeChildren( int fromIndex, int toIndex ) {
+        if ( fromIndex < 0 || toIndex > getChildCount() || fromIndex > toIndex ) {
+            throw new IndexOutOfBoundsException( String.format( "range [%s, %s) is out of [%s, %s] range", fromIndex, toIndex, 0, getChildCount() ) );
+        }
+        if ( fromIndex == toIndex ) {
+            return Collections.emptyList();
+        }
+        List<DynamicTreeNode> range = children( true ).subList( fromIndex, toIndex );
+        DynamicTreeNode[] removed = range.toArray( new DynamicTreeNode[ range.size() ] );
+        range.clear();
+        invalidateChildIndexes( fromIndex );
+        int[] indices = new int[ removed.length ];
+        for ( int i = 0; i < removed.length; i++ ) {
+            indices[ i ] = fromIndex + i;
+            removed[ i ].setParent( null );
+        }
+        fireNodeRemoved( indices, removed );
+        if ( connected ) {
+            for ( DynamicTreeNode node : removed ) {
+                node.disconnect();
+            }
+        }
+        return Arrays.asList( removed );
+    }
+
     /**
      * Removes the child node with the specified index.
      *
@@ -419,7 +734,8 @@ public class DynamicTreeNode implements Iterable<DynamicTreeNode> {
      * getChildCount()</code>)
      */
     public DynamicTreeNode removeChild( int index ) {
-        DynamicTreeNode node = children( false ).remove( index );
+        DynamicTreeNode node = children( true ).remove( index );
+        invalidateChildIndexes( index );
         node.setParent( null );
         fireNodeRemoved( index, node );
         if ( connected ) {
@@ -457,6 +773,31 @@ public class DynamicTreeNode implements Iterable<DynamicTreeNode> {
 
     @Override
     public Iterator<DynamicTreeNode> iterator() {
+        if ( lazyChildCount >= 0 ) {
+            return new Iterator<DynamicTreeNode>() {
+
+                private int index;
+
+                @Override
+                public boolean hasNext() {
+                    return index < getChildCount();
+                }
+
+                @Override
+                public DynamicTreeNode next() {
+                    if ( !hasNext() ) {
+                        throw new NoSuchElementException();
+                    }
+                    return getChild( index++ );
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+
+            };
+        }
         return children( false ).iterator();
     }
 
@@ -467,7 +808,7 @@ public class DynamicTreeNode implements Iterable<DynamicTreeNode> {
      * @return {@code true} if this node is a leaf node; {@code false} otherwise
      */
     public boolean isLeaf() {
-        return children( false ).isEmpty();
+        return getChildCount() == 0;
     }
 
 
@@ -620,40 +961,67 @@ public class DynamicTreeNode implements Iterable<DynamicTreeNode> {
     }
 
     protected void fireNodeInserted( int index, DynamicTreeNode node ) {
-        fireNodeInserted( this, index, node, null );
+        fireNodeInserted( this, new int[] { index }, new DynamicTreeNode[] { node }, null );
     }
 
-    protected void fireNodeInserted( DynamicTreeNode source, int index, DynamicTreeNode node, DynamicTreeNodeEvent event ) {
+    protected void fireNodeInserted( int[] indices, DynamicTreeNode[] nodes ) {
+        fireNodeInserted( this, indices, nodes, null );
+    }
+
+    protected void fireNodeInserted( DynamicTreeNode source, int[] indices, DynamicTreeNode[] nodes, DynamicTreeNodeEvent event ) {
         Object[] listeners = listenerList.getListeners();
         for ( int i = listeners.length - 2; i >= 0; i -= 2 ) {
             if ( listeners[ i ] == DynamicTreeNodeListener.class ) {
                 if ( event == null ) {
-                    event = new DynamicTreeNodeEvent( source, index, node );
+                    event = new DynamicTreeNodeEvent( source, indices, nodes );
                 }
                 ( ( DynamicTreeNodeListener ) listeners[ i + 1 ] ).nodeInserted( event );
             }
         }
         if ( parent != null ) {
-            parent.fireNodeInserted( source, index, node, event );
+            parent.fireNodeInserted( source, indices, nodes, event );
         }
     }
 
     protected void fireNodeRemoved( int index, DynamicTreeNode node ) {
-        fireNodeRemoved( this, index, node, null );
+        fireNodeRemoved( this, new int[] { index }, new DynamicTreeNode[] { node }, null );
     }
 
-    protected void fireNodeRemoved( DynamicTreeNode source, int index, DynamicTreeNode node, DynamicTreeNodeEvent event ) {
+    protected void fireNodeRemoved( int[] indices, DynamicTreeNode[] nodes ) {
+        fireNodeRemoved( this, indices, nodes, null );
+    }
+
+    protected void fireNodeRemoved( DynamicTreeNode source, int[] indices, DynamicTreeNode[] nodes, DynamicTreeNodeEvent event ) {
         Object[] listeners = listenerList.getListeners();
         for ( int i = listeners.length - 2; i >= 0; i -= 2 ) {
             if ( listeners[ i ] == DynamicTreeNodeListener.class ) {
                 if ( event == null ) {
-                    event = new DynamicTreeNodeEvent( source, index, node );
+                    event = new DynamicTreeNodeEvent( source, indices, nodes );
                 }
                 ( ( DynamicTreeNodeListener ) listeners[ i + 1 ] ).nodeRemoved( event );
             }
         }
         if ( parent != null ) {
-            parent.fireNodeRemoved( source, index, node, event );
+            parent.fireNodeRemoved( source, indices, nodes, event );
+        }
+    }
+
+    protected final void fireNodeStructureChanged() {
+        fireNodeStructureChanged( this, null );
+    }
+
+    protected final void fireNodeStructureChanged( DynamicTreeNode source, DynamicTreeNodeEvent event ) {
+        Object[] listeners = listenerList.getListeners();
+        for ( int i = listeners.length - 2; i >= 0; i -= 2 ) {
+            if ( listeners[ i ] == DynamicTreeNodeListener.class ) {
+                if ( event == null ) {
+                    event = new DynamicTreeNodeEvent( source );
+                }
+                ( ( DynamicTreeNodeListener ) listeners[ i + 1 ] ).nodeStructureChanged( event );
+            }
+        }
+        if ( parent != null ) {
+            parent.fireNodeStructureChanged( source, event );
         }
     }
 
@@ -31,22 +31,41 @@ package com.google.code.ebmlviewer.viewer.compontents.tree;
 
 import java.util.EventObject;
 
-/** Contains information about dynamic tree node event. */
+/**
+ * Contains information about dynamic tree node event.
+ * <p/>
+ * The insertion and removal events can describe several child nodes at once, the indices are in the ascending order.
+ */
 public final class DynamicTreeNodeEvent extends EventObject {
 
-    private final int index;
+    private static final int[] NO_INDICES = new int[ 0 ];
+
+    private static final DynamicTreeNode[] NO_NODES = new DynamicTreeNode[ 0 ];
+
 
-    private final DynamicTreeNode node;
+    private final int[] indices;
+
+    private final DynamicTreeNode[] nodes;
 
 
     public DynamicTreeNodeEvent( DynamicTreeNode source ) {
-        this( source, -1, null );
+        this( source, NO_INDICES, NO_NODES );
     }
 
     public DynamicTreeNodeEvent( DynamicTreeNode source, int index, DynamicTreeNode node ) {
+        this( source, new int[] { index }, new DynamicTreeNode[] { node } );
+    }
+
+    public DynamicTreeNodeEvent( DynamicTreeNode source, int[] indices, DynamicTreeNode[] nodes ) {
         super( source );
-        this.index = index;
-        this.node = node;
+        if ( indices == null ) {
+            throw new IllegalArgumentException( "indices is null" );
+        }
+        if ( nodes != null && indices.length != nodes.length ) {
+            throw new IllegalArgumentException( "indices and nodes have different lengths" );
+        }
+        this.indices = indices;
+        this.nodes = nodes;
     }
 
 
@@ -55,12 +74,42 @@ public final class DynamicTreeNodeEvent extends EventObject {
         return ( DynamicTreeNode ) super.getSource();
     }
 
+    /**
+     * Returns the index of the first child node described by this event.
+     *
+     * @return the index of the first child node, or {@code -1} if the event does not describe child nodes
+     */
     public int getIndex() {
-        return index;
+        return indices.length == 0 ? -1 : indices[ 0 ];
     }
 
+    /**
+     * Returns the first child node described by this event.
+     *
+     * @return the first child node, or {@code null} if the event does not describe child nodes or the inserted lazy
+     *         children were not created yet
+     */
     public DynamicTreeNode getNode() {
-        return node;
+        return nodes == null || nodes.length == 0 ? null : nodes[ 0 ];
+    }
+
+    /**
+     * Returns the indices of the child nodes described by this event.
+     *
+     * @return the indices of the child nodes in the ascending order
+     */
+    public int[] getIndices() {
+        return indices.clone();
+    }
+
+    /**
+     * Returns the child nodes described by this event.
+     *
+     * @return the child nodes in the order of their indices, or {@code null} if the inserted lazy children were not
+     *         created yet
+     */
+    public DynamicTreeNode[] getNodes() {
+        return nodes == null ? null : nodes.clone();
     }
 
 }
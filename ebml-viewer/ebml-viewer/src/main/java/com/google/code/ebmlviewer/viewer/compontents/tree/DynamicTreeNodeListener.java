@@ -55,4 +55,11 @@ public interface DynamicTreeNodeListener extends EventListener {
      */
     void nodeChanged( DynamicTreeNodeEvent event );
 
+    /**
+     * Invoked after the children of a node have been replaced.
+     *
+     * @param event the event description
+     */
+    void nodeStructureChanged( DynamicTreeNodeEvent event );
+
 }
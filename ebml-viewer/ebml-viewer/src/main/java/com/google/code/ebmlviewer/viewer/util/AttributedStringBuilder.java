@@ -121,6 +121,25 @@ public class AttributedStringBuilder {
     }
 
 
+    public AttributedStringBuilder append( AttributedString str ) {
+        if ( str == null ) {
+            throw new IllegalArgumentException( "str is null" );
+        }
+        AttributedCharacterIterator iterator = str.getIterator();
+        int offset = buffer.length() - iterator.getBeginIndex();
+        for ( char c = iterator.first(); c != AttributedCharacterIterator.DONE; c = iterator.next() ) {
+            buffer.append( c );
+        }
+        for ( iterator.first(); iterator.getIndex() < iterator.getEndIndex(); iterator.setIndex( iterator.getRunLimit() ) ) {
+            Map<AttributedCharacterIterator.Attribute, Object> attributes = iterator.getAttributes();
+            if ( !attributes.isEmpty() ) {
+                attributedSpans.add( new AttributedSpan( attributes, offset + iterator.getRunStart(), offset + iterator.getRunLimit() ) );
+            }
+        }
+        return this;
+    }
+
+
     public AttributedString build() {
         AttributedString attributedString = new AttributedString( buffer.toString() );
         for ( AttributedSpan attributedSpan : attributedSpans ) {